@@ -6,7 +6,9 @@
 package org.h2.command;
 
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.h2.api.ErrorCode;
@@ -20,6 +22,7 @@
 import org.h2.result.ResultWithGeneratedKeys;
 import org.h2.result.ResultWithPaddedStrings;
 import org.h2.util.MathUtils;
+import org.h2.value.Value;
 
 /**
  * Represents a SQL statement. This object is only used on the server side.
@@ -321,6 +324,35 @@ public ResultWithGeneratedKeys executeUpdate(Object generatedKeysRequest) {
         }
     }
 
+    @Override
+    public Future<Integer> executeUpdateAsync() {
+        try {
+            return new UpdateFuture(executeUpdate(false).getUpdateCount(), null);
+        } catch (DbException e) {
+            return new UpdateFuture(0, e);
+        }
+    }
+
+    @Override
+    public int[] executeBatchUpdate(ArrayList<Value[]> batchParameters, ArrayList<DbException> exceptions) {
+        int size = batchParameters.size();
+        int[] result = new int[size];
+        ArrayList<? extends ParameterInterface> parameters = getParameters();
+        for (int i = 0; i < size; i++) {
+            Value[] set = batchParameters.get(i);
+            for (int j = 0; j < set.length; j++) {
+                parameters.get(j).setValue(set[j], false);
+            }
+            try {
+                result[i] = executeUpdate(false).getUpdateCount();
+            } catch (DbException e) {
+                exceptions.add(e);
+                result[i] = Statement.EXECUTE_FAILED;
+            }
+        }
+        return result;
+    }
+
     private long filterConcurrentUpdate(DbException e, long start) {
         int errorCode = e.getErrorCode();
         if (errorCode != ErrorCode.CONCURRENT_UPDATE_1 &&
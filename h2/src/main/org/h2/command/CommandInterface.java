@@ -6,9 +6,12 @@
 package org.h2.command;
 
 import java.util.ArrayList;
+import java.util.concurrent.Future;
 import org.h2.expression.ParameterInterface;
+import org.h2.message.DbException;
 import org.h2.result.ResultInterface;
 import org.h2.result.ResultWithGeneratedKeys;
+import org.h2.value.Value;
 
 /**
  * Represents a SQL statement.
@@ -528,6 +531,28 @@ public interface CommandInterface {
      */
     ResultWithGeneratedKeys executeUpdate(Object generatedKeysRequest);
 
+    /**
+     * Execute the statement without generated keys, and without waiting for
+     * the result if possible. The current parameter values are used.
+     *
+     * @return the update count, or the exception if the statement failed
+     */
+    Future<Integer> executeUpdateAsync();
+
+    /**
+     * Execute the statement once for each set of parameter values, without
+     * generated keys. Executions that fail don't stop the batch.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @param exceptions the list to add the exceptions of the failed
+     *            executions to, in order
+     * @return the update counts, where failed executions have the count
+     *         {@link java.sql.Statement#EXECUTE_FAILED}, or null if batch
+     *         execution is not supported and the statement needs to be
+     *         executed for each set of parameter values instead
+     */
+    int[] executeBatchUpdate(ArrayList<Value[]> batchParameters, ArrayList<DbException> exceptions);
+
     /**
      * Stop the command execution, release all locks and resources
      */
@@ -6,7 +6,9 @@
 package org.h2.command;
 
 import java.io.IOException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.concurrent.Future;
 
 import org.h2.engine.Constants;
 import org.h2.engine.GeneratedKeysMode;
@@ -259,6 +261,85 @@ public ResultWithGeneratedKeys executeUpdate(Object generatedKeysRequest) {
         }
     }
 
+    @Override
+    public Future<Integer> executeUpdateAsync() {
+        if (transferList.size() != 1) {
+            // in cluster mode, all servers need to be updated in turn
+            try {
+                return new UpdateFuture(executeUpdate(false).getUpdateCount(), null);
+            } catch (DbException e) {
+                return new UpdateFuture(0, e);
+            }
+        }
+        checkParameters();
+        synchronized (session) {
+            prepareIfRequired();
+            Transfer transfer = transferList.get(0);
+            UpdateFuture update = new UpdateFuture(session);
+            // fails if the request can not be sent
+            session.addPendingResponse(update);
+            try {
+                session.traceOperation("COMMAND_EXECUTE_UPDATE", id);
+                transfer.writeInt(SessionRemote.COMMAND_EXECUTE_UPDATE).writeInt(id);
+                sendParameters(transfer);
+                if (session.isSupportsGeneratedKeys()) {
+                    transfer.writeInt(GeneratedKeysMode.NONE);
+                }
+                transfer.flush();
+            } catch (IOException e) {
+                session.removeServer(e, 0, 1);
+            }
+            return update;
+        }
+    }
+
+    @Override
+    public int[] executeBatchUpdate(ArrayList<Value[]> batchParameters, ArrayList<DbException> exceptions) {
+        if (session.getClientVersion() < Constants.TCP_PROTOCOL_VERSION_19) {
+            return null;
+        }
+        synchronized (session) {
+            int size = batchParameters.size();
+            int[] result = null;
+            ArrayList<DbException> serverExceptions = null;
+            boolean autoCommit = false;
+            for (int i = 0, count = 0; i < transferList.size(); i++) {
+                prepareIfRequired();
+                Transfer transfer = transferList.get(i);
+                try {
+                    session.traceOperation("COMMAND_EXECUTE_BATCH", id);
+                    transfer.writeInt(SessionRemote.COMMAND_EXECUTE_BATCH).writeInt(id).writeInt(size);
+                    for (Value[] set : batchParameters) {
+                        transfer.writeInt(set.length);
+                        for (Value v : set) {
+                            transfer.writeValue(v == null ? ValueNull.INSTANCE : v);
+                        }
+                    }
+                    session.done(transfer);
+                    result = new int[size];
+                    serverExceptions = Utils.newSmallArrayList();
+                    for (int j = 0; j < size; j++) {
+                        int updateCount = transfer.readInt();
+                        if (updateCount == Statement.EXECUTE_FAILED) {
+                            serverExceptions.add(DbException.convert(SessionRemote.readSQLException(transfer)));
+                        }
+                        result[j] = updateCount;
+                    }
+                    autoCommit = transfer.readBoolean();
+                } catch (IOException e) {
+                    session.removeServer(e, i--, ++count);
+                }
+            }
+            if (serverExceptions != null) {
+                exceptions.addAll(serverExceptions);
+            }
+            session.setAutoCommitFromServer(autoCommit);
+            session.autoCommitIfCluster();
+            session.readSessionState();
+            return result;
+        }
+    }
+
     private void checkParameters() {
         if (cmdType != EXPLAIN) {
             for (ParameterInterface p : parameters) {
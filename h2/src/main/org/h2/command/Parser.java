@@ -5820,7 +5820,7 @@ private Prepared parseCreate() {
             return parseCreateSynonym(orReplace);
         } else {
             boolean hash = false, primaryKey = false;
-            boolean unique = false, spatial = false;
+            boolean unique = false, spatial = false, extensibleHash = false;
             String indexName = null;
             Schema oldSchema = null;
             boolean ifNotExists = false;
@@ -5867,6 +5867,16 @@ private Prepared parseCreate() {
             command.setComment(readCommentIf());
             read(OPEN_PAREN);
             command.setIndexColumns(parseIndexColumnList());
+            if (readIf("INCLUDE")) {
+                read(OPEN_PAREN);
+                String[] includeColumnNames = parseColumnList();
+                IndexColumn[] includeColumns = new IndexColumn[includeColumnNames.length];
+                for (int i = 0; i < includeColumnNames.length; i++) {
+                    includeColumns[i] = new IndexColumn();
+                    includeColumns[i].columnName = includeColumnNames[i];
+                }
+                command.setIncludeColumns(includeColumns);
+            }
 
             if (readIf("USING")) {
                 if (hash) {
@@ -5881,12 +5891,16 @@ private Prepared parseCreate() {
                     spatial = true;
                 } else if (readIf("HASH")) {
                     hash = true;
+                } else if (!unique && !primaryKey && readIf("EXTENSIBLE_HASH")) {
+                    hash = true;
+                    extensibleHash = true;
                 } else {
                     throw getSyntaxError();
                 }
 
             }
             command.setHash(hash);
+            command.setExtensibleHash(extensibleHash);
             command.setSpatial(spatial);
             return command;
         }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.engine.SessionRemote;
+import org.h2.message.DbException;
+import org.h2.value.Transfer;
+
+/**
+ * The update count of a statement that was executed asynchronously. For a
+ * remote session, the statement was sent to the server without waiting for
+ * the response. The responses of such statements are read in the order the
+ * statements were sent, when the result of one of them is needed, or before
+ * the session waits for the response of another request.
+ */
+public final class UpdateFuture implements Future<Integer>, SessionRemote.PendingResponse {
+
+    private final SessionRemote session;
+
+    private volatile boolean done;
+
+    private int updateCount;
+
+    private DbException exception;
+
+    /**
+     * Create a future for a statement that was sent to the server.
+     *
+     * @param session the session
+     */
+    UpdateFuture(SessionRemote session) {
+        this.session = session;
+    }
+
+    /**
+     * Create a future for a statement that was already executed.
+     *
+     * @param updateCount the update count, if the statement was successful
+     * @param exception the exception, or null if the statement was successful
+     */
+    UpdateFuture(int updateCount, DbException exception) {
+        session = null;
+        this.updateCount = updateCount;
+        this.exception = exception;
+        done = true;
+    }
+
+    @Override
+    public void readResponse(Transfer transfer) throws IOException {
+        try {
+            session.readStatus(transfer);
+            updateCount = transfer.readInt();
+            session.setAutoCommitFromServer(transfer.readBoolean());
+        } catch (DbException e) {
+            exception = e;
+        }
+        done = true;
+    }
+
+    @Override
+    public void fail(DbException e) {
+        exception = e;
+        done = true;
+    }
+
+    /**
+     * Cancelling is not supported, because the statement is already sent.
+     *
+     * @param mayInterruptIfRunning ignored
+     * @return false
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Get the update count, reading the pending responses of the session if
+     * required.
+     *
+     * @return the update count
+     * @throws ExecutionException if the statement failed; the cause is the
+     *             SQLException
+     */
+    @Override
+    public Integer get() throws ExecutionException {
+        if (!done) {
+            session.readPendingResponses();
+        }
+        if (exception != null) {
+            throw new ExecutionException(exception.getSQLException());
+        }
+        return updateCount;
+    }
+
+    /**
+     * Get the update count. The timeout is ignored, because the responses are
+     * read in order and reading can not be interrupted.
+     *
+     * @param timeout ignored
+     * @param unit ignored
+     * @return the update count
+     * @throws ExecutionException if the statement failed; the cause is the
+     *             SQLException
+     */
+    @Override
+    public Integer get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+
+}
@@ -5,6 +5,8 @@
  */
 package org.h2.command.ddl;
 
+import java.util.HashSet;
+
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
 import org.h2.engine.Constants;
@@ -14,6 +16,7 @@
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.schema.Schema;
+import org.h2.table.Column;
 import org.h2.table.IndexColumn;
 import org.h2.table.Table;
 
@@ -26,7 +29,8 @@ public class CreateIndex extends SchemaCommand {
     private String tableName;
     private String indexName;
     private IndexColumn[] indexColumns;
-    private boolean primaryKey, unique, hash, spatial, affinity;
+    private IndexColumn[] includeColumns;
+    private boolean primaryKey, unique, hash, extensibleHash, spatial, affinity;
     private boolean ifTableExists;
     private boolean ifNotExists;
     private String comment;
@@ -55,6 +59,10 @@ public void setIndexColumns(IndexColumn[] columns) {
         this.indexColumns = columns;
     }
 
+    public void setIncludeColumns(IndexColumn[] includeColumns) {
+        this.includeColumns = includeColumns;
+    }
+
     @Override
     public int update() {
         if (!transactional) {
@@ -102,8 +110,22 @@ public int update() {
             indexType = IndexType.createAffinity();
         } else {
             indexType = IndexType.createNonUnique(persistent, hash, spatial);
+            indexType.setExtensibleHash(extensibleHash);
         }
         IndexColumn.mapColumns(indexColumns, table);
+        if (includeColumns != null) {
+            IndexColumn.mapColumns(includeColumns, table);
+            HashSet<Column> set = new HashSet<>();
+            for (IndexColumn c : indexColumns) {
+                set.add(c.column);
+            }
+            for (IndexColumn c : includeColumns) {
+                if (!set.add(c.column)) {
+                    throw DbException.get(ErrorCode.DUPLICATE_COLUMN_NAME_1, c.column.getSQL(false));
+                }
+            }
+            indexType.setIncludeColumns(includeColumns);
+        }
         table.addIndex(session, indexName, id, indexColumns, indexType, create,
                 comment);
         return 0;
@@ -121,6 +143,10 @@ public void setHash(boolean b) {
         this.hash = b;
     }
 
+    public void setExtensibleHash(boolean b) {
+        this.extensibleHash = b;
+    }
+
     public void setSpatial(boolean b) {
         this.spatial = b;
     }
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.dml;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.RowBatch;
+import org.h2.expression.ValueVector;
+import org.h2.expression.aggregate.Aggregate;
+import org.h2.index.Cursor;
+import org.h2.message.DbException;
+import org.h2.mvstore.db.MVPrimaryIndex;
+import org.h2.result.SearchRow;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueRow;
+
+/**
+ * Computes the groups and aggregates of a query over one MVStore table with
+ * multiple threads. The primary index is split into key ranges at page
+ * boundaries of the b-tree. Each range is scanned by a worker of the
+ * database's fork-join pool, which filters the rows in batches and computes
+ * partial aggregates for each group. The partial results are merged into the
+ * group data of the query at the end.
+ * <p>
+ * Only the batch evaluation of conditions and aggregates is used by the
+ * workers, as it does not change the state of the table filter or of the
+ * query.
+ */
+final class ParallelAggregation {
+
+    /**
+     * The number of ranges per worker, so that the work is balanced if some
+     * ranges contain more matching rows than others.
+     */
+    private static final int RANGES_PER_WORKER = 2;
+
+    private final Session session;
+
+    private final TableFilter filter;
+
+    private final Expression condition;
+
+    /**
+     * The aggregates.
+     */
+    final Aggregate[] aggregates;
+
+    /**
+     * The column ids of the GROUP BY columns, or null.
+     */
+    final int[] groupColumns;
+
+    /**
+     * Set if a worker failed, so that the other workers can stop early.
+     */
+    volatile boolean failed;
+
+    private ParallelAggregation(Session session, TableFilter filter, Expression condition,
+            Aggregate[] aggregates, int[] groupColumns) {
+        this.session = session;
+        this.filter = filter;
+        this.condition = condition;
+        this.aggregates = aggregates;
+        this.groupColumns = groupColumns;
+    }
+
+    /**
+     * Create a parallel aggregation for the given query, if possible. This is
+     * the case if the table is scanned using the primary index of a MVStore
+     * table, all expressions are batch aggregates or plain GROUP BY columns,
+     * and the condition supports batch evaluation.
+     *
+     * @param session the session
+     * @param filter the table filter
+     * @param condition the condition, or null
+     * @param expressions the expressions of the query
+     * @param groupIndex the indexes of the GROUP BY expressions, or null
+     * @param groupByExpression whether an expression is a GROUP BY expression
+     * @param groupByCopies the index of the GROUP BY expression an expression
+     *            is a copy of, or null
+     * @return the parallel aggregation, or null if not supported
+     */
+    static ParallelAggregation get(Session session, TableFilter filter, Expression condition,
+            ArrayList<Expression> expressions, int[] groupIndex, boolean[] groupByExpression,
+            int[] groupByCopies) {
+        if (!(filter.getIndex() instanceof MVPrimaryIndex) || !filter.getIndexConditions().isEmpty()) {
+            return null;
+        }
+        int[] groupColumns = null;
+        if (groupIndex != null) {
+            groupColumns = new int[groupIndex.length];
+            for (int i = 0; i < groupIndex.length; i++) {
+                Expression e = expressions.get(groupIndex[i]).getNonAliasExpression();
+                if (!(e instanceof ExpressionColumn) || ((ExpressionColumn) e).getTableFilter() != filter) {
+                    return null;
+                }
+                groupColumns[i] = ((ExpressionColumn) e).getColumn().getColumnId();
+            }
+        }
+        ArrayList<Aggregate> list = new ArrayList<>();
+        for (int i = 0, size = expressions.size(); i < size; i++) {
+            if (groupByExpression != null && groupByExpression[i]
+                    || groupByCopies != null && groupByCopies[i] >= 0) {
+                continue;
+            }
+            Expression e = expressions.get(i).getNonAliasExpression();
+            if (!(e instanceof Aggregate) || !((Aggregate) e).isBatchAggregate(filter)) {
+                return null;
+            }
+            list.add((Aggregate) e);
+        }
+        return new ParallelAggregation(session, filter, condition, list.toArray(new Aggregate[0]),
+                groupColumns);
+    }
+
+    /**
+     * Scan the table, and add the groups and aggregates to the group data.
+     *
+     * @param groupData the group data of the query
+     */
+    void gather(SelectGroups groupData) {
+        Database database = session.getDatabase();
+        int workers = database.getMaxParallelWorkers();
+        MVPrimaryIndex index = (MVPrimaryIndex) filter.getIndex();
+        Cursor[] cursors = index.findRanges(session, workers * RANGES_PER_WORKER);
+        ArrayList<Map<ValueRow, Object[]>> results = new ArrayList<>(cursors.length);
+        if (cursors.length == 1) {
+            results.add(new Worker(cursors[0]).call());
+        } else {
+            ArrayList<Worker> tasks = new ArrayList<>(cursors.length);
+            for (Cursor cursor : cursors) {
+                tasks.add(new Worker(cursor));
+            }
+            List<Future<Map<ValueRow, Object[]>>> futures = database.getParallelWorkerPool().invokeAll(tasks);
+            for (Future<Map<ValueRow, Object[]>> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    throw DbException.convert(e.getCause());
+                } catch (InterruptedException e) {
+                    throw DbException.convert(e);
+                }
+            }
+        }
+        for (Map<ValueRow, Object[]> groups : results) {
+            for (Map.Entry<ValueRow, Object[]> e : groups.entrySet()) {
+                groupData.nextPartialGroup(e.getKey());
+                Object[] partials = e.getValue();
+                for (int i = 0; i < aggregates.length; i++) {
+                    aggregates[i].mergePartial(session, partials[i]);
+                }
+            }
+        }
+        groupData.done();
+    }
+
+    /**
+     * The partial results of one group, and the rows of the current batch
+     * that belong to this group.
+     */
+    private static final class PartialGroup {
+
+        /**
+         * The partial results of the aggregates.
+         */
+        final Object[] partials;
+
+        /**
+         * The number of the last batch that contained rows of this group.
+         */
+        long batchNumber;
+
+        /**
+         * The number of rows of the current batch.
+         */
+        int rowCount;
+
+        /**
+         * The start of the rows in the sorted selection.
+         */
+        int start;
+
+        /**
+         * The number of rows already added to the sorted selection.
+         */
+        int added;
+
+        PartialGroup(Object[] partials) {
+            this.partials = partials;
+        }
+    }
+
+    /**
+     * Scans one key range.
+     */
+    private final class Worker implements Callable<Map<ValueRow, Object[]>> {
+
+        private final Cursor cursor;
+
+        private final RowBatch batch;
+
+        private final HashMap<ValueRow, PartialGroup> groups = new HashMap<>();
+
+        private final ArrayList<PartialGroup> batchGroups = new ArrayList<>();
+
+        private final PartialGroup[] rowGroups = new PartialGroup[RowBatch.SIZE];
+
+        private final int[] sortedSelection = new int[RowBatch.SIZE];
+
+        private long batchNumber;
+
+        Worker(Cursor cursor) {
+            this.cursor = cursor;
+            this.batch = new RowBatch(filter);
+        }
+
+        @Override
+        public Map<ValueRow, Object[]> call() {
+            try {
+                Database database = session.getDatabase();
+                ValueVector[] arguments = new ValueVector[aggregates.length];
+                while (!failed && nextBatch()) {
+                    session.checkCanceled();
+                    if (condition != null) {
+                        condition.filterBatch(session, batch);
+                    }
+                    int selected = batch.getSelectedCount();
+                    if (selected == 0) {
+                        continue;
+                    }
+                    for (int i = 0; i < aggregates.length; i++) {
+                        arguments[i] = aggregates[i].getBatchArgument(session, batch);
+                    }
+                    if (groupColumns == null) {
+                        PartialGroup g = getGroup(ValueRow.getEmpty());
+                        update(database, g, arguments, batch.getSelection(), 0, selected);
+                    } else {
+                        updateGroups(database, arguments, selected);
+                    }
+                }
+                HashMap<ValueRow, Object[]> result = new HashMap<>(groups.size());
+                for (Map.Entry<ValueRow, PartialGroup> e : groups.entrySet()) {
+                    result.put(e.getKey(), e.getValue().partials);
+                }
+                return result;
+            } catch (RuntimeException | Error e) {
+                failed = true;
+                throw e;
+            }
+        }
+
+        private boolean nextBatch() {
+            batch.reset();
+            while (!batch.isFull() && cursor.next()) {
+                batch.add(cursor.get());
+            }
+            return batch.getRowCount() > 0;
+        }
+
+        /**
+         * Sort the selected rows by group, keeping the order of the rows
+         * within a group, and update the partial results of each group.
+         *
+         * @param database the database
+         * @param arguments the arguments of the aggregates
+         * @param selected the number of selected rows
+         */
+        private void updateGroups(Database database, ValueVector[] arguments, int selected) {
+            int[] selection = batch.getSelection();
+            long number = ++batchNumber;
+            batchGroups.clear();
+            for (int j = 0; j < selected; j++) {
+                PartialGroup g = getGroup(getKey(batch.getRow(selection[j])));
+                if (g.batchNumber != number) {
+                    g.batchNumber = number;
+                    g.rowCount = 0;
+                    g.added = 0;
+                    batchGroups.add(g);
+                }
+                g.rowCount++;
+                rowGroups[j] = g;
+            }
+            int start = 0;
+            for (PartialGroup g : batchGroups) {
+                g.start = start;
+                start += g.rowCount;
+            }
+            for (int j = 0; j < selected; j++) {
+                PartialGroup g = rowGroups[j];
+                sortedSelection[g.start + g.added++] = selection[j];
+                rowGroups[j] = null;
+            }
+            for (PartialGroup g : batchGroups) {
+                update(database, g, arguments, sortedSelection, g.start, g.start + g.rowCount);
+            }
+        }
+
+        private void update(Database database, PartialGroup g, ValueVector[] arguments, int[] selection,
+                int start, int end) {
+            for (int i = 0; i < aggregates.length; i++) {
+                Aggregate.updatePartial(database, g.partials[i], arguments[i], selection, start, end);
+            }
+        }
+
+        private ValueRow getKey(SearchRow row) {
+            Value[] keyValues = new Value[groupColumns.length];
+            for (int i = 0; i < groupColumns.length; i++) {
+                int columnId = groupColumns[i];
+                keyValues[i] = columnId < 0 ? ValueLong.get(row.getKey()) : row.getValue(columnId);
+            }
+            return ValueRow.get(keyValues);
+        }
+
+        private PartialGroup getGroup(ValueRow key) {
+            PartialGroup g = groups.get(key);
+            if (g == null) {
+                Object[] partials = new Object[aggregates.length];
+                for (int i = 0; i < aggregates.length; i++) {
+                    partials[i] = aggregates[i].createPartialData();
+                }
+                g = new PartialGroup(partials);
+                groups.put(key, g);
+            }
+            return g;
+        }
+    }
+
+}
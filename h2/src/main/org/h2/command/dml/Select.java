@@ -21,7 +21,9 @@
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
+import org.h2.expression.RowBatch;
 import org.h2.expression.Wildcard;
+import org.h2.expression.aggregate.Aggregate;
 import org.h2.expression.analysis.DataAnalysisOperation;
 import org.h2.expression.analysis.Window;
 import org.h2.expression.condition.Comparison;
@@ -501,7 +503,7 @@ private void queryGroup(int columnCount, LocalResult result, long offset, boolea
 
     private void initGroupData(int columnCount) {
         if (groupData == null) {
-            setGroupData(SelectGroups.getInstance(session, expressions, isGroupQuery, groupIndex));
+            setGroupData(SelectGroups.getInstance(session, expressions, isGroupQuery, groupIndex, !isWindowQuery));
         } else {
             updateAgg(columnCount, DataAnalysisOperation.STAGE_RESET);
         }
@@ -522,6 +524,15 @@ public void accept(TableFilter f) {
     }
 
     private void gatherGroup(int columnCount, int stage) {
+        ParallelAggregation parallel = getParallelAggregation(stage);
+        if (parallel != null) {
+            parallel.gather(groupData);
+            return;
+        }
+        if (isBatchAggregateQuery()) {
+            gatherGroupBatch();
+            return;
+        }
         long rowNumber = 0;
         setCurrentRowNumber(0);
         int sampleSize = getSampleSizeValue(session);
@@ -539,6 +550,93 @@ private void gatherGroup(int columnCount, int stage) {
         groupData.done();
     }
 
+    /**
+     * Read the rows in batches, filter them, and update the aggregates once
+     * per batch.
+     */
+    private void gatherGroupBatch() {
+        long rowNumber = 0;
+        setCurrentRowNumber(0);
+        RowBatch batch = new RowBatch(topTableFilter);
+        int expressionCount = expressions.size();
+        while (topTableFilter.nextBatch(batch)) {
+            if (condition != null) {
+                condition.filterBatch(session, batch);
+            }
+            int selected = batch.getSelectedCount();
+            if (selected > 0) {
+                rowNumber += selected;
+                setCurrentRowNumber(rowNumber);
+                groupData.nextSource();
+                for (int i = 0; i < expressionCount; i++) {
+                    ((Aggregate) expressions.get(i).getNonAliasExpression()).updateBatch(session, batch);
+                }
+            }
+        }
+        groupData.done();
+    }
+
+    /**
+     * Check whether the rows can be read and filtered in batches. This is
+     * only possible for a single table, and only if the condition supports
+     * batch evaluation.
+     *
+     * @return true if batch (vectorized) execution can be used
+     */
+    private boolean isBatchQuery() {
+        return session.getDatabase().getSettings().vectorizedExecution && supportsBatches();
+    }
+
+    /**
+     * Check whether the rows can be filtered in batches, independent of the
+     * settings.
+     *
+     * @return true if the condition can be evaluated in batches
+     */
+    private boolean supportsBatches() {
+        if (isForUpdate || topTableFilter.getJoin() != null || topTableFilter.getNestedJoin() != null ||
+                getSampleSizeValue(session) > 0) {
+            return false;
+        }
+        return condition == null || condition.isBatchCondition(topTableFilter);
+    }
+
+    /**
+     * Get the parallel aggregation for this query, if the setting
+     * MAX_PARALLEL_WORKERS allows more than one thread and the query is
+     * supported. Parallel aggregation is only used for group queries without
+     * HAVING and window functions, where the rows can be filtered in batches.
+     *
+     * @param stage the stage
+     * @return the parallel aggregation, or null
+     */
+    private ParallelAggregation getParallelAggregation(int stage) {
+        if (stage != DataAnalysisOperation.STAGE_GROUP || !isGroupQuery || havingIndex >= 0 || isWindowQuery
+                || session.getDatabase().getMaxParallelWorkers() <= 1 || !supportsBatches()) {
+            return null;
+        }
+        return ParallelAggregation.get(session, topTableFilter, condition, expressions, groupIndex,
+                groupByExpression, groupByCopies);
+    }
+
+    /**
+     * Check whether this is an aggregate query without GROUP BY where all
+     * aggregates can be updated with a batch of rows.
+     *
+     * @return true if the aggregates can be computed in batches
+     */
+    private boolean isBatchAggregateQuery() {
+        if (!isGroupQuery || groupIndex != null || havingIndex >= 0 || isWindowQuery || !isBatchQuery()) {
+            return false;
+        }
+        for (Expression e : expressions) {
+            e = e.getNonAliasExpression();
+            if (!(e instanceof Aggregate) || !((Aggregate) e).isBatchAggregate(topTableFilter)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     /**
      * Update any aggregate expressions with the query stage.
@@ -728,6 +826,13 @@ private LazyResult queryFlat(int columnCount, ResultTarget result, long offset,
                 limitRows = Long.MAX_VALUE;
             }
         }
+        if (result != null && condition != null && !withTies && isBatchQuery()) {
+            if (limitRows < 0 || sort != null && !sortUsingIndex) {
+                limitRows = Long.MAX_VALUE;
+            }
+            queryFlatBatch(columnCount, result, quickOffset ? offset : 0, limitRows);
+            return null;
+        }
         int sampleSize = getSampleSizeValue(session);
         LazyResultQueryFlat lazyResult = new LazyResultQueryFlat(expressionArray, columnCount, sampleSize,
                 isForUpdateMvcc);
@@ -757,6 +862,41 @@ private LazyResult queryFlat(int columnCount, ResultTarget result, long offset,
         return null;
     }
 
+    /**
+     * Read the rows in batches and filter them, then evaluate the expressions
+     * for the remaining rows.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     * @param offset the number of rows to skip
+     * @param limitRows the maximum number of rows
+     */
+    private void queryFlatBatch(int columnCount, ResultTarget result, long offset, long limitRows) {
+        long rowNumber = 0;
+        setCurrentRowNumber(0);
+        RowBatch batch = new RowBatch(topTableFilter);
+        while (result.getRowCount() < limitRows && topTableFilter.nextBatch(batch)) {
+            condition.filterBatch(session, batch);
+            int[] selection = batch.getSelection();
+            for (int j = 0, selected = batch.getSelectedCount(); j < selected; j++) {
+                setCurrentRowNumber(++rowNumber);
+                if (offset > 0) {
+                    offset--;
+                    continue;
+                }
+                topTableFilter.setBatchRow(batch.getRow(selection[j]));
+                Value[] row = new Value[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = expressions.get(i).getValue(session);
+                }
+                result.addRow(row);
+                if (result.getRowCount() >= limitRows) {
+                    break;
+                }
+            }
+        }
+    }
+
     private static void skipOffset(LazyResultSelect lazyResult, long offset, boolean quickOffset) {
         if (quickOffset) {
             while (offset > 0 && lazyResult.skip()) {
@@ -853,6 +993,23 @@ protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
         if (!lazy && (limitRows >= 0 || offset > 0)) {
             result = createLocalResult(result);
         }
+        if (result != null) {
+            // set the limits before adding rows, so that the result only
+            // needs to keep the first rows if it is sorted
+            if (offset != 0 && !quickOffset) {
+                if (offset > Integer.MAX_VALUE) {
+                    throw DbException.getInvalidValueException("OFFSET", offset);
+                }
+                result.setOffset((int) offset);
+            }
+            if (limitRows >= 0) {
+                result.setLimit(limitRows);
+                result.setFetchPercent(fetchPercent);
+                if (withTies) {
+                    result.setWithTies(sort);
+                }
+            }
+        }
         topTableFilter.startQuery(session);
         topTableFilter.reset();
         boolean exclusive = isForUpdate && !isForUpdateMvcc;
@@ -883,9 +1040,6 @@ protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
                 } else {
                     lazyResult = queryFlat(columnCount, to, offset, limit, withTies, quickOffset);
                 }
-                if (quickOffset) {
-                    offset = 0;
-                }
             } finally {
                 if (!lazy) {
                     resetJoinBatchAfterQuery();
@@ -903,19 +1057,6 @@ protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
                 return lazyResult;
             }
         }
-        if (offset != 0) {
-            if (offset > Integer.MAX_VALUE) {
-                throw DbException.getInvalidValueException("OFFSET", offset);
-            }
-            result.setOffset((int) offset);
-        }
-        if (limitRows >= 0) {
-            result.setLimit(limitRows);
-            result.setFetchPercent(fetchPercent);
-            if (withTies) {
-                result.setWithTies(sort);
-            }
-        }
         if (result != null) {
             result.done();
             if (randomAccessResult && !distinct) {
@@ -1921,7 +2062,7 @@ private final class LazyResultGroupSorted extends LazyResultSelect {
             super(expressions, columnCount);
             if (groupData == null) {
                 setGroupData(SelectGroups.getInstance(getSession(), Select.this.expressions, isGroupQuery,
-                        groupIndex));
+                        groupIndex, false));
             } else {
                 // TODO is this branch possible?
                 updateAgg(columnCount, DataAnalysisOperation.STAGE_RESET);
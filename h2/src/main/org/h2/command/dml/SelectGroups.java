@@ -13,11 +13,20 @@
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
+import org.h2.api.ErrorCode;
+import org.h2.engine.Database;
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.aggregate.Aggregate;
 import org.h2.expression.analysis.DataAnalysisOperation;
 import org.h2.expression.analysis.PartitionData;
+import org.h2.message.DbException;
+import org.h2.mvstore.db.MVTempResult;
+import org.h2.result.ResultExternal;
+import org.h2.result.SortOrder;
 import org.h2.value.Value;
+import org.h2.value.ValueNull;
 import org.h2.value.ValueRow;
 
 /**
@@ -48,6 +57,11 @@ private static final class Grouped extends SelectGroups {
 
         private final int[] groupIndex;
 
+        /**
+         * Whether groups may be written to a temporary result.
+         */
+        private final boolean spill;
+
         /**
          * Map of group-by key to group-by expression data e.g. AggregateData
          */
@@ -64,9 +78,39 @@ private static final class Grouped extends SelectGroups {
          */
         private Iterator<Entry<ValueRow, Object[]>> cursor;
 
-        Grouped(Session session, ArrayList<Expression> expressions, int[] groupIndex) {
+        /**
+         * The maximum number of groups to keep in memory.
+         */
+        private int maxMemoryGroups;
+
+        /**
+         * The groups that were written to a temporary result, sorted by key,
+         * or null. The same group may have been written more than once.
+         */
+        private ResultExternal spilled;
+
+        /**
+         * The expressions of the group data, by index, when the groups were
+         * checked last, see {@link #canSpill()}.
+         */
+        private Expression[] dataExpressions;
+
+        /**
+         * Whether the group data of all expressions can be written to a
+         * temporary result.
+         */
+        private boolean canSpill;
+
+        /**
+         * The next row of the temporary result in {@link #next()}, if it was
+         * already read.
+         */
+        private Value[] nextSpilledRow;
+
+        Grouped(Session session, ArrayList<Expression> expressions, int[] groupIndex, boolean spill) {
             super(session, expressions);
             this.groupIndex = groupIndex;
+            this.spill = spill && groupIndex != null;
         }
 
         @Override
@@ -75,6 +119,17 @@ public void reset() {
             groupByData = new TreeMap<>(session.getDatabase().getCompareMode());
             currentGroupsKey = null;
             cursor = null;
+            maxMemoryGroups = session.getDatabase().getMaxMemoryRows();
+            closeSpilled();
+            dataExpressions = null;
+            nextSpilledRow = null;
+        }
+
+        private void closeSpilled() {
+            if (spilled != null) {
+                spilled.close();
+                spilled = null;
+            }
         }
 
         @Override
@@ -91,8 +146,21 @@ public void nextSource() {
                 }
                 currentGroupsKey = ValueRow.get(keyValues);
             }
+            setCurrentGroup();
+        }
+
+        @Override
+        public void nextPartialGroup(ValueRow key) {
+            currentGroupsKey = key;
+            setCurrentGroup();
+        }
+
+        private void setCurrentGroup() {
             Object[] values = groupByData.get(currentGroupsKey);
             if (values == null) {
+                if (spill && groupByData.size() >= maxMemoryGroups && canSpill()) {
+                    spillGroups();
+                }
                 values = createRow();
                 groupByData.put(currentGroupsKey, values);
             }
@@ -100,6 +168,140 @@ public void nextSource() {
             currentGroupRowId++;
         }
 
+        /**
+         * Check whether the group data of all expressions can be written to a
+         * temporary result. This is the case for the columns and for the
+         * aggregates that support partial states, unless they are of a type
+         * that can not be read back as it is (LOB and ENUM values).
+         *
+         * @return whether the groups can be written
+         */
+        private boolean canSpill() {
+            Expression[] list = getGroupExprDataExpressions();
+            if (dataExpressions != null && list.length == dataExpressions.length) {
+                return canSpill;
+            }
+            dataExpressions = list;
+            canSpill = false;
+            for (int idx : groupIndex) {
+                if (!canStore(expressions.get(idx))) {
+                    return false;
+                }
+            }
+            for (Expression e : list) {
+                if (e instanceof Aggregate) {
+                    if (!((Aggregate) e).isPartialStateSupported()) {
+                        return false;
+                    }
+                } else if (!(e instanceof ExpressionColumn)) {
+                    return false;
+                }
+                if (!canStore(e)) {
+                    return false;
+                }
+            }
+            canSpill = true;
+            return true;
+        }
+
+        private static boolean canStore(Expression e) {
+            switch (e.getType().getValueType()) {
+            case Value.BLOB:
+            case Value.CLOB:
+            case Value.ENUM:
+                return false;
+            default:
+                return true;
+            }
+        }
+
+        /**
+         * Write the groups that are in memory to the temporary result, and
+         * remove them from memory.
+         */
+        private void spillGroups() {
+            int keyLength = groupIndex.length;
+            if (spilled == null) {
+                Expression[] keyExpressions = new Expression[keyLength];
+                int[] indexes = new int[keyLength];
+                for (int i = 0; i < keyLength; i++) {
+                    keyExpressions[i] = expressions.get(groupIndex[i]);
+                    indexes[i] = i;
+                }
+                Database database = session.getDatabase();
+                spilled = MVTempResult.of(database, keyExpressions, false, null, keyLength,
+                        new SortOrder(database, indexes, new int[keyLength], null));
+            }
+            ArrayList<Value[]> rows = new ArrayList<>(groupByData.size());
+            int dataLength = dataExpressions.length;
+            for (Entry<ValueRow, Object[]> entry : groupByData.entrySet()) {
+                Value[] row = Arrays.copyOf(entry.getKey().getList(), keyLength + dataLength);
+                Object[] data = entry.getValue();
+                for (int i = 0; i < dataLength; i++) {
+                    Object d = data[i];
+                    Value v;
+                    if (d == null) {
+                        v = ValueNull.INSTANCE;
+                    } else if (d instanceof Value) {
+                        v = (Value) d;
+                    } else {
+                        v = Aggregate.getPartialState(d);
+                    }
+                    row[keyLength + i] = v;
+                }
+                rows.add(row);
+            }
+            spilled.addRows(rows);
+            groupByData.clear();
+        }
+
+        /**
+         * Read the group data of a row of the temporary result.
+         *
+         * @param row the row
+         * @return the group data
+         */
+        private Object[] readGroupData(Value[] row) {
+            int keyLength = groupIndex.length;
+            Object[] data = createRow();
+            for (int i = 0, length = row.length - keyLength; i < length; i++) {
+                Value v = row[keyLength + i];
+                Expression e = dataExpressions[i];
+                if (e instanceof Aggregate) {
+                    data[i] = v == ValueNull.INSTANCE ? null : ((Aggregate) e).createPartialData(v);
+                } else {
+                    data[i] = v;
+                }
+            }
+            return data;
+        }
+
+        /**
+         * Add the group data of a group that was computed separately.
+         *
+         * @param data the data to update
+         * @param partial the other data of the same group
+         */
+        private void mergeGroupData(Object[] data, Object[] partial) {
+            Database database = session.getDatabase();
+            for (int i = 0; i < dataExpressions.length; i++) {
+                Object p = partial[i];
+                if (p == null) {
+                    continue;
+                }
+                Object d = data[i];
+                if (d == null) {
+                    data[i] = p;
+                } else if (d instanceof Value) {
+                    if (!database.areEqual((Value) d, (Value) p)) {
+                        throw DbException.get(ErrorCode.MUST_GROUP_BY_COLUMN_1, dataExpressions[i].getSQL(false));
+                    }
+                } else {
+                    Aggregate.mergePartialData(database, d, p);
+                }
+            }
+        }
+
         @Override
         void updateCurrentGroupExprData() {
             // this can be null in lazy mode
@@ -116,11 +318,42 @@ public void done() {
             if (groupIndex == null && groupByData.size() == 0) {
                 groupByData.put(ValueRow.getEmpty(), createRow());
             }
+            if (spilled != null) {
+                if (canSpill()) {
+                    spillGroups();
+                } else {
+                    readSpilledGroups();
+                }
+            }
             cursor = groupByData.entrySet().iterator();
         }
 
+        /**
+         * Move the groups of the temporary result back to memory. This is
+         * needed if group data that can not be written was added after the
+         * groups were written.
+         */
+        private void readSpilledGroups() {
+            int keyLength = groupIndex.length;
+            spilled.reset();
+            for (Value[] row; (row = spilled.next()) != null;) {
+                ValueRow key = ValueRow.get(Arrays.copyOf(row, keyLength));
+                Object[] data = readGroupData(row);
+                Object[] old = groupByData.get(key);
+                if (old != null) {
+                    mergeGroupData(old, data);
+                } else {
+                    groupByData.put(key, data);
+                }
+            }
+            closeSpilled();
+        }
+
         @Override
         public ValueRow next() {
+            if (spilled != null) {
+                return nextSpilled();
+            }
             if (cursor.hasNext()) {
                 Map.Entry<ValueRow, Object[]> entry = cursor.next();
                 currentGroupByExprData = entry.getValue();
@@ -130,6 +363,41 @@ public ValueRow next() {
             return null;
         }
 
+        /**
+         * Read the next group of the temporary result. The rows of the same
+         * group are adjacent, as the result is sorted by key, and are merged.
+         *
+         * @return the key of the group, or null
+         */
+        private ValueRow nextSpilled() {
+            Value[] row = nextSpilledRow != null ? nextSpilledRow : spilled.next();
+            if (row == null) {
+                return null;
+            }
+            int keyLength = groupIndex.length;
+            Database database = session.getDatabase();
+            Object[] data = readGroupData(row);
+            while (true) {
+                nextSpilledRow = spilled.next();
+                if (nextSpilledRow == null || !isSameGroup(database, row, nextSpilledRow, keyLength)) {
+                    break;
+                }
+                mergeGroupData(data, readGroupData(nextSpilledRow));
+            }
+            currentGroupByExprData = data;
+            currentGroupRowId++;
+            return ValueRow.get(Arrays.copyOf(row, keyLength));
+        }
+
+        private static boolean isSameGroup(Database database, Value[] a, Value[] b, int keyLength) {
+            for (int i = 0; i < keyLength; i++) {
+                if (database.compare(a[i], b[i]) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         @Override
         public void remove() {
             cursor.remove();
@@ -241,11 +509,15 @@ public ValueRow next() {
      *            is this query is a group query
      * @param groupIndex
      *            the indexes of group expressions, or null
+     * @param spill
+     *            whether groups may be written to a temporary result if
+     *            there are more groups than MAX_MEMORY_ROWS; the groups can
+     *            then only be read once, and not be removed
      * @return new instance of the grouped data.
      */
     public static SelectGroups getInstance(Session session, ArrayList<Expression> expressions, boolean isGroupQuery,
-            int[] groupIndex) {
-        return isGroupQuery ? new Grouped(session, expressions, groupIndex) : new Plain(session, expressions);
+            int[] groupIndex, boolean spill) {
+        return isGroupQuery ? new Grouped(session, expressions, groupIndex, spill) : new Plain(session, expressions);
     }
 
     SelectGroups(Session session, ArrayList<Expression> expressions) {
@@ -302,6 +574,19 @@ public final void setCurrentGroupExprData(Expression expr, Object obj) {
         currentGroupByExprData[index] = obj;
     }
 
+    /**
+     * Get the expressions that have group-by data.
+     *
+     * @return the expressions, by the index of their data
+     */
+    final Expression[] getGroupExprDataExpressions() {
+        Expression[] list = new Expression[exprToIndexInGroupByData.size()];
+        for (Map.Entry<Expression, Integer> entry : exprToIndexInGroupByData.entrySet()) {
+            list[entry.getValue()] = entry.getKey();
+        }
+        return list;
+    }
+
     /**
      * Creates new object arrays to holds group-by data.
      *
@@ -385,6 +670,16 @@ public void reset() {
      */
     public abstract void nextSource();
 
+    /**
+     * Invoked for each partial result of a group that was computed
+     * separately, to set up the data of the group with the given key.
+     *
+     * @param key the group key
+     */
+    public void nextPartialGroup(ValueRow key) {
+        throw DbException.throwInternalError();
+    }
+
     /**
      * Invoked after all source rows are evaluated.
      */
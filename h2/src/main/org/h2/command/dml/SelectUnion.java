@@ -214,6 +214,19 @@ protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
         default:
             DbException.throwInternalError("type=" + unionType);
         }
+        if (offsetExpr != null) {
+            result.setOffset(offsetExpr.getValue(session).getInt());
+        }
+        if (limitExpr != null) {
+            Value v = limitExpr.getValue(session);
+            if (v != ValueNull.INSTANCE) {
+                result.setLimit(v.getInt());
+                result.setFetchPercent(fetchPercent);
+                if (withTies) {
+                    result.setWithTies(sort);
+                }
+            }
+        }
         ResultInterface l = left.query(0);
         ResultInterface r = right.query(0);
         l.reset();
@@ -256,19 +269,6 @@ protected ResultInterface queryWithoutCache(int maxRows, ResultTarget target) {
         default:
             DbException.throwInternalError("type=" + unionType);
         }
-        if (offsetExpr != null) {
-            result.setOffset(offsetExpr.getValue(session).getInt());
-        }
-        if (limitExpr != null) {
-            Value v = limitExpr.getValue(session);
-            if (v != ValueNull.INSTANCE) {
-                result.setLimit(v.getInt());
-                result.setFetchPercent(fetchPercent);
-                if (withTies) {
-                    result.setWithTies(sort);
-                }
-            }
-        }
         l.close();
         r.close();
         result.done();
@@ -355,6 +355,15 @@ public int update() {
             database.setMaxOperationMemory(value);
             break;
         }
+        case SetTypes.MAX_PARALLEL_WORKERS: {
+            if (getIntValue() < 1) {
+                throw DbException.getInvalidValueException(
+                        "MAX_PARALLEL_WORKERS", getIntValue());
+            }
+            session.getUser().checkAdmin();
+            database.setMaxParallelWorkers(getIntValue());
+            break;
+        }
         case SetTypes.MODE:
             Mode mode = Mode.getInstance(stringValue);
             if (mode == null) {
@@ -493,6 +502,16 @@ public int update() {
             addOrUpdateSetting(name, null, getIntValue());
             break;
         }
+        case SetTypes.COMMIT_GROUP_DELAY_MICROS: {
+            if (getIntValue() < -1) {
+                throw DbException.getInvalidValueException("COMMIT_GROUP_DELAY_MICROS",
+                        getIntValue());
+            }
+            session.getUser().checkAdmin();
+            database.setCommitGroupDelay(getIntValue());
+            addOrUpdateSetting(name, null, getIntValue());
+            break;
+        }
         case SetTypes.RETENTION_TIME: {
             if (getIntValue() < 0) {
                 throw DbException.getInvalidValueException("RETENTION_TIME",
@@ -262,7 +262,17 @@ public class SetTypes {
      */
     public static final int UUID_COLLATION = 50;
 
-    private static final int COUNT = UUID_COLLATION + 1;
+    /**
+     * The type of a SET MAX_PARALLEL_WORKERS statement.
+     */
+    public static final int MAX_PARALLEL_WORKERS = 51;
+
+    /**
+     * The type of a SET COMMIT_GROUP_DELAY_MICROS statement.
+     */
+    public static final int COMMIT_GROUP_DELAY_MICROS = 52;
+
+    private static final int COUNT = COMMIT_GROUP_DELAY_MICROS + 1;
 
     private static final ArrayList<String> TYPES;
 
@@ -323,6 +333,8 @@ private SetTypes() {
         list.add(AUTHENTICATOR, "AUTHENTICATOR");
         list.add(LOCAL_RESULT_FACTORY, "LOCAL_RESULT_FACTORY");
         list.add(UUID_COLLATION, "UUID_COLLATION");
+        list.add(MAX_PARALLEL_WORKERS, "MAX_PARALLEL_WORKERS");
+        list.add(COMMIT_GROUP_DELAY_MICROS, "COMMIT_GROUP_DELAY_MICROS");
         TYPES = list;
     }
 
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.compress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.h2.api.ErrorCode;
+import org.h2.message.DbException;
+
+/**
+ * The DEFLATE algorithm with a preset dictionary. Small blocks of similar data
+ * (such as the pages of a map) compress much better if the common byte
+ * sequences are in the dictionary, because each block can refer to them from
+ * the start. A dictionary can be built from sample data using
+ * {@link #train(Iterable, int)}. The same dictionary is required to expand the
+ * data.
+ * <p>
+ * This algorithm supports the following options:
+ * <ul>
+ * <li>l or level: 0 (no compression), 1 (best speed), ..., 9 (best
+ * compression, default)
+ * </li><li>s or strategy: 0 (default), 1 (filtered), 2 (huffman only)
+ * </li></ul>
+ */
+public class CompressDictionary implements Compressor {
+
+    /**
+     * The maximum size of a dictionary (the DEFLATE window size).
+     */
+    public static final int MAX_SIZE = 32 * 1024;
+
+    /**
+     * The length of the byte sequences that are counted when training.
+     */
+    private static final int SEQUENCE_LENGTH = 8;
+
+    /**
+     * The length of the segments that are added to the dictionary.
+     */
+    private static final int SEGMENT_LENGTH = 32;
+
+    private final byte[] dictionary;
+
+    private int level = Deflater.BEST_COMPRESSION;
+    private int strategy = Deflater.DEFAULT_STRATEGY;
+
+    /**
+     * Create a new compressor with the given dictionary.
+     *
+     * @param dictionary the dictionary
+     */
+    public CompressDictionary(byte[] dictionary) {
+        if (dictionary.length > MAX_SIZE) {
+            throw DbException.getInvalidValueException("dictionary length", dictionary.length);
+        }
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Get the dictionary.
+     *
+     * @return the dictionary
+     */
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    @Override
+    public void setOptions(String options) {
+        if (options == null) {
+            return;
+        }
+        try {
+            StringTokenizer tokenizer = new StringTokenizer(options);
+            while (tokenizer.hasMoreElements()) {
+                String option = tokenizer.nextToken();
+                if ("level".equals(option) || "l".equals(option)) {
+                    level = Integer.parseInt(tokenizer.nextToken());
+                } else if ("strategy".equals(option) || "s".equals(option)) {
+                    strategy = Integer.parseInt(tokenizer.nextToken());
+                }
+                Deflater deflater = new Deflater(level);
+                deflater.setStrategy(strategy);
+                deflater.end();
+            }
+        } catch (Exception e) {
+            throw DbException.get(ErrorCode.UNSUPPORTED_COMPRESSION_OPTIONS_1, options);
+        }
+    }
+
+    @Override
+    public int compress(byte[] in, int inLen, byte[] out, int outPos) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setStrategy(strategy);
+            deflater.setDictionary(dictionary);
+            deflater.setInput(in, 0, inLen);
+            deflater.finish();
+            int compressed = deflater.deflate(out, outPos, out.length - outPos);
+            if (!deflater.finished()) {
+                // the output area is too small: the caller will not use the
+                // result, as the data is not smaller than the input
+                return out.length;
+            }
+            return outPos + compressed;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public int getAlgorithm() {
+        return Compressor.DICTIONARY;
+    }
+
+    @Override
+    public void expand(byte[] in, int inPos, int inLen, byte[] out, int outPos,
+            int outLen) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(in, inPos, inLen);
+            int len = inflater.inflate(out, outPos, outLen);
+            if (inflater.needsDictionary()) {
+                inflater.setDictionary(dictionary);
+                len = inflater.inflate(out, outPos, outLen);
+            }
+            if (len != outLen) {
+                throw new DataFormatException(len + " " + outLen);
+            }
+        } catch (DataFormatException | IllegalArgumentException e) {
+            throw DbException.get(ErrorCode.COMPRESSION_ERROR, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Build a dictionary from sample data. The byte sequences that occur most
+     * often in the samples are added, with some context around them. The most
+     * common sequences are at the end of the dictionary, so that the distance
+     * to them is smallest.
+     *
+     * @param samples the sample data
+     * @param size the maximum size of the dictionary
+     * @return the dictionary
+     */
+    public static byte[] train(Iterable<byte[]> samples, int size) {
+        size = Math.min(size, MAX_SIZE);
+        HashMap<Long, int[]> counts = new HashMap<>();
+        HashMap<Long, byte[]> samplesOf = new HashMap<>();
+        HashMap<Long, Integer> positions = new HashMap<>();
+        for (byte[] sample : samples) {
+            for (int i = 0; i + SEQUENCE_LENGTH <= sample.length; i++) {
+                Long key = getSequence(sample, i);
+                int[] count = counts.get(key);
+                if (count == null) {
+                    counts.put(key, new int[] { 1 });
+                    samplesOf.put(key, sample);
+                    positions.put(key, i);
+                } else {
+                    count[0]++;
+                }
+            }
+        }
+        ArrayList<Map.Entry<Long, int[]>> list = new ArrayList<>();
+        for (Map.Entry<Long, int[]> e : counts.entrySet()) {
+            if (e.getValue()[0] > 1) {
+                list.add(e);
+            }
+        }
+        Collections.sort(list, new Comparator<Map.Entry<Long, int[]>>() {
+            @Override
+            public int compare(Map.Entry<Long, int[]> a, Map.Entry<Long, int[]> b) {
+                int comp = Integer.compare(b.getValue()[0], a.getValue()[0]);
+                return comp != 0 ? comp : Long.compare(a.getKey(), b.getKey());
+            }
+        });
+        HashSet<Long> covered = new HashSet<>();
+        ArrayList<byte[]> segments = new ArrayList<>();
+        int length = 0;
+        for (Map.Entry<Long, int[]> e : list) {
+            if (length >= size) {
+                break;
+            }
+            Long key = e.getKey();
+            if (covered.contains(key)) {
+                continue;
+            }
+            byte[] sample = samplesOf.get(key);
+            int start = Math.max(0, positions.get(key) - (SEGMENT_LENGTH - SEQUENCE_LENGTH) / 2);
+            int end = Math.min(sample.length, start + SEGMENT_LENGTH);
+            int len = Math.min(end - start, size - length);
+            byte[] segment = new byte[len];
+            System.arraycopy(sample, start, segment, 0, len);
+            for (int i = 0; i + SEQUENCE_LENGTH <= len; i++) {
+                covered.add(getSequence(segment, i));
+            }
+            segments.add(segment);
+            length += len;
+        }
+        byte[] dictionary = new byte[length];
+        int pos = length;
+        for (byte[] segment : segments) {
+            pos -= segment.length;
+            System.arraycopy(segment, 0, dictionary, pos, segment.length);
+        }
+        return dictionary;
+    }
+
+    private static Long getSequence(byte[] data, int pos) {
+        long x = 0;
+        for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+            x = (x << 8) | (data[pos + i] & 255);
+        }
+        return x;
+    }
+
+}
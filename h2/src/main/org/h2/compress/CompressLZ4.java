@@ -0,0 +1,233 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.compress;
+
+import org.h2.api.ErrorCode;
+import org.h2.message.DbException;
+
+/**
+ * <p>
+ * This class implements the LZ4 block format. The compressed data can be
+ * expanded by other LZ4 implementations, and data that was compressed by other
+ * LZ4 implementations (block format, without frame) can be expanded by this
+ * class.
+ * </p>
+ * <p>
+ * The compressed data is a list of sequences. Each sequence starts with a
+ * token byte: the high four bits are the number of literals, and the low four
+ * bits are the length of the back-reference minus four. If the value is 15,
+ * the length is continued in the following bytes (each byte is added, until a
+ * byte is not 255). The literals follow, then the offset of the
+ * back-reference as a little endian short, then the continuation of the
+ * back-reference length. The last sequence only contains literals.
+ * </p>
+ * <p>
+ * The last five bytes are always literals, and the last back-reference starts
+ * at least twelve bytes before the end of the data.
+ * </p>
+ */
+public final class CompressLZ4 implements Compressor {
+
+    /**
+     * The number of entries in the hash table.
+     */
+    private static final int HASH_SIZE = 1 << 14;
+
+    /**
+     * The minimum length of a back-reference.
+     */
+    private static final int MIN_MATCH = 4;
+
+    /**
+     * The maximum offset of a back-reference.
+     */
+    private static final int MAX_OFFSET = 0xffff;
+
+    /**
+     * The number of bytes at the end that are always literals.
+     */
+    private static final int LAST_LITERALS = 5;
+
+    /**
+     * The last back-reference must start this many bytes before the end.
+     */
+    private static final int MF_LIMIT = 12;
+
+    /**
+     * Hash table for matching byte sequences (reused for performance). The
+     * entries are not cleared, but verified before they are used.
+     */
+    private int[] cachedHashTable;
+
+    @Override
+    public void setOptions(String options) {
+        // nothing to do
+    }
+
+    private static int readInt(byte[] in, int pos) {
+        return (in[pos] & 255) | ((in[pos + 1] & 255) << 8) |
+                ((in[pos + 2] & 255) << 16) | (in[pos + 3] << 24);
+    }
+
+    private static int hash(int v) {
+        return (v * -1640531535) >>> 18;
+    }
+
+    @Override
+    public int compress(byte[] in, int inLen, byte[] out, int outPos) {
+        int anchor = 0;
+        if (inLen > MF_LIMIT) {
+            int[] hashTab = cachedHashTable;
+            if (hashTab == null) {
+                hashTab = cachedHashTable = new int[HASH_SIZE];
+            }
+            int matchLimit = inLen - LAST_LITERALS;
+            int mfLimit = inLen - MF_LIMIT;
+            int pos = 0;
+            while (pos < mfLimit) {
+                int v = readInt(in, pos);
+                int h = hash(v);
+                int ref = hashTab[h];
+                hashTab[h] = pos;
+                if (ref >= pos || pos - ref > MAX_OFFSET || readInt(in, ref) != v) {
+                    // skip faster over data that doesn't compress
+                    pos += 1 + ((pos - anchor) >>> 6);
+                    continue;
+                }
+                while (pos > anchor && ref > 0 && in[pos - 1] == in[ref - 1]) {
+                    pos--;
+                    ref--;
+                }
+                int len = MIN_MATCH;
+                while (pos + len < matchLimit && in[pos + len] == in[ref + len]) {
+                    len++;
+                }
+                int tokenPos = outPos++;
+                int token = writeLiterals(in, anchor, pos - anchor, out, outPos);
+                outPos += token >>> 8;
+                int offset = pos - ref;
+                out[outPos++] = (byte) offset;
+                out[outPos++] = (byte) (offset >> 8);
+                int matchLen = len - MIN_MATCH;
+                if (matchLen >= 15) {
+                    token |= 15;
+                    outPos = writeLength(out, outPos, matchLen - 15);
+                } else {
+                    token |= matchLen;
+                }
+                out[tokenPos] = (byte) token;
+                pos += len;
+                anchor = pos;
+            }
+        }
+        int tokenPos = outPos++;
+        int token = writeLiterals(in, anchor, inLen - anchor, out, outPos);
+        outPos += token >>> 8;
+        out[tokenPos] = (byte) token;
+        return outPos;
+    }
+
+    /**
+     * Write the literal length continuation and the literals.
+     *
+     * @param in the input data
+     * @param inPos the position of the literals
+     * @param len the number of literals
+     * @param out the output area
+     * @param outPos the position after the token
+     * @return the high bits of the token (lowest 8 bits), and the number of
+     *         bytes written (higher bits)
+     */
+    private static int writeLiterals(byte[] in, int inPos, int len, byte[] out, int outPos) {
+        int start = outPos;
+        int token;
+        if (len >= 15) {
+            token = 15 << 4;
+            outPos = writeLength(out, outPos, len - 15);
+        } else {
+            token = len << 4;
+        }
+        System.arraycopy(in, inPos, out, outPos, len);
+        outPos += len;
+        return ((outPos - start) << 8) | token;
+    }
+
+    private static int writeLength(byte[] out, int outPos, int len) {
+        while (len >= 255) {
+            out[outPos++] = (byte) 255;
+            len -= 255;
+        }
+        out[outPos++] = (byte) len;
+        return outPos;
+    }
+
+    @Override
+    public void expand(byte[] in, int inPos, int inLen, byte[] out, int outPos,
+            int outLen) {
+        int inEnd = inPos + inLen;
+        int outStart = outPos;
+        int outEnd = outPos + outLen;
+        try {
+            while (true) {
+                int token = in[inPos++] & 255;
+                int len = token >>> 4;
+                if (len == 15) {
+                    int b;
+                    do {
+                        b = in[inPos++] & 255;
+                        len += b;
+                    } while (b == 255);
+                }
+                if (len > outEnd - outPos || len > inEnd - inPos) {
+                    throw DbException.get(ErrorCode.COMPRESSION_ERROR);
+                }
+                System.arraycopy(in, inPos, out, outPos, len);
+                inPos += len;
+                outPos += len;
+                if (inPos >= inEnd) {
+                    break;
+                }
+                int offset = (in[inPos++] & 255) | ((in[inPos++] & 255) << 8);
+                int ref = outPos - offset;
+                if (offset == 0 || ref < outStart) {
+                    throw DbException.get(ErrorCode.COMPRESSION_ERROR);
+                }
+                len = token & 15;
+                if (len == 15) {
+                    int b;
+                    do {
+                        b = in[inPos++] & 255;
+                        len += b;
+                    } while (b == 255);
+                }
+                len += MIN_MATCH;
+                if (len > outEnd - outPos) {
+                    throw DbException.get(ErrorCode.COMPRESSION_ERROR);
+                }
+                if (offset >= len) {
+                    System.arraycopy(out, ref, out, outPos, len);
+                    outPos += len;
+                } else {
+                    // the back-reference overlaps: copy byte by byte
+                    for (int i = 0; i < len; i++) {
+                        out[outPos++] = out[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw DbException.get(ErrorCode.COMPRESSION_ERROR, e);
+        }
+        if (outPos != outEnd) {
+            throw DbException.get(ErrorCode.COMPRESSION_ERROR);
+        }
+    }
+
+    @Override
+    public int getAlgorithm() {
+        return Compressor.LZ4;
+    }
+
+}
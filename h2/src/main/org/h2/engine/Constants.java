@@ -105,6 +105,18 @@ public class Constants {
      */
     public static final int TCP_PROTOCOL_VERSION_18 = 18;
 
+    /**
+     * The TCP protocol version number 19.
+     * @since 1.4.200
+     */
+    public static final int TCP_PROTOCOL_VERSION_19 = 19;
+
+    /**
+     * The TCP protocol version number 20.
+     * @since 1.4.200
+     */
+    public static final int TCP_PROTOCOL_VERSION_20 = 20;
+
     /**
      * Minimum supported version of TCP protocol.
      */
@@ -113,7 +125,7 @@ public class Constants {
     /**
      * Maximum supported version of TCP protocol.
      */
-    public static final int TCP_PROTOCOL_VERSION_MAX_SUPPORTED = TCP_PROTOCOL_VERSION_18;
+    public static final int TCP_PROTOCOL_VERSION_MAX_SUPPORTED = TCP_PROTOCOL_VERSION_20;
 
     /**
      * The major version of this database.
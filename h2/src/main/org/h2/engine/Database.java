@@ -20,6 +20,8 @@
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -173,6 +175,7 @@ public class Database implements DataHandler {
     private String cluster = Constants.CLUSTERING_DISABLED;
     private boolean readOnly;
     private int writeDelay = Constants.DEFAULT_WRITE_DELAY;
+    private int commitGroupDelay = -1;
     private DatabaseEventListener eventListener;
     private int maxMemoryRows = SysProperties.MAX_MEMORY_ROWS;
     private int maxMemoryUndo = Constants.DEFAULT_MAX_MEMORY_UNDO;
@@ -196,6 +199,8 @@ public class Database implements DataHandler {
     private boolean multiThreaded;
     private int maxOperationMemory =
             Constants.DEFAULT_MAX_OPERATION_MEMORY;
+    private int maxParallelWorkers = 1;
+    private ForkJoinPool parallelWorkerPool;
     private SmallLRUCache<String, String[]> lobFileListCache;
     private final boolean autoServerMode;
     private final int autoServerPort;
@@ -1553,6 +1558,14 @@ private void stopWriter() {
             writer.stopThread();
             writer = null;
         }
+        stopParallelWorkers();
+    }
+
+    private synchronized void stopParallelWorkers() {
+        if (parallelWorkerPool != null) {
+            parallelWorkerPool.shutdown();
+            parallelWorkerPool = null;
+        }
     }
 
     /**
@@ -2217,6 +2230,25 @@ public void setWriteDelay(int value) {
         }
     }
 
+    /**
+     * Set the maximum time a commit waits for other commits, so that their
+     * changes are written and synced to disk together. This is only used for
+     * the MVStore.
+     *
+     * @param micros the delay in microseconds, 0 to sync each commit without
+     *            waiting, or -1 to not sync on commit
+     */
+    public void setCommitGroupDelay(int micros) {
+        commitGroupDelay = micros;
+        if (store != null) {
+            store.getTransactionStore().setCommitGroupDelay(micros);
+        }
+    }
+
+    public int getCommitGroupDelay() {
+        return commitGroupDelay;
+    }
+
     public int getRetentionTime() {
         return retentionTime;
     }
@@ -2646,6 +2678,44 @@ public int getMaxOperationMemory() {
         return maxOperationMemory;
     }
 
+    /**
+     * Set the maximum number of threads used to execute a query.
+     *
+     * @param maxParallelWorkers the number of threads, 1 to disable parallel
+     *            execution
+     */
+    public synchronized void setMaxParallelWorkers(int maxParallelWorkers) {
+        if (maxParallelWorkers != this.maxParallelWorkers) {
+            this.maxParallelWorkers = maxParallelWorkers;
+            stopParallelWorkers();
+        }
+    }
+
+    public int getMaxParallelWorkers() {
+        return maxParallelWorkers;
+    }
+
+    /**
+     * Get the thread pool for parallel query execution. The pool is created
+     * when needed.
+     *
+     * @return the thread pool
+     */
+    public synchronized ForkJoinPool getParallelWorkerPool() {
+        if (parallelWorkerPool == null) {
+            parallelWorkerPool = new ForkJoinPool(maxParallelWorkers,
+                    new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                        @Override
+                        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                            t.setName("H2 Parallel Worker " + getShortName() + " " + t.getPoolIndex());
+                            return t;
+                        }
+                    }, null, false);
+        }
+        return parallelWorkerPool;
+    }
+
     public Session getExclusiveSession() {
         return exclusiveSession.get();
     }
@@ -56,6 +56,15 @@ public class DbSettings extends SettingsBase {
      */
     public final int analyzeSample = get("ANALYZE_SAMPLE", 10_000);
 
+    /**
+     * Database setting <code>APPEND_BUFFER</code> (default: true).<br />
+     * Insert rows with generated or increasing keys into the append buffer of
+     * the table (MVStore only). Concurrent inserts then only need to lock the
+     * table map for a short time, instead of copying the path to the last
+     * leaf for each row and retrying if another insert was faster.
+     */
+    public final boolean appendBuffer = get("APPEND_BUFFER", true);
+
     /**
      * Database setting <code>DATABASE_TO_LOWER</code> (default: false).<br />
      * When set to true unquoted identifiers and short name of database are
@@ -144,6 +153,26 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean functionsInSchema = get("FUNCTIONS_IN_SCHEMA", true);
 
+    /**
+     * Database setting <code>HASH_JOIN</code>
+     * (default: true).<br />
+     * Allow the optimizer to use a temporary hash index for the inner table of
+     * a join, if there is no index on the join columns. The hash index is
+     * built once per statement.
+     */
+    public final boolean hashJoin = get("HASH_JOIN", true);
+
+    /**
+     * Database setting <code>INDEX_PREFIX_COMPRESSION</code>
+     * (default: false).<br />
+     * Write the common prefix of the keys of an index page only once, if the
+     * first column of the index is a VARCHAR column (MVStore only). This makes
+     * indexes on columns with long common prefixes (for example URLs or file
+     * names) smaller. Pages in both formats can always be read, so the
+     * setting can be changed at any time.
+     */
+    public final boolean indexPrefixCompression = get("INDEX_PREFIX_COMPRESSION", false);
+
     /**
      * Database setting <code>LOB_TIMEOUT</code> (default: 300000,
      * which means 5 minutes).<br />
@@ -175,6 +204,23 @@ public class DbSettings extends SettingsBase {
      */
     public final int maxQueryTimeout = get("MAX_QUERY_TIMEOUT", 0);
 
+    /**
+     * Database setting <code>MERGE_JOIN</code>
+     * (default: true).<br />
+     * If the rows of the outer table of a join are read in the order of the
+     * join column, and the inner table has a sorted index on this column, read
+     * the inner index sequentially instead of searching it again for each row.
+     */
+    public final boolean mergeJoin = get("MERGE_JOIN", true);
+
+    /**
+     * Database setting <code>OFF_HEAP_CACHE_SIZE</code> (default: 0).<br />
+     * The size of the off-heap page cache of the MVStore in KB. This cache
+     * keeps the serialized pages outside of the Java heap, below the regular
+     * cache (see CACHE_SIZE). The default is 0, meaning it is not used.
+     */
+    public final int offHeapCacheSize = get("OFF_HEAP_CACHE_SIZE", 0);
+
     /**
      * Database setting <code>OPTIMIZE_DISTINCT</code> (default: true).<br />
      * Improve the performance of simple DISTINCT queries if an index is
@@ -308,6 +354,27 @@ public class DbSettings extends SettingsBase {
     public final boolean shareLinkedConnections = get(
             "SHARE_LINKED_CONNECTIONS", true);
 
+    /**
+     * Database setting <code>UNDO_BUFFER_SIZE</code>
+     * (default: 0).<br />
+     * The maximum number of changes of a transaction that are kept in an
+     * in-memory undo log (MVStore only). Larger transactions, and
+     * transactions that are open when changes are written to disk, use the
+     * persistent undo log instead. The value 0 means the persistent undo log
+     * is always used.
+     */
+    public final int undoBufferSize = get("UNDO_BUFFER_SIZE", 0);
+
+    /**
+     * Database setting <code>VECTORIZED_EXECUTION</code>
+     * (default: false).<br />
+     * Read and filter the rows of single-table queries in batches, and update
+     * simple aggregates (COUNT, SUM, AVG, MIN, MAX without GROUP BY) once per
+     * batch, if the condition and the aggregates only use integer and DOUBLE
+     * columns, constants, arithmetic, and comparisons.
+     */
+    public final boolean vectorizedExecution = get("VECTORIZED_EXECUTION", false);
+
     /**
      * Database setting <code>DEFAULT_TABLE_ENGINE</code>
      * (default: null).<br />
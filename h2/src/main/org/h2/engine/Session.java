@@ -24,6 +24,7 @@
 import org.h2.command.ddl.Analyze;
 import org.h2.command.dml.Query;
 import org.h2.constraint.Constraint;
+import org.h2.index.HashJoinIndex;
 import org.h2.index.Index;
 import org.h2.index.ViewIndex;
 import org.h2.jdbc.JdbcConnection;
@@ -120,6 +121,7 @@ public enum State { INIT, RUNNING, BLOCKED, SLEEP, CLOSED }
     private ValueTimestampTimeZone currentCommandStart;
     private HashMap<String, Value> variables;
     private HashSet<ResultInterface> temporaryResults;
+    private ArrayList<HashJoinIndex> hashJoinIndexes;
     private int queryTimeout;
     private boolean commitOrRollbackDisabled;
     private Table waitForLock;
@@ -162,6 +164,7 @@ public enum State { INIT, RUNNING, BLOCKED, SLEEP, CLOSED }
     private Transaction transaction;
     private final AtomicReference<State> state = new AtomicReference<>(State.INIT);
     private long startStatement = -1;
+    private long statementId;
 
     /**
      * Set of database object ids to be released at the end of transaction
@@ -1574,6 +1577,28 @@ public void addTemporaryResult(ResultInterface result) {
         }
     }
 
+    /**
+     * Remember a hash join index that built its hash table, so that the hash
+     * table is released at the end of the statement.
+     *
+     * @param index the hash join index
+     */
+    public void addHashJoinIndex(HashJoinIndex index) {
+        if (hashJoinIndexes == null) {
+            hashJoinIndexes = Utils.newSmallArrayList();
+        }
+        hashJoinIndexes.add(index);
+    }
+
+    private void releaseHashJoinIndexes() {
+        if (hashJoinIndexes != null) {
+            for (HashJoinIndex index : hashJoinIndexes) {
+                index.release();
+            }
+            hashJoinIndexes = null;
+        }
+    }
+
     private void closeTemporaryResults() {
         if (temporaryResults != null) {
             for (ResultInterface result : temporaryResults) {
@@ -1731,6 +1756,17 @@ public void startStatementWithinTransaction() {
             transaction.markStatementStart();
         }
         startStatement = -1;
+        statementId++;
+    }
+
+    /**
+     * Get the number of the current statement. The number changes each time
+     * a statement is started.
+     *
+     * @return the statement number
+     */
+    public long getStatementId() {
+        return statementId;
     }
 
     /**
@@ -1743,6 +1779,7 @@ public void endStatement() {
         }
         startStatement = -1;
         closeTemporaryResults();
+        releaseHashJoinIndexes();
     }
 
     /**
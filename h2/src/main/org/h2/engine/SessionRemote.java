@@ -8,6 +8,7 @@
 import java.io.IOException;
 import java.net.Socket;
 import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 
 import org.h2.api.DatabaseEventListener;
@@ -62,6 +63,7 @@ public class SessionRemote extends SessionWithState implements DataHandler {
     public static final int SESSION_HAS_PENDING_TRANSACTION = 16;
     public static final int LOB_READ = 17;
     public static final int SESSION_PREPARE_READ_PARAMS2 = 18;
+    public static final int COMMAND_EXECUTE_BATCH = 19;
 
     public static final int STATUS_ERROR = 0;
     public static final int STATUS_OK = 1;
@@ -95,6 +97,19 @@ public class SessionRemote extends SessionWithState implements DataHandler {
 
     private final CompareMode compareMode = CompareMode.getInstance(null, 0);
 
+    /**
+     * The maximum number of requests that are sent without waiting for the
+     * response. The responses of more requests may not fit into the socket
+     * buffers, and then both the client and the server block while writing.
+     */
+    private static final int MAX_PENDING_RESPONSES = 1024;
+
+    /**
+     * The requests that were sent without waiting for the response, in the
+     * order they were sent.
+     */
+    private final ArrayDeque<PendingResponse> pendingResponses = new ArrayDeque<>();
+
     public SessionRemote(ConnectionInfo ci) {
         this.connectionInfo = ci;
     }
@@ -463,6 +478,7 @@ private void switchOffCluster() {
      */
     public void removeServer(IOException e, int i, int count) {
         trace.debug(e, "removing server because of exception");
+        failPendingResponses(DbException.convertIOException(e, null));
         transferList.remove(i);
         if (transferList.isEmpty() && autoReconnect(count)) {
             return;
@@ -597,15 +613,24 @@ public int getCurrentId() {
      */
     public void done(Transfer transfer) throws IOException {
         transfer.flush();
+        if (!pendingResponses.isEmpty()) {
+            readPendingResponses(transfer, 0);
+        }
+        readStatus(transfer);
+    }
+
+    /**
+     * Read the status of a response.
+     *
+     * @param transfer the transfer object
+     * @throws DbException if the server reported an error
+     * @throws IOException if the server reported a broken connection
+     */
+    public void readStatus(Transfer transfer) throws IOException {
         int status = transfer.readInt();
         if (status == STATUS_ERROR) {
-            String sqlstate = transfer.readString();
-            String message = transfer.readString();
-            String sql = transfer.readString();
-            int errorCode = transfer.readInt();
-            String stackTrace = transfer.readString();
-            SQLException s = DbException.getJdbcSQLException(message, sql, sqlstate, errorCode, null, stackTrace);
-            if (errorCode == ErrorCode.CONNECTION_BROKEN_1) {
+            SQLException s = readSQLException(transfer);
+            if (s.getErrorCode() == ErrorCode.CONNECTION_BROKEN_1) {
                 // allow re-connect
                 throw new IOException(s.toString(), s);
             }
@@ -622,6 +647,80 @@ public void done(Transfer transfer) throws IOException {
         }
     }
 
+    /**
+     * Register a request that is sent to the server without waiting for the
+     * response. The transfer object must be flushed afterwards. If too many
+     * responses are outstanding, the oldest one is read first.
+     *
+     * @param response the object that reads the response
+     */
+    public synchronized void addPendingResponse(PendingResponse response) {
+        if (pendingResponses.size() >= MAX_PENDING_RESPONSES) {
+            readPendingResponses(MAX_PENDING_RESPONSES - 1);
+        }
+        pendingResponses.add(response);
+    }
+
+    /**
+     * Read the responses of all requests that were sent without waiting for
+     * the response. If the responses can not be read, the requests fail with
+     * the exception.
+     */
+    public synchronized void readPendingResponses() {
+        readPendingResponses(0);
+    }
+
+    private void readPendingResponses(int remaining) {
+        if (pendingResponses.size() <= remaining) {
+            return;
+        }
+        try {
+            checkClosed();
+            readPendingResponses(transferList.get(0), remaining);
+        } catch (IOException e) {
+            // already reported by the futures
+        } catch (DbException e) {
+            failPendingResponses(e);
+        }
+    }
+
+    private void readPendingResponses(Transfer transfer, int remaining) throws IOException {
+        while (pendingResponses.size() > remaining) {
+            PendingResponse response = pendingResponses.poll();
+            try {
+                response.readResponse(transfer);
+            } catch (IOException e) {
+                DbException ex = DbException.convertIOException(e, null);
+                response.fail(ex);
+                failPendingResponses(ex);
+                throw e;
+            }
+        }
+    }
+
+    private void failPendingResponses(DbException e) {
+        PendingResponse response;
+        while ((response = pendingResponses.poll()) != null) {
+            response.fail(e);
+        }
+    }
+
+    /**
+     * Read an exception that was sent by the server.
+     *
+     * @param transfer the transfer object
+     * @return the exception
+     * @throws IOException on I/O exception
+     */
+    public static SQLException readSQLException(Transfer transfer) throws IOException {
+        String sqlstate = transfer.readString();
+        String message = transfer.readString();
+        String sql = transfer.readString();
+        int errorCode = transfer.readInt();
+        String stackTrace = transfer.readString();
+        return DbException.getJdbcSQLException(message, sql, sqlstate, errorCode, null, stackTrace);
+    }
+
     /**
      * Returns true if the connection was opened in cluster mode.
      *
@@ -855,4 +954,29 @@ public boolean isSupportsGeneratedKeys() {
         return getClientVersion() >= Constants.TCP_PROTOCOL_VERSION_17;
     }
 
+    /**
+     * The response of a request that was sent to the server without waiting
+     * for it. Responses are read in the order the requests were sent.
+     */
+    public interface PendingResponse {
+
+        /**
+         * Read the response. This method is called by the session when it is
+         * this request's turn.
+         *
+         * @param transfer the transfer object
+         * @throws IOException on I/O exception
+         */
+        void readResponse(Transfer transfer) throws IOException;
+
+        /**
+         * Complete the request with an exception, because the response can
+         * not be read.
+         *
+         * @param e the exception
+         */
+        void fail(DbException e);
+
+    }
+
 }
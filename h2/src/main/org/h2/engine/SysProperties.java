@@ -375,6 +375,15 @@ public class SysProperties {
     public static final String PG_DEFAULT_CLIENT_ENCODING =
             Utils.getProperty("h2.pgClientEncoding", "UTF-8");
 
+    /**
+     * System property <code>h2.pgStatementCacheSize</code> (default: 64).<br />
+     * PG Server: number of prepared statements per connection that are kept
+     * after they are closed by the client, to be re-used if the same SQL
+     * statement is parsed again.
+     */
+    public static final int PG_STATEMENT_CACHE_SIZE =
+            Utils.getProperty("h2.pgStatementCacheSize", 64);
+
     /**
      * System property <code>h2.prefixTempFile</code> (default: h2.temp).<br />
      * The prefix for temporary files in the temp directory.
@@ -15,7 +15,9 @@
 import org.h2.value.DataType;
 import org.h2.value.TypeInfo;
 import org.h2.value.Value;
+import org.h2.value.ValueDouble;
 import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
 import org.h2.value.ValueString;
 
@@ -152,6 +154,125 @@ public Value getValue(Session session) {
         }
     }
 
+    @Override
+    public int getVectorType(TableFilter filter) {
+        int l = left.getVectorType(filter), r = right.getVectorType(filter);
+        if (l == ValueVector.NONE || r == ValueVector.NONE || !convertRight) {
+            return ValueVector.NONE;
+        }
+        switch (type.getValueType()) {
+        case Value.INT:
+        case Value.LONG:
+            if (l == ValueVector.LONG && r == ValueVector.LONG &&
+                    (opType == OpType.PLUS || opType == OpType.MINUS || opType == OpType.MULTIPLY)) {
+                return ValueVector.LONG;
+            }
+            break;
+        case Value.DOUBLE:
+            if (opType == OpType.PLUS || opType == OpType.MINUS || opType == OpType.MULTIPLY
+                    || opType == OpType.DIVIDE) {
+                return ValueVector.DOUBLE;
+            }
+            break;
+        default:
+        }
+        return ValueVector.NONE;
+    }
+
+    @Override
+    public ValueVector getVector(Session session, RowBatch batch) {
+        ValueVector l = left.getVector(session, batch);
+        ValueVector r = right.getVector(session, batch);
+        int valueType = type.getValueType();
+        int[] selection = batch.getSelection();
+        int count = batch.getSelectedCount();
+        if (valueType == Value.DOUBLE) {
+            ValueVector v = batch.allocate(ValueVector.DOUBLE, valueType, false);
+            for (int j = 0; j < count; j++) {
+                int i = selection[j];
+                if (l.isNull(i) || r.isNull(i)) {
+                    v.setNull(i);
+                    continue;
+                }
+                double a = l.getDouble(i), b = r.getDouble(i);
+                switch (opType) {
+                case PLUS:
+                    v.setDouble(i, a + b);
+                    break;
+                case MINUS:
+                    v.setDouble(i, a - b);
+                    break;
+                case MULTIPLY:
+                    v.setDouble(i, a * b);
+                    break;
+                default:
+                    if (b == 0.0) {
+                        throwError(ValueDouble.get(a), ValueDouble.get(b));
+                    }
+                    v.setDouble(i, a / b);
+                }
+            }
+            return v;
+        }
+        ValueVector v = batch.allocate(ValueVector.LONG, valueType, false);
+        boolean isInt = valueType == Value.INT;
+        for (int j = 0; j < count; j++) {
+            int i = selection[j];
+            if (l.isNull(i) || r.isNull(i)) {
+                v.setNull(i);
+                continue;
+            }
+            long a = l.getLong(i), b = r.getLong(i), x;
+            boolean overflow;
+            switch (opType) {
+            case PLUS:
+                x = a + b;
+                overflow = isInt ? x != (int) x : ((a ^ x) & (b ^ x)) < 0;
+                break;
+            case MINUS:
+                x = a - b;
+                overflow = isInt ? x != (int) x : ((a ^ b) & (a ^ x)) < 0;
+                break;
+            default:
+                x = a * b;
+                overflow = isInt ? x != (int) x : (Math.abs(a) | Math.abs(b)) >>> 31 != 0 && b != 0
+                        && (x / b != a || a == Long.MIN_VALUE && b == -1);
+            }
+            if (overflow) {
+                throwError(ValueLong.get(a), ValueLong.get(b));
+            }
+            v.setLong(i, x);
+        }
+        return v;
+    }
+
+    /**
+     * Evaluate the operation for one row using value objects, so that the
+     * same exception is thrown as with row-by-row evaluation. This is used if
+     * the batch evaluation detects an overflow or a division by zero.
+     *
+     * @param l the left value
+     * @param r the right value
+     */
+    private void throwError(Value l, Value r) {
+        l = l.convertTo(type.getValueType());
+        r = r.convertTo(type.getValueType());
+        switch (opType) {
+        case PLUS:
+            l.add(r);
+            break;
+        case MINUS:
+            l.subtract(r);
+            break;
+        case MULTIPLY:
+            l.multiply(r);
+            break;
+        default:
+            l.divide(r);
+        }
+        throw DbException.throwInternalError(l + " " + getOperationToken() + " " + r);
+    }
+
     @Override
     public void mapColumns(ColumnResolver resolver, int level, int state) {
         left.mapColumns(resolver, level, state);
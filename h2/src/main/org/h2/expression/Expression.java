@@ -9,6 +9,7 @@
 
 import org.h2.engine.Database;
 import org.h2.engine.Session;
+import org.h2.message.DbException;
 import org.h2.result.ResultInterface;
 import org.h2.table.Column;
 import org.h2.table.ColumnResolver;
@@ -270,6 +271,56 @@ public void createIndexConditions(Session session, TableFilter filter) {
         // default is do nothing
     }
 
+    /**
+     * Get the vector type of this expression, if it can be evaluated for a
+     * batch of rows of the given table filter.
+     *
+     * @param filter the table filter of the batch
+     * @return ValueVector.LONG, ValueVector.DOUBLE, or ValueVector.NONE if
+     *         batch evaluation is not supported
+     */
+    @SuppressWarnings("unused")
+    public int getVectorType(TableFilter filter) {
+        return ValueVector.NONE;
+    }
+
+    /**
+     * Evaluate this expression for the selected rows of a batch. This is only
+     * supported if the vector type is not ValueVector.NONE.
+     *
+     * @param session the session
+     * @param batch the batch
+     * @return the values (valid until the batch is reset)
+     */
+    @SuppressWarnings("unused")
+    public ValueVector getVector(Session session, RowBatch batch) {
+        throw DbException.throwInternalError(getSQL(false));
+    }
+
+    /**
+     * Check whether this condition can be evaluated for a batch of rows of
+     * the given table filter.
+     *
+     * @param filter the table filter of the batch
+     * @return true if filterBatch is supported
+     */
+    @SuppressWarnings("unused")
+    public boolean isBatchCondition(TableFilter filter) {
+        return false;
+    }
+
+    /**
+     * Remove the rows that don't match this condition (where the condition
+     * is FALSE or NULL) from the selection of the batch.
+     *
+     * @param session the session
+     * @param batch the batch
+     */
+    @SuppressWarnings("unused")
+    public void filterBatch(Session session, RowBatch batch) {
+        throw DbException.throwInternalError(getSQL(false));
+    }
+
     /**
      * Get the column name or alias name of this expression.
      *
@@ -237,6 +237,19 @@ public TypeInfo getType() {
         return column == null ? TypeInfo.TYPE_UNKNOWN : column.getType();
     }
 
+    @Override
+    public int getVectorType(TableFilter filter) {
+        if (columnResolver != filter || column == null) {
+            return ValueVector.NONE;
+        }
+        return ValueVector.getVectorType(column.getType().getValueType());
+    }
+
+    @Override
+    public ValueVector getVector(Session session, RowBatch batch) {
+        return batch.getColumn(column, column.getType().getValueType());
+    }
+
     @Override
     public void setEvaluatable(TableFilter tableFilter, boolean b) {
     }
@@ -61,6 +61,19 @@ public Value getValue(Session session) {
         return getParamValue();
     }
 
+    @Override
+    public int getVectorType(TableFilter filter) {
+        return value == null ? ValueVector.NONE : ValueVector.getVectorType(value.getValueType());
+    }
+
+    @Override
+    public ValueVector getVector(Session session, RowBatch batch) {
+        int valueType = value.getValueType();
+        ValueVector v = batch.allocate(ValueVector.getVectorType(valueType), valueType, true);
+        v.set(0, value);
+        return v;
+    }
+
     @Override
     public TypeInfo getType() {
         if (value != null) {
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import java.util.ArrayList;
+
+import org.h2.result.SearchRow;
+import org.h2.table.Column;
+import org.h2.table.TableFilter;
+import org.h2.value.ValueLong;
+
+/**
+ * A batch of rows of a table filter, used for vectorized (batch) evaluation
+ * of conditions and aggregates. The column values are unboxed into primitive
+ * vectors once per batch, when they are first needed. The selection vector
+ * contains the indexes of the rows that still match the condition, in
+ * ascending order.
+ */
+public final class RowBatch {
+
+    /**
+     * The maximum number of rows in a batch.
+     */
+    public static final int SIZE = 1024;
+
+    private final TableFilter filter;
+
+    private final SearchRow[] rows = new SearchRow[SIZE];
+
+    private int rowCount;
+
+    private final int[] selection = new int[SIZE];
+
+    private int selectedCount;
+
+    /**
+     * The column vectors, by column id + 1 (index 0 is the row key).
+     */
+    private final ValueVector[] columns;
+
+    /**
+     * The batch number when the column vector was loaded.
+     */
+    private final long[] loaded;
+
+    private long batchNumber;
+
+    private final ArrayList<ValueVector> longVectors = new ArrayList<>();
+
+    private final ArrayList<ValueVector> doubleVectors = new ArrayList<>();
+
+    private final ArrayList<int[]> selections = new ArrayList<>();
+
+    private int longVectorsUsed, doubleVectorsUsed, selectionsUsed;
+
+    public RowBatch(TableFilter filter) {
+        this.filter = filter;
+        int columnCount = filter.getTable().getColumns().length + 1;
+        columns = new ValueVector[columnCount];
+        loaded = new long[columnCount];
+    }
+
+    public TableFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Remove all rows, and release the temporary vectors.
+     */
+    public void reset() {
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = null;
+        }
+        rowCount = 0;
+        selectedCount = 0;
+        batchNumber++;
+        longVectorsUsed = doubleVectorsUsed = selectionsUsed = 0;
+    }
+
+    /**
+     * Add a row. The row is selected.
+     *
+     * @param row the row
+     */
+    public void add(SearchRow row) {
+        selection[selectedCount++] = rowCount;
+        rows[rowCount++] = row;
+    }
+
+    /**
+     * Check whether the batch is full.
+     *
+     * @return true if no more rows can be added
+     */
+    public boolean isFull() {
+        return rowCount == SIZE;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get the row at the given index.
+     *
+     * @param i the row index
+     * @return the row
+     */
+    public SearchRow getRow(int i) {
+        return rows[i];
+    }
+
+    /**
+     * Get the selection vector. Only the first getSelectedCount() entries are
+     * valid.
+     *
+     * @return the indexes of the selected rows
+     */
+    public int[] getSelection() {
+        return selection;
+    }
+
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    /**
+     * Set the selection vector. The entries are copied.
+     *
+     * @param selection the indexes of the selected rows, in ascending order
+     * @param selectedCount the number of selected rows
+     */
+    public void setSelection(int[] selection, int selectedCount) {
+        System.arraycopy(selection, 0, this.selection, 0, selectedCount);
+        this.selectedCount = selectedCount;
+    }
+
+    /**
+     * Set the number of selected rows, after the selection vector was
+     * compacted in place.
+     *
+     * @param selectedCount the number of selected rows
+     */
+    public void setSelectedCount(int selectedCount) {
+        this.selectedCount = selectedCount;
+    }
+
+    /**
+     * Get the values of a column of all rows of the batch.
+     *
+     * @param column the column
+     * @param valueType the value type of the column
+     * @return the vector
+     */
+    ValueVector getColumn(Column column, int valueType) {
+        int columnId = column.getColumnId();
+        int index = columnId + 1;
+        ValueVector v = columns[index];
+        if (v == null) {
+            v = columns[index] = new ValueVector(ValueVector.getVectorType(valueType));
+        }
+        if (loaded[index] != batchNumber) {
+            v.init(valueType, false);
+            for (int i = 0; i < rowCount; i++) {
+                SearchRow r = rows[i];
+                v.set(i, columnId < 0 ? ValueLong.get(r.getKey()) : r.getValue(columnId));
+            }
+            loaded[index] = batchNumber;
+        }
+        return v;
+    }
+
+    /**
+     * Get a temporary vector. It is valid until the batch is reset.
+     *
+     * @param vectorType the vector type
+     * @param valueType the value type
+     * @param isConstant whether all rows have the same value
+     * @return the vector
+     */
+    ValueVector allocate(int vectorType, int valueType, boolean isConstant) {
+        ValueVector v;
+        if (vectorType == ValueVector.LONG) {
+            if (longVectorsUsed == longVectors.size()) {
+                longVectors.add(new ValueVector(vectorType));
+            }
+            v = longVectors.get(longVectorsUsed++);
+        } else {
+            if (doubleVectorsUsed == doubleVectors.size()) {
+                doubleVectors.add(new ValueVector(vectorType));
+            }
+            v = doubleVectors.get(doubleVectorsUsed++);
+        }
+        v.init(valueType, isConstant);
+        return v;
+    }
+
+    /**
+     * Get a temporary selection vector. It is valid until the batch is reset.
+     *
+     * @return the selection vector
+     */
+    public int[] allocateSelection() {
+        if (selectionsUsed == selections.size()) {
+            selections.add(new int[SIZE]);
+        }
+        return selections.get(selectionsUsed++);
+    }
+
+}
@@ -80,6 +80,19 @@ public TypeInfo getType() {
         return value.getType();
     }
 
+    @Override
+    public int getVectorType(TableFilter filter) {
+        return ValueVector.getVectorType(value.getValueType());
+    }
+
+    @Override
+    public ValueVector getVector(Session session, RowBatch batch) {
+        int valueType = value.getValueType();
+        ValueVector v = batch.allocate(ValueVector.getVectorType(valueType), valueType, true);
+        v.set(0, value);
+        return v;
+    }
+
     @Override
     public void createIndexConditions(Session session, TableFilter filter) {
         if (value.getValueType() == Value.BOOLEAN) {
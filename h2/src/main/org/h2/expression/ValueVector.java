@@ -0,0 +1,177 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.expression;
+
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+
+/**
+ * The values of an expression for a batch of rows, stored in a primitive
+ * array. Only the entries of the selected rows of the batch are valid. A
+ * constant vector has the same value for all rows, stored at index 0.
+ */
+public final class ValueVector {
+
+    /**
+     * The vector type if batch evaluation is not supported.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The vector type for integer values (TINYINT, SMALLINT, INT, BIGINT).
+     */
+    public static final int LONG = 0;
+
+    /**
+     * The vector type for DOUBLE values.
+     */
+    public static final int DOUBLE = 1;
+
+    private final int vectorType;
+
+    private int valueType;
+
+    private boolean constant;
+
+    private final long[] longs;
+
+    private final double[] doubles;
+
+    private final boolean[] nulls = new boolean[RowBatch.SIZE];
+
+    ValueVector(int vectorType) {
+        this.vectorType = vectorType;
+        if (vectorType == LONG) {
+            longs = new long[RowBatch.SIZE];
+            doubles = null;
+        } else {
+            longs = null;
+            doubles = new double[RowBatch.SIZE];
+        }
+    }
+
+    /**
+     * Get the vector type for the given value type.
+     *
+     * @param valueType the value type
+     * @return LONG, DOUBLE, or NONE
+     */
+    public static int getVectorType(int valueType) {
+        switch (valueType) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+            return LONG;
+        case Value.DOUBLE:
+            return DOUBLE;
+        default:
+            return NONE;
+        }
+    }
+
+    /**
+     * Prepare the vector to hold the values of one batch.
+     *
+     * @param valueType the value type of the expression
+     * @param isConstant whether all rows have the same value
+     */
+    void init(int valueType, boolean isConstant) {
+        this.valueType = valueType;
+        this.constant = isConstant;
+    }
+
+    /**
+     * Set the value of a row from a value object.
+     *
+     * @param i the row index in the batch
+     * @param v the value
+     */
+    void set(int i, Value v) {
+        if (v == ValueNull.INSTANCE) {
+            nulls[i] = true;
+            return;
+        }
+        nulls[i] = false;
+        if (vectorType == LONG) {
+            longs[i] = v.getLong();
+        } else {
+            doubles[i] = v.getDouble();
+        }
+    }
+
+    /**
+     * Set the value of a row.
+     *
+     * @param i the row index in the batch
+     * @param x the value
+     */
+    void setLong(int i, long x) {
+        nulls[i] = false;
+        longs[i] = x;
+    }
+
+    /**
+     * Set the value of a row.
+     *
+     * @param i the row index in the batch
+     * @param x the value
+     */
+    void setDouble(int i, double x) {
+        nulls[i] = false;
+        // -0.0 is converted to 0.0, as in ValueDouble
+        doubles[i] = x == 0.0 ? 0.0 : x;
+    }
+
+    /**
+     * Set the value of a row to NULL.
+     *
+     * @param i the row index in the batch
+     */
+    void setNull(int i) {
+        nulls[i] = true;
+    }
+
+    public int getVectorType() {
+        return vectorType;
+    }
+
+    public int getValueType() {
+        return valueType;
+    }
+
+    /**
+     * Check whether the value of a row is NULL.
+     *
+     * @param i the row index in the batch
+     * @return true if it is NULL
+     */
+    public boolean isNull(int i) {
+        return nulls[constant ? 0 : i];
+    }
+
+    /**
+     * Get the value of a row of a LONG vector.
+     *
+     * @param i the row index in the batch
+     * @return the value
+     */
+    public long getLong(int i) {
+        return longs[constant ? 0 : i];
+    }
+
+    /**
+     * Get the value of a row as a double.
+     *
+     * @param i the row index in the batch
+     * @return the value
+     */
+    public double getDouble(int i) {
+        int j = constant ? 0 : i;
+        return vectorType == LONG ? longs[j] : doubles[j];
+    }
+
+}
@@ -22,7 +22,9 @@
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
+import org.h2.expression.RowBatch;
 import org.h2.expression.Subquery;
+import org.h2.expression.ValueVector;
 import org.h2.expression.analysis.Window;
 import org.h2.index.Cursor;
 import org.h2.index.Index;
@@ -234,6 +236,142 @@ private void updateData(Session session, AggregateData data, Value v, Value[] re
         data.add(session.getDatabase(), v);
     }
 
+    /**
+     * Check whether this aggregate can be updated with a batch of rows of the
+     * given table filter at once, see {@link #updateBatch(Session, RowBatch)}.
+     *
+     * @param filter the table filter of the batch
+     * @return true if batch updates are supported
+     */
+    public boolean isBatchAggregate(TableFilter filter) {
+        if (over != null || filterCondition != null || distinct || orderByList != null) {
+            return false;
+        }
+        switch (aggregateType) {
+        case COUNT_ALL:
+            return true;
+        case COUNT:
+        case SUM:
+        case AVG:
+        case MIN:
+        case MAX:
+            return args[0].getVectorType(filter) != ValueVector.NONE;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Update the aggregate of the current group with the selected rows of the
+     * batch.
+     *
+     * @param session the session
+     * @param batch the batch
+     */
+    public void updateBatch(Session session, RowBatch batch) {
+        AggregateData data = (AggregateData) getGroupData(select.getGroupDataIfCurrent(false), false);
+        data.addVector(session.getDatabase(), getBatchArgument(session, batch), batch.getSelection(), 0,
+                batch.getSelectedCount());
+    }
+
+    /**
+     * Evaluate the argument of this aggregate for the selected rows of the
+     * batch.
+     *
+     * @param session the session
+     * @param batch the batch
+     * @return the values, or null for COUNT(*)
+     */
+    public ValueVector getBatchArgument(Session session, RowBatch batch) {
+        return aggregateType == AggregateType.COUNT_ALL ? null : args[0].getVector(session, batch);
+    }
+
+    /**
+     * Create the data for a partial result of this aggregate. Partial results
+     * may be computed concurrently, as they are not stored in the group data
+     * of the query.
+     *
+     * @return the partial result
+     */
+    public Object createPartialData() {
+        return createAggregateData();
+    }
+
+    /**
+     * Add the values of some rows of a batch to a partial result.
+     *
+     * @param database the database
+     * @param partial the partial result
+     * @param v the values, see {@link #getBatchArgument(Session, RowBatch)}
+     * @param selection the indexes of the rows
+     * @param start the index of the first row in the selection
+     * @param end the index after the last row in the selection
+     */
+    public static void updatePartial(Database database, Object partial, ValueVector v, int[] selection, int start,
+            int end) {
+        ((AggregateData) partial).addVector(database, v, selection, start, end);
+    }
+
+    /**
+     * Add a partial result to the aggregate of the current group.
+     *
+     * @param session the session
+     * @param partial the partial result
+     */
+    public void mergePartial(Session session, Object partial) {
+        AggregateData data = (AggregateData) getGroupData(select.getGroupDataIfCurrent(false), false);
+        data.merge(session.getDatabase(), (AggregateData) partial);
+    }
+
+    /**
+     * Check whether the data of this aggregate for a group can be written to
+     * a temporary result, and merged with the data of the same group that was
+     * computed separately.
+     *
+     * @return true if the partial state is supported
+     */
+    public boolean isPartialStateSupported() {
+        if (over != null) {
+            return false;
+        }
+        Object data = createAggregateData();
+        return data instanceof AggregateDataCount || data instanceof AggregateDataDefault;
+    }
+
+    /**
+     * Get the state of the data of a group as a value.
+     *
+     * @param partial the data of the group
+     * @return the state
+     * @see #isPartialStateSupported()
+     */
+    public static Value getPartialState(Object partial) {
+        return ((AggregateData) partial).getState();
+    }
+
+    /**
+     * Create the data of a group from its state.
+     *
+     * @param state the state, see {@link #getPartialState(Object)}
+     * @return the data of the group
+     */
+    public Object createPartialData(Value state) {
+        AggregateData data = (AggregateData) createAggregateData();
+        data.setState(state);
+        return data;
+    }
+
+    /**
+     * Add the partial result of a group to other data of the same group.
+     *
+     * @param database the database
+     * @param data the data to update
+     * @param partial the partial result
+     */
+    public static void mergePartialData(Database database, Object data, Object partial) {
+        ((AggregateData) data).merge(database, (AggregateData) partial);
+    }
+
     @Override
     protected void updateGroupAggregates(Session session, int stage) {
         super.updateGroupAggregates(session, stage);
@@ -7,6 +7,7 @@
 
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
+import org.h2.expression.ValueVector;
 import org.h2.message.DbException;
 import org.h2.value.Value;
 
@@ -81,6 +82,53 @@ static AggregateData create(AggregateType aggregateType, boolean distinct, int d
      */
     abstract void add(Database database, Value v);
 
+    /**
+     * Add the values of the selected rows of a batch to this aggregate. This
+     * is only supported for some aggregates, see
+     * {@link Aggregate#isBatchAggregate(org.h2.table.TableFilter)}.
+     *
+     * @param database the database
+     * @param v the values, or null for COUNT(*)
+     * @param selection the indexes of the selected rows
+     * @param start the index of the first selected row in the selection
+     * @param end the index after the last selected row in the selection
+     */
+    void addVector(Database database, ValueVector v, int[] selection, int start, int end) {
+        throw DbException.throwInternalError(getClass().getName());
+    }
+
+    /**
+     * Add the partial result of another aggregate of the same type. This is
+     * supported for COUNT, and for the aggregates of
+     * {@link AggregateDataDefault}.
+     *
+     * @param database the database
+     * @param other the partial result
+     */
+    void merge(Database database, AggregateData other) {
+        throw DbException.throwInternalError(getClass().getName());
+    }
+
+    /**
+     * Get the state of this aggregate as a value, so that it can be written
+     * to a temporary result. This is supported for the same aggregates as
+     * {@link #merge(Database, AggregateData)}.
+     *
+     * @return the state
+     */
+    Value getState() {
+        throw DbException.throwInternalError(getClass().getName());
+    }
+
+    /**
+     * Set the state of this aggregate.
+     *
+     * @param state the state, see {@link #getState()}
+     */
+    void setState(Value state) {
+        throw DbException.throwInternalError(getClass().getName());
+    }
+
     /**
      * Get the aggregate result.
      *
@@ -6,6 +6,7 @@
 package org.h2.expression.aggregate;
 
 import org.h2.engine.Database;
+import org.h2.expression.ValueVector;
 import org.h2.value.Value;
 import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
@@ -30,6 +31,36 @@ void add(Database database, Value v) {
         }
     }
 
+    @Override
+    void addVector(Database database, ValueVector v, int[] selection, int start, int end) {
+        if (all) {
+            count += end - start;
+            return;
+        }
+        long n = 0;
+        for (int j = start; j < end; j++) {
+            if (!v.isNull(selection[j])) {
+                n++;
+            }
+        }
+        count += n;
+    }
+
+    @Override
+    void merge(Database database, AggregateData other) {
+        count += ((AggregateDataCount) other).count;
+    }
+
+    @Override
+    Value getState() {
+        return ValueLong.get(count);
+    }
+
+    @Override
+    void setState(Value state) {
+        count = state.getLong();
+    }
+
     @Override
     Value getValue(Database database, int dataType) {
         return ValueLong.get(count).convertTo(dataType);
@@ -6,9 +6,11 @@
 package org.h2.expression.aggregate;
 
 import org.h2.engine.Database;
+import org.h2.expression.ValueVector;
 import org.h2.message.DbException;
 import org.h2.value.DataType;
 import org.h2.value.Value;
+import org.h2.value.ValueArray;
 import org.h2.value.ValueBoolean;
 import org.h2.value.ValueDouble;
 import org.h2.value.ValueLong;
@@ -120,6 +122,197 @@ void add(Database database, Value v) {
         }
     }
 
+    @Override
+    void addVector(Database database, ValueVector v, int[] selection, int start, int end) {
+        boolean isLong = v.getVectorType() == ValueVector.LONG;
+        switch (aggregateType) {
+        case SUM:
+        case AVG:
+            if (isLong) {
+                addLongs(v, selection, start, end);
+            } else {
+                addDoubles(v, selection, start, end);
+            }
+            break;
+        case MIN:
+        case MAX: {
+            boolean min = aggregateType == AggregateType.MIN;
+            int best = -1;
+            for (int j = start; j < end; j++) {
+                int i = selection[j];
+                if (v.isNull(i)) {
+                    continue;
+                }
+                count++;
+                if (best < 0) {
+                    best = i;
+                } else {
+                    int cmp = isLong ? Long.compare(v.getLong(i), v.getLong(best))
+                            : Double.compare(v.getDouble(i), v.getDouble(best));
+                    if (min ? cmp < 0 : cmp > 0) {
+                        best = i;
+                    }
+                }
+            }
+            if (best >= 0) {
+                addMinMax(database, isLong ? ValueLong.get(v.getLong(best)).convertTo(v.getValueType())
+                        : ValueDouble.get(v.getDouble(best)));
+            }
+            break;
+        }
+        default:
+            DbException.throwInternalError("type=" + aggregateType);
+        }
+    }
+
+    @Override
+    void merge(Database database, AggregateData other) {
+        AggregateDataDefault o = (AggregateDataDefault) other;
+        switch (aggregateType) {
+        case SUM:
+        case AVG:
+            if (o.value != null) {
+                count += o.count;
+                addSum(o.value);
+            }
+            break;
+        case MIN:
+        case MAX:
+            if (o.value != null) {
+                count += o.count;
+                addMinMax(database, o.value);
+            }
+            break;
+        case STDDEV_POP:
+        case STDDEV_SAMP:
+        case VAR_POP:
+        case VAR_SAMP:
+            if (o.count > 0) {
+                // combine the partial results, see Chan et al., "Updating
+                // Formulae and a Pairwise Algorithm for Computing Sample
+                // Variances"
+                long n = count + o.count;
+                double delta = o.mean - mean;
+                mean += delta * o.count / n;
+                m2 += o.m2 + delta * delta * count * o.count / n;
+                count = n;
+            }
+            break;
+        case EVERY:
+        case ANY:
+        case BIT_AND:
+        case BIT_OR:
+            if (o.value != null) {
+                add(database, o.value);
+            }
+            break;
+        default:
+            DbException.throwInternalError("type=" + aggregateType);
+        }
+    }
+
+    @Override
+    Value getState() {
+        return ValueArray.get(new Value[] { ValueLong.get(count), value == null ? ValueNull.INSTANCE : value,
+                ValueDouble.get(m2), ValueDouble.get(mean) });
+    }
+
+    @Override
+    void setState(Value state) {
+        Value[] list = ((ValueArray) state).getList();
+        count = list[0].getLong();
+        value = list[1] == ValueNull.INSTANCE ? null : list[1];
+        m2 = list[2].getDouble();
+        mean = list[3].getDouble();
+    }
+
+    private void addMinMax(Database database, Value x) {
+        if (value == null) {
+            value = x;
+        } else {
+            int cmp = database.compare(x, value);
+            if (aggregateType == AggregateType.MIN ? cmp < 0 : cmp > 0) {
+                value = x;
+            }
+        }
+    }
+
+    /**
+     * Add integer values. The values are summed up in a primitive long, which
+     * is added to the value when it would overflow, and at the end.
+     *
+     * @param v the values
+     * @param selection the selected rows
+     * @param start the index of the first selected row in the selection
+     * @param end the index after the last selected row in the selection
+     */
+    private void addLongs(ValueVector v, int[] selection, int start, int end) {
+        long sum = 0;
+        boolean any = false;
+        for (int j = start; j < end; j++) {
+            int i = selection[j];
+            if (v.isNull(i)) {
+                continue;
+            }
+            count++;
+            long x = v.getLong(i);
+            if (!any) {
+                sum = x;
+                any = true;
+            } else {
+                long r = sum + x;
+                if (((sum ^ r) & (x ^ r)) < 0) {
+                    addSum(ValueLong.get(sum));
+                    sum = x;
+                } else {
+                    sum = r;
+                }
+            }
+        }
+        if (any) {
+            addSum(ValueLong.get(sum));
+        }
+    }
+
+    /**
+     * Add double values. The values are added in the same order as one by one,
+     * so that the result is the same.
+     *
+     * @param v the values
+     * @param selection the selected rows
+     * @param start the index of the first selected row in the selection
+     * @param end the index after the last selected row in the selection
+     */
+    private void addDoubles(ValueVector v, int[] selection, int start, int end) {
+        boolean any = value != null;
+        double sum = any ? value.getDouble() : 0;
+        for (int j = start; j < end; j++) {
+            int i = selection[j];
+            if (v.isNull(i)) {
+                continue;
+            }
+            count++;
+            double x = v.getDouble(i);
+            if (!any) {
+                sum = x;
+                any = true;
+            } else {
+                sum += x;
+            }
+        }
+        if (any) {
+            value = ValueDouble.get(sum);
+        }
+    }
+
+    private void addSum(Value v) {
+        if (value == null) {
+            value = v.convertTo(aggregateType == AggregateType.AVG ? DataType.getAddProofType(dataType) : dataType);
+        } else {
+            value = value.add(v.convertTo(value.getValueType()));
+        }
+    }
+
     @Override
     Value getValue(Database database, int dataType) {
         Value v = null;
@@ -13,7 +13,9 @@
 import org.h2.expression.ExpressionColumn;
 import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.Parameter;
+import org.h2.expression.RowBatch;
 import org.h2.expression.ValueExpression;
+import org.h2.expression.ValueVector;
 import org.h2.expression.aggregate.Aggregate;
 import org.h2.expression.aggregate.AggregateType;
 import org.h2.index.IndexCondition;
@@ -386,6 +388,79 @@ static Value compare(Database database, Value l, Value r, int compareType) {
         return result;
     }
 
+    @Override
+    public boolean isBatchCondition(TableFilter filter) {
+        int l = left.getVectorType(filter);
+        if (l == ValueVector.NONE) {
+            return false;
+        }
+        switch (compareType) {
+        case IS_NULL:
+        case IS_NOT_NULL:
+            return true;
+        case EQUAL:
+        case NOT_EQUAL:
+        case BIGGER_EQUAL:
+        case BIGGER:
+        case SMALLER_EQUAL:
+        case SMALLER:
+            // integers are compared with DOUBLE values as DOUBLE
+            return right.getVectorType(filter) != ValueVector.NONE;
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    public void filterBatch(Session session, RowBatch batch) {
+        ValueVector l = left.getVector(session, batch);
+        int[] selection = batch.getSelection();
+        int count = batch.getSelectedCount(), n = 0;
+        if (right == null) {
+            boolean isNull = compareType == IS_NULL;
+            for (int j = 0; j < count; j++) {
+                int i = selection[j];
+                if (l.isNull(i) == isNull) {
+                    selection[n++] = i;
+                }
+            }
+        } else {
+            ValueVector r = right.getVector(session, batch);
+            boolean isLong = l.getVectorType() == ValueVector.LONG && r.getVectorType() == ValueVector.LONG;
+            for (int j = 0; j < count; j++) {
+                int i = selection[j];
+                if (l.isNull(i) || r.isNull(i)) {
+                    continue;
+                }
+                int cmp = isLong ? Long.compare(l.getLong(i), r.getLong(i))
+                        : Double.compare(l.getDouble(i), r.getDouble(i));
+                if (isTrue(cmp)) {
+                    selection[n++] = i;
+                }
+            }
+        }
+        batch.setSelectedCount(n);
+    }
+
+    private boolean isTrue(int cmp) {
+        switch (compareType) {
+        case EQUAL:
+            return cmp == 0;
+        case NOT_EQUAL:
+            return cmp != 0;
+        case BIGGER_EQUAL:
+            return cmp >= 0;
+        case BIGGER:
+            return cmp > 0;
+        case SMALLER_EQUAL:
+            return cmp <= 0;
+        case SMALLER:
+            return cmp < 0;
+        default:
+            throw DbException.throwInternalError("type=" + compareType);
+        }
+    }
+
     private int getReversedCompareType(int type) {
         switch (compareType) {
         case EQUAL:
@@ -8,6 +8,7 @@
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionVisitor;
+import org.h2.expression.RowBatch;
 import org.h2.expression.ValueExpression;
 import org.h2.message.DbException;
 import org.h2.table.ColumnResolver;
@@ -126,6 +127,56 @@ public Value getValue(Session session) {
         }
     }
 
+    @Override
+    public boolean isBatchCondition(TableFilter filter) {
+        return left.isBatchCondition(filter) && right.isBatchCondition(filter);
+    }
+
+    @Override
+    public void filterBatch(Session session, RowBatch batch) {
+        if (andOrType == AND) {
+            left.filterBatch(session, batch);
+            if (batch.getSelectedCount() > 0) {
+                right.filterBatch(session, batch);
+            }
+            return;
+        }
+        int count = batch.getSelectedCount();
+        int[] all = batch.allocateSelection();
+        System.arraycopy(batch.getSelection(), 0, all, 0, count);
+        left.filterBatch(session, batch);
+        int leftCount = batch.getSelectedCount();
+        int[] matched = batch.allocateSelection();
+        System.arraycopy(batch.getSelection(), 0, matched, 0, leftCount);
+        // the right condition is only evaluated for the other rows
+        int[] rest = batch.allocateSelection();
+        int restCount = 0;
+        for (int j = 0, k = 0; j < count; j++) {
+            int i = all[j];
+            if (k < leftCount && matched[k] == i) {
+                k++;
+            } else {
+                rest[restCount++] = i;
+            }
+        }
+        int rightCount = 0;
+        if (restCount > 0) {
+            batch.setSelection(rest, restCount);
+            right.filterBatch(session, batch);
+            rightCount = batch.getSelectedCount();
+        }
+        int[] selection = batch.getSelection();
+        int n = 0, a = 0, b = 0;
+        while (a < leftCount || b < rightCount) {
+            if (b == rightCount || a < leftCount && matched[a] < selection[b]) {
+                all[n++] = matched[a++];
+            } else {
+                all[n++] = selection[b++];
+            }
+        }
+        batch.setSelection(all, n);
+    }
+
     @Override
     public Expression optimize(Session session) {
         // NULL handling: see wikipedia,
@@ -272,7 +272,7 @@ protected final long getCostRangeIndex(int[] masks, long rowCount,
             if (foundCols != null)
             {
                 for (Column c : foundCols) {
-                    boolean found = false;
+                    boolean found = indexType.isIncludeColumn(c);
                     for (Column c2 : columns) {
                         if (c == c2) {
                             found = true;
@@ -300,7 +300,8 @@ protected final long getCostRangeIndex(int[] masks, long rowCount,
             // columns (the more columns we have in index - the higher cost).
             // This is faster because a smaller index will fit into fewer data
             // blocks.
-            rc = rowsCost + sortingCost + columns.length;
+            IndexColumn[] includeColumns = indexType.getIncludeColumns();
+            rc = rowsCost + sortingCost + columns.length + (includeColumns == null ? 0 : includeColumns.length);
         }
         return rc;
     }
@@ -405,6 +406,11 @@ public boolean isFirstColumn(Column column) {
         return column.equals(columns[0]);
     }
 
+    @Override
+    public boolean canSkipRows(Column column) {
+        return false;
+    }
+
     /**
      * Get the list of columns as a string.
      *
@@ -431,6 +437,14 @@ public String getCreateSQLForCopy(Table targetTable, String quotedName) {
             StringUtils.quoteStringSQL(buff, comment);
         }
         buff.append('(').append(getColumnListSQL(true)).append(')');
+        String include = indexType.getIncludeSQL(true);
+        if (include != null) {
+            buff.append(' ').append(include);
+        }
+        String using = indexType.getUsingSQL();
+        if (using != null) {
+            buff.append(' ').append(using);
+        }
         return buff.toString();
     }
 
@@ -1,130 +1,132 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
 package org.h2.index;
 
-import javafx.util.Pair;
-
-import java.util.ArrayList;
-import java.util.Iterator;
-
-public class ExtensibleHashBucket<K, V> {
-
-    //private K key;
-    private static int MAX_SIZE = 10;
-    private int size;
-    private int prefix; // amount of bits, starting from the left, to read
-    //private E[] values;
-    //private Pair<K, V>[] values;
-    private ArrayList<Pair<K,V>> values;
-
-    @SuppressWarnings("unchecked")
-    public ExtensibleHashBucket(int prefix) {
-        this.size = 0;
-        this.prefix = prefix;
-        this.values =  new ArrayList<>();
-
-        //this.key = key;
-    }
-
-    public int getSize() {
-        return this.size;
-    }
-
-    public void setSize(int size) {
-        this.size = size;
-    }
-
-    public boolean isFull() {
-        return this.size == MAX_SIZE;
-    }
-
-//    public boolean isSameKey(K key) {
-//        //might need a better equality check
-//        return this.key.equals(key);
-//    }
-
-    public void incrementPrefix() {
-        this.prefix++;
+/**
+ * A bucket of an extensible hash map. A bucket holds a bounded number of
+ * entries in parallel arrays. Entries that don't fit because they all have
+ * the same hash code (for example duplicate keys) are kept in a chain of
+ * overflow buckets.
+ */
+final class ExtensibleHashBucket {
+
+    /**
+     * The maximum number of entries in a bucket.
+     */
+    static final int SIZE = 32;
+
+    /**
+     * The local depth: the number of low hash bits all entries have in
+     * common.
+     */
+    int depth;
+
+    /**
+     * The number of entries in this bucket (not including overflow buckets).
+     */
+    int size;
+
+    /**
+     * The keys.
+     */
+    final Object[] keys = new Object[SIZE];
+
+    /**
+     * The hash codes of the keys.
+     */
+    final int[] hashes = new int[SIZE];
+
+    /**
+     * The values.
+     */
+    final long[] values = new long[SIZE];
+
+    /**
+     * The next overflow bucket, or null.
+     */
+    ExtensibleHashBucket overflow;
+
+    ExtensibleHashBucket(int depth) {
+        this.depth = depth;
     }
 
-    public int getPrefix() {
-        return this.prefix;
+    /**
+     * Check whether this bucket is full.
+     *
+     * @return true if no entry can be added
+     */
+    boolean isFull() {
+        return size == SIZE;
     }
 
-    public void setPrefix(int prefix) {
-        this.prefix = prefix;
+    /**
+     * Add an entry. The bucket must not be full.
+     *
+     * @param key the key
+     * @param hash the hash code
+     * @param value the value
+     */
+    void add(Object key, int hash, long value) {
+        keys[size] = key;
+        hashes[size] = hash;
+        values[size] = value;
+        size++;
     }
 
-    public boolean addValue(Pair value) {
-        if(this.isFull()) {
-            System.out.println("full");
-            return false; // failed to add
+    /**
+     * Add an entry to this bucket, or to an overflow bucket if this bucket
+     * is full.
+     *
+     * @param key the key
+     * @param hash the hash code
+     * @param value the value
+     */
+    void addWithOverflow(Object key, int hash, long value) {
+        if (!isFull()) {
+            add(key, hash, value);
+            return;
         }
-        //this.values.get(this.size) = value;
-        this.values.add(value);
-        this.size++;
-        return true; //added successfully
-    }
-
-    public V getValue(K key) {
-        for(int i = 0; i < this.size; i++) {
-            if(this.values.get(i).getKey().equals(key)) {
-                return this.values.get(i).getValue();
-            }
-        }
-        return null;
-    }
-
-    public Pair<K, V> removeValue(K key) {
-        int index = -1;
-        Pair<K, V> ret_pair = null;
-        for(int i = 0; i < this.size; i++) {
-            if(this.values.get(i).getKey().equals(key)) {
-                //return this.values[i].getValue();
-                index = i;
-                ret_pair = this.values.get(index);
-                this.values.remove(index);
-            }
+        // the most recently added overflow bucket is the first in the chain
+        ExtensibleHashBucket o = overflow;
+        if (o == null || o.isFull()) {
+            o = new ExtensibleHashBucket(depth);
+            o.overflow = overflow;
+            overflow = o;
         }
-        this.size--;
-        return ret_pair;
+        o.add(key, hash, value);
     }
 
-    public ArrayList<Pair<K,V>> splitBucket(boolean isZero) { // nth significant bit
-        //use to return list of pairs that no longer belong to the bucket
-        int n = this.prefix + 1;
-        ArrayList<Pair<K,V>> new_list = new ArrayList<>();
-
-        int zero_one = isZero ? 0 : 1;
-
-        Iterator<Pair<K,V>> iter = this.values.iterator();
-        while(iter.hasNext()) {
-            Pair<K,V> value = iter.next();
-            if(getNthBit(n, value.getKey().hashCode()) == zero_one) {
-                new_list.add(value);
-                iter.remove();
+    /**
+     * Check whether all entries of this bucket (not including overflow
+     * buckets) have the given hash code, so that splitting would not help.
+     *
+     * @param hash the hash code
+     * @return true if all entries have this hash code
+     */
+    boolean hasOnlyHash(int hash) {
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] != hash) {
+                return false;
             }
         }
-
-        //this.incrementPrefix();
-        return new_list;
-    }
-
-    public static int getFrontBits(int n, int number) {
-        return (number >>> (32 - n));
-    }
-
-    public static int getNthBit(int n, int number) {
-        return (number >>> (32 - n)) & 1;
-    }
-
-    public void printAll() {
-        for(Pair<K,V> pair : this.values) {
-            System.out.println("key: " + pair.getKey() + "value: " + pair.getValue());
-        }
+        return true;
     }
 
-    public static void main(String[] args) {
-        System.out.println(ExtensibleHashBucket.getFrontBits(3, 2147483647));
-        //this.getFrontBits(2, 4);
+    /**
+     * Remove the entry at the given position, by moving the last entry of
+     * this bucket to its place.
+     *
+     * @param i the position
+     */
+    void removeAt(int i) {
+        int last = --size;
+        keys[i] = keys[last];
+        hashes[i] = hashes[last];
+        values[i] = values[last];
+        keys[last] = null;
     }
 
 }
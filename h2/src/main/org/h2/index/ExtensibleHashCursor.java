@@ -0,0 +1,55 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import org.h2.engine.Session;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.PageStoreTable;
+
+/**
+ * Cursor implementation for a non-unique hash index that is based on an
+ * extensible hash map.
+ */
+public class ExtensibleHashCursor implements Cursor {
+
+    private final Session session;
+    private final long[] positions;
+    private final PageStoreTable tableData;
+
+    private int index = -1;
+
+    public ExtensibleHashCursor(Session session, PageStoreTable tableData,
+            long[] positions) {
+        this.session = session;
+        this.tableData = tableData;
+        this.positions = positions;
+    }
+
+    @Override
+    public Row get() {
+        if (index < 0 || index >= positions.length) {
+            return null;
+        }
+        return tableData.getRow(session, positions[index]);
+    }
+
+    @Override
+    public SearchRow getSearchRow() {
+        return get();
+    }
+
+    @Override
+    public boolean next() {
+        return ++index < positions.length;
+    }
+
+    @Override
+    public boolean previous() {
+        return --index >= 0;
+    }
+
+}
@@ -1,185 +1,245 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
 package org.h2.index;
 
-import javafx.util.Pair;
+import java.util.Arrays;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
+/**
+ * A multi-map with object keys and primitive long values, based on
+ * extensible hashing. The directory has 2 ^ globalDepth slots, each pointing
+ * to a bucket with a bounded number of entries. The entries of a bucket
+ * have the lowest (local depth) bits of the hash code in common, so that
+ * many slots may point to the same bucket. When a bucket is full, only this
+ * bucket is split; the directory is doubled (which only copies references)
+ * if the local depth of the bucket is equal to the global depth. There is
+ * never a full rehash of all entries.
+ * <p>
+ * The same key may be stored multiple times, with different values. Entries
+ * with the same hash code that don't fit in a bucket are kept in overflow
+ * buckets.
+ *
+ * @param <K> the key type
+ */
+public class ExtensibleHashMap<K> {
 
-public class ExtensibleHashMap<K, V> implements Map<K, V> {
-    //private K key;
-    //private V value;
-    // need prefix i .... 1->n reads left to right
-    private int prefix;
-    private ExtensibleHashBucket<K,V>[] table;
-    private int size; // total elems
+    /**
+     * The maximum global depth.
+     */
+    private static final int MAX_DEPTH = 24;
 
-    @SuppressWarnings("unchecked")
-    public ExtensibleHashMap() {
-        //System.out.println("ExtensibleHashMap Default");
-        //System.exit(1);
-        this.prefix = 1;
-        this.table = (ExtensibleHashBucket<K,V>[])(new Object[(int) Math.pow(2, prefix)]);
-        this.size = 0;
-    }
+    private static final long[] EMPTY = {};
 
-//    public ExtensibleHashMap(K key, V value) {
-//        System.out.println("ExtensibleHashMap K-V");
-//        System.exit(1);
-//        this.key = key;
-//        this.value = value;
-//    }
+    private ExtensibleHashBucket[] directory;
 
-    @Override
-    public int size() {
-        return this.size;
-    }
+    private int globalDepth;
 
-    @Override
-    public boolean isEmpty() {
-        return this.size == 0;
-    }
+    private int bucketCount;
 
-    @Override
-    public boolean containsKey(Object key) {
-        return false;
-    } // need to implement buckets first
+    private long size;
 
-    @Override
-    public boolean containsValue(Object value) {
-        return false;
+    public ExtensibleHashMap() {
+        reset();
     }
 
-    @Override
-    public V get(Object key) {
-        return null;
+    private void reset() {
+        directory = new ExtensibleHashBucket[] { new ExtensibleHashBucket(0) };
+        globalDepth = 0;
+        bucketCount = 1;
+        size = 0;
     }
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public V put(K key, V value) {
-        /*
-        hash key
-        check spot... if full -> need to increment i
-        if space in bucket... add to bucket
-        */
-        //ExtensibleHashBucket<K, V> new_bucket = new ExtensibleHashBucket<K,V>(1);
-        Pair<K,V> new_pair = new Pair<>(key, value);
-        int front_bits_index = ExtensibleHashBucket.getFrontBits(this.prefix, key.hashCode());
-
-        if(this.table[front_bits_index] == null) {
-            ExtensibleHashBucket<K, V> new_bucket = new ExtensibleHashBucket<>(this.prefix);
-            this.table[front_bits_index] = new_bucket;
-        }
-
-        ExtensibleHashBucket<K,V> curr_bucket = this.table[front_bits_index];
-
-        if(!curr_bucket.isFull()) {
-            curr_bucket.addValue(new_pair);
-            this.size++;
-        }
-        else { // was full ... double or split
-            if(this.prefix == curr_bucket.getPrefix()) {
-                doubleTable();
-            }
-            else if(this.prefix > curr_bucket.getPrefix()) {
-                //split table
-                ArrayList<Pair<K,V>> new_list_zeros = curr_bucket.splitBucket(true);
-                ArrayList<Pair<K,V>> new_list_ones = curr_bucket.splitBucket(false);
-                curr_bucket.incrementPrefix();
-
-                int new_front_bits = ExtensibleHashBucket.getFrontBits(curr_bucket.getPrefix(), key.hashCode());
-                this.table[new_front_bits] = new ExtensibleHashBucket<>(curr_bucket.getPrefix());
-
-                //doing both because cant tell which one will be overloaded
-                //could do it so that its always the 0 staying put and 1 being put in new bucket..
-                //worried that it might split from 001 to 000
-                for(Pair<K,V> pair : new_list_zeros) {
-                    put(pair.getKey(), pair.getValue());
-                }
-                for(Pair<K,V> pair : new_list_ones) {
-                    put(pair.getKey(), pair.getValue());
-                }
-            }
-            else {
-                System.out.println("ERROR");
-            }
-            put(key, value);
-        }
-
-        return null; //doc says return previous key associate with value or null if that didnt exist
+    /**
+     * Get the number of entries.
+     *
+     * @return the number of entries
+     */
+    public long size() {
+        return size;
     }
 
-    @Override
-    public V remove(Object key) {
-        return null;
+    /**
+     * Check whether the map is empty.
+     *
+     * @return true if there are no entries
+     */
+    public boolean isEmpty() {
+        return size == 0;
     }
 
-    @Override
-    public void putAll(Map m) { //re mapping after full?
-
+    /**
+     * Remove all entries.
+     */
+    public void clear() {
+        reset();
     }
 
-    @Override
-    public void clear() { //empty?
+    /**
+     * Get the global depth. The directory has 2 ^ globalDepth slots.
+     *
+     * @return the global depth
+     */
+    public int getGlobalDepth() {
+        return globalDepth;
+    }
 
+    /**
+     * Get the number of (primary) buckets.
+     *
+     * @return the number of buckets
+     */
+    public int getBucketCount() {
+        return bucketCount;
     }
 
-    @Override
-    public Set keySet() {
-        return null;
+    /**
+     * Add an entry. Existing entries with the same key are kept.
+     *
+     * @param key the key
+     * @param value the value
+     */
+    public void add(K key, long value) {
+        int hash = hash(key);
+        while (true) {
+            ExtensibleHashBucket b = directory[hash & (directory.length - 1)];
+            if (!b.isFull()) {
+                b.add(key, hash, value);
+                break;
+            }
+            if (b.hasOnlyHash(hash) || b.depth == MAX_DEPTH) {
+                // splitting would not help
+                b.addWithOverflow(key, hash, value);
+                break;
+            }
+            if (b.depth == globalDepth) {
+                doubleDirectory();
+            }
+            split(b);
+        }
+        size++;
     }
 
-    @Override
-    public Collection values() {
-        return null;
+    /**
+     * Remove one entry with the given key and value.
+     *
+     * @param key the key
+     * @param value the value
+     * @return true if an entry was removed
+     */
+    public boolean remove(Object key, long value) {
+        int hash = hash(key);
+        ExtensibleHashBucket first = directory[hash & (directory.length - 1)];
+        for (ExtensibleHashBucket b = first, prev = null; b != null; prev = b, b = b.overflow) {
+            for (int i = 0; i < b.size; i++) {
+                if (b.values[i] == value && b.hashes[i] == hash && key.equals(b.keys[i])) {
+                    b.removeAt(i);
+                    if (b.size == 0 && prev != null) {
+                        // unlink the empty overflow bucket
+                        prev.overflow = b.overflow;
+                    }
+                    size--;
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
-    @Override
-    public Set<Map.Entry<K,V>> entrySet() {
-        return null;
+    /**
+     * Get all values for the given key.
+     *
+     * @param key the key
+     * @return the values (an empty array if the key was not found)
+     */
+    public long[] get(Object key) {
+        int hash = hash(key);
+        long[] result = EMPTY;
+        int count = 0;
+        for (ExtensibleHashBucket b = directory[hash & (directory.length - 1)]; b != null; b = b.overflow) {
+            for (int i = 0; i < b.size; i++) {
+                if (b.hashes[i] == hash && key.equals(b.keys[i])) {
+                    if (count == result.length) {
+                        result = Arrays.copyOf(result, Math.max(4, count * 2));
+                    }
+                    result[count++] = b.values[i];
+                }
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
     }
 
-//    public K getKey() {
-//        return key;
-//    }
-//
-//    public V getValue() {
-//        return value;
-//    }
-    @SuppressWarnings("unchecked")
-    private void doubleTable() {
-        //double table
-        int new_prefix = this.prefix + 1;
-        ExtensibleHashBucket<K,V>[] new_table = (ExtensibleHashBucket<K,V>[])(new Object[(int) Math.pow(2, new_prefix)]);
-
-        //point to old values
-        for(int i = 0; i < this.table.length; i++) {
-            int half_index = i / 2;
-            new_table[i] = this.table[half_index];
+    /**
+     * Check whether the map contains the given key.
+     *
+     * @param key the key
+     * @return true if at least one entry with this key exists
+     */
+    public boolean containsKey(Object key) {
+        int hash = hash(key);
+        for (ExtensibleHashBucket b = directory[hash & (directory.length - 1)]; b != null; b = b.overflow) {
+            for (int i = 0; i < b.size; i++) {
+                if (b.hashes[i] == hash && key.equals(b.keys[i])) {
+                    return true;
+                }
+            }
         }
+        return false;
+    }
 
-        this.table = new_table;
-        this.prefix = new_prefix;
+    private void doubleDirectory() {
+        int len = directory.length;
+        ExtensibleHashBucket[] d = Arrays.copyOf(directory, len * 2);
+        System.arraycopy(directory, 0, d, len, len);
+        directory = d;
+        globalDepth++;
     }
 
-    private void printTable() {
-        for(int i = 0; i < this.table.length; i++) {
-            System.out.println("Bucket " + i + ": ");
-            if(this.table[i] == null) {
-                System.out.println("nothing");
+    /**
+     * Split the bucket (including its overflow buckets) into two buckets,
+     * using the next bit of the hash code.
+     *
+     * @param old the bucket to split
+     */
+    private void split(ExtensibleHashBucket old) {
+        int depth = old.depth;
+        int bit = 1 << depth;
+        ExtensibleHashBucket zero = new ExtensibleHashBucket(depth + 1);
+        ExtensibleHashBucket one = new ExtensibleHashBucket(depth + 1);
+        for (ExtensibleHashBucket b = old, next; b != null; b = next) {
+            next = b.overflow;
+            if (b != old && b.size > 0 && b.hasOnlyHash(b.hashes[0])) {
+                // an overflow bucket with duplicates is moved as a whole
+                ExtensibleHashBucket target = (b.hashes[0] & bit) == 0 ? zero : one;
+                b.overflow = target.overflow;
+                target.overflow = b;
+                continue;
             }
-            else {
-                this.table[i].printAll();
+            for (int i = 0; i < b.size; i++) {
+                int h = b.hashes[i];
+                ((h & bit) == 0 ? zero : one).addWithOverflow(b.keys[i], h, b.values[i]);
             }
         }
+        // all slots pointing to the old bucket share the lowest depth bits
+        int start = old.hashes[0] & (bit - 1);
+        for (int i = start; i < directory.length; i += bit) {
+            directory[i] = (i & bit) == 0 ? zero : one;
+        }
+        bucketCount++;
     }
 
-
-
-    public static void main(String[] args) {
-        ExtensibleHashMap<Integer, Integer> map = new ExtensibleHashMap<>();
-        map.printTable();
+    /**
+     * Get the hash code of the key, with the bits spread out, as the slot
+     * is selected using the lowest bits only.
+     *
+     * @param key the key
+     * @return the hash code
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        h = (h ^ (h >>> 16)) * 0x45d9f3b;
+        return h ^ (h >>> 16);
     }
+
 }
@@ -6,7 +6,6 @@
 package org.h2.index;
 
 import java.util.ArrayList;
-import java.util.Map;
 import java.util.TreeMap;
 import org.h2.command.dml.AllColumnsForPlan;
 import org.h2.engine.Mode.UniqueIndexNullsHandling;
@@ -34,7 +33,8 @@ public class HashIndex extends BaseIndex {
     private final int indexColumn;
     private final boolean totalOrdering;
     private final PageStoreTable tableData;
-    private Map<Value, Long> rows;
+    private LinearHashMap<Value> rows;
+    private TreeMap<Value, Long> sortedRows;
     private final ArrayList<Long> nullRows = new ArrayList<>();
 
     public HashIndex(PageStoreTable table, int id, String indexName, IndexColumn[] columns, IndexType indexType) {
@@ -47,9 +47,17 @@ public HashIndex(PageStoreTable table, int id, String indexName, IndexColumn[] c
     }
 
     private void reset() {
-//        rows = totalOrdering ? new HashMap<Value, Long>() : new TreeMap<Value, Long>(database.getCompareMode());
-//        rows = totalOrdering ? new LinearHashMap<Value, Long>() : new TreeMap<Value, Long>(database.getCompareMode());
-        rows = new LinearHashMap<>();
+        if (totalOrdering) {
+            rows = new LinearHashMap<>();
+        } else {
+            /*
+             * Values that are equal according to the compare mode may have
+             * different hash codes, such values need to be kept in a sorted
+             * map.
+             */
+            sortedRows = new TreeMap<>(database.getCompareMode());
+        }
+        nullRows.clear();
     }
 
     @Override
@@ -62,12 +70,19 @@ public void add(Session session, Row row) {
         Value key = row.getValue(indexColumn);
         if (key != ValueNull.INSTANCE
                 || database.getMode().uniqueIndexNullsHandling == UniqueIndexNullsHandling.FORBID_ANY_DUPLICATES) {
-            Object old = rows.get(key);
-            if (old != null) {
+            boolean added;
+            if (rows != null) {
+                added = rows.putIfAbsent(key, row.getKey()) == LinearHashMap.NOT_FOUND;
+            } else {
+                added = !sortedRows.containsKey(key);
+                if (added) {
+                    sortedRows.put(key, row.getKey());
+                }
+            }
+            if (!added) {
                 // TODO index duplicate key for hash indexes: is this allowed?
                 throw getDuplicateKeyException(key.toString());
             }
-            rows.put(key, row.getKey());
         } else {
             nullRows.add(row.getKey());
         }
@@ -78,7 +93,11 @@ public void remove(Session session, Row row) {
         Value key = row.getValue(indexColumn);
         if (key != ValueNull.INSTANCE
                 || database.getMode().uniqueIndexNullsHandling == UniqueIndexNullsHandling.FORBID_ANY_DUPLICATES) {
-            rows.remove(key);
+            if (rows != null) {
+                rows.remove(key);
+            } else {
+                sortedRows.remove(key);
+            }
         } else {
             nullRows.remove(row.getKey());
         }
@@ -102,12 +121,17 @@ public Cursor find(Session session, SearchRow first, SearchRow last) {
          * result.
          */
         v = v.convertTo(tableData.getColumn(indexColumn).getType(), database.getMode(), null);
-        Row result;
-        Long pos = rows.get(v);
-        if (pos == null) {
-            result = null;
+        Row result = null;
+        if (rows != null) {
+            long pos = rows.get(v);
+            if (pos != LinearHashMap.NOT_FOUND) {
+                result = tableData.getRow(session, pos);
+            }
         } else {
-            result = tableData.getRow(session, pos.intValue());
+            Long pos = sortedRows.get(v);
+            if (pos != null) {
+                result = tableData.getRow(session, pos);
+            }
         }
         return new SingleRowCursor(result);
     }
@@ -119,7 +143,7 @@ public long getRowCount(Session session) {
 
     @Override
     public long getRowCountApproximation() {
-        return rows.size() + nullRows.size();
+        return (rows != null ? rows.size() : sortedRows.size()) + nullRows.size();
     }
 
     @Override
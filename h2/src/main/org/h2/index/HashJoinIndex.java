@@ -0,0 +1,374 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.engine.Session;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.util.Utils;
+import org.h2.value.CompareMode;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueRow;
+
+/**
+ * A temporary hash index that is used for the inner table of a join if there
+ * is no usable index on the join columns. The index is built when the first
+ * lookup is made within a statement, by reading all rows of the table once.
+ * Afterwards, each lookup only reads the matching rows, instead of scanning
+ * the table again for each row of the outer table.
+ * <p>
+ * If the table has more rows than fit in memory (see MAX_MEMORY_ROWS), only
+ * the keys of the rows are kept in the hash table, and the rows are read from
+ * the table on each lookup. If the table does not support this either, each
+ * lookup scans the table, as without this index.
+ * <p>
+ * The hash table is released at the end of the statement.
+ */
+public class HashJoinIndex extends BaseIndex {
+
+    /**
+     * The rows are kept in memory.
+     */
+    private static final int ROWS = 0;
+
+    /**
+     * The keys of the rows are kept in memory.
+     */
+    private static final int KEYS = 1;
+
+    /**
+     * Each lookup scans the table.
+     */
+    private static final int SCAN = 2;
+
+    /**
+     * The number of rows a nested loop join would read, below which a hash
+     * join is not used, because building the hash table is not worth it.
+     */
+    private static final double MIN_NESTED_LOOP_ROWS = 1_000_000;
+
+    private final int[] columnIds;
+
+    private HashMap<Value, ArrayList<Row>> rows;
+
+    private ExtensibleHashMap<Value> rowKeys;
+
+    private int mode;
+
+    private Session builtSession;
+
+    private long builtStatementId;
+
+    private long builtModificationId;
+
+    private HashJoinIndex(Table table, IndexColumn[] columns) {
+        super(table, 0, null, columns, IndexType.createNonUnique(false, true, false));
+        columnIds = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnIds[i] = columns[i].column.getColumnId();
+        }
+    }
+
+    /**
+     * Create a hash join index for the columns with equality conditions, if
+     * possible.
+     *
+     * @param table the table
+     * @param masks the condition masks of the columns
+     * @return the index, or null if no column can be used
+     */
+    public static HashJoinIndex create(Table table, int[] masks) {
+        if (!table.isDeterministic()) {
+            return null;
+        }
+        ArrayList<IndexColumn> list = Utils.newSmallArrayList();
+        Column[] tableColumns = table.getColumns();
+        for (int i = 0; i < masks.length; i++) {
+            if ((masks[i] & IndexCondition.EQUALITY) == IndexCondition.EQUALITY
+                    && isSupported(table, tableColumns[i])) {
+                IndexColumn c = new IndexColumn();
+                c.column = tableColumns[i];
+                c.columnName = c.column.getName();
+                list.add(c);
+            }
+        }
+        if (list.isEmpty()) {
+            return null;
+        }
+        return new HashJoinIndex(table, list.toArray(new IndexColumn[0]));
+    }
+
+    /**
+     * Check whether values of the column that compare equal also have the
+     * same hash code.
+     *
+     * @param table the table
+     * @param column the column
+     * @return true if the column can be used
+     */
+    private static boolean isSupported(Table table, Column column) {
+        int type = column.getType().getValueType();
+        return DataType.hasTotalOrdering(type) || type == Value.STRING
+                && CompareMode.OFF.equals(table.getDatabase().getCompareMode().getName());
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            // not an equality lookup
+            return scan(session);
+        }
+        for (int i = 0; i < columnIds.length; i++) {
+            Value v1 = first.getValue(columnIds[i]);
+            Value v2 = last.getValue(columnIds[i]);
+            if (v1 == null || v2 == null) {
+                // not an equality lookup
+                return scan(session);
+            }
+            if (first != last && v1 != v2) {
+                // the range conditions of a column are combined with its
+                // equality condition, so the range is either the value
+                // itself, or empty
+                int comp;
+                if (v1 == ValueNull.INSTANCE || v2 == ValueNull.INSTANCE) {
+                    // IS NULL and a condition with a value
+                    comp = 1;
+                } else {
+                    comp = table.compareValues(v1, v2);
+                }
+                if (comp > 0) {
+                    return new MetaCursor(new ArrayList<Row>(0));
+                } else if (comp < 0) {
+                    // not an equality lookup
+                    return scan(session);
+                }
+            }
+        }
+        build(session);
+        if (mode == SCAN) {
+            return scan(session);
+        }
+        Value key = getKey(first, true);
+        if (mode == ROWS) {
+            ArrayList<Row> list = rows.get(key);
+            return new MetaCursor(list == null ? new ArrayList<Row>(0) : list);
+        }
+        long[] keys = rowKeys.get(key);
+        ArrayList<Row> list = new ArrayList<>(keys.length);
+        for (long k : keys) {
+            list.add(table.getRow(session, k));
+        }
+        return new MetaCursor(list);
+    }
+
+    private Cursor scan(Session session) {
+        return table.getScanIndex(session).find(session, null, null);
+    }
+
+    /**
+     * Build the hash table, unless it was already built in the same
+     * statement, and the table was not changed since.
+     *
+     * @param session the session
+     */
+    private void build(Session session) {
+        long statementId = session.getStatementId();
+        long modificationId = table.getMaxDataModificationId();
+        if (builtSession == session && builtStatementId == statementId
+                && builtModificationId == modificationId) {
+            return;
+        }
+        if (builtSession != session) {
+            session.addHashJoinIndex(this);
+        }
+        builtSession = session;
+        builtStatementId = statementId;
+        builtModificationId = modificationId;
+        rows = null;
+        rowKeys = null;
+        Index scanIndex = table.getScanIndex(session);
+        int maxMemoryRows = database.getMaxMemoryRows();
+        mode = ROWS;
+        rows = new HashMap<>();
+        long count = 0;
+        Cursor cursor = scanIndex.find(session, null, null);
+        while (cursor.next()) {
+            Row row = cursor.get();
+            Value key = getKey(row, false);
+            if (mode == ROWS) {
+                if (++count > maxMemoryRows) {
+                    if (!scanIndex.isRowIdIndex()) {
+                        rows = null;
+                        mode = SCAN;
+                        return;
+                    }
+                    // keep only the row keys, and read the rows again
+                    rows = null;
+                    rowKeys = new ExtensibleHashMap<>();
+                    mode = KEYS;
+                    cursor = scanIndex.find(session, null, null);
+                    continue;
+                }
+                ArrayList<Row> list = rows.get(key);
+                if (list == null) {
+                    list = Utils.newSmallArrayList();
+                    rows.put(key, list);
+                }
+                list.add(row);
+            } else {
+                rowKeys.add(key, row.getKey());
+            }
+        }
+    }
+
+    /**
+     * Release the hash table. This method is called at the end of the
+     * statement that built it.
+     */
+    public void release() {
+        builtSession = null;
+        rows = null;
+        rowKeys = null;
+    }
+
+    /**
+     * Get the hash key of the indexed columns of a row.
+     *
+     * @param row the row
+     * @param convert whether the values need to be converted to the column
+     *            types
+     * @return the key
+     */
+    private Value getKey(SearchRow row, boolean convert) {
+        if (columnIds.length == 1) {
+            return getValue(row, 0, convert);
+        }
+        Value[] values = new Value[columnIds.length];
+        for (int i = 0; i < columnIds.length; i++) {
+            values[i] = getValue(row, i, convert);
+        }
+        return ValueRow.get(values);
+    }
+
+    private Value getValue(SearchRow row, int i, boolean convert) {
+        Value v = row.getValue(columnIds[i]);
+        if (convert) {
+            v = v.convertTo(columns[i].getType(), database.getMode(), null);
+        }
+        return v;
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            AllColumnsForPlan allColumnsSet) {
+        for (Column column : columns) {
+            if ((masks[column.getColumnId()] & IndexCondition.EQUALITY) != IndexCondition.EQUALITY) {
+                return Long.MAX_VALUE;
+            }
+        }
+        long rowCount = table.getRowCountApproximation();
+        double outerRows = 1;
+        for (int i = 0; i < filter; i++) {
+            outerRows *= Math.max(1, filters[i].getTable().getRowCountApproximation());
+        }
+        if (outerRows * rowCount < MIN_NESTED_LOOP_ROWS) {
+            return Long.MAX_VALUE;
+        }
+        // the cost of a lookup, as for a regular non-unique index that
+        // contains all columns
+        double cost = 10 * getCostRangeIndex(masks, rowCount, filters, filter, sortOrder, true, allColumnsSet);
+        // the table is read once per statement, for all rows of the outer
+        // tables
+        double scanCost = table.getScanIndex(session).getCost(session, null, filters, filter, null,
+                allColumnsSet);
+        // a bit more expensive than a regular index with the same lookup cost
+        return cost + 10 + scanCost / outerRows;
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return table.getSQL(false) + ".hashJoin";
+    }
+
+    @Override
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public void remove(Session session) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public void truncate(Session session) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public void checkRename() {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public boolean canScan() {
+        return false;
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return table.getRowCount(session);
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return table.getRowCountApproximation();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+}
@@ -216,6 +216,16 @@ public interface Index extends SchemaObject {
      */
     boolean isFirstColumn(Column column);
 
+    /**
+     * Check if conditions on the given column can be used to skip rows when
+     * searching, even if the index is not sorted by this column. Such
+     * conditions are available using TableFilter.getSkipConditions.
+     *
+     * @param column the column
+     * @return true if rows can be skipped
+     */
+    boolean canSkipRows(Column column);
+
     /**
      * Get the indexed columns as index columns (with ordering information).
      *
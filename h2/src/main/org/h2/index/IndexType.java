@@ -5,6 +5,9 @@
  */
 package org.h2.index;
 
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+
 /**
  * Represents information about the properties of an index
  */
@@ -12,6 +15,8 @@ public class IndexType {
 
     private boolean primaryKey, persistent, unique, hash, scan, spatial, affinity;
     private boolean belongsToConstraint;
+    private boolean extensibleHash;
+    private IndexColumn[] includeColumns;
 
     /**
      * Create a primary key index.
@@ -123,6 +128,67 @@ public boolean isHash() {
         return hash;
     }
 
+    /**
+     * Sets if an extensible hash map should be used for this (non-unique)
+     * hash index.
+     *
+     * @param extensibleHash if an extensible hash map should be used
+     */
+    public void setExtensibleHash(boolean extensibleHash) {
+        this.extensibleHash = extensibleHash;
+        if (extensibleHash) {
+            hash = true;
+        }
+    }
+
+    /**
+     * Is this a hash index based on an extensible hash map?
+     *
+     * @return true if it is
+     */
+    public boolean isExtensibleHash() {
+        return extensibleHash;
+    }
+
+    /**
+     * Sets the columns that are stored in the index in addition to the indexed
+     * columns (INCLUDE), so that queries that only read these columns do not
+     * need to read the row.
+     *
+     * @param includeColumns the columns, or null
+     */
+    public void setIncludeColumns(IndexColumn[] includeColumns) {
+        this.includeColumns = includeColumns;
+    }
+
+    /**
+     * Get the columns that are stored in the index in addition to the indexed
+     * columns.
+     *
+     * @return the columns, or null if there are none
+     */
+    public IndexColumn[] getIncludeColumns() {
+        return includeColumns;
+    }
+
+    /**
+     * Check whether the given column is stored in the index in addition to
+     * the indexed columns.
+     *
+     * @param column the column
+     * @return true if it is
+     */
+    public boolean isIncludeColumn(Column column) {
+        if (includeColumns != null) {
+            for (IndexColumn c : includeColumns) {
+                if (c.column == column) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Is this a spatial index?
      *
@@ -184,7 +250,7 @@ public String getSQL() {
             if (unique) {
                 buff.append("UNIQUE ");
             }
-            if (hash) {
+            if (hash && !extensibleHash) {
                 buff.append("HASH ");
             }
             if (spatial) {
@@ -195,6 +261,35 @@ public String getSQL() {
         return buff.toString();
     }
 
+    /**
+     * Get the SQL snippet with the included columns, if any.
+     *
+     * @param alwaysQuote quote all identifiers
+     * @return the SQL snippet, or null
+     */
+    public String getIncludeSQL(boolean alwaysQuote) {
+        if (includeColumns == null) {
+            return null;
+        }
+        StringBuilder buff = new StringBuilder("INCLUDE(");
+        for (int i = 0; i < includeColumns.length; i++) {
+            if (i > 0) {
+                buff.append(", ");
+            }
+            includeColumns[i].column.getSQL(buff, alwaysQuote);
+        }
+        return buff.append(')').toString();
+    }
+
+    /**
+     * Get the SQL snippet that follows the column list, if any.
+     *
+     * @return the SQL snippet, or null
+     */
+    public String getUsingSQL() {
+        return extensibleHash ? "USING EXTENSIBLE_HASH" : null;
+    }
+
     /**
      * Is this a table scan pseudo-index?
      *
@@ -1,219 +1,364 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
 package org.h2.index;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
 
-public class LinearHashMap<K, V> implements Map<K, V> {
-    private ArrayList<LinearHashBucket<K, V>> buckets;
-    private Float maxCapacityPercentage = 0.85f;
-    private int i;     // num buckets
-    private int r;     // num records
-    private int n;     // num bits to use from hash
+import org.h2.message.DbException;
 
-    public LinearHashMap() {
-        super();
-        r = 0;
-        i = 2;
-        n = 2;
-        initializeBuckets();
-    }
+/**
+ * A hash map with object keys and primitive long values, based on linear
+ * hashing. The table grows and shrinks one bucket at a time, so there is
+ * never a full rehash. Entries are stored in parallel arrays and chained
+ * by index, so that no object is allocated per entry. There is a
+ * restriction: the value Long.MIN_VALUE (NOT_FOUND) cannot be stored in the
+ * map.
+ *
+ * @param <K> the key type
+ */
+public class LinearHashMap<K> {
 
     /**
-     * Initialize Buckets
-     * Initializes the linear hash buckets.
+     * The value indicating that the entry has not been found.
      */
-    private void initializeBuckets() {
-        buckets = new ArrayList<>(n);
-        for(int i = 0; i < n; i++) {
-            LinearHashBucket bucket = new LinearHashBucket();
-            buckets.add(bucket);
-        }
-    }
+    public static final long NOT_FOUND = Long.MIN_VALUE;
 
-    @Override
-    public int size() {
-        System.out.println("LHM size()");
-        return 0;
-    }
+    /**
+     * The initial level. The initial number of buckets is 2 ^ level.
+     */
+    private static final int INITIAL_LEVEL = 4;
 
-    @Override
-    public boolean isEmpty() {
-        System.out.println("LHM isEmpty()");
-        return false;
-    }
+    /**
+     * The maximum load (average number of entries per bucket), in percent.
+     * If exceeded, the next bucket is split.
+     */
+    private static final int MAX_LOAD = 100;
 
-    @Override
-    public boolean containsKey(Object key) {
-        System.out.println("LHM containsKey()");
-        return false;
+    /**
+     * The minimum load, in percent. If the load falls below, the last bucket
+     * is merged with its buddy.
+     */
+    private static final int MIN_LOAD = 40;
+
+    /**
+     * The end of a chain.
+     */
+    private static final int END = -1;
+
+    /**
+     * The first entry of each bucket, or END.
+     */
+    private int[] buckets;
+
+    /**
+     * The keys, by entry.
+     */
+    private Object[] keys;
+
+    /**
+     * The values, by entry.
+     */
+    private long[] values;
+
+    /**
+     * The (spread) hash codes of the keys, by entry.
+     */
+    private int[] hashes;
+
+    /**
+     * The next entry in the same chain (or in the free list), by entry.
+     */
+    private int[] next;
+
+    /**
+     * The number of entries that were ever used.
+     */
+    private int used;
+
+    /**
+     * The first free entry, or END.
+     */
+    private int free;
+
+    /**
+     * The number of entries.
+     */
+    private int size;
+
+    /**
+     * The level. At the start of a round there are 2 ^ level buckets.
+     */
+    private int level;
+
+    /**
+     * The next bucket to split.
+     */
+    private int split;
+
+    public LinearHashMap() {
+        reset();
     }
 
-    @Override
-    public boolean containsValue(Object value) {
-        System.out.println("LHM containsValue()");
-        return false;
+    private void reset() {
+        level = INITIAL_LEVEL;
+        split = 0;
+        buckets = new int[1 << INITIAL_LEVEL];
+        Arrays.fill(buckets, END);
+        int len = 1 << INITIAL_LEVEL;
+        keys = new Object[len];
+        values = new long[len];
+        hashes = new int[len];
+        next = new int[len];
+        used = 0;
+        free = END;
+        size = 0;
     }
 
     /**
-     * Get Hash
-     * Get hash code based on key.
-     * Last i bits of hash code.
-     * @param hashCode Hash code to get last i bits of.
-     * @return Last i bits of hash code.
+     * Get the size of the map.
+     *
+     * @return the number of entries
      */
-    private int getHash(int hashCode) {
-        int bitmask = ~((~0) << this.i);
-        int hash = hashCode & bitmask;
-        // remove the leading bit if the block doesnt exist
-        if (hash > this.n) {
-            hash = hash & (bitmask >>> 1);
-        }
-        return hash;
+    public int size() {
+        return size;
     }
 
     /**
-     * Get Bucket Using Linear Hashing
-     * Uses the linear hashing algorithm to get the bucket that the key belongs to.
-     * @param key Key to base hash off.
-     * @return Bucket the key belongs to.
+     * Check whether the map is empty.
+     *
+     * @return true if there are no entries
      */
-    private LinearHashBucket<K, V> getBucketUsingLinearHashing(Object key) {
-        LinearHashBucket<K, V> bucket = null;
-        int m = getHash(key.hashCode());
-        if(m < n) {
-            bucket = buckets.get(m);
-        }
-        else if(m < ((int) (Math.pow(2, i)))) {
-            int index = m - (int) (Math.pow(2, (i - 1)));
-            bucket = buckets.get(index);
-        }
-        return bucket;
+    public boolean isEmpty() {
+        return size == 0;
     }
 
     /**
-     * Remove Old Rows
-     * When splitting a bucket, we must remove the old rows that were moved to a new bucket.
-     * @param bucket Bucket to remove rows from.
-     * @param list List of rows to remove.
+     * Remove all entries.
      */
-    private void removeOldRows(LinearHashBucket<K, V> bucket, ArrayList<LinearHashPair<K, V>> list) {
-        for(LinearHashPair<K, V> row : list) {
-            bucket.removeRow(row.getFirst());
-        }
+    public void clear() {
+        reset();
     }
 
     /**
-     * Split Bucket
-     * Part of the linear hashing algorithm.
-     * @param n Old n value.
+     * Get the number of buckets.
+     *
+     * @return the number of buckets
      */
-    private void splitBucket(int n) {
-        int index = (n - (int) Math.pow(2, (i - 1)));
-        LinearHashBucket<K, V> currentBucket = buckets.get(index);
-        ArrayList<LinearHashPair<K, V>> rowsToRemove = new ArrayList<>();
-        for(LinearHashPair<K, V> pair : currentBucket.getRows()) {
-            K key = pair.getFirst();
-            V value = pair.getSecond();
-            LinearHashBucket<K, V> splitBucket = getBucketUsingLinearHashing(key);
-            if(!currentBucket.equals(splitBucket)) {
-                splitBucket.addRow(key, value);
-                rowsToRemove.add(pair);
-            }
-        }
-        removeOldRows(currentBucket, rowsToRemove);
+    public int getBucketCount() {
+        return (1 << level) + split;
     }
 
     /**
-     * Check Capacity And Variables
-     * Part of the linear hashing algorithm.
-     * Manages the variables.
+     * Get the current level. At the start of a round (when no bucket of this
+     * round is split yet) there are 2 ^ level buckets.
+     *
+     * @return the level
      */
-    private void checkCapacityAndVariables() {
-        float capCheck = (float) r / (n * 10);      // every bucket holds 10 rows
-        if(capCheck >= maxCapacityPercentage) {
-            n++;
-            LinearHashBucket<K, V> bucketToAdd = new LinearHashBucket<>();
-            buckets.add(bucketToAdd);
-
-            int checkIncrementi = (int) (Math.pow(2, i) + 1);
-            if(n == checkIncrementi) {
-                i++;
-            }
-
-            // using old n...
-            splitBucket(n - 1);
-        }
+    public int getLevel() {
+        return level;
     }
 
-    @Override
-    public Object put(Object key, Object value) {
-        checkCapacityAndVariables();
-        LinearHashBucket<K, V> bucket = getBucketUsingLinearHashing(key);
-        bucket.addRow((K)key, (V)value);
-        r++;
-        return null;
+    /**
+     * Get the value for the given key.
+     *
+     * @param key the key
+     * @return the value or NOT_FOUND
+     */
+    public long get(Object key) {
+        int e = find(key, hash(key));
+        return e == END ? NOT_FOUND : values[e];
     }
 
-    @Override
-    public V get(Object key) {
-        LinearHashBucket<K, V> bucket = getBucketUsingLinearHashing(key);
-        return bucket.getValue((K)key);
+    /**
+     * Check whether the map contains the given key.
+     *
+     * @param key the key
+     * @return true if the key was found
+     */
+    public boolean containsKey(Object key) {
+        return find(key, hash(key)) != END;
     }
 
-    // not actually using hash
-    @Override
-    public V remove(Object key) {
-        LinearHashBucket<K, V> bucket = getBucketUsingLinearHashing(key);
-        V value = bucket.getValue((K) key);
-        if(value != null) {
-            bucket.removeRow((K) key);
-            r--;
-        }
-        return null;
+    /**
+     * Store the given key-value pair. The value is overwritten or added.
+     *
+     * @param key the key
+     * @param value the value (NOT_FOUND is not supported)
+     * @return the old value or NOT_FOUND
+     */
+    public long put(K key, long value) {
+        return put(key, value, true);
     }
 
-    @Override
-    public void putAll(Map m) {
-        System.out.println("LHM putAll()");
+    /**
+     * Add the given key-value pair if the key is not yet stored in the map.
+     *
+     * @param key the key
+     * @param value the value (NOT_FOUND is not supported)
+     * @return the existing value (the map was not changed), or NOT_FOUND if
+     *         the entry was added
+     */
+    public long putIfAbsent(K key, long value) {
+        return put(key, value, false);
     }
 
-    @Override
-    public void clear() {
-        System.out.println("LHM clear()");
+    private long put(K key, long value, boolean replace) {
+        if (value == NOT_FOUND) {
+            throw DbException.throwInternalError("value " + value);
+        }
+        int hash = hash(key);
+        int e = find(key, hash);
+        if (e != END) {
+            long old = values[e];
+            if (replace) {
+                values[e] = value;
+            }
+            return old;
+        }
+        e = allocate();
+        keys[e] = key;
+        values[e] = value;
+        hashes[e] = hash;
+        int b = getBucket(hash);
+        next[e] = buckets[b];
+        buckets[b] = e;
+        size++;
+        if ((long) size * 100 > (long) getBucketCount() * MAX_LOAD) {
+            split();
+        }
+        return NOT_FOUND;
     }
 
-    @Override
-    public Set keySet() {
-        System.out.println("LHM keySet()");
-        return null;
+    /**
+     * Remove the entry with the given key.
+     *
+     * @param key the key
+     * @return the removed value or NOT_FOUND
+     */
+    public long remove(Object key) {
+        int hash = hash(key);
+        int b = getBucket(hash);
+        int prev = END;
+        for (int e = buckets[b]; e != END; prev = e, e = next[e]) {
+            if (hashes[e] == hash && key.equals(keys[e])) {
+                if (prev == END) {
+                    buckets[b] = next[e];
+                } else {
+                    next[prev] = next[e];
+                }
+                long old = values[e];
+                keys[e] = null;
+                next[e] = free;
+                free = e;
+                size--;
+                // merge up to three buckets: with a minimum load of 40%, this
+                // shrinks the table faster than the entries are removed,
+                // but without a long pause
+                for (int i = 0; i < 3 && (level > INITIAL_LEVEL || split > 0) &&
+                        (long) size * 100 < (long) getBucketCount() * MIN_LOAD; i++) {
+                    merge();
+                }
+                return old;
+            }
+        }
+        return NOT_FOUND;
     }
 
-    @Override
-    public Collection values() {
-        System.out.println("LHM values()");
-        return null;
+    private int find(Object key, int hash) {
+        for (int e = buckets[getBucket(hash)]; e != END; e = next[e]) {
+            if (hashes[e] == hash && key.equals(keys[e])) {
+                return e;
+            }
+        }
+        return END;
     }
 
-    @Override
-    public Set<Entry<K, V>> entrySet() {
-        return null;
+    private int getBucket(int hash) {
+        int b = hash & ((1 << level) - 1);
+        if (b < split) {
+            // already split in this round
+            b = hash & ((2 << level) - 1);
+        }
+        return b;
     }
 
-    public int getI() {
-        return i;
+    private int allocate() {
+        int e = free;
+        if (e != END) {
+            free = next[e];
+            return e;
+        }
+        if (used == keys.length) {
+            int len = used + (used >>> 1);
+            keys = Arrays.copyOf(keys, len);
+            values = Arrays.copyOf(values, len);
+            hashes = Arrays.copyOf(hashes, len);
+            next = Arrays.copyOf(next, len);
+        }
+        return used++;
     }
 
-    public int getR() {
-        return r;
+    /**
+     * Split the next bucket. The entries are distributed between the bucket
+     * and its new buddy at the end of the table.
+     */
+    private void split() {
+        int bit = 1 << level;
+        int low = split, high = split + bit;
+        if (high >= buckets.length) {
+            int oldLength = buckets.length;
+            buckets = Arrays.copyOf(buckets, oldLength * 2);
+            Arrays.fill(buckets, oldLength, buckets.length, END);
+        }
+        int e = buckets[low];
+        buckets[low] = END;
+        while (e != END) {
+            int n = next[e];
+            int b = (hashes[e] & bit) == 0 ? low : high;
+            next[e] = buckets[b];
+            buckets[b] = e;
+            e = n;
+        }
+        if (++split == bit) {
+            level++;
+            split = 0;
+        }
     }
 
-    public int getN() {
-        return n;
+    /**
+     * Merge the last bucket into its buddy. This is the reverse of split.
+     */
+    private void merge() {
+        if (split == 0) {
+            level--;
+            split = 1 << level;
+        }
+        split--;
+        int low = split, high = split + (1 << level);
+        int e = buckets[high];
+        buckets[high] = END;
+        while (e != END) {
+            int n = next[e];
+            next[e] = buckets[low];
+            buckets[low] = e;
+            e = n;
+        }
     }
 
-    public ArrayList<LinearHashBucket<K, V>> getBuckets() {
-        return buckets;
+    /**
+     * Get the hash code of the key, with the bits spread out, as the bucket
+     * is selected using the lowest bits only.
+     *
+     * @param key the key
+     * @return the hash code
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        h = (h ^ (h >>> 16)) * 0x45d9f3b;
+        return h ^ (h >>> 16);
     }
+
 }
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+
+import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.engine.Session;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.condition.Comparison;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+import org.h2.table.TableType;
+import org.h2.util.Utils;
+
+/**
+ * An index that is used for the inner table of a join if the rows of the outer
+ * table are read in the order of the join column, and the inner table has a
+ * sorted index on the join column. The lookups are then made in ascending
+ * order, so that the cursor of the inner index is kept open and moved forward
+ * from one lookup to the next, instead of searching the b-tree again for each
+ * row of the outer table. If there are only a few matching rows, they are
+ * kept, so that outer rows with the same value do not read the inner index
+ * again.
+ * <p>
+ * If a lookup is not in ascending order, or if the next matching row is too
+ * far away, the cursor is opened again, as without this index.
+ */
+public class MergeJoinIndex extends BaseIndex {
+
+    /**
+     * The number of index entries that are skipped when moving the cursor
+     * forward, before searching the b-tree again is cheaper.
+     */
+    private static final int MAX_SKIP = 32;
+
+    /**
+     * The maximum number of rows of a lookup that are kept, so that the next
+     * lookup with the same values does not need to read them again.
+     */
+    static final int MAX_GROUP_ROWS = 64;
+
+    private final Index base;
+
+    private Session session;
+
+    private long statementId;
+
+    private long modificationId;
+
+    /**
+     * The cursor of the base index.
+     */
+    Cursor cursor;
+
+    /**
+     * The index entry at the position of the cursor, or null if there are no
+     * more entries.
+     */
+    SearchRow pending;
+
+    /**
+     * Whether the entry at the position of the cursor was already returned.
+     */
+    boolean consumed;
+
+    /**
+     * The values of the last lookup.
+     */
+    SearchRow groupKey;
+
+    /**
+     * The index entries with the values of the last lookup, if they were all
+     * read and there are not too many.
+     */
+    ArrayList<SearchRow> group;
+
+    /**
+     * The rows of the index entries of the last lookup, or null for rows that
+     * were not read yet.
+     */
+    ArrayList<Row> groupRows;
+
+    /**
+     * The id of the last cursor that was returned.
+     */
+    int cursorId;
+
+    private MergeJoinIndex(Index base) {
+        super(base.getTable(), 0, null, base.getIndexColumns(), base.getIndexType());
+        this.base = base;
+    }
+
+    /**
+     * Create a merge join index for the inner table of a join, if the table
+     * filter uses a sorted index with an equality condition on its first
+     * column, and the outer table that this condition refers to is read in the
+     * order of the compared column.
+     *
+     * @param filter the table filter of the inner table
+     * @param index the index used by the table filter
+     * @param conditions the index conditions of the table filter
+     * @return the index, or null if a merge join can not be used
+     */
+    public static MergeJoinIndex create(TableFilter filter, Index index,
+            ArrayList<IndexCondition> conditions) {
+        if (index instanceof MergeJoinIndex || index.getIndexType().isScan() || !isSorted(filter, index)) {
+            return null;
+        }
+        IndexColumn first = index.getIndexColumns()[0];
+        if ((first.sortType & SortOrder.DESCENDING) != 0) {
+            return null;
+        }
+        for (IndexCondition condition : conditions) {
+            if (condition.getCompareType() != Comparison.EQUAL || condition.getColumn() != first.column) {
+                continue;
+            }
+            Expression e = condition.getExpression();
+            if (!(e instanceof ExpressionColumn)) {
+                continue;
+            }
+            ExpressionColumn outer = (ExpressionColumn) e;
+            TableFilter outerFilter = outer.getTableFilter();
+            Column outerColumn = outer.getColumn();
+            if (outerFilter != null && outerFilter != filter
+                    && outerColumn.getType().getValueType() == first.column.getType().getValueType()
+                    && isOrderedBy(outerFilter, outerColumn)) {
+                return new MergeJoinIndex(index);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the rows of a table filter are read in ascending order of
+     * the given column.
+     *
+     * @param filter the table filter
+     * @param column the column
+     * @return true if they are
+     */
+    private static boolean isOrderedBy(TableFilter filter, Column column) {
+        Index index = filter.getIndex();
+        if (index == null) {
+            return false;
+        }
+        for (IndexCondition condition : filter.getIndexConditions()) {
+            if (condition.getCompareType() == Comparison.EQUAL && condition.getColumn() == column) {
+                // all rows have the same value
+                return false;
+            }
+        }
+        if (index.getIndexType().isScan()) {
+            if (!index.isRowIdIndex() || filter.getTable().getTableType() != TableType.TABLE) {
+                return false;
+            }
+            // the rows are read in the order of the row key
+            if (column.getColumnId() == SearchRow.ROWID_INDEX) {
+                return true;
+            }
+            Index primaryKey = filter.getTable().findPrimaryKey();
+            return primaryKey != null && (primaryKey.isRowIdIndex() || primaryKey instanceof PageDelegateIndex)
+                    && primaryKey.getColumns().length == 1 && primaryKey.getColumns()[0] == column;
+        }
+        if (!isSorted(filter, index)) {
+            return false;
+        }
+        IndexColumn first = index.getIndexColumns()[0];
+        return first.column == column && (first.sortType & SortOrder.DESCENDING) == 0;
+    }
+
+    private static boolean isSorted(TableFilter filter, Index index) {
+        IndexType type = index.getIndexType();
+        return filter.getTable().getTableType() == TableType.TABLE && !type.isHash() && !type.isSpatial()
+                && !type.isAffinity() && !index.isFindUsingFullTableScan()
+                && index.getIndexColumns() != null && index.getIndexColumns().length > 0;
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        if (!isEquality(first, last)) {
+            return base.find(session, first, last);
+        }
+        long statementId = session.getStatementId();
+        long modificationId = table.getMaxDataModificationId();
+        if (this.session != session || this.statementId != statementId
+                || this.modificationId != modificationId) {
+            this.session = session;
+            this.statementId = statementId;
+            this.modificationId = modificationId;
+            reset();
+        }
+        if (groupKey != null) {
+            int comp = compareRows(first, groupKey);
+            if (comp == 0 && group != null) {
+                return new GroupCursor(session, group, groupRows);
+            } else if (comp <= 0 || !skip(first)) {
+                seek(session, first);
+            }
+        } else {
+            seek(session, first);
+        }
+        groupKey = copyKey(first);
+        group = null;
+        groupRows = null;
+        return new MergeJoinCursor(session, ++cursorId);
+    }
+
+    /**
+     * Check whether the lookup is for one value of each indexed column, or no
+     * value.
+     *
+     * @param first the first row
+     * @param last the last row
+     * @return true if it is
+     */
+    private boolean isEquality(SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            return false;
+        }
+        for (int id : columnIds) {
+            if (first.getValue(id) != last.getValue(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move the cursor forward to the first entry that is not smaller than the
+     * given row.
+     *
+     * @param first the row
+     * @return false if too many entries would need to be skipped
+     */
+    private boolean skip(SearchRow first) {
+        for (int skipped = 0; pending != null && compareRows(pending, first) < 0; skipped++) {
+            if (skipped >= MAX_SKIP) {
+                return false;
+            }
+            pending = next();
+        }
+        consumed = false;
+        return true;
+    }
+
+    private void seek(Session session, SearchRow first) {
+        cursor = base.find(session, first, null);
+        pending = next();
+        consumed = false;
+    }
+
+    /**
+     * Move the cursor of the base index to the next entry.
+     *
+     * @return the entry, or null if there are no more entries
+     */
+    SearchRow next() {
+        return cursor.next() ? cursor.getSearchRow() : null;
+    }
+
+    private void reset() {
+        cursor = null;
+        pending = null;
+        consumed = false;
+        groupKey = null;
+        group = null;
+        groupRows = null;
+    }
+
+    private SearchRow copyKey(SearchRow row) {
+        SearchRow key = table.getTemplateSimpleRow(false);
+        for (int id : columnIds) {
+            key.setValue(id, row.getValue(id));
+        }
+        return key;
+    }
+
+    /**
+     * A cursor over the rows of one lookup, that moves the shared cursor of
+     * the base index forward. The rows are only read if needed.
+     */
+    private final class MergeJoinCursor implements Cursor {
+
+        private final Session session;
+
+        private final int id;
+
+        private ArrayList<SearchRow> entries = Utils.newSmallArrayList();
+
+        private ArrayList<Row> rows = Utils.newSmallArrayList();
+
+        private SearchRow searchRow;
+
+        private Row row;
+
+        MergeJoinCursor(Session session, int id) {
+            this.session = session;
+            this.id = id;
+        }
+
+        @Override
+        public Row get() {
+            if (row == null && searchRow != null) {
+                row = id == cursorId ? cursor.get() : table.getRow(session, searchRow.getKey());
+                if (rows != null) {
+                    rows.set(rows.size() - 1, row);
+                }
+            }
+            return row;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return searchRow;
+        }
+
+        @Override
+        public boolean next() {
+            row = null;
+            searchRow = null;
+            if (id != cursorId) {
+                return false;
+            }
+            if (consumed) {
+                pending = MergeJoinIndex.this.next();
+                consumed = false;
+            }
+            if (pending == null || compareRows(pending, groupKey) != 0) {
+                group = entries;
+                groupRows = rows;
+                entries = null;
+                rows = null;
+                return false;
+            }
+            consumed = true;
+            searchRow = pending;
+            if (entries != null) {
+                if (entries.size() < MAX_GROUP_ROWS) {
+                    entries.add(searchRow);
+                    rows.add(null);
+                } else {
+                    entries = null;
+                    rows = null;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.throwInternalError(toString());
+        }
+
+    }
+
+    /**
+     * A cursor over the kept index entries of the last lookup.
+     */
+    private final class GroupCursor implements Cursor {
+
+        private final Session session;
+
+        private final ArrayList<SearchRow> entries;
+
+        private final ArrayList<Row> rows;
+
+        private int index = -1;
+
+        private SearchRow searchRow;
+
+        private Row row;
+
+        GroupCursor(Session session, ArrayList<SearchRow> entries, ArrayList<Row> rows) {
+            this.session = session;
+            this.entries = entries;
+            this.rows = rows;
+        }
+
+        @Override
+        public Row get() {
+            if (row == null && searchRow != null) {
+                row = rows.get(index);
+                if (row == null) {
+                    row = table.getRow(session, searchRow.getKey());
+                    rows.set(index, row);
+                }
+            }
+            return row;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return searchRow;
+        }
+
+        @Override
+        public boolean next() {
+            row = null;
+            if (++index < entries.size()) {
+                searchRow = entries.get(index);
+                return true;
+            }
+            searchRow = null;
+            return false;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.throwInternalError(toString());
+        }
+
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            AllColumnsForPlan allColumnsSet) {
+        return base.getCost(session, masks, filters, filter, sortOrder, allColumnsSet);
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return base.getPlanSQL() + ".mergeJoin";
+    }
+
+    @Override
+    public void close(Session session) {
+        // nothing to do
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        throw DbException.getUnsupportedException("MERGE JOIN");
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        throw DbException.getUnsupportedException("MERGE JOIN");
+    }
+
+    @Override
+    public void remove(Session session) {
+        throw DbException.getUnsupportedException("MERGE JOIN");
+    }
+
+    @Override
+    public void truncate(Session session) {
+        throw DbException.getUnsupportedException("MERGE JOIN");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public void checkRename() {
+        throw DbException.getUnsupportedException("MERGE JOIN");
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return base.canGetFirstOrLast();
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        return base.findFirstOrLast(session, first);
+    }
+
+    @Override
+    public boolean isRowIdIndex() {
+        return base.isRowIdIndex();
+    }
+
+    @Override
+    public Row getRow(Session session, long key) {
+        return base.getRow(session, key);
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return base.getRowCount(session);
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return base.getRowCountApproximation();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+}
@@ -37,6 +37,7 @@ public class NonUniqueHashIndex extends BaseIndex {
     private final int indexColumn;
     private final boolean totalOrdering;
     private Map<Value, ArrayList<Long>> rows;
+    private ExtensibleHashMap<Value> extensibleRows;
     private final PageStoreTable tableData;
     private long rowCount;
 
@@ -51,8 +52,12 @@ public NonUniqueHashIndex(PageStoreTable table, int id, String indexName,
     }
 
     private void reset() {
-        rows = totalOrdering ? new HashMap<Value, ArrayList<Long>>()
-                : new TreeMap<Value, ArrayList<Long>>(database.getCompareMode());
+        if (totalOrdering && indexType.isExtensibleHash()) {
+            extensibleRows = new ExtensibleHashMap<>();
+        } else {
+            rows = totalOrdering ? new HashMap<Value, ArrayList<Long>>()
+                    : new TreeMap<Value, ArrayList<Long>>(database.getCompareMode());
+        }
         rowCount = 0;
     }
 
@@ -64,6 +69,11 @@ public void truncate(Session session) {
     @Override
     public void add(Session session, Row row) {
         Value key = row.getValue(indexColumn);
+        if (extensibleRows != null) {
+            extensibleRows.add(key, row.getKey());
+            rowCount++;
+            return;
+        }
         ArrayList<Long> positions = rows.get(key);
         if (positions == null) {
             positions = Utils.newSmallArrayList();
@@ -78,6 +88,9 @@ public void remove(Session session, Row row) {
         if (rowCount == 1) {
             // last row in table
             reset();
+        } else if (extensibleRows != null) {
+            extensibleRows.remove(row.getValue(indexColumn), row.getKey());
+            rowCount--;
         } else {
             Value key = row.getValue(indexColumn);
             ArrayList<Long> positions = rows.get(key);
@@ -109,6 +122,9 @@ public Cursor find(Session session, SearchRow first, SearchRow last) {
          * result.
          */
         v = v.convertTo(tableData.getColumn(indexColumn).getType(), database.getMode(), null);
+        if (extensibleRows != null) {
+            return new ExtensibleHashCursor(session, tableData, extensibleRows.get(v));
+        }
         ArrayList<Long> positions = rows.get(v);
         return new NonUniqueHashCursor(session, tableData, positions);
     }
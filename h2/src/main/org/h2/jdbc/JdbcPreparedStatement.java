@@ -25,6 +25,7 @@
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
+import java.util.concurrent.Future;
 
 import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
@@ -192,6 +193,45 @@ public long executeLargeUpdate() throws SQLException {
         }
     }
 
+    /**
+     * Executes a statement (insert, update, delete, create, drop, commit)
+     * without waiting for the update count, if the connection is to a server.
+     * The statement is sent with the current parameters, and the parameters
+     * may be changed afterwards. The responses of such statements are read
+     * in order when the update count of one of them is needed, or before the
+     * connection waits for another response, for example when calling
+     * {@link java.sql.Connection#commit()}. This way, a sequence of statements
+     * only needs one network round trip. In embedded mode, the statement is
+     * executed immediately.
+     * <p>
+     * Generated keys are not available for statements executed this way.
+     * This method is an H2 extension.
+     * </p>
+     *
+     * @return the update count; {@link Future#get()} throws an
+     *         {@link java.util.concurrent.ExecutionException} with the
+     *         SQLException as the cause if the statement failed
+     * @throws SQLException if this object is closed or invalid, or a
+     *             parameter is not set
+     */
+    public Future<Integer> executeUpdateAsync() throws SQLException {
+        try {
+            debugCodeCall("executeUpdateAsync");
+            checkClosedForWrite();
+            batchIdentities = null;
+            try {
+                closeOldResultSet();
+                synchronized (session) {
+                    return command.executeUpdateAsync();
+                }
+            } finally {
+                afterWriting();
+            }
+        } catch (Exception e) {
+            throw logAndConvert(e);
+        }
+    }
+
     private int executeUpdateInternal() throws SQLException {
         closeOldResultSet();
         synchronized (session) {
@@ -1267,30 +1307,59 @@ public int[] executeBatch() throws SQLException {
             SQLException next = null;
             checkClosedForWrite();
             try {
-                for (int i = 0; i < size; i++) {
-                    Value[] set = batchParameters.get(i);
-                    ArrayList<? extends ParameterInterface> parameters =
-                            command.getParameters();
-                    for (int j = 0; j < set.length; j++) {
-                        Value value = set[j];
-                        ParameterInterface param = parameters.get(j);
-                        param.setValue(value, false);
+                int[] batchResult = null;
+                if (session.isRemote() && Boolean.FALSE.equals(generatedKeysRequest) && !conn.scopeGeneratedKeys()) {
+                    // send all sets of parameters to the server at once
+                    ArrayList<DbException> exceptions = Utils.newSmallArrayList();
+                    closeOldResultSet();
+                    synchronized (session) {
+                        try {
+                            setExecutingStatement(command);
+                            batchResult = command.executeBatchUpdate(batchParameters, exceptions);
+                        } finally {
+                            setExecutingStatement(null);
+                        }
                     }
-                    try {
-                        result[i] = executeUpdateInternal();
-                        // Cannot use own implementation, it returns batch identities
-                        ResultSet rs = super.getGeneratedKeys();
-                        batchIdentities.add(((JdbcResultSet) rs).result);
-                    } catch (Exception re) {
-                        SQLException e = logAndConvert(re);
-                        if (next == null) {
-                            next = e;
-                        } else {
-                            e.setNextException(next);
-                            next = e;
+                    if (batchResult != null) {
+                        result = batchResult;
+                        for (DbException re : exceptions) {
+                            SQLException e = logAndConvert(re);
+                            if (next == null) {
+                                next = e;
+                            } else {
+                                e.setNextException(next);
+                                next = e;
+                            }
+                            error = true;
+                        }
+                    }
+                }
+                if (batchResult == null) {
+                    for (int i = 0; i < size; i++) {
+                        Value[] set = batchParameters.get(i);
+                        ArrayList<? extends ParameterInterface> parameters =
+                                command.getParameters();
+                        for (int j = 0; j < set.length; j++) {
+                            Value value = set[j];
+                            ParameterInterface param = parameters.get(j);
+                            param.setValue(value, false);
+                        }
+                        try {
+                            result[i] = executeUpdateInternal();
+                            // Cannot use own implementation, it returns batch identities
+                            ResultSet rs = super.getGeneratedKeys();
+                            batchIdentities.add(((JdbcResultSet) rs).result);
+                        } catch (Exception re) {
+                            SQLException e = logAndConvert(re);
+                            if (next == null) {
+                                next = e;
+                            } else {
+                                e.setNextException(next);
+                                next = e;
+                            }
+                            result[i] = Statement.EXECUTE_FAILED;
+                            error = true;
                         }
-                        result[i] = Statement.EXECUTE_FAILED;
-                        error = true;
                     }
                 }
                 batchParameters = null;
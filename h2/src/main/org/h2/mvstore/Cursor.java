@@ -8,6 +8,8 @@
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+import org.h2.mvstore.type.DataType;
+
 /**
  * A cursor to iterate over elements in ascending order.
  *
@@ -15,7 +17,8 @@
  * @param <V> the value type
  */
 public class Cursor<K, V> implements Iterator<K> {
-    private final K to;
+    private final Page root;
+    private K to;
     private CursorPos cursorPos;
     private CursorPos keeper;
     private K current;
@@ -28,7 +31,8 @@ public Cursor(Page root, K from) {
     }
 
     public Cursor(Page root, K from, K to) {
-        this.cursorPos = traverseDown(root, from);
+        this.root = root;
+        this.cursorPos = traverseDown(root, from, null);
         this.to = to;
     }
 
@@ -134,8 +138,40 @@ public void skip(long n) {
             MVMap<K, ?> map = (MVMap<K, ?>) root.map;
             long index = map.getKeyIndex(next());
             last = map.getKey(index + n);
-            this.cursorPos = traverseDown(root, last);
+            this.cursorPos = traverseDown(root, last, null);
+        }
+    }
+
+    /**
+     * Move the cursor to the next entry that is equal or larger than the given
+     * key, and change the last key to return. Only the pages below the lowest
+     * page of the current position that can contain the key are searched
+     * again, so that seeking to nearby keys in ascending order does not read
+     * the pages from the root each time. The key may also be smaller than the
+     * current position.
+     *
+     * @param from the key to search, null means search for the first key
+     * @param to the last key to return, or null if there is no limit
+     */
+    public void seek(K from, K to) {
+        this.to = to;
+        current = null;
+        if (cursorPos == null || from == null) {
+            cursorPos = traverseDown(root, from, null);
+            return;
+        }
+        DataType keyType = root.map.getKeyType();
+        CursorPos start = cursorPos;
+        for (CursorPos pos = cursorPos.parent; pos != null; pos = pos.parent) {
+            Page page = pos.page;
+            int index = pos.index;
+            if (index > 0 && keyType.compare(from, page.getKey(index - 1)) < 0
+                    || index < page.getKeyCount() && keyType.compare(from, page.getKey(index)) >= 0) {
+                // the key is not in the child page of the current position
+                start = pos;
+            }
         }
+        cursorPos = traverseDown(start.page, from, start.parent);
     }
 
     @Override
@@ -150,9 +186,10 @@ public void remove() {
      *
      * @param p the page to start from
      * @param key the key to search, null means search for the first key
+     * @param parent the position in the parent page, or null
      */
-    private static CursorPos traverseDown(Page p, Object key) {
-        CursorPos cursorPos = null;
+    private static CursorPos traverseDown(Page p, Object key, CursorPos parent) {
+        CursorPos cursorPos = parent;
         while (!p.isLeaf()) {
             int index = 0;
             if(key != null) {
@@ -127,6 +127,12 @@ public final class DataUtils {
      */
     public static final int PAGE_COMPRESSED_HIGH = 2 + 4;
 
+    /**
+     * The bit mask for pages compressed with the codec of the map. The
+     * algorithm is stored after the page type.
+     */
+    public static final int PAGE_COMPRESSED_CODEC = 2 + 8;
+
     /**
      * The maximum length of a variable size int.
      */
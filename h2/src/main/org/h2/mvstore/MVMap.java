@@ -8,6 +8,7 @@
 import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -15,9 +16,13 @@
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
+import org.h2.compress.CompressDictionary;
+import org.h2.compress.Compressor;
+import org.h2.engine.Constants;
 import org.h2.mvstore.type.DataType;
 import org.h2.mvstore.type.ObjectDataType;
 import org.h2.mvstore.type.StringDataType;
+import org.h2.util.StringUtils;
 
 /**
  * A stored map.
@@ -47,10 +52,26 @@
     private final DataType keyType;
     private final DataType valueType;
     private final int keysPerPage;
-    private final boolean singleWriter;
     private final K[] keysBuffer;
     private final V[] valuesBuffer;
 
+    /**
+     * The estimated memory of the entries in the append buffer that were
+     * added with tryAppend. Only changed while the root is locked.
+     */
+    private int appendBufferMemory;
+
+    /**
+     * The compressor for new pages, or null to use the compression level of
+     * the store.
+     */
+    private Compressor compressor;
+
+    /**
+     * The dictionary compressor of this map, or null.
+     */
+    private CompressDictionary dictionary;
+
     private final Object lock = new Object();
     private volatile boolean notificationRequested;
 
@@ -77,14 +98,33 @@ protected MVMap(Map<String, Object> config) {
                 new AtomicReference<RootReference>(),
                 ((MVStore) config.get("store")).getKeysPerPage(),
                 config.containsKey("singleWriter") && (Boolean) config.get("singleWriter")
+                        || config.containsKey("concurrentAppend") && (Boolean) config.get("concurrentAppend")
         );
+        Object c = config.get("compressor");
+        if (c instanceof Compressor) {
+            compressor = (Compressor) c;
+        } else if (c != null) {
+            // an existing map: the codec is stored in the metadata
+            String dict = (String) config.get("dictionary");
+            if (dict != null) {
+                compressor = new CompressDictionary(StringUtils.convertHexToBytes(dict));
+            } else {
+                compressor = store.getCompressor(DataUtils.parseHexInt((String) c));
+            }
+        }
+        if (compressor instanceof CompressDictionary) {
+            dictionary = (CompressDictionary) compressor;
+        }
         setInitialRoot(createEmptyLeaf(), store.getCurrentVersion());
     }
 
     // constructor for cloneIt()
     protected MVMap(MVMap<K, V> source) {
         this(source.store, source.keyType, source.valueType, source.id, source.createVersion,
-                new AtomicReference<>(source.root.get()), source.keysPerPage, source.singleWriter);
+                new AtomicReference<>(source.root.get()), source.keysPerPage,
+                source.keysBuffer != null);
+        compressor = source.compressor;
+        dictionary = source.dictionary;
     }
 
     // meta map constructor
@@ -96,7 +136,7 @@ protected MVMap(MVMap<K, V> source) {
 
     @SuppressWarnings("unchecked")
     private MVMap(MVStore store, DataType keyType, DataType valueType, int id, long createVersion,
-            AtomicReference<RootReference> root, int keysPerPage, boolean singleWriter) {
+            AtomicReference<RootReference> root, int keysPerPage, boolean appendBuffer) {
         this.store = store;
         this.id = id;
         this.createVersion = createVersion;
@@ -104,9 +144,8 @@ private MVMap(MVStore store, DataType keyType, DataType valueType, int id, long
         this.valueType = valueType;
         this.root = root;
         this.keysPerPage = keysPerPage;
-        this.keysBuffer = singleWriter ? (K[]) new Object[keysPerPage] : null;
-        this.valuesBuffer = singleWriter ? (V[]) new Object[keysPerPage] : null;
-        this.singleWriter = singleWriter;
+        this.keysBuffer = appendBuffer ? (K[]) new Object[keysPerPage] : null;
+        this.valuesBuffer = appendBuffer ? (V[]) new Object[keysPerPage] : null;
     }
 
     /**
@@ -237,6 +276,66 @@ public int indexOf(Object key) {
         };
     }
 
+    /**
+     * Get keys that split the map into about the given number of ranges.
+     * The keys of the internal pages are used, so that each range covers
+     * whole child pages; leaf pages are not read. A range starts with a split
+     * key (inclusive) and ends before the next split key. If the map is
+     * small, fewer keys are returned.
+     *
+     * @param count the requested number of ranges
+     * @return the split keys, in ascending order
+     */
+    public final List<K> getSplitKeys(int count) {
+        Page root = getRootPage();
+        ArrayList<K> keys = new ArrayList<>();
+        for (int depth = 0;; depth++) {
+            keys.clear();
+            boolean deeper = addSplitKeys(root, depth, keys);
+            if (keys.size() + 1 >= count || !deeper) {
+                break;
+            }
+        }
+        int size = keys.size();
+        if (size + 1 <= count) {
+            return keys;
+        }
+        // use evenly distributed keys
+        ArrayList<K> result = new ArrayList<>(count - 1);
+        for (int i = 1; i < count; i++) {
+            result.add(keys.get((int) ((long) i * (size + 1) / count) - 1));
+        }
+        return result;
+    }
+
+    /**
+     * Add the keys of the internal pages up to the given depth, in
+     * ascending order.
+     *
+     * @param p the page
+     * @param depth the number of levels to descend
+     * @param keys the list to add the keys to
+     * @return whether there are more internal pages below this depth
+     */
+    private boolean addSplitKeys(Page p, int depth, List<K> keys) {
+        if (p.isLeaf()) {
+            return false;
+        }
+        boolean deeper = false;
+        int keyCount = p.getKeyCount();
+        for (int i = 0, size = getChildPageCount(p); i < size; i++) {
+            if (depth > 0) {
+                deeper |= addSplitKeys(p.getChildPage(i), depth - 1, keys);
+            }
+            if (i < keyCount) {
+                @SuppressWarnings("unchecked")
+                K key = (K) p.getKey(i);
+                keys.add(key);
+            }
+        }
+        return depth > 0 ? deeper : !p.getChildPage(0).isLeaf();
+    }
+
     /**
      * Get the index of the given key in the map.
      * <p>
@@ -770,7 +869,7 @@ public RootReference getRoot() {
      */
     public RootReference flushAndGetRoot() {
         RootReference rootReference = getRoot();
-        if (singleWriter && rootReference.getAppendCounter() > 0) {
+        if (keysBuffer != null && rootReference.getAppendCounter() > 0) {
             return flushAppendBuffer(rootReference, false);
         }
         return rootReference;
@@ -1067,9 +1166,41 @@ protected String asString(String name) {
         if (type != null) {
             DataUtils.appendMap(buff, "type", type);
         }
+        if (compressor != null) {
+            DataUtils.appendMap(buff, "compressor", compressor.getAlgorithm());
+            if (dictionary != null) {
+                DataUtils.appendMap(buff, "dictionary",
+                        StringUtils.convertBytesToHex(dictionary.getDictionary()));
+            }
+        }
         return buff.toString();
     }
 
+    /**
+     * Get the compressor for new pages.
+     *
+     * @return the compressor, or null to use the compression level of the
+     *         store
+     */
+    final Compressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Get the compressor to expand a page of this map.
+     *
+     * @param algorithm the algorithm of the page
+     * @return the compressor
+     */
+    final Compressor getCompressor(int algorithm) {
+        if (compressor != null && compressor.getAlgorithm() == algorithm) {
+            return compressor;
+        } else if (algorithm == Compressor.DICTIONARY && dictionary != null) {
+            return dictionary;
+        }
+        return store.getCompressor(algorithm);
+    }
+
     final RootReference setWriteVersion(long writeVersion) {
         int attempt = 0;
         while(true) {
@@ -1182,8 +1313,14 @@ private RootReference flushAppendBuffer(RootReference rootReference, boolean loc
                 pos = pos.parent;
 
                 int remainingBuffer = 0;
+                int remainingMemory = 0;
                 Page page = null;
                 int available = store.getKeysPerPage() - p.getKeyCount();
+                if (available > 0 && p.isPersistent() &&
+                        p.getMemory() + getAppendMemory(0, keyCount) > getAppendLeafMemory()) {
+                    // the last leaf would get too large, start a new one
+                    available = 0;
+                }
                 if (available > 0) {
                     p = p.copy();
                     if (keyCount <= available) {
@@ -1195,6 +1332,7 @@ private RootReference flushAppendBuffer(RootReference rootReference, boolean loc
                             System.arraycopy(keysBuffer, available, keysBuffer, 0, keyCount);
                             System.arraycopy(valuesBuffer, available, valuesBuffer, 0, keyCount);
                             remainingBuffer = keyCount;
+                            remainingMemory = getAppendMemory(0, keyCount);
                         } else {
                             Object[] keys = new Object[keyCount];
                             Object[] values = new Object[keyCount];
@@ -1252,6 +1390,7 @@ private RootReference flushAppendBuffer(RootReference rootReference, boolean loc
 
                 RootReference updatedRootReference = new RootReference(rootReference, p, remainingBuffer,
                         lockedForUpdate);
+                appendBufferMemory = remainingMemory;
                 if (root.compareAndSet(rootReference, updatedRootReference)) {
                     lockedRootReference = null;
                     while (tip != null) {
@@ -1275,6 +1414,38 @@ private RootReference flushAppendBuffer(RootReference rootReference, boolean loc
         return rootReference;
     }
 
+    /**
+     * Get the estimated memory of a range of entries of the append buffer, in
+     * the same way as they are counted in a leaf page.
+     *
+     * @param from the index of the first entry
+     * @param to the index after the last entry
+     * @return the estimated memory
+     */
+    private int getAppendMemory(int from, int to) {
+        int memory = 0;
+        for (int i = from; i < to; i++) {
+            memory += getAppendMemory(keysBuffer[i], valuesBuffer[i]);
+        }
+        return memory;
+    }
+
+    /**
+     * Get the memory of a leaf that is created from the append buffer. When
+     * entries are inserted in order with operate(), a leaf is split in the
+     * middle when it gets larger than the maximum page size, so such leaves
+     * are about half of that size.
+     *
+     * @return the memory
+     */
+    private long getAppendLeafMemory() {
+        return store.getMaxPageSize() / 2;
+    }
+
+    private int getAppendMemory(Object key, Object value) {
+        return 2 * Constants.MEMORY_POINTER + keyType.getMemory(key) + valueType.getMemory(value);
+    }
+
     private static Page replacePage(CursorPos path, Page replacement, IntValueHolder unsavedMemoryHolder) {
         int unsavedMemory = replacement.getMemory();
         while (path != null) {
@@ -1319,6 +1490,74 @@ public void append(K key, V value) {
         }
     }
 
+    /**
+     * Adds an entry to the append buffer of this map, if the key is higher in
+     * map's order than any existing key. Unlike {@link #append(Object, Object)},
+     * this method may be used concurrently, and in combination with any other
+     * method. The buffer is only changed while the root is locked, which is
+     * short, and it is merged into the tree as a whole leaf when it is full
+     * (by key count or by memory, like the leaves that in-order inserts with
+     * {@link #operate(Object, Object, DecisionMaker)} produce), or before the
+     * map is read or updated otherwise. This way, concurrent inserts at the
+     * end of the map don't need to copy the path to the last leaf for each
+     * entry, and don't conflict while doing so.
+     * <p>
+     * Entries with keys that are not in order are sorted into the buffer, as
+     * long as they are higher than all keys in the tree.
+     *
+     * @param key the key
+     * @param value the value
+     * @return true if the entry was added, false if the key was not higher than
+     *         all existing keys, or the map has no append buffer, in which
+     *         case the map is not changed
+     */
+    public boolean tryAppend(K key, V value) {
+        if (keysBuffer == null) {
+            return false;
+        }
+        beforeWrite();
+        RootReference rootReference = lockRoot(getRoot(), 1);
+        int appendCounter = rootReference.getAppendCounter();
+        try {
+            if (appendCounter >= keysPerPage || appendBufferMemory >= getAppendLeafMemory()) {
+                rootReference = flushAppendBuffer(rootReference, true);
+                appendCounter = rootReference.getAppendCounter();
+                assert appendCounter < keysPerPage;
+            }
+            int low = 0, high = appendCounter - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int compare = keyType.compare(key, keysBuffer[mid]);
+                if (compare > 0) {
+                    low = mid + 1;
+                } else if (compare < 0) {
+                    high = mid - 1;
+                } else {
+                    return false;
+                }
+            }
+            if (low == 0) {
+                Page lastLeaf = rootReference.root.getAppendCursorPos(null).page;
+                int keyCount = lastLeaf.getKeyCount();
+                if (keyCount > 0 && keyType.compare(key, lastLeaf.getKey(keyCount - 1)) <= 0) {
+                    return false;
+                }
+            }
+            int move = appendCounter - low;
+            if (move > 0) {
+                System.arraycopy(keysBuffer, low, keysBuffer, low + 1, move);
+                System.arraycopy(valuesBuffer, low, valuesBuffer, low + 1, move);
+            }
+            keysBuffer[low] = key;
+            valuesBuffer[low] = value;
+            appendBufferMemory += getAppendMemory(key, value);
+            ++appendCounter;
+            return true;
+        } finally {
+            unlockRoot(rootReference.root, appendCounter);
+        }
+    }
+
     /**
      * Removes last entry from this map. this method is NOT thread safe and can not be used
      * neither concurrently, nor in combination with any method that updates this map.
@@ -1472,6 +1711,8 @@ public M create(MVStore store, Map<String, Object> config) {
      */
     public static class Builder<K, V> extends BasicBuilder<MVMap<K, V>, K, V> {
         private boolean singleWriter;
+        private boolean concurrentAppend;
+        private Compressor compressor;
 
         public Builder() {}
 
@@ -1498,9 +1739,38 @@ public Builder<K,V> singleWriter() {
             return this;
         }
 
+        /**
+         * Set up this Builder to produce MVMap with an append buffer, which
+         * can be used by multiple threads concurrently.
+         * @see MVMap#tryAppend(Object, Object)
+         * @return this Builder for chained execution
+         */
+        public Builder<K,V> concurrentAppend() {
+            concurrentAppend = true;
+            return this;
+        }
+
+        /**
+         * Set the compressor for the pages of this map, for example LZ4, or a
+         * dictionary compressor that was trained with sample data. The
+         * compressor is stored in the metadata when the map is created. For
+         * existing maps, the stored compressor is used.
+         *
+         * @param compressor the compressor
+         * @return this Builder for chained execution
+         */
+        public Builder<K,V> compressor(Compressor compressor) {
+            this.compressor = compressor;
+            return this;
+        }
+
         @Override
         protected MVMap<K, V> create(Map<String, Object> config) {
             config.put("singleWriter", singleWriter);
+            config.put("concurrentAppend", concurrentAppend);
+            if (compressor != null && !config.containsKey("name")) {
+                config.put("compressor", compressor);
+            }
             Object type = config.get("type");
             if(type == null || type.equals("rtree")) {
                 return new MVMap<>(config);
@@ -1649,6 +1919,10 @@ public V operate(K key, V value, DecisionMaker<? super V> decisionMaker) {
             RootReference lockedRootReference = null;
             if ((++attempt > 3 || rootReference.lockedForUpdate)) {
                 lockedRootReference = lockRoot(rootReference, attempt);
+                // entries may have been appended concurrently
+                while (lockedRootReference.getAppendCounter() > 0) {
+                    lockedRootReference = flushAppendBuffer(lockedRootReference, true);
+                }
                 rootReference = lockedRootReference;
             }
             Page rootPage = rootReference.root;
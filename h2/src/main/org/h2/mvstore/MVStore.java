@@ -31,10 +31,12 @@
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 import org.h2.compress.CompressDeflate;
+import org.h2.compress.CompressLZ4;
 import org.h2.compress.CompressLZF;
 import org.h2.compress.Compressor;
 import org.h2.engine.Constants;
 import org.h2.mvstore.cache.CacheLongKeyLIRS;
+import org.h2.mvstore.cache.CacheLongKeyOffHeap;
 import org.h2.util.MathUtils;
 import org.h2.util.Utils;
 
@@ -75,7 +77,6 @@
     use a transaction log where only the deltas are stored
 - serialization for lists, sets, sets, sorted sets, maps, sorted maps
 - maybe rename 'rollback' to 'revert' to distinguish from transactions
-- support other compression algorithms (deflate, LZ4,...)
 - remove features that are not really needed; simplify the code
     possibly using a separate layer or tools
     (retainVersion?)
@@ -104,7 +105,6 @@ requires that everything is a page (including headers)
     internally uses regular maps and merge sort
 - chunk metadata: maybe split into static and variable,
     or use a small page size for metadata
-- data type "string": maybe use prefix compression for keys
 - test chunk id rollover
 - feature to auto-compact from time to time and on close
 - compact very small chunks
@@ -140,7 +140,14 @@ public class MVStore implements AutoCloseable {
     static final int BLOCK_SIZE = 4 * 1024;
 
     private static final int FORMAT_WRITE = 1;
-    private static final int FORMAT_READ = 1;
+    private static final int FORMAT_READ = 2;
+
+    /**
+     * The read format of stores with maps that have a compressor. Older
+     * versions would expand the pages of such maps with LZF, so they must not
+     * open the store.
+     */
+    private static final int FORMAT_READ_COMPRESSOR = 2;
 
     /**
      * Used to mark a chunk as free, when it was detected that live bookkeeping
@@ -211,6 +218,12 @@ public class MVStore implements AutoCloseable {
      */
     final CacheLongKeyLIRS<int[]> cacheChunkRef;
 
+    /**
+     * The off-heap cache of serialized pages, or null if not used. Pages that
+     * are not in the page cache are read from here before reading the file.
+     */
+    private final CacheLongKeyOffHeap offHeapCache;
+
     /**
      * The newest chunk. If nothing was stored yet, this field is not set.
      */
@@ -247,15 +260,21 @@ public class MVStore implements AutoCloseable {
 
     private int versionsToKeep = 5;
 
+    /**
+     * Called before the changes are stored, or null.
+     */
+    private volatile Runnable beforeStore;
+
     /**
      * The compression level for new pages (0 for disabled, 1 for fast, 2 for
      * high). Even if disabled, the store may contain (old) compressed pages.
      */
     private final int compressionLevel;
 
-    private Compressor compressorFast;
-
-    private Compressor compressorHigh;
+    /**
+     * The compressors, by algorithm.
+     */
+    private final Compressor[] compressors = new Compressor[Compressor.LZ4 + 1];
 
     private final UncaughtExceptionHandler backgroundExceptionHandler;
 
@@ -359,6 +378,9 @@ public class MVStore implements AutoCloseable {
             }
             pgSplitSize = 16 * 1024;
         }
+        int offHeapMb = this.fileStore == null ? 0 : DataUtils.getConfigParam(config, "offHeapCacheSize", 0);
+        offHeapCache = offHeapMb > 0 ? new CacheLongKeyOffHeap(offHeapMb * 1024L * 1024L,
+                DataUtils.getConfigParam(config, "cacheConcurrency", 16)) : null;
         if (cc != null) {
             cache = new CacheLongKeyLIRS<>(cc);
             cc.maxMemory /= 4;
@@ -517,6 +539,9 @@ public <M extends MVMap<K, V>, K, V> M openMap(String name, MVMap.MapBuilder<M,
             c.put("id", id);
             c.put("createVersion", currentVersion);
             map = builder.create(this, c);
+            if (map.getCompressor() != null) {
+                setFormatRead(FORMAT_READ_COMPRESSOR);
+            }
             String x = Integer.toHexString(id);
             meta.put(MVMap.getMapKey(id), map.asString(name));
             meta.put("name." + name, x);
@@ -911,6 +936,29 @@ private Chunk readChunkFooter(long end) {
         return null;
     }
 
+    /**
+     * Raise the read format of the store, so that older versions refuse to
+     * open it. The store header is written immediately, before any page in
+     * the new format.
+     *
+     * @param formatRead the minimum read format
+     */
+    private void setFormatRead(int formatRead) {
+        if (fileStore == null) {
+            return;
+        }
+        storeLock.lock();
+        try {
+            int format = DataUtils.readHexInt(storeHeader, "format", 1);
+            if (DataUtils.readHexInt(storeHeader, "formatRead", format) < formatRead) {
+                storeHeader.put("formatRead", formatRead);
+                writeStoreHeader();
+            }
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
     private void writeStoreHeader() {
         StringBuilder buff = new StringBuilder(112);
         if (lastChunk != null) {
@@ -995,6 +1043,9 @@ private void closeStore(boolean normalShutdown) {
                             if (cacheChunkRef != null) {
                                 cacheChunkRef.clear();
                             }
+                            if (offHeapCache != null) {
+                                offHeapCache.clear();
+                            }
                             for (MVMap<?, ?> m : new ArrayList<>(maps.values())) {
                                 m.close();
                             }
@@ -1023,30 +1074,11 @@ private void closeStore(boolean normalShutdown) {
      * @return ByteBuffer containing page data.
      */
     ByteBuffer readBufferForPage(long pos, int expectedMapId) {
-        Chunk c = getChunk(pos);
-        long filePos = c.block * BLOCK_SIZE;
-        filePos += DataUtils.getPageOffset(pos);
-        if (filePos < 0) {
-            throw DataUtils.newIllegalStateException(
-                    DataUtils.ERROR_FILE_CORRUPT,
-                    "Negative position {0}; p={1}, c={2}", filePos, pos, c.toString());
+        ByteBuffer buff = offHeapCache == null ? null : offHeapCache.get(pos);
+        boolean cached = buff != null;
+        if (!cached) {
+            buff = readPageFromFile(pos);
         }
-        long maxPos = (c.block + c.len) * BLOCK_SIZE;
-
-        ByteBuffer buff;
-        int maxLength = DataUtils.getPageMaxLength(pos);
-        if (maxLength == DataUtils.PAGE_LARGE) {
-            buff = fileStore.readFully(filePos, 128);
-            maxLength = buff.getInt();
-            // read the first bytes again
-        }
-        maxLength = (int) Math.min(maxPos - filePos, maxLength);
-        int length = maxLength;
-        if (length < 0) {
-            throw DataUtils.newIllegalStateException(DataUtils.ERROR_FILE_CORRUPT,
-                    "Illegal page length {0} reading at {1}; max pos {2} ", length, filePos, maxPos);
-        }
-        buff = fileStore.readFully(filePos, length);
         int chunkId = DataUtils.getPageChunkId(pos);
         int offset = DataUtils.getPageOffset(pos);
         int start = buff.position();
@@ -1072,9 +1104,48 @@ ByteBuffer readBufferForPage(long pos, int expectedMapId) {
             throw DataUtils.newIllegalStateException(DataUtils.ERROR_FILE_CORRUPT,
                     "File corrupted in chunk {0}, expected check value {1}, got {2}", chunkId, checkTest, check);
         }
+        if (offHeapCache != null && !cached) {
+            ByteBuffer page = buff.duplicate();
+            page.position(start);
+            offHeapCache.put(pos, page);
+        }
         return buff;
     }
 
+    /**
+     * Read the data of a page from the file. The page length is not
+     * verified.
+     *
+     * @param pos page pos
+     * @return ByteBuffer containing page data, and possibly more.
+     */
+    private ByteBuffer readPageFromFile(long pos) {
+        Chunk c = getChunk(pos);
+        long filePos = c.block * BLOCK_SIZE;
+        filePos += DataUtils.getPageOffset(pos);
+        if (filePos < 0) {
+            throw DataUtils.newIllegalStateException(
+                    DataUtils.ERROR_FILE_CORRUPT,
+                    "Negative position {0}; p={1}, c={2}", filePos, pos, c.toString());
+        }
+        long maxPos = (c.block + c.len) * BLOCK_SIZE;
+
+        ByteBuffer buff;
+        int maxLength = DataUtils.getPageMaxLength(pos);
+        if (maxLength == DataUtils.PAGE_LARGE) {
+            buff = fileStore.readFully(filePos, 128);
+            maxLength = buff.getInt();
+            // read the first bytes again
+        }
+        maxLength = (int) Math.min(maxPos - filePos, maxLength);
+        int length = maxLength;
+        if (length < 0) {
+            throw DataUtils.newIllegalStateException(DataUtils.ERROR_FILE_CORRUPT,
+                    "Illegal page length {0} reading at {1}; max pos {2} ", length, filePos, maxPos);
+        }
+        return fileStore.readFully(filePos, length);
+    }
+
     /**
      * Get the chunk for the given position.
      *
@@ -1183,6 +1254,10 @@ private void store() {
                         throw DataUtils.newIllegalStateException(
                                 DataUtils.ERROR_WRITING_FAILED, "This store is read-only");
                     }
+                    Runnable r = beforeStore;
+                    if (r != null) {
+                        r.run();
+                    }
                     try {
                         storeNow();
                     } catch (IllegalStateException e) {
@@ -2017,6 +2092,18 @@ public void sync() {
         }
     }
 
+    /**
+     * Set the task that is run before changes are written to the file. It is
+     * run by the thread that stores the changes, while holding the store
+     * lock, and may modify maps, for example to write changes that are kept
+     * in memory elsewhere.
+     *
+     * @param beforeStore the task, or null
+     */
+    public void setBeforeStore(Runnable beforeStore) {
+        this.beforeStore = beforeStore;
+    }
+
     /**
      * Try to increase the fill rate by re-writing partially full chunks. Chunks
      * with a low number of live items are re-written.
@@ -2235,18 +2322,35 @@ void removePage(long pos, int memory) {
         }
     }
 
-    Compressor getCompressorFast() {
-        if (compressorFast == null) {
-            compressorFast = new CompressLZF();
+    /**
+     * Get the compressor for the given algorithm. Compressors that need
+     * additional data (such as a dictionary) are not available here.
+     *
+     * @param algorithm the algorithm
+     * @return the compressor
+     * @throws IllegalStateException if the algorithm is not supported
+     */
+    Compressor getCompressor(int algorithm) {
+        if (algorithm < 0 || algorithm >= compressors.length || algorithm == Compressor.NO) {
+            throw DataUtils.newIllegalStateException(
+                    DataUtils.ERROR_FILE_CORRUPT,
+                    "Unsupported compression algorithm {0}", algorithm);
         }
-        return compressorFast;
-    }
-
-    Compressor getCompressorHigh() {
-        if (compressorHigh == null) {
-            compressorHigh = new CompressDeflate();
+        Compressor compressor = compressors[algorithm];
+        if (compressor == null) {
+            switch (algorithm) {
+            case Compressor.LZF:
+                compressor = new CompressLZF();
+                break;
+            case Compressor.DEFLATE:
+                compressor = new CompressDeflate();
+                break;
+            default:
+                compressor = new CompressLZ4();
+            }
+            compressors[algorithm] = compressor;
         }
-        return compressorHigh;
+        return compressor;
     }
 
     int getCompressionLevel() {
@@ -2579,6 +2683,10 @@ public void rollbackTo(long version) {
                     sync();
                 }
                 lastChunk = keep;
+                if (offHeapCache != null) {
+                    // the ids of the removed chunks will be used again
+                    offHeapCache.clear();
+                }
                 writeStoreHeader();
                 readStoreHeader();
             }
@@ -3011,6 +3119,15 @@ public CacheLongKeyLIRS<Page> getCache() {
         return cache;
     }
 
+    /**
+     * Get the off-heap cache of serialized pages.
+     *
+     * @return the cache, or null if not used
+     */
+    public CacheLongKeyOffHeap getOffHeapCache() {
+        return offHeapCache;
+    }
+
     /**
      * Whether the store is read-only.
      *
@@ -3297,6 +3414,21 @@ public Builder cacheConcurrency(int concurrency) {
             return set("cacheConcurrency", concurrency);
         }
 
+        /**
+         * Set the size of the off-heap cache in MB. The default is 0, meaning
+         * no off-heap cache is used. This cache keeps serialized (and possibly
+         * compressed) pages in direct byte buffers, outside of the Java heap,
+         * so that pages that are not in the read cache don't need to be read
+         * from the file. It can be much larger than the read cache, without
+         * increasing the heap size.
+         *
+         * @param mb the cache size in megabytes
+         * @return this
+         */
+        public Builder offHeapCacheSize(int mb) {
+            return set("offHeapCacheSize", mb);
+        }
+
         /**
          * Compress data before writing using the LZF algorithm. This will save
          * about 50% of the disk space, but will slow down read and write
@@ -18,6 +18,7 @@
 import java.util.TreeMap;
 
 import org.h2.compress.CompressDeflate;
+import org.h2.compress.CompressLZ4;
 import org.h2.compress.CompressLZF;
 import org.h2.compress.Compressor;
 import org.h2.engine.Constants;
@@ -232,8 +233,15 @@ public static void dump(String fileName, Writer writer, boolean details) {
                     if (mapId == 0 && details) {
                         ByteBuffer data;
                         if (compressed) {
-                            boolean fast = (type & DataUtils.PAGE_COMPRESSED_HIGH) != DataUtils.PAGE_COMPRESSED_HIGH;
-                            Compressor compressor = getCompressor(fast);
+                            int algorithm;
+                            if ((type & DataUtils.PAGE_COMPRESSED_CODEC) == DataUtils.PAGE_COMPRESSED_CODEC) {
+                                algorithm = DataUtils.readVarInt(chunk);
+                            } else if ((type & DataUtils.PAGE_COMPRESSED_HIGH) == DataUtils.PAGE_COMPRESSED_HIGH) {
+                                algorithm = Compressor.DEFLATE;
+                            } else {
+                                algorithm = Compressor.LZF;
+                            }
+                            Compressor compressor = getCompressor(algorithm);
                             int lenAdd = DataUtils.readVarInt(chunk);
                             int compLen = pageSize + start - chunk.position();
                             byte[] comp = Utils.newBytes(compLen);
@@ -335,8 +343,19 @@ public static void dump(String fileName, Writer writer, boolean details) {
         pw.flush();
     }
 
-    private static Compressor getCompressor(boolean fast) {
-        return fast ? new CompressLZF() : new CompressDeflate();
+    private static Compressor getCompressor(int algorithm) {
+        switch (algorithm) {
+        case Compressor.LZF:
+            return new CompressLZF();
+        case Compressor.DEFLATE:
+            return new CompressDeflate();
+        case Compressor.LZ4:
+            return new CompressLZ4();
+        default:
+            throw DataUtils.newIllegalStateException(
+                    DataUtils.ERROR_FILE_CORRUPT,
+                    "Unsupported compression algorithm {0}", algorithm);
+        }
     }
 
     /**
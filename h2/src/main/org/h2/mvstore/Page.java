@@ -34,6 +34,7 @@
  * map id: varInt
  * number of keys: varInt
  * type: byte (0: leaf, 1: node; +2: compressed)
+ * compressed with the codec of the map: algorithm (varInt)
  * compressed: bytes saved (varInt)
  * keys
  * leaf: values (one for each key)
@@ -675,11 +676,14 @@ private void read(ByteBuffer buff, int chunkId) {
         boolean compressed = (type & DataUtils.PAGE_COMPRESSED) != 0;
         if (compressed) {
             Compressor compressor;
-            if ((type & DataUtils.PAGE_COMPRESSED_HIGH) ==
+            if ((type & DataUtils.PAGE_COMPRESSED_CODEC) ==
+                    DataUtils.PAGE_COMPRESSED_CODEC) {
+                compressor = map.getCompressor(DataUtils.readVarInt(buff));
+            } else if ((type & DataUtils.PAGE_COMPRESSED_HIGH) ==
                     DataUtils.PAGE_COMPRESSED_HIGH) {
-                compressor = map.getStore().getCompressorHigh();
+                compressor = map.getStore().getCompressor(Compressor.DEFLATE);
             } else {
-                compressor = map.getStore().getCompressorFast();
+                compressor = map.getStore().getCompressor(Compressor.LZF);
             }
             int lenAdd = DataUtils.readVarInt(buff);
             int compLen = buff.remaining();
@@ -733,27 +737,40 @@ protected final int write(Chunk chunk, WriteBuffer buff) {
         MVStore store = map.getStore();
         int expLen = buff.position() - compressStart;
         if (expLen > 16) {
-            int compressionLevel = store.getCompressionLevel();
-            if (compressionLevel > 0) {
-                Compressor compressor;
-                int compressType;
+            Compressor compressor = map.getCompressor();
+            int compressType;
+            if (compressor != null) {
+                compressType = DataUtils.PAGE_COMPRESSED_CODEC;
+            } else {
+                int compressionLevel = store.getCompressionLevel();
                 if (compressionLevel == 1) {
-                    compressor = map.getStore().getCompressorFast();
+                    compressor = store.getCompressor(Compressor.LZF);
                     compressType = DataUtils.PAGE_COMPRESSED;
-                } else {
-                    compressor = map.getStore().getCompressorHigh();
+                } else if (compressionLevel > 1) {
+                    compressor = store.getCompressor(Compressor.DEFLATE);
                     compressType = DataUtils.PAGE_COMPRESSED_HIGH;
+                } else {
+                    compressType = 0;
                 }
+            }
+            if (compressor != null) {
                 byte[] exp = new byte[expLen];
                 buff.position(compressStart).get(exp);
                 byte[] comp = new byte[expLen * 2];
                 int compLen = compressor.compress(exp, expLen, comp, 0);
+                int algorithm = compressor.getAlgorithm();
                 int plus = DataUtils.getVarIntLen(compLen - expLen);
+                if (compressType == DataUtils.PAGE_COMPRESSED_CODEC) {
+                    plus += DataUtils.getVarIntLen(algorithm);
+                }
                 if (compLen + plus < expLen) {
                     buff.position(typePos).
                         put((byte) (type + compressType));
-                    buff.position(compressStart).
-                        putVarInt(expLen - compLen).
+                    buff.position(compressStart);
+                    if (compressType == DataUtils.PAGE_COMPRESSED_CODEC) {
+                        buff.putVarInt(algorithm);
+                    }
+                    buff.putVarInt(expLen - compLen).
                         put(comp, 0, compLen);
                 }
             }
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.cache;
+
+import java.nio.ByteBuffer;
+
+import org.h2.mvstore.DataUtils;
+
+/**
+ * A cache of byte arrays that uses keys of type long, and keeps the data
+ * outside of the Java heap, in direct byte buffers. It is meant to be used as
+ * a second level cache for serialized pages, below a cache of deserialized
+ * objects (CacheLongKeyLIRS), so that a large cache does not increase the heap
+ * size and the garbage collection pauses.
+ * <p>
+ * This implementation is multi-threading safe and supports concurrent access.
+ * The key 0 is not allowed. Entries can not be replaced, because the data of
+ * a key is expected to never change.
+ * <p>
+ * Internally, the cache is split into a number of segments. Each segment is
+ * a ring buffer: new entries are appended, and the oldest entries are
+ * overwritten once the segment is full. Entries that are read while they are
+ * in the oldest quarter of the segment are appended again, so that entries
+ * that are used often stay in the cache. The position of the entries is kept
+ * in an open addressing hash table of primitive longs, so that the number of
+ * objects on the heap does not depend on the number of entries.
+ */
+public class CacheLongKeyOffHeap {
+
+    /**
+     * The maximum size of a segment. Segments are larger than the maximum
+     * entry size, and smaller than the maximum size of a byte buffer.
+     */
+    private static final int MAX_SEGMENT_SIZE = 1 << 30;
+
+    private final Segment[] segments;
+
+    private final int segmentShift;
+
+    private final long maxMemory;
+
+    /**
+     * Create a new cache with the given memory size.
+     *
+     * @param maxMemory the maximum memory in bytes
+     * @param segmentCount the minimum number of segments (a power of 2)
+     */
+    public CacheLongKeyOffHeap(long maxMemory, int segmentCount) {
+        DataUtils.checkArgument(
+                Integer.bitCount(segmentCount) == 1,
+                "The segment count must be a power of 2, is {0}", segmentCount);
+        while (maxMemory / segmentCount > MAX_SEGMENT_SIZE) {
+            segmentCount *= 2;
+        }
+        this.maxMemory = maxMemory;
+        int segmentSize = (int) Math.max(1024, maxMemory / segmentCount);
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        // use the high bits for the segment
+        segmentShift = 32 - Integer.bitCount(segmentCount - 1);
+    }
+
+    private Segment getSegment(int hash) {
+        // unsigned shift, so that the result is never negative
+        return segments[segments.length == 1 ? 0 : hash >>> segmentShift];
+    }
+
+    private static int getHash(long key) {
+        long h = key * 0x9e3779b97f4a7c15L;
+        return (int) (h >>> 32);
+    }
+
+    /**
+     * Get a copy of the data of an entry.
+     *
+     * @param key the key (may not be 0)
+     * @return a heap buffer with the data, or null if not found
+     */
+    public ByteBuffer get(long key) {
+        int hash = getHash(key);
+        return getSegment(hash).get(key, hash);
+    }
+
+    /**
+     * Add an entry, if it is not in the cache yet. Entries that are larger
+     * than a quarter of a segment are not added.
+     *
+     * @param key the key (may not be 0)
+     * @param data the data, from the position to the limit (the position of
+     *            the buffer is not changed)
+     */
+    public void put(long key, ByteBuffer data) {
+        int hash = getHash(key);
+        getSegment(hash).put(key, hash, data);
+    }
+
+    /**
+     * Remove all entries, and release the memory.
+     */
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    /**
+     * Get the maximum memory to use.
+     *
+     * @return the maximum memory in bytes
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Get the memory used by the data of the entries, including the entries
+     * that were overwritten but are still in the buffer.
+     *
+     * @return the used memory in bytes
+     */
+    public long getUsedMemory() {
+        long x = 0;
+        for (Segment s : segments) {
+            x += s.getUsedMemory();
+        }
+        return x;
+    }
+
+    /**
+     * Get the number of cache hits.
+     *
+     * @return the cache hits
+     */
+    public long getHits() {
+        long x = 0;
+        for (Segment s : segments) {
+            x += s.hits;
+        }
+        return x;
+    }
+
+    /**
+     * Get the number of cache misses.
+     *
+     * @return the cache misses
+     */
+    public long getMisses() {
+        long x = 0;
+        for (Segment s : segments) {
+            x += s.misses;
+        }
+        return x;
+    }
+
+    /**
+     * Get the number of entries.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        int x = 0;
+        for (Segment s : segments) {
+            x += s.size;
+        }
+        return x;
+    }
+
+    /**
+     * A cache segment.
+     */
+    private static final class Segment {
+
+        /**
+         * The length of the header of an entry: the key (a long), and the
+         * length of the data (an int).
+         */
+        private static final int HEADER_LENGTH = 12;
+
+        private static final int INITIAL_TABLE_SIZE = 256;
+
+        /**
+         * The number of cache hits.
+         */
+        long hits;
+
+        /**
+         * The number of cache misses.
+         */
+        long misses;
+
+        /**
+         * The number of entries.
+         */
+        int size;
+
+        private final int capacity;
+
+        /**
+         * The buffer, or null if nothing was added yet.
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * The position of the oldest entry. Positions are counted from the
+         * start of the segment, and are not wrapped, so the position in the
+         * buffer is (position % capacity).
+         */
+        private long head;
+
+        /**
+         * The position where the next entry is appended.
+         */
+        private long tail;
+
+        /**
+         * The keys of the hash table, 0 for empty slots.
+         */
+        private long[] keys;
+
+        /**
+         * The positions of the entries of the hash table.
+         */
+        private long[] positions;
+
+        private int mask;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            clear();
+        }
+
+        synchronized void clear() {
+            buffer = null;
+            head = tail = 0;
+            keys = new long[INITIAL_TABLE_SIZE];
+            positions = new long[INITIAL_TABLE_SIZE];
+            mask = INITIAL_TABLE_SIZE - 1;
+            size = 0;
+        }
+
+        synchronized long getUsedMemory() {
+            return tail - head;
+        }
+
+        synchronized ByteBuffer get(long key, int hash) {
+            int index = find(key, hash);
+            if (index < 0) {
+                misses++;
+                return null;
+            }
+            hits++;
+            long pos = positions[index];
+            int offset = (int) (pos % capacity);
+            int length = buffer.getInt(offset + 8);
+            byte[] data = new byte[length];
+            ByteBuffer b = buffer.duplicate();
+            b.position(offset + HEADER_LENGTH);
+            b.get(data);
+            if (tail - pos > capacity - capacity / 4) {
+                // will be overwritten soon: move to the front
+                append(key, hash, ByteBuffer.wrap(data));
+            }
+            return ByteBuffer.wrap(data);
+        }
+
+        synchronized void put(long key, int hash, ByteBuffer data) {
+            if (HEADER_LENGTH + data.remaining() > capacity / 4 || find(key, hash) >= 0) {
+                return;
+            }
+            if (buffer == null) {
+                buffer = ByteBuffer.allocateDirect(capacity);
+            }
+            append(key, hash, data);
+        }
+
+        private void append(long key, int hash, ByteBuffer data) {
+            int length = data.remaining();
+            int offset = (int) (tail % capacity);
+            int remaining = capacity - offset;
+            if (remaining < HEADER_LENGTH + length) {
+                // skip the rest of the buffer
+                evict(tail + remaining + HEADER_LENGTH + length);
+                if (remaining >= HEADER_LENGTH) {
+                    buffer.putLong(offset, 0);
+                    buffer.putInt(offset + 8, remaining - HEADER_LENGTH);
+                }
+                tail += remaining;
+                offset = 0;
+            } else {
+                evict(tail + HEADER_LENGTH + length);
+            }
+            buffer.putLong(offset, key);
+            buffer.putInt(offset + 8, length);
+            ByteBuffer b = buffer.duplicate();
+            b.position(offset + HEADER_LENGTH);
+            b.put(data.duplicate());
+            long pos = tail;
+            tail += HEADER_LENGTH + length;
+            int index = find(key, hash);
+            if (index >= 0) {
+                positions[index] = pos;
+                return;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            index = hash & mask;
+            while (keys[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = key;
+            positions[index] = pos;
+            size++;
+        }
+
+        /**
+         * Remove the oldest entries, until the segment can grow up to the
+         * given position.
+         *
+         * @param newTail the new position of the tail
+         */
+        private void evict(long newTail) {
+            while (newTail - head > capacity) {
+                int offset = (int) (head % capacity);
+                int remaining = capacity - offset;
+                if (remaining < HEADER_LENGTH) {
+                    head += remaining;
+                    continue;
+                }
+                long key = buffer.getLong(offset);
+                if (key != 0) {
+                    int index = find(key, getHash(key));
+                    if (index >= 0 && positions[index] == head) {
+                        remove(index);
+                    }
+                }
+                head += HEADER_LENGTH + buffer.getInt(offset + 8);
+            }
+        }
+
+        private int find(long key, int hash) {
+            int index = hash & mask;
+            while (true) {
+                long k = keys[index];
+                if (k == key) {
+                    return index;
+                } else if (k == 0) {
+                    return -1;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private void remove(int index) {
+            // move the following entries of the same cluster back, if needed,
+            // so that no entry is behind an empty slot
+            int next = index;
+            while (true) {
+                next = (next + 1) & mask;
+                long k = keys[next];
+                if (k == 0) {
+                    break;
+                }
+                int home = getHash(k) & mask;
+                if (((next - home) & mask) >= ((next - index) & mask)) {
+                    keys[index] = k;
+                    positions[index] = positions[next];
+                    index = next;
+                }
+            }
+            keys[index] = 0;
+            positions[index] = 0;
+            size--;
+        }
+
+        private void rehash(int newSize) {
+            long[] oldKeys = keys;
+            long[] oldPositions = positions;
+            keys = new long[newSize];
+            positions = new long[newSize];
+            mask = newSize - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                long k = oldKeys[i];
+                if (k != 0) {
+                    int index = getHash(k) & mask;
+                    while (keys[index] != 0) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = k;
+                    positions[index] = oldPositions[i];
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.h2.api.ErrorCode;
+import org.h2.message.DbException;
+import org.h2.mvstore.DataUtils;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.util.DateTimeUtils;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueByte;
+import org.h2.value.ValueDate;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueShort;
+import org.h2.value.ValueTime;
+import org.h2.value.ValueTimestamp;
+
+/**
+ * The columnar format for the rows of a page. The values of each column are
+ * stored together, and each column uses the encoding that needs the least
+ * space:
+ * <ul>
+ * <li>plain: each value</li>
+ * <li>run length: the number of runs, then the length and the value of each
+ * run</li>
+ * <li>dictionary: the distinct values, then the index of each value
+ * (bit-packed)</li>
+ * <li>frame of reference: the minimum value, then the difference of each
+ * value to the minimum (bit-packed; integer, date and time values only)</li>
+ * <li>delta: the first value and the minimum difference between adjacent
+ * values, then the difference of each value to the previous value minus the
+ * minimum difference (bit-packed; integer, date and time values only)</li>
+ * </ul>
+ * Bit-packed numbers use the smallest number of bits for the largest number,
+ * starting with the lowest bit of each byte.
+ */
+final class ColumnarEncoding {
+
+    private static final int PLAIN = 0;
+    private static final int RUN_LENGTH = 1;
+    private static final int DICTIONARY = 2;
+    private static final int FRAME = 3;
+    private static final int DELTA = 4;
+
+    /**
+     * The maximum absolute day of timestamps that are encoded as numbers (so
+     * that the number of nanoseconds fits in a long).
+     */
+    private static final long MAX_TIMESTAMP_DAY = Long.MAX_VALUE / DateTimeUtils.NANOS_PER_DAY - 1;
+
+    private ColumnarEncoding() {
+        // utility class
+    }
+
+    /**
+     * Check whether the rows can be written in the columnar format: there
+     * are at least two rows, and all rows are arrays of the same length.
+     *
+     * @param obj the rows
+     * @param len the number of rows
+     * @return true if they can be written
+     */
+    static boolean isSupported(Object[] obj, int len) {
+        if (len < 2 || !(obj[0] instanceof ValueArray)) {
+            return false;
+        }
+        int columnCount = ((ValueArray) obj[0]).getList().length;
+        for (int i = 1; i < len; i++) {
+            if (!(obj[i] instanceof ValueArray) || ((ValueArray) obj[i]).getList().length != columnCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the rows.
+     *
+     * @param type the data type
+     * @param buff the target buffer
+     * @param obj the rows
+     * @param len the number of rows
+     */
+    static void write(ValueDataType type, WriteBuffer buff, Object[] obj, int len) {
+        int columnCount = ((ValueArray) obj[0]).getList().length;
+        buff.putVarInt(columnCount);
+        Value[] column = new Value[len];
+        WriteBuffer candidate = new WriteBuffer();
+        for (int c = 0; c < columnCount; c++) {
+            for (int i = 0; i < len; i++) {
+                column[i] = ((ValueArray) obj[i]).getList()[c];
+            }
+            writeColumn(type, column, len, buff, candidate);
+        }
+    }
+
+    /**
+     * Append the column with the encoding that needs the least space.
+     *
+     * @param type the data type
+     * @param column the values
+     * @param len the number of values
+     * @param target the target buffer
+     * @param candidate a buffer to try other encodings
+     */
+    private static void writeColumn(ValueDataType type, Value[] column, int len, WriteBuffer target,
+            WriteBuffer candidate) {
+        int start = target.position();
+        target.put((byte) PLAIN);
+        for (int i = 0; i < len; i++) {
+            type.writeValue(target, column[i]);
+        }
+        int bestLength = target.position() - start;
+        if (!isComparable(column, len)) {
+            return;
+        }
+        long[] numbers = getNumbers(column, len);
+        for (int encoding = RUN_LENGTH; encoding <= DELTA; encoding++) {
+            candidate.clear();
+            boolean ok;
+            switch (encoding) {
+            case RUN_LENGTH:
+                ok = writeRunLength(type, candidate, column, len);
+                break;
+            case DICTIONARY:
+                ok = writeDictionary(type, candidate, column, len);
+                break;
+            case FRAME:
+                ok = numbers != null && writeFrame(candidate, column[0].getValueType(), numbers, len);
+                break;
+            default:
+                ok = numbers != null && writeDelta(candidate, column[0].getValueType(), numbers, len);
+            }
+            if (ok && candidate.position() < bestLength) {
+                bestLength = candidate.position();
+                target.position(start);
+                ByteBuffer b = candidate.getBuffer();
+                b.flip();
+                target.put(b);
+            }
+        }
+    }
+
+    /**
+     * Check whether equal values can be stored only once. This is not the
+     * case for large objects.
+     */
+    private static boolean isComparable(Value[] column, int len) {
+        for (int i = 0; i < len; i++) {
+            switch (column[i].getValueType()) {
+            case Value.BLOB:
+            case Value.CLOB:
+            case Value.RESULT_SET:
+                return false;
+            default:
+            }
+        }
+        return true;
+    }
+
+    private static boolean writeRunLength(ValueDataType type, WriteBuffer buff, Value[] column, int len) {
+        int runs = 1;
+        for (int i = 1; i < len; i++) {
+            if (!column[i].equals(column[i - 1])) {
+                runs++;
+            }
+        }
+        if (runs > len / 2) {
+            return false;
+        }
+        buff.put((byte) RUN_LENGTH).putVarInt(runs);
+        for (int i = 0; i < len;) {
+            int j = i + 1;
+            while (j < len && column[j].equals(column[i])) {
+                j++;
+            }
+            buff.putVarInt(j - i);
+            type.writeValue(buff, column[i]);
+            i = j;
+        }
+        return true;
+    }
+
+    private static boolean writeDictionary(ValueDataType type, WriteBuffer buff, Value[] column, int len) {
+        HashMap<Value, Integer> map = new HashMap<>();
+        ArrayList<Value> dictionary = new ArrayList<>();
+        long[] indexes = new long[len];
+        for (int i = 0; i < len; i++) {
+            Value v = column[i];
+            Integer index = map.get(v);
+            if (index == null) {
+                if (dictionary.size() >= len / 2) {
+                    return false;
+                }
+                index = dictionary.size();
+                map.put(v, index);
+                dictionary.add(v);
+            }
+            indexes[i] = index;
+        }
+        int size = dictionary.size();
+        buff.put((byte) DICTIONARY).putVarInt(size);
+        for (Value v : dictionary) {
+            type.writeValue(buff, v);
+        }
+        writeBits(buff, indexes, 0, len, 0, getBitCount(size - 1));
+        return true;
+    }
+
+    private static boolean writeFrame(WriteBuffer buff, int valueType, long[] numbers, int len) {
+        long min = numbers[0], max = min;
+        for (int i = 1; i < len; i++) {
+            long x = numbers[i];
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+        }
+        long range = max - min;
+        if (range < 0) {
+            // overflow
+            return false;
+        }
+        int bits = getBitCount(range);
+        buff.put((byte) FRAME).put((byte) valueType).putVarLong(min).put((byte) bits);
+        writeBits(buff, numbers, 0, len, min, bits);
+        return true;
+    }
+
+    private static boolean writeDelta(WriteBuffer buff, int valueType, long[] numbers, int len) {
+        long[] deltas = new long[len - 1];
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (int i = 1; i < len; i++) {
+            long a = numbers[i], b = numbers[i - 1];
+            long d = a - b;
+            if (((a ^ b) & (a ^ d)) < 0) {
+                // overflow
+                return false;
+            }
+            deltas[i - 1] = d;
+            min = Math.min(min, d);
+            max = Math.max(max, d);
+        }
+        long range = max - min;
+        if (range < 0) {
+            return false;
+        }
+        int bits = getBitCount(range);
+        buff.put((byte) DELTA).put((byte) valueType).putVarLong(numbers[0]).putVarLong(min).put((byte) bits);
+        writeBits(buff, deltas, 0, len - 1, min, bits);
+        return true;
+    }
+
+    /**
+     * Get the values as numbers, if they are integer, date or time values of
+     * the same type.
+     *
+     * @param column the values
+     * @param len the number of values
+     * @return the numbers, or null
+     */
+    private static long[] getNumbers(Value[] column, int len) {
+        int valueType = column[0].getValueType();
+        switch (valueType) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP:
+            break;
+        default:
+            return null;
+        }
+        long[] numbers = new long[len];
+        for (int i = 0; i < len; i++) {
+            Value v = column[i];
+            if (v.getValueType() != valueType) {
+                return null;
+            }
+            switch (valueType) {
+            case Value.DATE:
+                numbers[i] = DateTimeUtils.absoluteDayFromDateValue(((ValueDate) v).getDateValue());
+                break;
+            case Value.TIME:
+                numbers[i] = ((ValueTime) v).getNanos();
+                break;
+            case Value.TIMESTAMP: {
+                ValueTimestamp ts = (ValueTimestamp) v;
+                long day = DateTimeUtils.absoluteDayFromDateValue(ts.getDateValue());
+                if (Math.abs(day) > MAX_TIMESTAMP_DAY) {
+                    return null;
+                }
+                numbers[i] = day * DateTimeUtils.NANOS_PER_DAY + ts.getTimeNanos();
+                break;
+            }
+            default:
+                numbers[i] = v.getLong();
+            }
+        }
+        return numbers;
+    }
+
+    private static Value getValue(int valueType, long x) {
+        switch (valueType) {
+        case Value.BYTE:
+            return ValueByte.get((byte) x);
+        case Value.SHORT:
+            return ValueShort.get((short) x);
+        case Value.INT:
+            return ValueInt.get((int) x);
+        case Value.LONG:
+            return ValueLong.get(x);
+        case Value.DATE:
+            return ValueDate.fromDateValue(DateTimeUtils.dateValueFromAbsoluteDay(x));
+        case Value.TIME:
+            return ValueTime.fromNanos(x);
+        case Value.TIMESTAMP: {
+            long day = x / DateTimeUtils.NANOS_PER_DAY;
+            long nanos = x % DateTimeUtils.NANOS_PER_DAY;
+            if (nanos < 0) {
+                nanos += DateTimeUtils.NANOS_PER_DAY;
+                day--;
+            }
+            return ValueTimestamp.fromDateValueAndNanos(DateTimeUtils.dateValueFromAbsoluteDay(day), nanos);
+        }
+        default:
+            throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "value type: " + valueType);
+        }
+    }
+
+    private static int getBitCount(long x) {
+        return 64 - Long.numberOfLeadingZeros(x);
+    }
+
+    private static void writeBits(WriteBuffer buff, long[] numbers, int from, int len, long base, int bits) {
+        if (bits == 0) {
+            return;
+        }
+        int current = 0, currentBits = 0;
+        for (int i = from; i < from + len; i++) {
+            long x = numbers[i] - base;
+            int remaining = bits;
+            while (remaining > 0) {
+                int n = Math.min(8 - currentBits, remaining);
+                current |= (int) (x & ((1 << n) - 1)) << currentBits;
+                x >>>= n;
+                remaining -= n;
+                currentBits += n;
+                if (currentBits == 8) {
+                    buff.put((byte) current);
+                    current = 0;
+                    currentBits = 0;
+                }
+            }
+        }
+        if (currentBits > 0) {
+            buff.put((byte) current);
+        }
+    }
+
+    private static void readBits(ByteBuffer buff, long[] numbers, int len, long base, int bits) {
+        int current = 0, currentBits = 0;
+        for (int i = 0; i < len; i++) {
+            long x = 0;
+            int shift = 0;
+            while (shift < bits) {
+                if (currentBits == 0) {
+                    current = buff.get() & 255;
+                    currentBits = 8;
+                }
+                int n = Math.min(currentBits, bits - shift);
+                x |= (long) (current & ((1 << n) - 1)) << shift;
+                current >>>= n;
+                currentBits -= n;
+                shift += n;
+            }
+            numbers[i] = base + x;
+        }
+    }
+
+    /**
+     * Read the rows.
+     *
+     * @param type the data type
+     * @param buff the source buffer
+     * @param obj the target array
+     * @param len the number of rows
+     */
+    static void read(ValueDataType type, ByteBuffer buff, Object[] obj, int len) {
+        int columnCount = DataUtils.readVarInt(buff);
+        Value[][] rows = new Value[len][columnCount];
+        long[] numbers = new long[len];
+        for (int c = 0; c < columnCount; c++) {
+            int encoding = buff.get();
+            switch (encoding) {
+            case PLAIN:
+                for (int i = 0; i < len; i++) {
+                    rows[i][c] = (Value) type.readValue(buff);
+                }
+                break;
+            case RUN_LENGTH: {
+                int runs = DataUtils.readVarInt(buff);
+                for (int r = 0, i = 0; r < runs; r++) {
+                    int runLength = DataUtils.readVarInt(buff);
+                    Value v = (Value) type.readValue(buff);
+                    for (int j = 0; j < runLength; j++) {
+                        rows[i++][c] = v;
+                    }
+                }
+                break;
+            }
+            case DICTIONARY: {
+                int size = DataUtils.readVarInt(buff);
+                Value[] dictionary = new Value[size];
+                for (int i = 0; i < size; i++) {
+                    dictionary[i] = (Value) type.readValue(buff);
+                }
+                readBits(buff, numbers, len, 0, getBitCount(size - 1));
+                for (int i = 0; i < len; i++) {
+                    rows[i][c] = dictionary[(int) numbers[i]];
+                }
+                break;
+            }
+            case FRAME: {
+                int valueType = buff.get();
+                long min = DataUtils.readVarLong(buff);
+                int bits = buff.get();
+                readBits(buff, numbers, len, min, bits);
+                for (int i = 0; i < len; i++) {
+                    rows[i][c] = getValue(valueType, numbers[i]);
+                }
+                break;
+            }
+            case DELTA: {
+                int valueType = buff.get();
+                long x = DataUtils.readVarLong(buff);
+                long min = DataUtils.readVarLong(buff);
+                int bits = buff.get();
+                readBits(buff, numbers, len - 1, min, bits);
+                rows[0][c] = getValue(valueType, x);
+                for (int i = 1; i < len; i++) {
+                    x += numbers[i - 1];
+                    rows[i][c] = getValue(valueType, x);
+                }
+                break;
+            }
+            default:
+                throw DbException.get(ErrorCode.FILE_CORRUPTED_1, "encoding: " + encoding);
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            obj[i] = ValueArray.get(rows[i]);
+        }
+    }
+
+}
@@ -10,6 +10,7 @@
 import org.h2.engine.Session;
 import org.h2.index.BaseIndex;
 import org.h2.index.Cursor;
+import org.h2.index.IndexLookupBatch;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.result.Row;
@@ -83,6 +84,11 @@ public Cursor find(Session session, SearchRow first, SearchRow last) {
         return mainIndex.find(session, min, max);
     }
 
+    @Override
+    public IndexLookupBatch createLookupBatch(TableFilter[] filters, int filter) {
+        return new MVIndexLookupBatch(filters[filter], this, mainIndex, null);
+    }
+
     @Override
     public Cursor findFirstOrLast(Session session, boolean first) {
         return mainIndex.findFirstOrLast(session, first);
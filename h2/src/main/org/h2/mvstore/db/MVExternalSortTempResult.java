@@ -0,0 +1,359 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.h2.engine.Database;
+import org.h2.expression.Expression;
+import org.h2.message.DbException;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.result.ResultExternal;
+import org.h2.result.SortOrder;
+import org.h2.value.Value;
+import org.h2.value.ValueRow;
+
+/**
+ * Sorted temporary result that uses an external merge sort.
+ *
+ * <p>
+ * This result is used for sorted results that are not distinct. The rows are
+ * collected in memory, up to MAX_MEMORY_ROWS rows, sorted, and then appended
+ * to a new map of the store as a sorted run. If there are multiple worker
+ * threads (see MAX_PARALLEL_WORKERS), parts of a run are sorted in parallel.
+ * The runs are merged while the rows are read. Each row is therefore written
+ * once, sequentially, instead of being inserted into a sorted map.
+ * </p>
+ * <p>
+ * Rows that are equal are returned in the order they were added.
+ * </p>
+ */
+class MVExternalSortTempResult extends MVTempResult {
+
+    /**
+     * The minimum number of rows to sort per thread.
+     */
+    private static final int MIN_PARALLEL_SORT_ROWS = 4096;
+
+    private final Database database;
+
+    private final SortOrder sort;
+
+    private final ValueDataType rowType;
+
+    /**
+     * The maximum number of rows of a run.
+     */
+    private final int maxRunSize;
+
+    /**
+     * The sorted runs. Only the root result can add runs.
+     */
+    private final ArrayList<MVMap<Long, ValueRow>> runs;
+
+    /**
+     * The rows that were added, but are not yet in a run.
+     */
+    private ArrayList<Value[]> buffer = new ArrayList<>();
+
+    /**
+     * The cursors of the runs for the {@link #next()} method, as a binary
+     * heap with the cursor of the next row on top.
+     */
+    private RunCursor[] heap;
+
+    private int heapSize;
+
+    /**
+     * Creates a shallow copy of the result.
+     *
+     * @param parent
+     *                   parent result
+     */
+    private MVExternalSortTempResult(MVExternalSortTempResult parent) {
+        super(parent);
+        this.database = parent.database;
+        this.sort = parent.sort;
+        this.rowType = parent.rowType;
+        this.maxRunSize = parent.maxRunSize;
+        this.runs = parent.runs;
+        this.rowCount = parent.rowCount;
+    }
+
+    /**
+     * Creates a new temporary result.
+     *
+     * @param database
+     *            database
+     * @param expressions
+     *            column expressions
+     * @param visibleColumnCount
+     *            count of visible columns
+     * @param sort
+     *            sort order
+     */
+    MVExternalSortTempResult(Database database, Expression[] expressions, int visibleColumnCount, SortOrder sort) {
+        super(database, expressions, visibleColumnCount);
+        this.database = database;
+        this.sort = sort;
+        rowType = new ValueDataType(database, new int[expressions.length]);
+        maxRunSize = Math.max(database.getMaxMemoryRows(), 1);
+        runs = new ArrayList<>();
+    }
+
+    @Override
+    public int addRow(Value[] values) {
+        assert parent == null && heap == null;
+        buffer.add(values);
+        if (buffer.size() >= maxRunSize) {
+            flush();
+        }
+        return ++rowCount;
+    }
+
+    @Override
+    public int addRows(Collection<Value[]> rows) {
+        assert parent == null && heap == null;
+        if (buffer.isEmpty() && rows.size() >= maxRunSize) {
+            // the rows are a complete run
+            writeRun(rows.toArray(new Value[0][]));
+            rowCount += rows.size();
+            return rowCount;
+        }
+        return super.addRows(rows);
+    }
+
+    /**
+     * Write the buffered rows as a new run.
+     */
+    private void flush() {
+        if (!buffer.isEmpty()) {
+            writeRun(buffer.toArray(new Value[0][]));
+            buffer = new ArrayList<>();
+        }
+    }
+
+    private void writeRun(Value[][] rows) {
+        sortRun(rows);
+        MVMap<Long, ValueRow> run = store.openMap("run" + runs.size(),
+                new MVMap.Builder<Long, ValueRow>().valueType(rowType).singleWriter());
+        long key = 0;
+        for (Value[] row : rows) {
+            run.append(key++, ValueRow.get(row));
+        }
+        run.flushAndGetRoot();
+        runs.add(run);
+    }
+
+    /**
+     * Sort the rows of a run. Parts of the run are sorted in parallel if
+     * possible, and then merged.
+     *
+     * @param rows the rows
+     */
+    private void sortRun(final Value[][] rows) {
+        int length = rows.length;
+        int parts = Math.min(database.getMaxParallelWorkers(), length / MIN_PARALLEL_SORT_ROWS);
+        if (parts <= 1) {
+            Arrays.sort(rows, sort);
+            return;
+        }
+        final int[] starts = new int[parts + 1];
+        ArrayList<Callable<Void>> tasks = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            starts[i + 1] = (int) ((long) length * (i + 1) / parts);
+            final int from = starts[i], to = starts[i + 1];
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Arrays.sort(rows, from, to, sort);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> f : database.getParallelWorkerPool().invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            throw DbException.convert(e);
+        } catch (ExecutionException e) {
+            throw DbException.convert(e.getCause());
+        }
+        // merge the parts pairwise
+        Value[][] source = rows, target = new Value[length][];
+        for (int width = 1; width < parts; width *= 2) {
+            for (int i = 0; i < parts; i += 2 * width) {
+                int from = starts[i], middle = starts[Math.min(i + width, parts)],
+                        to = starts[Math.min(i + 2 * width, parts)];
+                merge(source, from, middle, to, target);
+            }
+            Value[][] t = source;
+            source = target;
+            target = t;
+        }
+        if (source != rows) {
+            System.arraycopy(source, 0, rows, 0, length);
+        }
+    }
+
+    private void merge(Value[][] source, int from, int middle, int to, Value[][] target) {
+        int a = from, b = middle, i = from;
+        while (a < middle && b < to) {
+            // the row of the first part is used first if they are equal
+            target[i++] = sort.compare(source[a], source[b]) <= 0 ? source[a++] : source[b++];
+        }
+        System.arraycopy(source, a, target, i, middle - a);
+        System.arraycopy(source, b, target, i + middle - a, to - b);
+    }
+
+    @Override
+    public boolean contains(Value[] values) {
+        throw DbException.getUnsupportedException("contains()");
+    }
+
+    @Override
+    public synchronized ResultExternal createShallowCopy() {
+        if (parent != null) {
+            return parent.createShallowCopy();
+        }
+        if (closed) {
+            return null;
+        }
+        flush();
+        childCount++;
+        return new MVExternalSortTempResult(this);
+    }
+
+    @Override
+    public Value[] next() {
+        if (heap == null) {
+            if (parent == null) {
+                flush();
+            }
+            heap = new RunCursor[runs.size()];
+            heapSize = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                RunCursor c = new RunCursor(runs.get(i).cursor(null), i);
+                if (c.next()) {
+                    heap[heapSize++] = c;
+                    siftUp(heapSize - 1);
+                }
+            }
+        }
+        if (heapSize == 0) {
+            return null;
+        }
+        RunCursor top = heap[0];
+        Value[] row = top.current;
+        if (!top.next()) {
+            heap[0] = heap[--heapSize];
+            heap[heapSize] = null;
+        }
+        if (heapSize > 0) {
+            siftDown(0);
+        }
+        if (hasEnum) {
+            fixEnum(row);
+        }
+        return row;
+    }
+
+    private void siftUp(int i) {
+        RunCursor c = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (compare(heap[parent], c) <= 0) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = c;
+    }
+
+    private void siftDown(int i) {
+        RunCursor c = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && compare(heap[child + 1], heap[child]) < 0) {
+                child++;
+            }
+            if (compare(c, heap[child]) <= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = c;
+    }
+
+    private int compare(RunCursor a, RunCursor b) {
+        int comp = sort.compare(a.current, b.current);
+        // rows of older runs were added first
+        return comp != 0 ? comp : Integer.compare(a.run, b.run);
+    }
+
+    @Override
+    public int removeRow(Value[] values) {
+        throw DbException.getUnsupportedException("removeRow()");
+    }
+
+    @Override
+    public void reset() {
+        heap = null;
+        heapSize = 0;
+    }
+
+    /**
+     * A cursor over the rows of a run.
+     */
+    private static final class RunCursor {
+
+        /**
+         * The index of the run.
+         */
+        final int run;
+
+        /**
+         * The current row.
+         */
+        Value[] current;
+
+        private final Cursor<Long, ValueRow> cursor;
+
+        RunCursor(Cursor<Long, ValueRow> cursor, int run) {
+            this.cursor = cursor;
+            this.run = run;
+        }
+
+        /**
+         * Read the next row.
+         *
+         * @return whether there is a row
+         */
+        boolean next() {
+            if (!cursor.hasNext()) {
+                current = null;
+                return false;
+            }
+            cursor.next();
+            current = cursor.getValue().getList();
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.api.ErrorCode;
+import org.h2.command.dml.AllColumnsForPlan;
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.index.BaseIndex;
+import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexType;
+import org.h2.message.DbException;
+import org.h2.mvstore.WriteBuffer;
+import org.h2.mvstore.tx.Transaction;
+import org.h2.mvstore.tx.TransactionMap;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.TableFilter;
+import org.h2.value.CompareMode;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
+import org.h2.value.VersionedValue;
+
+/**
+ * A persistent hash index for a table stored in a MVStore.
+ * <p>
+ * The map key is the hash code of the indexed values plus the row key, and
+ * the map value contains the indexed values. Because the keys are small and
+ * of fixed size, a lookup needs to read only one leaf page, even for wide
+ * keys. Entries with the same hash code are distinguished by comparing the
+ * indexed values that are stored in the same page.
+ * <p>
+ * The hash code is part of the file format. It is calculated from the
+ * serialized values, and not with Value.hashCode(), which may change between
+ * versions.
+ */
+public final class MVHashIndex extends BaseIndex implements MVIndex {
+
+    /**
+     * The multi-value table.
+     */
+    final MVTable mvTable;
+    private final ValueDataType valueType;
+    private final TransactionMap<Value, Value> dataMap;
+
+    public MVHashIndex(Database db, MVTable table, int id, String indexName,
+            IndexColumn[] columns, IndexType indexType) {
+        super(table, id, indexName, columns, indexType);
+        this.mvTable = table;
+        if (!database.isStarting()) {
+            checkIndexColumnTypes(columns);
+        }
+        String mapName = getMapName(getId());
+        ValueDataType keyType = new ValueDataType(db,
+                new int[] { SortOrder.ASCENDING, SortOrder.ASCENDING });
+        valueType = new ValueDataType();
+        Transaction t = mvTable.getTransactionBegin();
+        dataMap = t.openMap(mapName, keyType, valueType);
+        dataMap.map.setVolatile(!table.isPersistData() || !indexType.isPersistent());
+        t.commit();
+        if (!keyType.equals(dataMap.getKeyType())) {
+            throw DbException.throwInternalError(
+                    "Incompatible key type, expected " + keyType + " but got "
+                            + dataMap.getKeyType() + " for index " + indexName);
+        }
+    }
+
+    /**
+     * Get the name of the map that stores the index data.
+     *
+     * @param id the index id
+     * @return the map name
+     */
+    static String getMapName(int id) {
+        return "hashIndex." + id;
+    }
+
+    /**
+     * Check whether a hash index can be used for the given columns. This is
+     * only the case if values that compare equal also have the same hash
+     * code.
+     *
+     * @param db the database
+     * @param columns the columns
+     * @return true if a hash index can be used
+     */
+    static boolean isSupported(Database db, IndexColumn[] columns) {
+        for (IndexColumn c : columns) {
+            int type = c.column.getType().getValueType();
+            if (!DataType.hasTotalOrdering(type) && !(type == Value.STRING
+                    && CompareMode.OFF.equals(db.getCompareMode().getName()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void addRowsToBuffer(List<Row> rows, String bufferName) {
+        throw DbException.throwInternalError();
+    }
+
+    @Override
+    public void addBufferedRows(List<String> bufferNames) {
+        throw DbException.throwInternalError();
+    }
+
+    @Override
+    public void close(Session session) {
+        // ok
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        TransactionMap<Value, Value> map = getMap(session);
+        int hash = getHash(row);
+        ValueArray values = getValues(row);
+        ValueArray key = getKey(hash, row.getKey());
+        boolean checkRequired = indexType.isUnique() && !mayHaveNullDuplicates(row);
+        if (checkRequired) {
+            checkUnique(map, hash, values, row.getKey());
+        }
+        try {
+            map.put(key, values);
+        } catch (IllegalStateException e) {
+            throw mvTable.convertException(e);
+        }
+        if (checkRequired) {
+            checkUnique(map, hash, values, row.getKey());
+        }
+    }
+
+    private void checkUnique(TransactionMap<Value, Value> map, int hash, ValueArray values, long newKey) {
+        Iterator<Value> it = map.keyIterator(getKey(hash, Long.MIN_VALUE),
+                getKey(hash, Long.MAX_VALUE), true);
+        while (it.hasNext()) {
+            ValueArray key = (ValueArray) it.next();
+            long rowKey = key.getList()[1].getLong();
+            if (rowKey == newKey) {
+                continue;
+            }
+            Value committed = map.get(key);
+            if (committed != null && areEqual((ValueArray) committed, values)) {
+                throw getDuplicateKeyException(values.toString());
+            }
+            VersionedValue data = map.map.get(key);
+            Object current = data == null ? null : data.getCurrentValue();
+            if (current != null && areEqual((ValueArray) current, values)) {
+                throw DbException.get(ErrorCode.CONCURRENT_UPDATE_1, table.getName());
+            }
+        }
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        ValueArray key = getKey(getHash(row), row.getKey());
+        TransactionMap<Value, Value> map = getMap(session);
+        try {
+            Value old = map.remove(key);
+            if (old == null) {
+                StringBuilder builder = new StringBuilder();
+                getSQL(builder, false).append(": ").append(row.getKey());
+                throw DbException.get(ErrorCode.ROW_NOT_FOUND_WHEN_DELETING_1, builder.toString());
+            }
+        } catch (IllegalStateException e) {
+            throw mvTable.convertException(e);
+        }
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            throw DbException.throwInternalError(first + " " + last);
+        }
+        if (first != last) {
+            if (compareRows(first, last) != 0) {
+                throw DbException.throwInternalError();
+            }
+        }
+        ValueArray values = getValues(first);
+        int hash = getHash(values);
+        TransactionMap<Value, Value> map = getMap(session);
+        Iterator<Map.Entry<Value, Value>> it = map.entryIterator(
+                getKey(hash, Long.MIN_VALUE), getKey(hash, Long.MAX_VALUE));
+        return new MVHashCursor(session, it, values);
+    }
+
+    /**
+     * Get the indexed values of a row, converted to the column types.
+     *
+     * @param r the row
+     * @return the values
+     */
+    private ValueArray getValues(SearchRow r) {
+        Value[] array = new Value[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            Column c = columns[i];
+            array[i] = r.getValue(c.getColumnId()).convertTo(c.getType(), database.getMode(), null);
+        }
+        return ValueArray.get(array);
+    }
+
+    private int getHash(Row row) {
+        return getHash(getValues(row));
+    }
+
+    /**
+     * Get the hash code of the indexed values, calculated from their
+     * serialized form.
+     *
+     * @param values the values
+     * @return the hash code
+     */
+    private int getHash(ValueArray values) {
+        WriteBuffer buff = new WriteBuffer(64);
+        for (Value v : values.getList()) {
+            valueType.writeValue(buff, v);
+        }
+        ByteBuffer b = buff.getBuffer();
+        int hash = 0;
+        for (int i = 0, len = b.position(); i < len; i++) {
+            hash = 31 * hash + b.get(i);
+        }
+        return hash;
+    }
+
+    private static ValueArray getKey(int hash, long rowKey) {
+        return ValueArray.get(new Value[] { ValueInt.get(hash), ValueLong.get(rowKey) });
+    }
+
+    /**
+     * Check whether the stored values are equal to the searched values.
+     *
+     * @param stored the stored values
+     * @param values the searched values
+     * @return true if they are equal
+     */
+    boolean areEqual(ValueArray stored, ValueArray values) {
+        Value[] a = stored.getList(), b = values.getList();
+        for (int i = 0; i < a.length; i++) {
+            if (!database.areEqual(a[i], b[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public MVTable getTable() {
+        return mvTable;
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks,
+            TableFilter[] filters, int filter, SortOrder sortOrder,
+            AllColumnsForPlan allColumnsSet) {
+        int totalSelectivity = 0;
+        for (Column column : columns) {
+            int mask = masks[column.getColumnId()];
+            if ((mask & IndexCondition.EQUALITY) != IndexCondition.EQUALITY) {
+                return Long.MAX_VALUE;
+            }
+            totalSelectivity = 100 - ((100 - totalSelectivity) *
+                    (100 - column.getSelectivity()) / 100);
+        }
+        long rowCount;
+        try {
+            rowCount = dataMap.sizeAsLongMax() + Constants.COST_ROW_OFFSET;
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+        long rowsCost;
+        if (indexType.isUnique()) {
+            rowsCost = 1;
+        } else {
+            long distinctRows = Math.max(rowCount * totalSelectivity / 100, 1);
+            rowsCost = Math.max(rowCount / distinctRows, 1);
+        }
+        // one leaf page, plus reading the matching rows
+        long cost = 1 + rowsCost;
+        if (sortOrder != null) {
+            // the rows are not sorted
+            cost += 100 + rowCount / 10;
+        }
+        return 10 * cost;
+    }
+
+    @Override
+    public void remove(Session session) {
+        TransactionMap<Value, Value> map = getMap(session);
+        if (!map.isClosed()) {
+            Transaction t = session.getTransaction();
+            t.removeMap(map);
+        }
+    }
+
+    @Override
+    public void truncate(Session session) {
+        TransactionMap<Value, Value> map = getMap(session);
+        map.clear();
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("HASH");
+    }
+
+    @Override
+    public boolean canScan() {
+        return false;
+    }
+
+    @Override
+    public boolean needRebuild() {
+        try {
+            return dataMap.sizeAsLongMax() == 0;
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        TransactionMap<Value, Value> map = getMap(session);
+        return map.sizeAsLong();
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        try {
+            return dataMap.sizeAsLongMax();
+        } catch (IllegalStateException e) {
+            throw DbException.get(ErrorCode.OBJECT_CLOSED, e);
+        }
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        // TODO estimate disk space usage
+        return 0;
+    }
+
+    @Override
+    public void checkRename() {
+        // ok
+    }
+
+    /**
+     * Get the map to store the data.
+     *
+     * @param session the session
+     * @return the map
+     */
+    private TransactionMap<Value, Value> getMap(Session session) {
+        if (session == null) {
+            return dataMap;
+        }
+        Transaction t = session.getTransaction();
+        return dataMap.getInstance(t);
+    }
+
+    /**
+     * A cursor over the entries with the same hash code, that skips the
+     * entries with other values.
+     */
+    final class MVHashCursor implements Cursor {
+
+        private final Session session;
+        private final Iterator<Map.Entry<Value, Value>> it;
+        private final ValueArray values;
+        private long rowKey;
+        private Row row;
+        private boolean found;
+
+        MVHashCursor(Session session, Iterator<Map.Entry<Value, Value>> it, ValueArray values) {
+            this.session = session;
+            this.it = it;
+            this.values = values;
+        }
+
+        @Override
+        public Row get() {
+            if (row == null && found) {
+                row = mvTable.getRow(session, rowKey);
+            }
+            return row;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return get();
+        }
+
+        @Override
+        public boolean next() {
+            row = null;
+            while (it.hasNext()) {
+                Map.Entry<Value, Value> e = it.next();
+                if (areEqual((ValueArray) e.getValue(), values)) {
+                    rowKey = ((ValueArray) e.getKey()).getList()[1].getLong();
+                    found = true;
+                    return true;
+                }
+            }
+            found = false;
+            return false;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.getUnsupportedException("previous");
+        }
+    }
+
+}
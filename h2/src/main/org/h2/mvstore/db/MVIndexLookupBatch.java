@@ -0,0 +1,341 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Future;
+
+import org.h2.api.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.index.Cursor;
+import org.h2.index.Index;
+import org.h2.index.IndexLookupBatch;
+import org.h2.message.DbException;
+import org.h2.mvstore.tx.TransactionMap;
+import org.h2.mvstore.tx.TransactionMap.TMIterator;
+import org.h2.mvstore.type.DataType;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.table.TableFilter;
+import org.h2.util.DoneFuture;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueLong;
+
+/**
+ * A batch of lookups in an index of a MVStore table, for batched joins (see
+ * SET BATCH_JOINS). The lookups are sorted by key, and resolved with a single
+ * iterator over the map, so that the pages on the path from the root are only
+ * read once for keys that are close to each other. For a secondary index, the
+ * rows are then read from the primary index in the order of their keys.
+ * <p>
+ * The index entries that were found are kept in memory, up to
+ * MAX_MEMORY_ROWS per batch. Lookups that would exceed this limit, and lookups
+ * without a lower bound, use a regular cursor of the index instead.
+ */
+final class MVIndexLookupBatch implements IndexLookupBatch {
+
+    /**
+     * The maximum number of lookups in a batch.
+     */
+    private static final int BATCH_SIZE = 1024;
+
+    private final TableFilter filter;
+
+    private final Index index;
+
+    private final MVPrimaryIndex primaryIndex;
+
+    /**
+     * The secondary index, or null if the lookups use the primary index.
+     */
+    private final MVSecondaryIndex secondaryIndex;
+
+    private final SearchRow[] firstRows = new SearchRow[BATCH_SIZE];
+
+    private final SearchRow[] lastRows = new SearchRow[BATCH_SIZE];
+
+    private final Value[] minKeys = new Value[BATCH_SIZE];
+
+    private final Value[] maxKeys = new Value[BATCH_SIZE];
+
+    private final ArrayList<Future<Cursor>> result = new ArrayList<>();
+
+    private int size;
+
+    /**
+     * Create a new lookup batch.
+     *
+     * @param filter the table filter
+     * @param index the index
+     * @param primaryIndex the primary index of the table
+     * @param secondaryIndex the secondary index, or null if the index is the
+     *            primary index or delegates to it
+     */
+    MVIndexLookupBatch(TableFilter filter, Index index, MVPrimaryIndex primaryIndex,
+            MVSecondaryIndex secondaryIndex) {
+        this.filter = filter;
+        this.index = index;
+        this.primaryIndex = primaryIndex;
+        this.secondaryIndex = secondaryIndex;
+    }
+
+    @Override
+    public boolean addSearchRows(SearchRow first, SearchRow last) {
+        assert size < BATCH_SIZE;
+        firstRows[size] = first;
+        lastRows[size] = last;
+        minKeys[size] = getKey(first, false);
+        maxKeys[size] = getKey(last, true);
+        size++;
+        return true;
+    }
+
+    private Value getKey(SearchRow row, boolean last) {
+        if (row == null) {
+            return null;
+        } else if (secondaryIndex != null) {
+            return secondaryIndex.convertToKey(row, last ? ValueLong.MAX : ValueLong.MIN);
+        } else if (index == primaryIndex) {
+            return primaryIndex.extractPKFromRow(row, null);
+        }
+        // see MVDelegateIndex.find
+        return primaryIndex.getKey(row, null, ValueLong.MIN);
+    }
+
+    @Override
+    public boolean isBatchFull() {
+        return size >= BATCH_SIZE;
+    }
+
+    @Override
+    public List<Future<Cursor>> find() {
+        result.clear();
+        if (size == 0) {
+            return result;
+        }
+        Session session = filter.getSession();
+        Cursor[] cursors = secondaryIndex != null ? findSecondary(session) : findPrimary(session);
+        for (int i = 0; i < size; i++) {
+            if (cursors[i] == null) {
+                cursors[i] = index.find(filter, firstRows[i], lastRows[i]);
+            }
+            result.add(new DoneFuture<>(cursors[i]));
+        }
+        clear();
+        return result;
+    }
+
+    /**
+     * Get the lookups in the order of their lower bound. Lookups without a
+     * lower bound are not included.
+     *
+     * @param keyType the key type of the map
+     * @return the indexes of the lookups
+     */
+    private int[] getSortedLookups(final DataType keyType) {
+        Integer[] order = new Integer[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (minKeys[i] != null) {
+                order[count++] = i;
+            }
+        }
+        Arrays.sort(order, 0, count, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return keyType.compare(minKeys[a], minKeys[b]);
+            }
+        });
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = order[i];
+        }
+        return sorted;
+    }
+
+    /**
+     * Resolve the lookups in the primary index.
+     *
+     * @param session the session
+     * @return the cursors, or null for lookups that need a regular cursor
+     */
+    private Cursor[] findPrimary(Session session) {
+        Cursor[] cursors = new Cursor[size];
+        TransactionMap<Value, Value> map = primaryIndex.getMap(session);
+        int remaining = session.getDatabase().getMaxMemoryRows();
+        TMIterator<Value, Entry<Value, Value>> it = null;
+        for (int i : getSortedLookups(map.getKeyType())) {
+            if (it == null) {
+                it = map.entryIterator(minKeys[i], maxKeys[i]);
+            } else {
+                it.seek(minKeys[i], maxKeys[i]);
+            }
+            ArrayList<Row> rows = new ArrayList<>();
+            while (it.hasNext()) {
+                if (--remaining < 0) {
+                    return cursors;
+                }
+                Entry<Value, Value> e = it.next();
+                rows.add(MVPrimaryIndex.getRow(session, e.getKey().getLong(), (ValueArray) e.getValue()));
+            }
+            cursors[i] = new RowListCursor(rows);
+        }
+        return cursors;
+    }
+
+    /**
+     * Resolve the lookups in the secondary index, and then read the rows from
+     * the primary index in the order of their keys.
+     *
+     * @param session the session
+     * @return the cursors, or null for lookups that need a regular cursor
+     */
+    private Cursor[] findSecondary(Session session) {
+        Cursor[] cursors = new Cursor[size];
+        TransactionMap<Value, Value> map = secondaryIndex.getMap(session);
+        int remaining = session.getDatabase().getMaxMemoryRows();
+        int[] starts = new int[size];
+        int[] ends = new int[size];
+        long[] rowKeys = new long[16];
+        int count = 0;
+        int[] sorted = getSortedLookups(map.getKeyType());
+        TMIterator<Value, Value> it = null;
+        int found = 0;
+        for (int i : sorted) {
+            if (it == null) {
+                it = map.keyIterator(minKeys[i], maxKeys[i], false);
+            } else {
+                it.seek(minKeys[i], maxKeys[i]);
+            }
+            int start = count;
+            while (it.hasNext()) {
+                if (--remaining < 0) {
+                    break;
+                }
+                Value[] key = ((ValueArray) it.next()).getList();
+                if (count == rowKeys.length) {
+                    rowKeys = Arrays.copyOf(rowKeys, count * 2);
+                }
+                rowKeys[count++] = key[key.length - 1].getLong();
+            }
+            if (remaining < 0) {
+                count = start;
+                break;
+            }
+            starts[i] = start;
+            ends[i] = count;
+            found++;
+        }
+        long[] keys = Arrays.copyOf(rowKeys, count);
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int j = 0; j < count; j++) {
+            if (distinct == 0 || keys[distinct - 1] != keys[j]) {
+                keys[distinct++] = keys[j];
+            }
+        }
+        Row[] rows = getRows(session, keys, distinct);
+        for (int j = 0; j < found; j++) {
+            int i = sorted[j];
+            ArrayList<Row> list = new ArrayList<>(ends[i] - starts[i]);
+            for (int k = starts[i]; k < ends[i]; k++) {
+                list.add(rows[Arrays.binarySearch(keys, 0, distinct, rowKeys[k])]);
+            }
+            cursors[i] = new RowListCursor(list);
+        }
+        return cursors;
+    }
+
+    /**
+     * Read the rows with the given keys from the primary index.
+     *
+     * @param session the session
+     * @param keys the keys, sorted and distinct
+     * @param count the number of keys
+     * @return the rows
+     */
+    private Row[] getRows(Session session, long[] keys, int count) {
+        Row[] rows = new Row[count];
+        TransactionMap<Value, Value> map = primaryIndex.getMap(session);
+        TMIterator<Value, Entry<Value, Value>> it = null;
+        for (int i = 0; i < count; i++) {
+            ValueLong key = ValueLong.get(keys[i]);
+            if (it == null) {
+                it = map.entryIterator(key, key);
+            } else {
+                it.seek(key, key);
+            }
+            if (!it.hasNext()) {
+                throw DbException.get(ErrorCode.ROW_NOT_FOUND_IN_PRIMARY_INDEX,
+                        primaryIndex.getSQL(false), String.valueOf(keys[i]));
+            }
+            rows[i] = MVPrimaryIndex.getRow(session, keys[i], (ValueArray) it.next().getValue());
+        }
+        return rows;
+    }
+
+    @Override
+    public String getPlanSQL() {
+        return "mvstore";
+    }
+
+    @Override
+    public void reset(boolean beforeQuery) {
+        clear();
+        result.clear();
+    }
+
+    private void clear() {
+        Arrays.fill(firstRows, 0, size, null);
+        Arrays.fill(lastRows, 0, size, null);
+        Arrays.fill(minKeys, 0, size, null);
+        Arrays.fill(maxKeys, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * A cursor over the rows that were found by a lookup.
+     */
+    private static final class RowListCursor implements Cursor {
+
+        private final ArrayList<Row> rows;
+
+        private Row current;
+
+        private int index;
+
+        RowListCursor(ArrayList<Row> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Row get() {
+            return current;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return current;
+        }
+
+        @Override
+        public boolean next() {
+            current = index >= rows.size() ? null : rows.get(index++);
+            return current != null;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.getUnsupportedException("previous");
+        }
+    }
+
+}
@@ -6,6 +6,7 @@
 package org.h2.mvstore.db;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -17,6 +18,8 @@
 import org.h2.engine.Session;
 import org.h2.index.BaseIndex;
 import org.h2.index.Cursor;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexLookupBatch;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.mvstore.tx.Transaction;
@@ -41,6 +44,8 @@ public class MVPrimaryIndex extends BaseIndex {
     private final String mapName;
     private final TransactionMap<Value, Value> dataMap;
     private final AtomicLong lastKey = new AtomicLong();
+    private final ZoneMap zoneMap;
+    private final boolean appendBuffer;
     private int mainIndexColumn = SearchRow.ROWID_INDEX;
 
     public MVPrimaryIndex(Database db, MVTable table, int id,
@@ -52,8 +57,11 @@ public MVPrimaryIndex(Database db, MVTable table, int id,
             sortTypes[i] = SortOrder.ASCENDING;
         }
         ValueDataType keyType = new ValueDataType();
-        ValueDataType valueType = new ValueDataType(db, sortTypes);
+        ValueDataType valueType = table.isColumnar() ? ValueDataType.createColumnar(db, sortTypes)
+                : new ValueDataType(db, sortTypes);
         mapName = "table." + getId();
+        zoneMap = table.hasZoneMap() ? new ZoneMap(table) : null;
+        appendBuffer = db.getSettings().appendBuffer;
         assert db.isStarting() || !db.getStore().getMvStore().getMetaMap().containsKey("name." + mapName);
         Transaction t = mvTable.getTransactionBegin();
         dataMap = t.openMap(mapName, keyType, valueType);
@@ -88,13 +96,17 @@ public void close(Session session) {
 
     @Override
     public void add(Session session, Row row) {
+        // whether the key is likely higher than all keys of the map
+        boolean append = false;
         if (mainIndexColumn == SearchRow.ROWID_INDEX) {
             if (row.getKey() == 0) {
                 row.setKey(lastKey.incrementAndGet());
+                append = appendBuffer;
             }
         } else {
             long c = row.getValue(mainIndexColumn).getLong();
             row.setKey(c);
+            append = appendBuffer && c > lastKey.get();
         }
 
         if (mvTable.getContainsLargeObject()) {
@@ -113,8 +125,13 @@ public void add(Session session, Row row) {
         TransactionMap<Value, Value> map = getMap(session);
         long rowKey = row.getKey();
         Value key = ValueLong.get(rowKey);
+        if (zoneMap != null) {
+            // before the row is visible to other sessions
+            zoneMap.add(rowKey, row.getValueList());
+        }
         try {
-            Value oldValue = map.putIfAbsent(key, ValueArray.get(row.getValueList()));
+            ValueArray value = ValueArray.get(row.getValueList());
+            Value oldValue = append ? map.appendIfAbsent(key, value) : map.putIfAbsent(key, value);
             if (oldValue != null) {
                 StringBuilder builder = new StringBuilder("PRIMARY KEY ON ");
                 table.getSQL(builder, false);
@@ -195,6 +212,9 @@ public void update(Session session, Row oldRow, Row newRow) {
         }
 
         TransactionMap<Value,Value> map = getMap(session);
+        if (zoneMap != null) {
+            zoneMap.add(key, newRow.getValueList());
+        }
         try {
             Value existing = map.put(ValueLong.get(key), ValueArray.get(newRow.getValueList()));
             if (existing == null) {
@@ -244,7 +264,27 @@ public Cursor find(Session session, SearchRow first, SearchRow last) {
         return new MVStoreCursor(session, map.entryIterator(min, max));
     }
 
-    private ValueLong extractPKFromRow(SearchRow row, ValueLong defaultValue) {
+    @Override
+    public Cursor find(TableFilter filter, SearchRow first, SearchRow last) {
+        Session session = filter.getSession();
+        ArrayList<IndexCondition> conditions = filter.getSkipConditions();
+        if (zoneMap == null || conditions.isEmpty()) {
+            return find(session, first, last);
+        }
+        ValueLong min = extractPKFromRow(first, ValueLong.MIN);
+        ValueLong max = extractPKFromRow(last, ValueLong.MAX);
+        TransactionMap<Value, Value> map = getMap(session);
+        return new MVStoreCursor(session, zoneMap.iterator(session, map, min, max, conditions));
+    }
+
+    /**
+     * Get the key of the row with the given search row.
+     *
+     * @param row the search row, or null
+     * @param defaultValue the value to use if the search row is null
+     * @return the key
+     */
+    ValueLong extractPKFromRow(SearchRow row, ValueLong defaultValue) {
         ValueLong result;
         if (row == null) {
             result = defaultValue;
@@ -277,7 +317,15 @@ public Row getRow(Session session, long key) {
         return getRow(session, key, (ValueArray) v);
     }
 
-    private static Row getRow(Session session, long key, ValueArray array) {
+    /**
+     * Create a row from the value stored in the map.
+     *
+     * @param session the session
+     * @param key the key of the row
+     * @param array the values of the row
+     * @return the row
+     */
+    static Row getRow(Session session, long key, ValueArray array) {
         Row row = session.createRow(array.getList(), 0);
         row.setKey(key);
         return row;
@@ -306,6 +354,11 @@ public boolean isFirstColumn(Column column) {
         return false;
     }
 
+    @Override
+    public boolean canSkipRows(Column column) {
+        return zoneMap != null && zoneMap.isTracked(column.getColumnId());
+    }
+
     @Override
     public void remove(Session session) {
         TransactionMap<Value, Value> map = getMap(session);
@@ -418,11 +471,39 @@ Cursor find(Session session, ValueLong first, ValueLong last) {
         return new MVStoreCursor(session, map.entryIterator(first, last));
     }
 
+    /**
+     * Split the table into key ranges at page boundaries of the b-tree, and
+     * get a cursor for each range. The cursors can be used concurrently, by
+     * different threads.
+     *
+     * @param session the session
+     * @param count the requested number of ranges
+     * @return the cursors, in key order
+     */
+    public Cursor[] findRanges(Session session, int count) {
+        TransactionMap<Value, Value> map = getMap(session);
+        List<Value> keys = map.map.getSplitKeys(count);
+        Cursor[] cursors = new Cursor[keys.size() + 1];
+        ValueLong first = ValueLong.MIN;
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.get(i).getLong();
+            cursors[i] = new MVStoreCursor(session, map.entryIterator(first, ValueLong.get(key - 1)));
+            first = ValueLong.get(key);
+        }
+        cursors[keys.size()] = new MVStoreCursor(session, map.entryIterator(first, ValueLong.MAX));
+        return cursors;
+    }
+
     @Override
     public boolean isRowIdIndex() {
         return true;
     }
 
+    @Override
+    public IndexLookupBatch createLookupBatch(TableFilter[] filters, int filter) {
+        return new MVIndexLookupBatch(filters[filter], this, this, null);
+    }
+
     /**
      * Get the map to store the data.
      *
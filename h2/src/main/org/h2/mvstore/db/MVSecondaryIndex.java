@@ -8,6 +8,7 @@
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map.Entry;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import org.h2.api.ErrorCode;
@@ -17,6 +18,7 @@
 import org.h2.engine.Session;
 import org.h2.index.BaseIndex;
 import org.h2.index.Cursor;
+import org.h2.index.IndexLookupBatch;
 import org.h2.index.IndexType;
 import org.h2.message.DbException;
 import org.h2.mvstore.MVMap;
@@ -47,6 +49,12 @@ public final class MVSecondaryIndex extends BaseIndex implements MVIndex {
     private final int                         keyColumns;
     private final TransactionMap<Value,Value> dataMap;
 
+    /**
+     * The ids of the included columns (stored in the value of the map), or
+     * null if there are none.
+     */
+    private final int[]                       includeColumnIds;
+
     public MVSecondaryIndex(Database db, MVTable table, int id, String indexName,
                 IndexColumn[] columns, IndexType indexType) {
         super(table, id, indexName, columns, indexType);
@@ -57,6 +65,15 @@ public MVSecondaryIndex(Database db, MVTable table, int id, String indexName,
         // always store the row key in the map key,
         // even for unique indexes, as some of the index columns could be null
         keyColumns = columns.length + 1;
+        IndexColumn[] includeColumns = indexType.getIncludeColumns();
+        if (includeColumns == null) {
+            includeColumnIds = null;
+        } else {
+            includeColumnIds = new int[includeColumns.length];
+            for (int i = 0; i < includeColumns.length; i++) {
+                includeColumnIds[i] = includeColumns[i].column.getColumnId();
+            }
+        }
         String mapName = "index." + getId();
         assert db.isStarting() || !db.getStore().getMvStore().getMetaMap().containsKey("name." + mapName);
         int[] sortTypes = new int[keyColumns];
@@ -64,7 +81,7 @@ public MVSecondaryIndex(Database db, MVTable table, int id, String indexName,
             sortTypes[i] = columns[i].sortType;
         }
         sortTypes[keyColumns - 1] = SortOrder.ASCENDING;
-        ValueDataType keyType = new ValueDataType(db, sortTypes);
+        ValueDataType keyType = new ValueDataType(db, sortTypes, isPrefixCompression());
         ValueDataType valueType = new ValueDataType();
         Transaction t = mvTable.getTransactionBegin();
         dataMap = t.openMap(mapName, keyType, valueType);
@@ -82,23 +99,26 @@ public void addRowsToBuffer(List<Row> rows, String bufferName) {
         MVMap<ValueArray, Value> map = openMap(bufferName);
         for (Row row : rows) {
             ValueArray key = convertToKey(row, null);
-            map.append(key, ValueNull.INSTANCE);
+            map.append(key, getIncludedValues(row));
         }
     }
 
     private static final class Source {
-        private final Iterator<ValueArray> iterator;
+        private final org.h2.mvstore.Cursor<ValueArray, Value> cursor;
         ValueArray currentRowData;
+        Value currentValue;
 
-        public Source(Iterator<ValueArray> iterator) {
-            this.iterator = iterator;
-            this.currentRowData = iterator.next();
+        public Source(org.h2.mvstore.Cursor<ValueArray, Value> cursor) {
+            this.cursor = cursor;
+            this.currentRowData = cursor.next();
+            this.currentValue = cursor.getValue();
         }
 
         public boolean hasNext() {
-            boolean result = iterator.hasNext();
+            boolean result = cursor.hasNext();
             if(result) {
-                currentRowData = iterator.next();
+                currentRowData = cursor.next();
+                currentValue = cursor.getValue();
             }
             return result;
         }
@@ -130,9 +150,9 @@ public void addBufferedRows(List<String> bufferNames) {
         Queue<Source> queue = new PriorityQueue<>(buffersCount,
                 new Source.Comparator(database.getMode(), compareMode));
         for (String bufferName : bufferNames) {
-            Iterator<ValueArray> iter = openMap(bufferName).keyIterator(null);
-            if (iter.hasNext()) {
-                queue.offer(new Source(iter));
+            org.h2.mvstore.Cursor<ValueArray, Value> cursor = openMap(bufferName).cursor(null);
+            if (cursor.hasNext()) {
+                queue.offer(new Source(cursor));
             }
         }
 
@@ -146,7 +166,7 @@ public void addBufferedRows(List<String> bufferNames) {
                     checkUnique(dataMap, rowData, Long.MIN_VALUE);
                 }
 
-                dataMap.putCommitted(rowData, ValueNull.INSTANCE);
+                dataMap.putCommitted(rowData, s.currentValue);
 
                 if (s.hasNext()) {
                     queue.offer(s);
@@ -160,13 +180,33 @@ public void addBufferedRows(List<String> bufferNames) {
         }
     }
 
+    /**
+     * Whether the common prefix of the keys of a page is written once. This
+     * is the case if enabled and the first column is a VARCHAR column.
+     *
+     * @return true if prefix compression is used
+     */
+    private boolean isPrefixCompression() {
+        if (!database.getSettings().indexPrefixCompression) {
+            return false;
+        }
+        switch (indexColumns[0].column.getType().getValueType()) {
+        case Value.STRING:
+        case Value.STRING_IGNORECASE:
+        case Value.STRING_FIXED:
+            return true;
+        default:
+            return false;
+        }
+    }
+
     private MVMap<ValueArray, Value> openMap(String mapName) {
         int[] sortTypes = new int[keyColumns];
         for (int i = 0; i < indexColumns.length; i++) {
             sortTypes[i] = indexColumns[i].sortType;
         }
         sortTypes[keyColumns - 1] = SortOrder.ASCENDING;
-        ValueDataType keyType = new ValueDataType(database, sortTypes);
+        ValueDataType keyType = new ValueDataType(database, sortTypes, isPrefixCompression());
         ValueDataType valueType = new ValueDataType();
         MVMap.Builder<ValueArray, Value> builder =
                 new MVMap.Builder<ValueArray, Value>()
@@ -197,7 +237,7 @@ public void add(Session session, Row row) {
         }
 
         try {
-            map.put(array, ValueNull.INSTANCE);
+            map.put(array, getIncludedValues(row));
         } catch (IllegalStateException e) {
             throw mvTable.convertException(e);
         }
@@ -207,6 +247,23 @@ public void add(Session session, Row row) {
         }
     }
 
+    /**
+     * Get the values that are stored in the map for a row.
+     *
+     * @param row the row
+     * @return the values of the included columns, or NULL if there are none
+     */
+    private Value getIncludedValues(SearchRow row) {
+        if (includeColumnIds == null) {
+            return ValueNull.INSTANCE;
+        }
+        Value[] values = new Value[includeColumnIds.length];
+        for (int i = 0; i < includeColumnIds.length; i++) {
+            values[i] = row.getValue(includeColumnIds[i]);
+        }
+        return ValueArray.get(values);
+    }
+
     private void checkUnique(TransactionMap<Value, Value> map, ValueArray row, long newKey) {
         Iterator<Value> it = map.keyIterator(convertToKey(row, ValueLong.MIN), convertToKey(row, ValueLong.MAX), true);
         while (it.hasNext()) {
@@ -258,6 +315,15 @@ private boolean rowsAreEqual(SearchRow rowOne, SearchRow rowTwo) {
                 return false;
             }
         }
+        if (includeColumnIds != null) {
+            for (int index : includeColumnIds) {
+                Value v1 = rowOne.getValue(index);
+                Value v2 = rowTwo.getValue(index);
+                if (v1 == null ? v2 != null : !v1.equals(v2)) {
+                    return false;
+                }
+            }
+        }
         return rowOne.getKey() == rowTwo.getKey();
     }
 
@@ -270,7 +336,14 @@ private Cursor find(Session session, SearchRow first, boolean bigger, SearchRow
         ValueArray min = convertToKey(first, bigger ? ValueLong.MAX : ValueLong.MIN);
         ValueArray max = convertToKey(last, ValueLong.MAX);
         TransactionMap<Value,Value> map = getMap(session);
-        return new MVStoreCursor(session, map.keyIterator(min, max, false));
+        return createCursor(session, map, min, max);
+    }
+
+    private MVStoreCursor createCursor(Session session, TransactionMap<Value, Value> map, Value min, Value max) {
+        if (includeColumnIds == null) {
+            return new MVStoreCursor(session, map.keyIterator(min, max, false));
+        }
+        return new MVStoreCursor(session, map.entryIterator(min, max));
     }
 
     private static ValueArray convertToKey(ValueArray r, ValueLong key) {
@@ -279,7 +352,14 @@ private static ValueArray convertToKey(ValueArray r, ValueLong key) {
         return ValueArray.get(values);
     }
 
-    private ValueArray convertToKey(SearchRow r, ValueLong key) {
+    /**
+     * Convert a search row to a key of the map.
+     *
+     * @param r the search row, or null
+     * @param key the row key to use, or null to use the key of the row
+     * @return the key, or null if the search row is null
+     */
+    ValueArray convertToKey(SearchRow r, ValueLong key) {
         if (r == null) {
             return null;
         }
@@ -303,6 +383,17 @@ private ValueArray convertToKey(SearchRow r, ValueLong key) {
      * @return the row
      */
     SearchRow convertToSearchRow(ValueArray key) {
+        return convertToSearchRow(key, null);
+    }
+
+    /**
+     * Convert array of values and the included values to a SearchRow.
+     *
+     * @param key the index key
+     * @param included the values of the included columns, or null
+     * @return the row
+     */
+    private SearchRow convertToSearchRow(ValueArray key, Value included) {
         Value[] array = key.getList();
         SearchRow searchRow = mvTable.getTemplateRow();
         searchRow.setKey((array[array.length - 1]).getLong());
@@ -313,6 +404,12 @@ SearchRow convertToSearchRow(ValueArray key) {
             Value v = array[i];
             searchRow.setValue(idx, v);
         }
+        if (included instanceof ValueArray) {
+            Value[] values = ((ValueArray) included).getList();
+            for (int i = 0; i < values.length; i++) {
+                searchRow.setValue(includeColumnIds[i], values[i]);
+            }
+        }
         return searchRow;
     }
 
@@ -367,8 +464,7 @@ public Cursor findFirstOrLast(Session session, boolean first) {
             }
             key = first ? map.higherKey(key) : map.lowerKey(key);
         }
-        MVStoreCursor cursor = new MVStoreCursor(session,
-                                Collections.singletonList(key).iterator());
+        MVStoreCursor cursor = createCursor(session, map, key, key);
         cursor.next();
         return cursor;
     }
@@ -418,13 +514,18 @@ public void checkRename() {
         // ok
     }
 
+    @Override
+    public IndexLookupBatch createLookupBatch(TableFilter[] filters, int filter) {
+        return new MVIndexLookupBatch(filters[filter], this, (MVPrimaryIndex) mvTable.getScanIndex(null), this);
+    }
+
     /**
      * Get the map to store the data.
      *
      * @param session the session
      * @return the map
      */
-    private TransactionMap<Value, Value> getMap(Session session) {
+    TransactionMap<Value, Value> getMap(Session session) {
         if (session == null) {
             return dataMap;
         }
@@ -438,11 +539,17 @@ private TransactionMap<Value, Value> getMap(Session session) {
     final class MVStoreCursor implements Cursor {
 
         private final Session session;
-        private final Iterator<Value> it;
+
+        /**
+         * The iterator over the keys, or over the entries if the index has
+         * included columns.
+         */
+        private final Iterator<?> it;
         private ValueArray current;
+        private Value currentValue;
         private Row row;
 
-        MVStoreCursor(Session session, Iterator<Value> it) {
+        MVStoreCursor(Session session, Iterator<?> it) {
             this.session = session;
             this.it = it;
         }
@@ -460,12 +567,20 @@ public Row get() {
 
         @Override
         public SearchRow getSearchRow() {
-            return current == null ? null : convertToSearchRow(current);
+            return current == null ? null : convertToSearchRow(current, currentValue);
         }
 
         @Override
         public boolean next() {
-            current = it.hasNext() ? (ValueArray)it.next() : null;
+            if (!it.hasNext()) {
+                current = null;
+            } else if (includeColumnIds == null) {
+                current = (ValueArray) it.next();
+            } else {
+                Entry<?, ?> e = (Entry<?, ?>) it.next();
+                current = (ValueArray) e.getKey();
+                currentValue = (Value) e.getValue();
+            }
             row = null;
             return current != null;
         }
@@ -7,6 +7,7 @@
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -109,8 +110,20 @@ public String getEventText() {
     private final MVTableEngine.Store store;
     private final TransactionStore transactionStore;
 
+    /**
+     * Whether the rows are stored in the columnar format.
+     */
+    private final boolean columnar;
+
+    /**
+     * Whether the minimum and maximum values of blocks of rows are tracked.
+     */
+    private final boolean zoneMap;
+
     public MVTable(CreateTableData data, MVTableEngine.Store store) {
         super(data);
+        columnar = hasTableEngineParam(data.tableEngineParams, "COLUMNAR");
+        zoneMap = hasTableEngineParam(data.tableEngineParams, "ZONE_MAP");
         nextAnalyze = database.getSettings().analyzeAuto;
         changesUntilAnalyze = nextAnalyze <= 0 ? null : new AtomicInteger(nextAnalyze);
         this.store = store;
@@ -122,6 +135,37 @@ public MVTable(CreateTableData data, MVTableEngine.Store store) {
         indexes.add(primaryIndex);
     }
 
+    private static boolean hasTableEngineParam(List<String> tableEngineParams, String name) {
+        if (tableEngineParams != null) {
+            for (String param : tableEngineParams) {
+                if (name.equalsIgnoreCase(param)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the rows are stored in the columnar format (table engine
+     * parameter COLUMNAR).
+     *
+     * @return true if columnar
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    /**
+     * Whether the minimum and maximum values of blocks of rows are tracked,
+     * so that scans can skip blocks (table engine parameter ZONE_MAP).
+     *
+     * @return true if yes
+     */
+    public boolean hasZoneMap() {
+        return zoneMap;
+    }
+
     public String getMapName() {
         return primaryIndex.getMapName();
     }
@@ -342,6 +386,10 @@ public Row getRow(Session session, long key) {
     public Index addIndex(Session session, String indexName, int indexId,
             IndexColumn[] cols, IndexType indexType, boolean create,
             String indexComment) {
+        if (indexType.getIncludeColumns() != null
+                && (indexType.isPrimaryKey() || indexType.isHash() || indexType.isSpatial())) {
+            throw DbException.getUnsupportedException("INCLUDE");
+        }
         if (indexType.isPrimaryKey()) {
             for (IndexColumn c : cols) {
                 Column column = c.column;
@@ -362,7 +410,8 @@ public Index addIndex(Session session, String indexName, int indexId,
                 ? SearchRow.ROWID_INDEX : getMainIndexColumn(indexType, cols);
         if (database.isStarting()) {
             // if index does exists as a separate map it can't be a delegate
-            if (transactionStore.hasMap("index." + indexId)) {
+            if (transactionStore.hasMap("index." + indexId) ||
+                    transactionStore.hasMap(MVHashIndex.getMapName(indexId))) {
                 // we can not reuse primary index
                 mainIndexColumn = SearchRow.ROWID_INDEX;
             }
@@ -377,6 +426,11 @@ public Index addIndex(Session session, String indexName, int indexId,
         } else if (indexType.isSpatial()) {
             index = new MVSpatialIndex(session.getDatabase(), this, indexId,
                     indexName, cols, indexType);
+        } else if (indexType.isHash() && MVHashIndex.isSupported(database, cols) &&
+                !(database.isStarting() && transactionStore.hasMap("index." + indexId))) {
+            // hash indexes of old databases are stored as b-tree indexes
+            index = new MVHashIndex(session.getDatabase(), this, indexId,
+                    indexName, cols, indexType);
         } else {
             index = new MVSecondaryIndex(session.getDatabase(), this, indexId,
                     indexName, cols, indexType);
@@ -401,7 +455,7 @@ public Index addIndex(Session session, String indexName, int indexId,
     private void rebuildIndex(Session session, MVIndex index, String indexName) {
         try {
             if (session.getDatabase().getStore() == null ||
-                    index instanceof MVSpatialIndex) {
+                    index instanceof MVSpatialIndex || index instanceof MVHashIndex) {
                 // in-memory
                 rebuildIndexBuffered(session, index);
             } else {
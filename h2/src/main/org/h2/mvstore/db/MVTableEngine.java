@@ -83,6 +83,10 @@ public static Store init(final Database db) {
                 // use a larger page split size to improve the compression ratio
                 builder.pageSplitSize(64 * 1024);
             }
+            int offHeapCacheSize = db.getSettings().offHeapCacheSize;
+            if (offHeapCacheSize > 0) {
+                builder.offHeapCacheSize(Math.max(1, offHeapCacheSize / 1024));
+            }
             builder.backgroundExceptionHandler(new UncaughtExceptionHandler() {
 
                 @Override
@@ -169,6 +173,7 @@ void open(Database db, MVStore.Builder builder, boolean encrypted) {
                 }
                 this.transactionStore = new TransactionStore(mvStore,
                         new ValueDataType(db, null), db.getLockTimeout());
+                transactionStore.setUndoBufferSize(db.getSettings().undoBufferSize);
             } catch (IllegalStateException e) {
                 throw convertIllegalStateException(e);
             }
@@ -279,7 +284,8 @@ public void removeTemporaryMaps(BitSet objectIds) {
             for (String mapName : mvStore.getMapNames()) {
                 if (mapName.startsWith("temp.")) {
                     mvStore.removeMap(mapName);
-                } else if (mapName.startsWith("table.") || mapName.startsWith("index.")) {
+                } else if (mapName.startsWith("table.") || mapName.startsWith("index.")
+                        || mapName.startsWith("hashIndex.")) {
                     int id = StringUtils.parseUInt31(mapName, mapName.indexOf('.') + 1, mapName.length());
                     if (!objectIds.get(id)) {
                         mvStore.removeMap(mapName);
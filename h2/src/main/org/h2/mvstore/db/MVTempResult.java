@@ -77,9 +77,12 @@ public void close() throws Exception {
      */
     public static ResultExternal of(Database database, Expression[] expressions, boolean distinct,
             int[] distinctIndexes, int visibleColumnCount, SortOrder sort) {
-        return distinct || distinctIndexes != null || sort != null
-                ? new MVSortedTempResult(database, expressions, distinct, distinctIndexes, visibleColumnCount, sort)
-                : new MVPlainTempResult(database, expressions, visibleColumnCount);
+        if (distinct || distinctIndexes != null) {
+            return new MVSortedTempResult(database, expressions, distinct, distinctIndexes, visibleColumnCount, sort);
+        } else if (sort != null) {
+            return new MVExternalSortTempResult(database, expressions, visibleColumnCount, sort);
+        }
+        return new MVPlainTempResult(database, expressions, visibleColumnCount);
     }
 
     /**
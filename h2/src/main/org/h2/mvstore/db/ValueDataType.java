@@ -104,26 +104,84 @@ public class ValueDataType implements DataType {
     private static final int CUSTOM_DATA_TYPE = 133;
     private static final int JSON = 134;
 
+    /**
+     * The marker for the keys of a page where the first value of each key is
+     * a string with a common prefix. It is followed by the type of the
+     * strings and the prefix, and then by the keys, where the first value
+     * only contains the string after the prefix.
+     */
+    private static final int PREFIX_KEYS = 135;
+
+    /**
+     * The marker for the values of a page that are stored in the columnar
+     * format (see {@link ColumnarEncoding}).
+     */
+    private static final int COLUMNAR = 136;
+
+    /**
+     * The minimum number of characters that must be saved to use the prefix
+     * format.
+     */
+    private static final int MIN_PREFIX_SAVING = 8;
+
     final DataHandler handler;
     final CompareMode compareMode;
     protected final Mode mode;
     final int[] sortTypes;
     SpatialDataType spatialType;
 
+    /**
+     * Whether to write the common prefix of string keys only once per page.
+     */
+    private final boolean prefixCompression;
+
+    /**
+     * Whether to write the values of a page in the columnar format.
+     */
+    private final boolean columnar;
+
     public ValueDataType() {
-        this(CompareMode.getInstance(null, 0), null, null, null);
+        this(CompareMode.getInstance(null, 0), null, null, null, false, false);
     }
 
     public ValueDataType(Database database, int[] sortTypes) {
-        this(database.getCompareMode(), database.getMode(), database, sortTypes);
+        this(database, sortTypes, false);
+    }
+
+    /**
+     * Create a new data type.
+     *
+     * @param database the database
+     * @param sortTypes the sort types
+     * @param prefixCompression whether the common prefix of the keys of a
+     *            page is written once, if the first value of the keys is a
+     *            string (keys in both formats can always be read)
+     */
+    public ValueDataType(Database database, int[] sortTypes, boolean prefixCompression) {
+        this(database.getCompareMode(), database.getMode(), database, sortTypes, prefixCompression, false);
+    }
+
+    /**
+     * Create a new data type for rows that are stored in the columnar format,
+     * where the values of each column of a page are stored together (values
+     * in both formats can always be read).
+     *
+     * @param database the database
+     * @param sortTypes the sort types
+     * @return the data type
+     */
+    public static ValueDataType createColumnar(Database database, int[] sortTypes) {
+        return new ValueDataType(database.getCompareMode(), database.getMode(), database, sortTypes, false, true);
     }
 
     private ValueDataType(CompareMode compareMode, Mode mode, DataHandler handler,
-            int[] sortTypes) {
+            int[] sortTypes, boolean prefixCompression, boolean columnar) {
         this.compareMode = compareMode;
         this.mode = mode;
         this.handler = handler;
         this.sortTypes = sortTypes;
+        this.prefixCompression = prefixCompression;
+        this.columnar = columnar;
     }
 
     private SpatialDataType getSpatialDataType() {
@@ -198,6 +256,18 @@ private static int getMemory(Value v) {
 
     @Override
     public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
+        if (len > 0) {
+            int type = buff.get(buff.position()) & 255;
+            if (key && type == PREFIX_KEYS) {
+                buff.get();
+                readPrefixKeys(buff, obj, len);
+                return;
+            } else if (!key && type == COLUMNAR) {
+                buff.get();
+                ColumnarEncoding.read(this, buff, obj, len);
+                return;
+            }
+        }
         for (int i = 0; i < len; i++) {
             obj[i] = read(buff);
         }
@@ -205,11 +275,118 @@ public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
 
     @Override
     public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
+        if (key && prefixCompression && len > 1) {
+            String prefix = getCommonPrefix(obj, len);
+            if (prefix != null && prefix.length() * (len - 1) >= MIN_PREFIX_SAVING) {
+                writePrefixKeys(buff, obj, len, prefix);
+                return;
+            }
+        } else if (!key && columnar && ColumnarEncoding.isSupported(obj, len)) {
+            buff.put((byte) COLUMNAR);
+            ColumnarEncoding.write(this, buff, obj, len);
+            return;
+        }
         for (int i = 0; i < len; i++) {
             write(buff, obj[i]);
         }
     }
 
+    /**
+     * Get the common prefix of the first values of the keys.
+     *
+     * @param obj the keys
+     * @param len the number of keys
+     * @return the prefix, or null if the first values are not strings of the
+     *         same type
+     */
+    private static String getCommonPrefix(Object[] obj, int len) {
+        String prefix = null;
+        int prefixLen = 0, type = -1;
+        for (int i = 0; i < len; i++) {
+            if (!(obj[i] instanceof ValueCollectionBase)) {
+                return null;
+            }
+            Value[] list = ((ValueCollectionBase) obj[i]).getList();
+            if (list.length == 0) {
+                return null;
+            }
+            Value v = list[0];
+            int t = v.getValueType();
+            if (t != Value.STRING && t != Value.STRING_IGNORECASE && t != Value.STRING_FIXED) {
+                return null;
+            }
+            String s = v.getString();
+            if (prefix == null) {
+                prefix = s;
+                prefixLen = s.length();
+                type = t;
+            } else if (t != type) {
+                return null;
+            } else {
+                prefixLen = Math.min(prefixLen, s.length());
+                for (int j = 0; j < prefixLen; j++) {
+                    if (s.charAt(j) != prefix.charAt(j)) {
+                        prefixLen = j;
+                        break;
+                    }
+                }
+            }
+        }
+        return prefix.substring(0, prefixLen);
+    }
+
+    private void writePrefixKeys(WriteBuffer buff, Object[] obj, int len, String prefix) {
+        int prefixLen = prefix.length();
+        Value first = ((ValueCollectionBase) obj[0]).getList()[0];
+        byte stringType;
+        switch (first.getValueType()) {
+        case Value.STRING_IGNORECASE:
+            stringType = STRING_IGNORECASE;
+            break;
+        case Value.STRING_FIXED:
+            stringType = STRING_FIXED;
+            break;
+        default:
+            stringType = STRING;
+        }
+        buff.put((byte) PREFIX_KEYS).put(stringType);
+        writeString(buff, prefix);
+        for (int i = 0; i < len; i++) {
+            ValueCollectionBase v = (ValueCollectionBase) obj[i];
+            Value[] list = v.getList();
+            buff.put(v.getValueType() == Value.ARRAY ? ARRAY : ROW).
+                putVarInt(list.length);
+            writeString(buff, list[0].getString().substring(prefixLen));
+            for (int j = 1; j < list.length; j++) {
+                writeValue(buff, list[j]);
+            }
+        }
+    }
+
+    private void readPrefixKeys(ByteBuffer buff, Object[] obj, int len) {
+        int stringType = buff.get();
+        String prefix = readString(buff);
+        for (int i = 0; i < len; i++) {
+            int type = buff.get();
+            Value[] list = new Value[readVarInt(buff)];
+            String s = prefix.concat(readString(buff));
+            switch (stringType) {
+            case STRING_IGNORECASE:
+                list[0] = ValueStringIgnoreCase.get(s);
+                break;
+            case STRING_FIXED:
+                list[0] = ValueStringFixed.get(s);
+                break;
+            default:
+                list[0] = ValueString.get(s);
+            }
+            for (int j = 1; j < list.length; j++) {
+                list[j] = (Value) readValue(buff);
+            }
+            obj[i] = type == ARRAY ? ValueArray.get(list) : ValueRow.get(list);
+        }
+    }
+
     @Override
     public Object read(ByteBuffer buff) {
         return readValue(buff);
@@ -226,7 +403,13 @@ public void write(WriteBuffer buff, Object obj) {
         writeValue(buff, x);
     }
 
-    private void writeValue(WriteBuffer buff, Value v) {
+    /**
+     * Write a value.
+     *
+     * @param buff the target buffer
+     * @param v the value
+     */
+    void writeValue(WriteBuffer buff, Value v) {
         if (v == ValueNull.INSTANCE) {
             buff.put((byte) 0);
             return;
@@ -529,9 +712,10 @@ private static void writeString(WriteBuffer buff, String s) {
     /**
      * Read a value.
      *
+     * @param buff the source buffer
      * @return the value
      */
-    private Object readValue(ByteBuffer buff) {
+    Object readValue(ByteBuffer buff) {
         int type = buff.get() & 255;
         switch (type) {
         case NULL:
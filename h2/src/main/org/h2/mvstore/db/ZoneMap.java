@@ -0,0 +1,358 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.h2.engine.Session;
+import org.h2.expression.condition.Comparison;
+import org.h2.index.IndexCondition;
+import org.h2.message.DbException;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.tx.TransactionMap;
+import org.h2.table.Column;
+import org.h2.table.Table;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueLong;
+import org.h2.value.ValueNull;
+import org.h2.value.VersionedValue;
+
+/**
+ * The minimum and maximum values of some columns, for each block of rows of a
+ * table (rows with keys in the same range). A scan can skip the blocks where
+ * the conditions can not match.
+ * <p>
+ * The ranges are widened when rows are added or updated, but never made
+ * smaller, so they are correct even if a transaction is rolled back. They are
+ * kept in memory only. The rows that exist when the table is opened are added
+ * when the first scan needs them.
+ */
+final class ZoneMap {
+
+    /**
+     * The number of bits of the row key that are ignored to get the block.
+     */
+    static final int BLOCK_SHIFT = 10;
+
+    private final Table table;
+
+    /**
+     * The ids of the tracked columns.
+     */
+    private final int[] columnIds;
+
+    /**
+     * The position of each column in the zones, or -1 if not tracked.
+     */
+    private final int[] positions;
+
+    /**
+     * The zone of each block. A zone contains the minimum and the maximum of
+     * each tracked column, or null if no value (other than NULL) was added.
+     */
+    private final ConcurrentSkipListMap<Long, Value[]> zones = new ConcurrentSkipListMap<>();
+
+    /**
+     * Whether the rows that existed when the table was opened were added.
+     */
+    private volatile boolean complete;
+
+    /**
+     * Create a new zone map for the supported columns of the table.
+     *
+     * @param table the table
+     */
+    ZoneMap(Table table) {
+        this.table = table;
+        Column[] columns = table.getColumns();
+        positions = new int[columns.length];
+        int count = 0;
+        for (int i = 0; i < columns.length; i++) {
+            positions[i] = isSupported(columns[i].getType().getValueType()) ? count++ : -1;
+        }
+        columnIds = new int[count];
+        for (int i = 0; i < columns.length; i++) {
+            if (positions[i] >= 0) {
+                columnIds[positions[i]] = i;
+            }
+        }
+    }
+
+    /**
+     * Check whether the minimum and maximum of a column of this type are
+     * tracked.
+     *
+     * @param type the value type
+     * @return true if yes
+     */
+    static boolean isSupported(int type) {
+        switch (type) {
+        case Value.BOOLEAN:
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+        case Value.DECIMAL:
+        case Value.DOUBLE:
+        case Value.FLOAT:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP:
+        case Value.TIMESTAMP_TZ:
+        case Value.STRING:
+        case Value.STRING_IGNORECASE:
+        case Value.STRING_FIXED:
+        case Value.UUID:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Check whether the column is tracked.
+     *
+     * @param columnId the column id
+     * @return true if yes
+     */
+    boolean isTracked(int columnId) {
+        return columnId >= 0 && columnId < positions.length && positions[columnId] >= 0;
+    }
+
+    /**
+     * Widen the zone of the block of the row.
+     *
+     * @param key the row key
+     * @param values the values of the row
+     */
+    void add(long key, Value[] values) {
+        Long block = key >> BLOCK_SHIFT;
+        Value[] zone = zones.get(block);
+        if (zone == null) {
+            zone = new Value[columnIds.length * 2];
+            Value[] old = zones.putIfAbsent(block, zone);
+            if (old != null) {
+                zone = old;
+            }
+        }
+        synchronized (zone) {
+            for (int i = 0; i < columnIds.length; i++) {
+                int id = columnIds[i];
+                if (id >= values.length) {
+                    continue;
+                }
+                Value v = values[id];
+                if (v == null || v == ValueNull.INSTANCE) {
+                    continue;
+                }
+                Value min = zone[i * 2];
+                if (min == null || table.compareValues(v, min) < 0) {
+                    zone[i * 2] = v;
+                }
+                Value max = zone[i * 2 + 1];
+                if (max == null || table.compareValues(v, max) > 0) {
+                    zone[i * 2 + 1] = v;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the rows that existed when the table was opened, if not done yet.
+     * Uncommitted rows are included.
+     *
+     * @param map the map with the rows
+     */
+    void addExisting(MVMap<Value, VersionedValue> map) {
+        if (complete) {
+            return;
+        }
+        synchronized (this) {
+            if (complete) {
+                return;
+            }
+            Cursor<Value, VersionedValue> cursor = map.cursor(null);
+            while (cursor.hasNext()) {
+                long key = cursor.next().getLong();
+                VersionedValue v = cursor.getValue();
+                Object current = v.getCurrentValue();
+                if (current instanceof ValueArray) {
+                    add(key, ((ValueArray) current).getList());
+                }
+                Object committed = v.getCommittedValue();
+                if (committed != current && committed instanceof ValueArray) {
+                    add(key, ((ValueArray) committed).getList());
+                }
+            }
+            complete = true;
+        }
+    }
+
+    /**
+     * Get an iterator over the rows in the given key range, skipping the
+     * blocks where the conditions can not match.
+     *
+     * @param session the session
+     * @param map the map with the rows
+     * @param min the smallest key
+     * @param max the largest key
+     * @param conditions the conditions on tracked columns
+     * @return the iterator
+     */
+    Iterator<Entry<Value, Value>> iterator(Session session, TransactionMap<Value, Value> map,
+            ValueLong min, ValueLong max, ArrayList<IndexCondition> conditions) {
+        addExisting(map.map);
+        int count = conditions.size();
+        int[] pos = new int[count];
+        int[] compareTypes = new int[count];
+        Value[][] values = new Value[count][];
+        for (int i = 0; i < count; i++) {
+            IndexCondition condition = conditions.get(i);
+            pos[i] = positions[condition.getColumn().getColumnId()];
+            int compareType = condition.getCompareType();
+            compareTypes[i] = compareType;
+            if (compareType == Comparison.IN_LIST) {
+                values[i] = condition.getCurrentValueList(session);
+            } else if (compareType != Comparison.IN_QUERY) {
+                values[i] = new Value[] { condition.getCurrentValue(session) };
+            }
+        }
+        return new ZoneIterator(map, min.getLong(), max.getLong(), pos, compareTypes, values);
+    }
+
+    /**
+     * Check whether some rows of the zone could match all conditions.
+     *
+     * @param zone the zone
+     * @param pos the position of the column of each condition
+     * @param compareTypes the comparison type of each condition
+     * @param values the values of each condition, or null to ignore it
+     * @return false if no row can match
+     */
+    private boolean canMatch(Value[] zone, int[] pos, int[] compareTypes, Value[][] values) {
+        synchronized (zone) {
+            for (int i = 0; i < pos.length; i++) {
+                Value[] list = values[i];
+                if (list == null) {
+                    continue;
+                }
+                Value min = zone[pos[i] * 2];
+                Value max = zone[pos[i] * 2 + 1];
+                boolean match = false;
+                for (Value v : list) {
+                    if (v == ValueNull.INSTANCE) {
+                        // IS NULL: NULL values are not tracked
+                        match = true;
+                        break;
+                    }
+                    if (min != null && canMatch(compareTypes[i], v, min, max)) {
+                        match = true;
+                        break;
+                    }
+                }
+                if (!match) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean canMatch(int compareType, Value v, Value min, Value max) {
+        try {
+            switch (compareType) {
+            case Comparison.EQUAL:
+            case Comparison.EQUAL_NULL_SAFE:
+            case Comparison.IN_LIST:
+                return table.compareValues(v, min) >= 0 && table.compareValues(v, max) <= 0;
+            case Comparison.BIGGER_EQUAL:
+                return table.compareValues(max, v) >= 0;
+            case Comparison.BIGGER:
+                return table.compareValues(max, v) > 0;
+            case Comparison.SMALLER_EQUAL:
+                return table.compareValues(min, v) <= 0;
+            case Comparison.SMALLER:
+                return table.compareValues(min, v) < 0;
+            default:
+                return true;
+            }
+        } catch (DbException e) {
+            // the values can not be compared: the condition will fail
+            // when the rows are read
+            return true;
+        }
+    }
+
+    /**
+     * An iterator over the rows of the blocks that can match. All blocks are
+     * read from the same snapshot of the map.
+     */
+    private final class ZoneIterator implements Iterator<Entry<Value, Value>> {
+
+        private final TransactionMap.TMIterator<Value, Entry<Value, Value>> iterator;
+        private final long min, max;
+        private final int[] pos;
+        private final int[] compareTypes;
+        private final Value[][] values;
+        private final Iterator<Entry<Long, Value[]>> blocks;
+        private boolean inBlock;
+
+        ZoneIterator(TransactionMap<Value, Value> map, long min, long max,
+                int[] pos, int[] compareTypes, Value[][] values) {
+            this.min = min;
+            this.max = max;
+            this.pos = pos;
+            this.compareTypes = compareTypes;
+            this.values = values;
+            if (min > max) {
+                iterator = null;
+                blocks = null;
+            } else {
+                iterator = map.entryIterator(ValueLong.get(min), ValueLong.get(max));
+                blocks = zones.subMap(min >> BLOCK_SHIFT, true, max >> BLOCK_SHIFT, true).entrySet().iterator();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!inBlock || !iterator.hasNext()) {
+                if (blocks == null || !blocks.hasNext()) {
+                    return false;
+                }
+                Entry<Long, Value[]> e = blocks.next();
+                if (canMatch(e.getValue(), pos, compareTypes, values)) {
+                    long block = e.getKey();
+                    long first = Math.max(min, block << BLOCK_SHIFT);
+                    long last = Math.min(max, (block << BLOCK_SHIFT) + (1 << BLOCK_SHIFT) - 1);
+                    iterator.seek(ValueLong.get(first), ValueLong.get(last));
+                    inBlock = true;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<Value, Value> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
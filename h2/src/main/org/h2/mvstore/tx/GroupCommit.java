@@ -0,0 +1,123 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.h2.mvstore.MVStore;
+
+/**
+ * Makes committed transactions durable in groups. Each committing thread
+ * takes a ticket. The first thread that finds no store operation in progress
+ * becomes the leader: it waits for up to the configured delay so that other
+ * transactions can join, then stores and syncs the changes of all tickets
+ * taken so far, and releases the waiting threads. Threads that arrive while
+ * the leader is writing wait for the next group.
+ */
+final class GroupCommit {
+
+    private final MVStore store;
+
+    /**
+     * The maximum time the leader waits for other transactions, in
+     * nanoseconds.
+     */
+    private final long delayNanos;
+
+    /**
+     * The last ticket that was taken.
+     */
+    private long requested;
+
+    /**
+     * All tickets up to this one are durable.
+     */
+    private long completed;
+
+    /**
+     * Whether a thread is currently writing a group.
+     */
+    private boolean leaderActive;
+
+    GroupCommit(MVStore store, long delayNanos) {
+        this.store = store;
+        this.delayNanos = delayNanos;
+    }
+
+    /**
+     * Wait until the changes of all transactions committed so far in the
+     * current thread are stored and synced to disk.
+     *
+     * @param others whether other transactions are open, which means it is
+     *            worth waiting for them to join the group
+     */
+    void commit(boolean others) {
+        boolean interrupted = false;
+        try {
+            long ticket;
+            synchronized (this) {
+                ticket = ++requested;
+                while (true) {
+                    if (completed >= ticket) {
+                        return;
+                    }
+                    if (!leaderActive) {
+                        leaderActive = true;
+                        break;
+                    }
+                    interrupted |= waitUninterruptibly(0);
+                }
+                if (others && delayNanos > 0) {
+                    long until = System.nanoTime() + delayNanos;
+                    for (long remaining; (remaining = until - System.nanoTime()) > 0;) {
+                        interrupted |= waitUninterruptibly(remaining);
+                    }
+                }
+                ticket = requested;
+            }
+            boolean success = false;
+            try {
+                store.commit();
+                store.sync();
+                success = true;
+            } finally {
+                synchronized (this) {
+                    if (success) {
+                        completed = ticket;
+                    }
+                    leaderActive = false;
+                    notifyAll();
+                }
+            }
+        } finally {
+            if (interrupted) {
+                // restore the interrupt only now, as an interrupted thread
+                // would close the file channel while writing
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Wait for a notification, or until the time is up.
+     *
+     * @param nanos the maximum time to wait, or 0 to wait without a limit
+     * @return whether the thread was interrupted while waiting
+     */
+    private boolean waitUninterruptibly(long nanos) {
+        try {
+            if (nanos == 0) {
+                wait();
+            } else {
+                TimeUnit.NANOSECONDS.timedWait(this, nanos);
+            }
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+
+}
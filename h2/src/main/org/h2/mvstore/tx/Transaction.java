@@ -154,6 +154,12 @@ public class Transaction {
      */
     private volatile boolean notificationRequested;
 
+    /**
+     * The undo log entries kept in memory, or null if the undo log map is
+     * used.
+     */
+    UndoBuffer undoBuffer;
+
 
     Transaction(TransactionStore store, int transactionId, long sequenceNum, int status,
                 String name, long logId, int timeoutMillis, int ownerId,
@@ -303,6 +309,10 @@ long log(int mapId, Object key, VersionedValue oldValue) {
         }
         int currentStatus = getStatus(currentState);
         checkOpen(currentStatus);
+        UndoBuffer buffer = undoBuffer;
+        if (buffer != null && buffer.add(logId, mapId, key, oldValue)) {
+            return TransactionStore.getOperationId(transactionId, logId);
+        }
         long undoKey = store.addUndoLogRecord(transactionId, logId, new Object[]{ mapId, key, oldValue });
         return undoKey;
     }
@@ -321,7 +331,10 @@ void logUndo() {
         }
         int currentStatus = getStatus(currentState);
         checkOpen(currentStatus);
-        store.removeUndoLogRecord(transactionId);
+        UndoBuffer buffer = undoBuffer;
+        if (buffer == null || !buffer.removeLast()) {
+            store.removeUndoLogRecord(transactionId);
+        }
     }
 
     /**
@@ -370,6 +383,11 @@ public <K, V> TransactionMap<K, V> openMap(MVMap<K, VersionedValue> map) {
      * committed or completely rolled back.
      */
     public void prepare() {
+        UndoBuffer buffer = undoBuffer;
+        if (buffer != null) {
+            // the undo log needs to be stored
+            buffer.spill();
+        }
         setStatus(STATUS_PREPARED);
         store.storeTransaction(this);
     }
@@ -103,12 +103,18 @@ public long sizeAsLong() {
         BitSet committingTransactions;
         RootReference mapRootReference;
         RootReference[] undoLogRootReferences;
+        UndoBuffer[] undoBuffers;
+        int[] undoBufferSizes;
         long undoLogSize;
+        long spillCount;
         do {
+            spillCount = store.spillCount.get();
             committingTransactions = store.committingTransactions.get();
             mapRootReference = map.flushAndGetRoot();
             BitSet opentransactions = store.openTransactions.get();
             undoLogRootReferences = new RootReference[opentransactions.length()];
+            undoBuffers = null;
+            undoBufferSizes = null;
             undoLogSize = 0;
             for (int i = opentransactions.nextSetBit(0); i >= 0; i = opentransactions.nextSetBit(i+1)) {
                 MVMap<Long, Object[]> undoLog = store.undoLogs[i];
@@ -117,9 +123,26 @@ public long sizeAsLong() {
                     undoLogRootReferences[i] = rootReference;
                     undoLogSize += rootReference.getTotalCount();
                 }
+                Transaction t = store.getTransaction(i);
+                UndoBuffer buffer;
+                if (t != null && (buffer = t.undoBuffer) != null) {
+                    int bufferSize = buffer.getBufferedSize();
+                    if (bufferSize > 0) {
+                        if (undoBuffers == null) {
+                            undoBuffers = new UndoBuffer[opentransactions.length()];
+                            undoBufferSizes = new int[opentransactions.length()];
+                        }
+                        undoBuffers[i] = buffer;
+                        undoBufferSizes[i] = bufferSize;
+                        undoLogSize += bufferSize;
+                    }
+                }
             }
+            // undo log entries that are moved from a buffer to a map
+            // while reading could be missed or counted twice
         } while(committingTransactions != store.committingTransactions.get() ||
-                mapRootReference != map.getRoot());
+                mapRootReference != map.getRoot() ||
+                (spillCount & 1) != 0 || spillCount != store.spillCount.get());
         // Now we have a snapshot, where mapRootReference points to state of the map,
         // undoLogRootReference captures the state of undo log
         // and committingTransactions mask tells us which of seemingly uncommitted changes
@@ -163,28 +186,22 @@ public long sizeAsLong() {
                     while (cursor.hasNext()) {
                         cursor.next();
                         Object op[] = cursor.getValue();
-                        if ((int) op[0] == map.getId()) {
-                            VersionedValue currentValue = map.get(mapRootPage, op[1]);
-                            // If map entry is not there, then we never counted
-                            // it, in the first place, so skip it.
-                            // This is possible when undo entry exists because
-                            // it belongs to a committed but not yet closed
-                            // transaction, and it was later deleted by some
-                            // other already committed and closed transaction.
-                            if (currentValue != null) {
-                                // only the last undo entry for any given map
-                                // key should be considered
-                                long operationId = cursor.getKey();
-                                if (currentValue.getOperationId() == operationId) {
-                                    int txId = TransactionStore.getTransactionId(operationId);
-                                    boolean isVisible = txId == transaction.transactionId ||
-                                            committingTransactions.get(txId);
-                                    Object v = isVisible ? currentValue.getCurrentValue()
-                                            : currentValue.getCommittedValue();
-                                    if (v == null) {
-                                        --size;
-                                    }
-                                }
+                        if ((int) op[0] == map.getId() &&
+                                isRemoved(mapRootPage, op[1], cursor.getKey(), committingTransactions)) {
+                            --size;
+                        }
+                    }
+                }
+            }
+            if (undoBuffers != null) {
+                for (int i = 0; i < undoBuffers.length; i++) {
+                    UndoBuffer buffer = undoBuffers[i];
+                    if (buffer != null) {
+                        for (int logId = 0, bufferSize = undoBufferSizes[i]; logId < bufferSize; logId++) {
+                            if (buffer.getMapId(logId) == map.getId() && isRemoved(mapRootPage,
+                                    buffer.getKey(logId), TransactionStore.getOperationId(i, logId),
+                                    committingTransactions)) {
+                                --size;
                             }
                         }
                     }
@@ -194,6 +211,37 @@ public long sizeAsLong() {
         return size;
     }
 
+    /**
+     * Check whether an entry of the map with an undo log entry is counted by
+     * the map, but not visible for this transaction.
+     *
+     * @param mapRootPage the root page of the map
+     * @param key the key of the undo log entry
+     * @param operationId the operation id of the undo log entry
+     * @param committingTransactions the committing transactions
+     * @return whether the entry needs to be subtracted from the size
+     */
+    private boolean isRemoved(Page mapRootPage, Object key, long operationId, BitSet committingTransactions) {
+        VersionedValue currentValue = map.get(mapRootPage, key);
+        // If map entry is not there, then we never counted
+        // it, in the first place, so skip it.
+        // This is possible when undo entry exists because
+        // it belongs to a committed but not yet closed
+        // transaction, and it was later deleted by some
+        // other already committed and closed transaction.
+        // Only the last undo entry for any given map
+        // key should be considered.
+        if (currentValue == null || currentValue.getOperationId() != operationId) {
+            return false;
+        }
+        int txId = TransactionStore.getTransactionId(operationId);
+        boolean isVisible = txId == transaction.transactionId ||
+                committingTransactions.get(txId);
+        Object v = isVisible ? currentValue.getCurrentValue()
+                : currentValue.getCommittedValue();
+        return v == null;
+    }
+
     /**
      * Remove an entry.
      * <p>
@@ -243,6 +291,30 @@ public V putIfAbsent(K key, V value) {
         return set(key, decisionMaker);
     }
 
+    /**
+     * Put the value for the given key if entry for this key does not exist,
+     * where the key is expected to be higher than all existing keys, for
+     * example a generated key. If possible, the entry is added to the append
+     * buffer of the underlying map, so that concurrent inserts at the end of
+     * the map don't conflict. Otherwise, this method works like
+     * {@link #putIfAbsent(Object, Object)}.
+     *
+     * @param key the key
+     * @param value the new value (not null)
+     * @return the old value
+     */
+    public V appendIfAbsent(K key, V value) {
+        DataUtils.checkArgument(value != null, "The value may not be null");
+        // a key that is higher than all keys of the map is not used by any
+        // transaction yet, so the entry can be added without a decision maker
+        long undoKey = transaction.log(map.getId(), key, null);
+        if (map.tryAppend(key, VersionedValueUncommitted.getInstance(undoKey, value, null))) {
+            return null;
+        }
+        transaction.logUndo();
+        return putIfAbsent(key, value);
+    }
+
     /**
      * Appends entry to underlying map. This method may be used concurrently,
      * but latest appended values are not guaranteed to be visible.
@@ -571,7 +643,7 @@ public Iterator<K> keyIterator(K from) {
      *            included
      * @return the iterator
      */
-    public Iterator<K> keyIterator(K from, K to, boolean includeUncommitted) {
+    public TMIterator<K, K> keyIterator(K from, K to, boolean includeUncommitted) {
         return new KeyIterator<>(this, from, to, includeUncommitted);
     }
 
@@ -582,7 +654,7 @@ public Iterator<K> keyIterator(K from, K to, boolean includeUncommitted) {
      * @param to the last key to return
      * @return the iterator
      */
-    public Iterator<Map.Entry<K, V>> entryIterator(final K from, final K to) {
+    public TMIterator<K, Map.Entry<K, V>> entryIterator(final K from, final K to) {
         return new EntryIterator<>(this, from, to);
     }
 
@@ -671,7 +743,14 @@ protected Map.Entry<K, V> registerCurrent(K key, VersionedValue data) {
         }
     }
 
-    private abstract static class TMIterator<K,X> implements Iterator<X> {
+    /**
+     * An iterator over the keys or entries of a range that are visible to a
+     * transaction.
+     *
+     * @param <K> the key type
+     * @param <X> the type of the elements
+     */
+    public abstract static class TMIterator<K,X> implements Iterator<X> {
         private final int transactionId;
         private final BitSet committingTransactions;
         private final Cursor<K,VersionedValue> cursor;
@@ -707,6 +786,19 @@ protected Map.Entry<K, V> registerCurrent(K key, VersionedValue data) {
 
         protected abstract X registerCurrent(K key, VersionedValue data);
 
+        /**
+         * Continue with another range, using the same snapshot of the map.
+         * The pages of the map that were already read are re-used if the range
+         * is close to the current position, see {@link Cursor#seek}.
+         *
+         * @param from the first key to return
+         * @param to the last key to return or null if there is no limit
+         */
+        public final void seek(K from, K to) {
+            cursor.seek(from, to);
+            fetchNext();
+        }
+
         private void fetchNext() {
             while (cursor.hasNext()) {
                 K key = cursor.next();
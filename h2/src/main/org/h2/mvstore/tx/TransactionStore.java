@@ -10,6 +10,8 @@
 import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.h2.mvstore.Cursor;
@@ -83,6 +85,24 @@ public class TransactionStore {
      */
     private int maxTransactionId = MAX_OPEN_TRANSACTIONS;
 
+    /**
+     * Makes commits durable in groups, or null if commits are stored as
+     * usual.
+     */
+    private volatile GroupCommit groupCommit;
+
+    /**
+     * The maximum number of undo log entries of a transaction that are kept
+     * in memory, or 0 to always use the undo log maps.
+     */
+    private int undoBufferSize;
+
+    /**
+     * Incremented when undo log entries start and stop being moved from a
+     * buffer to an undo log map, so that readers can detect it.
+     */
+    final AtomicLong spillCount = new AtomicLong();
+
     /**
      * Array holding all open transaction objects.
      * Position in array is "transaction id".
@@ -149,7 +169,7 @@ public TransactionStore(MVStore store, DataType dataType, int timeoutMillis) {
                 .valueType(undoLogValueType);
         DataType vt = new VersionedValueType(dataType);
         mapBuilder = new MVMap.Builder<Object, VersionedValue>()
-                            .keyType(dataType).valueType(vt);
+                            .keyType(dataType).valueType(vt).concurrentAppend();
     }
 
     /**
@@ -234,6 +254,69 @@ public void setMaxTransactionId(int max) {
         this.maxTransactionId = max;
     }
 
+    /**
+     * Set the maximum time a commit waits for other transactions to commit,
+     * so that their changes are stored and synced to disk together. If the
+     * delay is negative, commits are not synced.
+     *
+     * @param micros the delay in microseconds, 0 to sync without waiting,
+     *            or negative to disable
+     */
+    public void setCommitGroupDelay(int micros) {
+        groupCommit = micros < 0 || store.getFileStore() == null ? null
+                : new GroupCommit(store, TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    /**
+     * Set the maximum number of undo log entries of a transaction that are
+     * kept in memory. The entries of larger transactions, and of open
+     * transactions when the changes are stored, are moved to the undo log
+     * map of the transaction.
+     *
+     * @param entries the number of entries, or 0 to always use the undo log
+     *            maps
+     */
+    public void setUndoBufferSize(int entries) {
+        undoBufferSize = entries;
+        store.setBeforeStore(entries <= 0 ? null : new Runnable() {
+            @Override
+            public void run() {
+                spillUndoBuffers();
+            }
+        });
+    }
+
+    /**
+     * Move the undo log entries of all open transactions that keep them in
+     * memory to their undo log maps.
+     */
+    void spillUndoBuffers() {
+        BitSet openTrans = openTransactions.get();
+        for (int i = openTrans.nextSetBit(0); i >= 0; i = openTrans.nextSetBit(i + 1)) {
+            Transaction t = transactions.get(i);
+            if (t != null) {
+                UndoBuffer buffer = t.undoBuffer;
+                if (buffer != null && buffer.size() > 0) {
+                    buffer.spill();
+                }
+            }
+        }
+    }
+
+    /**
+     * Called before undo log entries are moved to an undo log map.
+     */
+    void spillStarted() {
+        spillCount.incrementAndGet();
+    }
+
+    /**
+     * Called after undo log entries were moved to an undo log map.
+     */
+    void spillEnded() {
+        spillCount.incrementAndGet();
+    }
+
     /**
      * Check whether a given map exists.
      *
@@ -366,6 +449,9 @@ private Transaction registerTransaction(int txId, int status, String name, long
 
         Transaction transaction = new Transaction(this, transactionId, sequenceNo, status, name, logId,
                 timeoutMillis, ownerId, listener);
+        if (undoBufferSize > 0 && status == Transaction.STATUS_OPEN && logId == 0) {
+            transaction.undoBuffer = new UndoBuffer(this, transactionId, undoBufferSize);
+        }
 
         assert transactions.get(transactionId) == null;
         transactions.set(transactionId, transaction);
@@ -449,6 +535,22 @@ void commit(Transaction t, boolean recovery) {
             CommitDecisionMaker commitDecisionMaker = new CommitDecisionMaker();
             try {
                 MVMap<Long, Object[]> undoLog = undoLogs[transactionId];
+                UndoBuffer buffer = t.undoBuffer;
+                if (buffer != null && buffer.isBuffered()) {
+                    for (int logId = 0, size = buffer.size(); logId < size; logId++) {
+                        MVMap<Object, VersionedValue> map = openMap(buffer.getMapId(logId));
+                        if (map != null) {
+                            commitDecisionMaker.setUndoKey(getOperationId(transactionId, logId));
+                            map.operate(buffer.getKey(logId), VersionedValue.DUMMY, commitDecisionMaker);
+                        }
+                    }
+                    if (buffer.close()) {
+                        // the entries were spilled while committing
+                        undoLog.clear();
+                        store.renameMap(undoLog, getUndoLogName(false, transactionId));
+                    }
+                    return;
+                }
                 if(!recovery) {
                     store.renameMap(undoLog, getUndoLogName(true, transactionId));
                 }
@@ -511,7 +613,7 @@ <K> MVMap<K, VersionedValue> openMap(String name,
         MVMap<K, VersionedValue> map;
         MVMap.Builder<K, VersionedValue> builder =
                 new MVMap.Builder<K, VersionedValue>().
-                keyType(keyType).valueType(vt);
+                keyType(keyType).valueType(vt).concurrentAppend();
         map = store.openMap(name, builder);
         return map;
     }
@@ -546,6 +648,11 @@ MVMap<Object, VersionedValue> openMap(int mapId) {
      *                   false if it just performed a data access
      */
     void endTransaction(Transaction t, boolean hasChanges) {
+        boolean committed = t.getStatus() == Transaction.STATUS_COMMITTED;
+        UndoBuffer buffer = t.undoBuffer;
+        if (buffer != null) {
+            buffer.close();
+        }
         t.closeIt();
         int txId = t.transactionId;
         transactions.set(txId, null);
@@ -565,7 +672,10 @@ void endTransaction(Transaction t, boolean hasChanges) {
                 preparedTransactions.remove(txId);
             }
 
-            if (wasStored || store.getAutoCommitDelay() == 0) {
+            GroupCommit g = groupCommit;
+            if (committed && g != null) {
+                g.commit(!openTransactions.get().isEmpty());
+            } else if (wasStored || store.getAutoCommitDelay() == 0) {
                 store.tryCommit();
             } else {
                 if (isUndoEmpty()) {
@@ -590,6 +700,13 @@ private boolean isUndoEmpty() {
             if (undoLog != null && !undoLog.isEmpty()) {
                 return false;
             }
+            Transaction t = transactions.get(i);
+            if (t != null) {
+                UndoBuffer buffer = t.undoBuffer;
+                if (buffer != null && buffer.size() > 0) {
+                    return false;
+                }
+            }
         }
         return true;
     }
@@ -615,7 +732,14 @@ void rollbackTo(Transaction t, long maxLogId, long toLogId) {
         int transactionId = t.getId();
         MVMap<Long, Object[]> undoLog = undoLogs[transactionId];
         RollbackDecisionMaker decisionMaker = new RollbackDecisionMaker(this, transactionId, toLogId, t.listener);
+        UndoBuffer buffer = t.undoBuffer;
         for (long logId = maxLogId - 1; logId >= toLogId; logId--) {
+            if (buffer != null && buffer.isBuffered()) {
+                decisionMaker.decide(buffer.get((int) logId), null);
+                decisionMaker.reset();
+                buffer.removeLast();
+                continue;
+            }
             Long undoKey = getOperationId(transactionId, logId);
             undoLog.operate(undoKey, null, decisionMaker);
             decisionMaker.reset();
@@ -635,6 +759,7 @@ Iterator<Change> getChanges(final Transaction t, final long maxLogId,
             final long toLogId) {
 
         final MVMap<Long, Object[]> undoLog = undoLogs[t.getId()];
+        final UndoBuffer buffer = t.undoBuffer;
         return new Iterator<Change>() {
 
             private long logId = maxLogId - 1;
@@ -644,7 +769,8 @@ private void fetchNext() {
                 int transactionId = t.getId();
                 while (logId >= toLogId) {
                     Long undoKey = getOperationId(transactionId, logId);
-                    Object[] op = undoLog.get(undoKey);
+                    Object[] op = buffer != null && buffer.isBuffered() ? buffer.get((int) logId)
+                            : undoLog.get(undoKey);
                     logId--;
                     if (op == null) {
                         // partially rolled back: load previous
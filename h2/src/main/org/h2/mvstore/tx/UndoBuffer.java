@@ -0,0 +1,246 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.h2.mvstore.MVMap;
+import org.h2.value.VersionedValue;
+
+/**
+ * The undo log of a small transaction, kept in memory. The entries are moved
+ * to the undo log map of the transaction slot ("spilled") if there are too
+ * many of them, or before the changes are stored, so that the transaction
+ * can be rolled back or committed on recovery. Afterwards, the undo log map
+ * is used for the rest of the transaction.
+ * <p>
+ * Entries are only added and removed by the thread of the transaction. They
+ * can be spilled concurrently by the thread that stores the changes, and
+ * read by other transactions to calculate the size of a map.
+ */
+final class UndoBuffer {
+
+    private static final int BUFFERED = 0;
+    private static final int SPILLING = 1;
+    private static final int SPILLED = 2;
+    private static final int CLOSED = 3;
+
+    private final TransactionStore store;
+
+    private final int transactionId;
+
+    private final int maxSize;
+
+    private final AtomicInteger state = new AtomicInteger(BUFFERED);
+
+    private volatile int[] mapIds = new int[8];
+
+    private volatile Object[] keys = new Object[8];
+
+    private volatile VersionedValue[] oldValues = new VersionedValue[8];
+
+    /**
+     * The number of entries, which is the log id of the next entry.
+     */
+    private volatile int size;
+
+    UndoBuffer(TransactionStore store, int transactionId, int maxSize) {
+        this.store = store;
+        this.transactionId = transactionId;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Check whether the entries are kept in this buffer. If not, wait until
+     * spilling them to the undo log map is complete.
+     *
+     * @return true if the entries are in this buffer, false if the undo log
+     *         map needs to be used
+     */
+    boolean isBuffered() {
+        int s = state.get();
+        if (s == BUFFERED) {
+            return true;
+        } else if (s == SPILLING) {
+            awaitSpilled();
+        }
+        return false;
+    }
+
+    /**
+     * Add an entry, unless the buffer is no longer used or full.
+     *
+     * @param logId the log id
+     * @param mapId the map id
+     * @param key the key
+     * @param oldValue the old value
+     * @return false if the entry needs to be added to the undo log map
+     */
+    boolean add(long logId, int mapId, Object key, VersionedValue oldValue) {
+        if (!isBuffered()) {
+            return false;
+        }
+        int s = size;
+        assert s == logId;
+        if (s >= maxSize) {
+            spill();
+            return false;
+        }
+        if (s == mapIds.length) {
+            int len = s * 2;
+            // the new arrays contain the old entries before they are
+            // published, so concurrent readers see them in both
+            mapIds = Arrays.copyOf(mapIds, len);
+            keys = Arrays.copyOf(keys, len);
+            oldValues = Arrays.copyOf(oldValues, len);
+        }
+        mapIds[s] = mapId;
+        keys[s] = key;
+        oldValues[s] = oldValue;
+        size = s + 1;
+        if (!isBuffered()) {
+            // spilled concurrently, the entry may or may not be copied
+            store.undoLogs[transactionId].put(TransactionStore.getOperationId(transactionId, s), get(s));
+        }
+        return true;
+    }
+
+    /**
+     * Remove the last entry, unless the buffer is no longer used.
+     *
+     * @return false if the entry needs to be removed from the undo log map
+     */
+    boolean removeLast() {
+        if (!isBuffered()) {
+            return false;
+        }
+        int s = size - 1;
+        size = s;
+        if (!isBuffered()) {
+            // spilled concurrently, the entry may or may not be copied
+            store.undoLogs[transactionId].remove(TransactionStore.getOperationId(transactionId, s));
+        } else {
+            keys[s] = null;
+            oldValues[s] = null;
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of entries. This method may be called concurrently.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of entries that are only kept in this buffer. This
+     * method may be called concurrently.
+     *
+     * @return the number of entries, or 0 if the undo log map is used
+     */
+    int getBufferedSize() {
+        return state.get() == BUFFERED ? size : 0;
+    }
+
+    /**
+     * Get an entry. This method may be called concurrently for log ids below
+     * the size.
+     *
+     * @param logId the log id
+     * @return the entry [ mapId, key, oldValue ]
+     */
+    Object[] get(int logId) {
+        return new Object[] { mapIds[logId], keys[logId], oldValues[logId] };
+    }
+
+    /**
+     * Get the map id of an entry. This method may be called concurrently for
+     * log ids below the size.
+     *
+     * @param logId the log id
+     * @return the map id
+     */
+    int getMapId(int logId) {
+        return mapIds[logId];
+    }
+
+    /**
+     * Get the key of an entry. This method may be called concurrently for log
+     * ids below the size.
+     *
+     * @param logId the log id
+     * @return the key
+     */
+    Object getKey(int logId) {
+        return keys[logId];
+    }
+
+    /**
+     * Move the entries to the undo log map, unless this was already done or
+     * the buffer is closed. If the transaction is being committed, the map is
+     * renamed first, so that the commit is completed on recovery.
+     */
+    void spill() {
+        if (state.get() != BUFFERED) {
+            return;
+        }
+        boolean spilling = false;
+        store.spillStarted();
+        try {
+            if (!state.compareAndSet(BUFFERED, SPILLING)) {
+                return;
+            }
+            spilling = true;
+            MVMap<Long, Object[]> undoLog = store.undoLogs[transactionId];
+            if (store.committingTransactions.get().get(transactionId)) {
+                store.store.renameMap(undoLog, TransactionStore.getUndoLogName(true, transactionId));
+            }
+            for (int i = 0, s = size; i < s; i++) {
+                undoLog.put(TransactionStore.getOperationId(transactionId, i), get(i));
+            }
+        } finally {
+            store.spillEnded();
+            if (spilling) {
+                synchronized (this) {
+                    state.set(SPILLED);
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private synchronized void awaitSpilled() {
+        boolean interrupted = false;
+        while (state.get() == SPILLING) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop using this buffer.
+     *
+     * @return true if the entries were spilled to the undo log map
+     */
+    boolean close() {
+        if (state.compareAndSet(BUFFERED, CLOSED)) {
+            return false;
+        }
+        isBuffered();
+        return state.get() == SPILLED;
+    }
+
+}
@@ -61,8 +61,9 @@ public int compare(Object aObj, Object bObj) {
     public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
         if (buff.get() == 0) {
             // fast path (no op ids or null entries)
+            valueType.read(buff, obj, len, false);
             for (int i = 0; i < len; i++) {
-                obj[i] = VersionedValueCommitted.getInstance(valueType.read(buff));
+                obj[i] = VersionedValueCommitted.getInstance(obj[i]);
             }
         } else {
             // slow path (some entries may be null)
@@ -96,10 +97,13 @@ public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
         }
         if (fastPath) {
             buff.put((byte) 0);
+            // the values are written together, so that the value type can
+            // use a format for multiple values
+            Object[] values = new Object[len];
             for (int i = 0; i < len; i++) {
-                VersionedValue v = (VersionedValue) obj[i];
-                valueType.write(buff, v.getCurrentValue());
+                values[i] = ((VersionedValue) obj[i]).getCurrentValue();
             }
+            valueType.write(buff, values, len, false);
         } else {
             // slow path:
             // store op ids, and some entries may be null
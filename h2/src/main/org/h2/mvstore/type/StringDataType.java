@@ -11,11 +11,48 @@
 
 /**
  * A string type.
+ * <p>
+ * Optionally, the common prefix of the keys of a page is written only once.
+ * Keys in this format start with the marker -1 (a length that is otherwise
+ * not possible), followed by the prefix, and then the rest of each key. Keys
+ * in both formats can always be read.
  */
 public class StringDataType implements DataType {
 
     public static final StringDataType INSTANCE = new StringDataType();
 
+    /**
+     * A string type that writes the common prefix of the keys of a page once.
+     */
+    public static final StringDataType PREFIX_INSTANCE = new StringDataType(true);
+
+    /**
+     * The marker for keys with a common prefix.
+     */
+    private static final int PREFIX_KEYS = -1;
+
+    /**
+     * The minimum number of characters that must be saved to use the prefix
+     * format.
+     */
+    private static final int MIN_PREFIX_SAVING = 8;
+
+    private final boolean prefixCompression;
+
+    public StringDataType() {
+        this(false);
+    }
+
+    /**
+     * Create a new string type.
+     *
+     * @param prefixCompression whether the common prefix of the keys of a
+     *            page is written once
+     */
+    public StringDataType(boolean prefixCompression) {
+        this.prefixCompression = prefixCompression;
+    }
+
     @Override
     public int compare(Object a, Object b) {
         return a.toString().compareTo(b.toString());
@@ -28,13 +65,47 @@ public int getMemory(Object obj) {
 
     @Override
     public void read(ByteBuffer buff, Object[] obj, int len, boolean key) {
-        for (int i = 0; i < len; i++) {
+        if (len == 0) {
+            return;
+        }
+        int l = DataUtils.readVarInt(buff);
+        if (key && l == PREFIX_KEYS) {
+            String prefix = read(buff);
+            for (int i = 0; i < len; i++) {
+                obj[i] = prefix.concat(read(buff));
+            }
+            return;
+        }
+        obj[0] = DataUtils.readString(buff, l);
+        for (int i = 1; i < len; i++) {
             obj[i] = read(buff);
         }
     }
 
     @Override
     public void write(WriteBuffer buff, Object[] obj, int len, boolean key) {
+        if (key && prefixCompression && len > 1) {
+            String prefix = obj[0].toString();
+            int prefixLen = prefix.length();
+            for (int i = 1; i < len && prefixLen > 0; i++) {
+                String s = obj[i].toString();
+                prefixLen = Math.min(prefixLen, s.length());
+                for (int j = 0; j < prefixLen; j++) {
+                    if (s.charAt(j) != prefix.charAt(j)) {
+                        prefixLen = j;
+                        break;
+                    }
+                }
+            }
+            if (prefixLen * (len - 1) >= MIN_PREFIX_SAVING) {
+                buff.putVarInt(PREFIX_KEYS);
+                write(buff, prefix.substring(0, prefixLen));
+                for (int i = 0; i < len; i++) {
+                    write(buff, obj[i].toString().substring(prefixLen));
+                }
+                return;
+            }
+        }
         for (int i = 0; i < len; i++) {
             write(buff, obj[i]);
         }
@@ -7,6 +7,7 @@
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.TreeMap;
 import org.h2.engine.Database;
 import org.h2.engine.Session;
@@ -50,6 +51,12 @@ public class LocalResultImpl implements LocalResult {
     private boolean containsLobs;
     private Boolean containsNull;
 
+    /**
+     * The first rows, if only the first rows of the sorted result are needed,
+     * or null.
+     */
+    private TopRows topRows;
+
     /**
      * Construct a local result object.
      */
@@ -329,6 +336,18 @@ public void addRow(Value[] values) {
             } else {
                 rowCount = external.addRow(values);
             }
+        } else if (topRows != null || rowCount == 0 && canUseTopRows()) {
+            if (topRows == null) {
+                topRows = new TopRows(sort, offset + limit, withTiesSortOrder != null);
+            }
+            topRows.add(values);
+            rowCount = topRows.size();
+            if (rowCount > maxMemoryRows) {
+                // too many rows with the same sort key
+                rows = topRows.getRows();
+                topRows = null;
+                addRowsToDisk();
+            }
         } else {
             rows.add(values);
             rowCount++;
@@ -338,6 +357,21 @@ public void addRow(Value[] values) {
         }
     }
 
+    /**
+     * Check whether only the first rows need to be kept while rows are added,
+     * because the result is sorted and limited, and the number of the rows
+     * is small enough to keep them in memory.
+     *
+     * @return true if only the first rows need to be kept
+     */
+    private boolean canUseTopRows() {
+        if (sort == null || limit <= 0 || fetchPercent || limitsWereApplied || external != null) {
+            return false;
+        }
+        long count = (long) Math.max(offset, 0) + limit;
+        return count <= maxMemoryRows && count < Integer.MAX_VALUE;
+    }
+
     private void addRowsToDisk() {
         if (external == null) {
             createExternalResult();
@@ -362,7 +396,12 @@ public void done() {
             if (isAnyDistinct()) {
                 rows = new ArrayList<>(distinctRows.values());
             }
-            if (sort != null && limit != 0 && !limitsWereApplied) {
+            if (topRows != null) {
+                // already sorted
+                rows = topRows.getRows();
+                rowCount = rows.size();
+                topRows = null;
+            } else if (sort != null && limit != 0 && !limitsWereApplied) {
                 boolean withLimit = limit > 0 && withTiesSortOrder == null;
                 if (offset > 0 || withLimit) {
                     sort.sort(rows, offset, withLimit ? limit : rows.size());
@@ -585,4 +624,177 @@ public void setFetchSize(int fetchSize) {
         // ignore
     }
 
+
+    /**
+     * The first rows of a sorted result. The rows are kept in a binary heap,
+     * with the last of the first rows on top, so that each row that is added
+     * only needs to be compared with this row, unless it replaces it. If
+     * WITH TIES is used, the rows that are equal to the top row are kept as
+     * well. The rows are ordered in the same way as by a stable sort: rows
+     * that are equal are kept in the order they were added.
+     */
+    private static final class TopRows {
+
+        private final SortOrder sort;
+
+        private final int maxSize;
+
+        private final boolean withTies;
+
+        private Value[][] heap = new Value[16][];
+
+        private long[] heapIds = new long[16];
+
+        private int size;
+
+        private Value[][] ties;
+
+        private long[] tieIds;
+
+        private int tieCount;
+
+        private long nextId;
+
+        TopRows(SortOrder sort, int maxSize, boolean withTies) {
+            this.sort = sort;
+            this.maxSize = maxSize;
+            this.withTies = withTies;
+        }
+
+        /**
+         * Add a row, if it belongs to the first rows.
+         *
+         * @param row the row
+         */
+        void add(Value[] row) {
+            long id = nextId++;
+            if (size < maxSize) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, size * 2);
+                    heapIds = Arrays.copyOf(heapIds, size * 2);
+                }
+                int i = size++;
+                // move up
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (compare(row, id, heap[parent], heapIds[parent]) <= 0) {
+                        break;
+                    }
+                    heap[i] = heap[parent];
+                    heapIds[i] = heapIds[parent];
+                    i = parent;
+                }
+                heap[i] = row;
+                heapIds[i] = id;
+                return;
+            }
+            int c = sort.compare(row, heap[0]);
+            if (c > 0) {
+                return;
+            } else if (c == 0) {
+                // added later, so it is after the top row
+                if (withTies) {
+                    addTie(row, id);
+                }
+                return;
+            }
+            Value[] last = heap[0];
+            long lastId = heapIds[0];
+            replaceTop(row, id);
+            if (withTies) {
+                if (sort.compare(last, heap[0]) == 0) {
+                    addTie(last, lastId);
+                } else {
+                    ties = null;
+                    tieIds = null;
+                    tieCount = 0;
+                }
+            }
+        }
+
+        private void replaceTop(Value[] row, long id) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && compare(heap[child + 1], heapIds[child + 1], heap[child], heapIds[child]) > 0) {
+                    child++;
+                }
+                if (compare(row, id, heap[child], heapIds[child]) >= 0) {
+                    break;
+                }
+                heap[i] = heap[child];
+                heapIds[i] = heapIds[child];
+                i = child;
+            }
+            heap[i] = row;
+            heapIds[i] = id;
+        }
+
+        private void addTie(Value[] row, long id) {
+            if (ties == null) {
+                ties = new Value[16][];
+                tieIds = new long[16];
+            } else if (tieCount == ties.length) {
+                ties = Arrays.copyOf(ties, tieCount * 2);
+                tieIds = Arrays.copyOf(tieIds, tieCount * 2);
+            }
+            ties[tieCount] = row;
+            tieIds[tieCount++] = id;
+        }
+
+        private int compare(Value[] a, long aId, Value[] b, long bId) {
+            int c = sort.compare(a, b);
+            return c != 0 ? c : Long.compare(aId, bId);
+        }
+
+        /**
+         * Get the number of rows.
+         *
+         * @return the number of rows
+         */
+        int size() {
+            return size + tieCount;
+        }
+
+        /**
+         * Get the rows in sorted order. The heap is destroyed.
+         *
+         * @return the rows
+         */
+        ArrayList<Value[]> getRows() {
+            Value[][] sorted = new Value[size + tieCount][];
+            // heap sort: remove the top row until the heap is empty
+            for (int n = size; n > 0; n--) {
+                sorted[n - 1] = heap[0];
+                size--;
+                if (size > 0) {
+                    replaceTop(heap[size], heapIds[size]);
+                }
+            }
+            if (tieCount > 0) {
+                // the ties are equal to the last row, and were added after
+                // all other rows that are equal to it
+                Integer[] order = new Integer[tieCount];
+                for (int i = 0; i < tieCount; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer a, Integer b) {
+                        return Long.compare(tieIds[a], tieIds[b]);
+                    }
+                });
+                int start = sorted.length - tieCount;
+                for (int i = 0; i < tieCount; i++) {
+                    sorted[start + i] = ties[order[i]];
+                }
+            }
+            return new ArrayList<>(Arrays.asList(sorted));
+        }
+
+    }
+
 }
@@ -8,6 +8,7 @@
 import java.io.IOException;
 import java.util.ArrayList;
 
+import org.h2.engine.Constants;
 import org.h2.engine.SessionInterface;
 import org.h2.engine.SessionRemote;
 import org.h2.engine.SysProperties;
@@ -24,6 +25,14 @@
  */
 public class ResultRemote implements ResultInterface {
 
+    /**
+     * The next batch of rows is requested before it is needed only if the
+     * last batch was at most this large, so that the response fits into the
+     * socket buffers and the server is not blocked writing it while the client
+     * is sending another request.
+     */
+    private static final int PREFETCH_MAX_LENGTH = 32 * 1024;
+
     private int fetchSize;
     private SessionRemote session;
     private Transfer transfer;
@@ -34,6 +43,8 @@ public class ResultRemote implements ResultInterface {
     private int rowId, rowOffset;
     private ArrayList<Value[]> result;
     private final Trace trace;
+    private final boolean rowBatches;
+    private Prefetch prefetch;
 
     public ResultRemote(SessionRemote session, Transfer transfer, int id,
             int columnCount, int fetchSize) throws IOException {
@@ -49,6 +60,7 @@ public ResultRemote(SessionRemote session, Transfer transfer, int id,
         rowId = -1;
         result = new ArrayList<>(Math.min(fetchSize, rowCount));
         this.fetchSize = fetchSize;
+        rowBatches = session.getClientVersion() >= Constants.TCP_PROTOCOL_VERSION_20;
         fetchRows(false);
     }
 
@@ -101,6 +113,11 @@ public void reset() {
         }
         synchronized (session) {
             session.checkClosed();
+            if (prefetch != null) {
+                // the rows were requested before the reset
+                prefetch = null;
+                session.readPendingResponses();
+            }
             try {
                 session.traceOperation("RESULT_RESET", id);
                 transfer.writeInt(SessionRemote.RESULT_RESET).writeInt(id).flush();
@@ -208,27 +225,56 @@ private void fetchRows(boolean sendFetch) {
                 rowOffset += result.size();
                 result.clear();
                 int fetch = Math.min(fetchSize, rowCount - rowOffset);
-                if (sendFetch) {
-                    session.traceOperation("RESULT_FETCH_ROWS", id);
-                    transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).
-                            writeInt(id).writeInt(fetch);
-                    session.done(transfer);
-                }
-                for (int r = 0; r < fetch; r++) {
-                    boolean row = transfer.readBoolean();
-                    if (!row) {
-                        break;
+                int length = 0;
+                if (prefetch != null) {
+                    Prefetch p = prefetch;
+                    prefetch = null;
+                    session.readPendingResponses();
+                    if (p.exception != null) {
+                        throw p.exception;
+                    }
+                    result.addAll(p.rows);
+                    length = p.length;
+                } else {
+                    if (sendFetch) {
+                        session.traceOperation("RESULT_FETCH_ROWS", id);
+                        transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).
+                                writeInt(id).writeInt(fetch);
+                        session.done(transfer);
                     }
-                    int len = columns.length;
-                    Value[] values = new Value[len];
-                    for (int i = 0; i < len; i++) {
-                        Value v = transfer.readValue();
-                        values[i] = v;
+                    if (rowBatches) {
+                        if (fetch > 0) {
+                            length = transfer.readRowBatch(result, columns.length);
+                        }
+                    } else {
+                        for (int r = 0; r < fetch; r++) {
+                            boolean row = transfer.readBoolean();
+                            if (!row) {
+                                break;
+                            }
+                            int len = columns.length;
+                            Value[] values = new Value[len];
+                            for (int i = 0; i < len; i++) {
+                                Value v = transfer.readValue();
+                                values[i] = v;
+                            }
+                            result.add(values);
+                        }
                     }
-                    result.add(values);
                 }
-                if (rowOffset + result.size() >= rowCount) {
+                int next = rowOffset + result.size();
+                if (next >= rowCount) {
                     sendClose();
+                } else if (rowBatches && length <= PREFETCH_MAX_LENGTH) {
+                    // request the next batch now, so that it is transferred
+                    // while the rows of this batch are processed
+                    Prefetch p = new Prefetch(session);
+                    session.traceOperation("RESULT_FETCH_ROWS", id);
+                    transfer.writeInt(SessionRemote.RESULT_FETCH_ROWS).
+                            writeInt(id).writeInt(Math.min(fetchSize, rowCount - next));
+                    session.addPendingResponse(p);
+                    transfer.flush();
+                    prefetch = p;
                 }
             } catch (IOException e) {
                 throw DbException.convertIOException(e, null);
@@ -267,4 +313,47 @@ public boolean isClosed() {
         return result == null;
     }
 
+    /**
+     * A batch of rows that was requested before it is needed.
+     */
+    private final class Prefetch implements SessionRemote.PendingResponse {
+
+        private final SessionRemote session;
+
+        /**
+         * The rows.
+         */
+        final ArrayList<Value[]> rows = new ArrayList<>();
+
+        /**
+         * The number of bytes of the batch.
+         */
+        int length;
+
+        /**
+         * The exception, if the rows could not be read.
+         */
+        DbException exception;
+
+        Prefetch(SessionRemote session) {
+            this.session = session;
+        }
+
+        @Override
+        public void readResponse(Transfer transfer) throws IOException {
+            try {
+                session.readStatus(transfer);
+                length = transfer.readRowBatch(rows, columns.length);
+            } catch (DbException e) {
+                exception = e;
+            }
+        }
+
+        @Override
+        public void fail(DbException e) {
+            exception = e;
+        }
+
+    }
+
 }
@@ -9,6 +9,7 @@
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -25,6 +26,7 @@
 import org.h2.api.ErrorCode;
 import org.h2.engine.Constants;
 import org.h2.message.DbException;
+import org.h2.util.IOUtils;
 import org.h2.util.JdbcUtils;
 import org.h2.util.NetUtils;
 import org.h2.util.StringUtils;
@@ -58,6 +60,8 @@ public class TcpServer implements Service {
     private boolean stop;
     private ShutdownHandler shutdownHandler;
     private ServerSocket serverSocket;
+    private TcpServerSelector selector;
+    private int workers;
     private final Set<TcpServerThread> running =
             Collections.synchronizedSet(new HashSet<TcpServerThread>());
     private String baseDir;
@@ -185,6 +189,8 @@ public void init(String... args) {
                 allowOthers = true;
             } else if (Tool.isOption(a, "-tcpDaemon")) {
                 isDaemon = true;
+            } else if (Tool.isOption(a, "-tcpWorkers")) {
+                workers = Integer.decode(args[++i]);
             } else if (Tool.isOption(a, "-ifExists")) {
                 ifExists = true;
             } else if (Tool.isOption(a, "-ifNotExists")) {
@@ -226,17 +232,54 @@ boolean allow(Socket socket) {
     @Override
     public synchronized void start() throws SQLException {
         stop = false;
+        if (workers > 0 && !ssl) {
+            startSelector();
+        } else {
+            try {
+                serverSocket = NetUtils.createServerSocket(port, ssl);
+            } catch (DbException e) {
+                if (!portIsSet) {
+                    serverSocket = NetUtils.createServerSocket(0, ssl);
+                } else {
+                    throw e;
+                }
+            }
+        }
+        port = serverSocket.getLocalPort();
+        initManagementDb();
+    }
+
+    private void startSelector() {
+        ServerSocketChannel channel;
         try {
-            serverSocket = NetUtils.createServerSocket(port, ssl);
+            channel = NetUtils.createServerSocketChannel(port);
         } catch (DbException e) {
             if (!portIsSet) {
-                serverSocket = NetUtils.createServerSocket(0, ssl);
+                channel = NetUtils.createServerSocketChannel(0);
             } else {
                 throw e;
             }
         }
-        port = serverSocket.getLocalPort();
-        initManagementDb();
+        try {
+            selector = new TcpServerSelector(this, channel, workers);
+        } catch (IOException e) {
+            IOUtils.closeSilently(channel);
+            throw DbException.convertIOException(e, null);
+        }
+        serverSocket = channel.socket();
+    }
+
+    /**
+     * Create the server thread object of a new connection. If the server uses
+     * a selector, no thread is started for the connection.
+     *
+     * @param s the socket
+     * @return the server thread object
+     */
+    TcpServerThread createThread(Socket s) {
+        TcpServerThread c = new TcpServerThread(s, this, nextThreadId++);
+        running.add(c);
+        return c;
     }
 
     @Override
@@ -244,14 +287,17 @@ public void listen() {
         listenerThread = Thread.currentThread();
         String threadName = listenerThread.getName();
         try {
-            while (!stop) {
-                Socket s = serverSocket.accept();
-                TcpServerThread c = new TcpServerThread(s, this, nextThreadId++);
-                running.add(c);
-                Thread thread = new Thread(c, threadName + " thread");
-                thread.setDaemon(isDaemon);
-                c.setThread(thread);
-                thread.start();
+            if (selector != null) {
+                selector.run(threadName, isDaemon);
+            } else {
+                while (!stop) {
+                    Socket s = serverSocket.accept();
+                    TcpServerThread c = createThread(s);
+                    Thread thread = new Thread(c, threadName + " thread");
+                    thread.setDaemon(isDaemon);
+                    c.setThread(thread);
+                    thread.start();
+                }
             }
             serverSocket = NetUtils.closeSilently(serverSocket);
         } catch (Exception e) {
@@ -298,6 +344,9 @@ public void stop() {
                 }
                 serverSocket = null;
             }
+            if (selector != null) {
+                selector.close();
+            }
             if (listenerThread != null) {
                 try {
                     listenerThread.join(1000);
@@ -311,7 +360,10 @@ public void stop() {
             if (c != null) {
                 c.close();
                 try {
-                    c.getThread().join(100);
+                    Thread thread = c.getThread();
+                    if (thread != null) {
+                        thread.join(100);
+                    }
                 } catch (Exception e) {
                     DbException.traceThrowable(e);
                 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the connections of a TCP server with a fixed number of worker
+ * threads instead of one thread per connection. Idle connections are
+ * registered with a selector. When a request arrives, the connection is
+ * removed from the selector and processed by a worker thread, in blocking
+ * mode, until no more input is available; then it is registered again.
+ * <p>
+ * New connections are opened by separate threads that are only created when
+ * needed. Opening a connection is short, and a request to cancel a statement
+ * arrives as a new connection, so that it is processed even if all worker
+ * threads are busy running statements.
+ * <p>
+ * A statement that waits for a lock keeps its worker thread busy, so the
+ * number of worker threads needs to be larger than the number of statements
+ * that may wait for locks at the same time; otherwise, the statement that
+ * would release the lock can only run after the others timed out. SSL
+ * connections are not supported; with SSL, the server uses one thread per
+ * connection.
+ */
+final class TcpServerSelector {
+
+    private final TcpServer server;
+
+    private final ServerSocketChannel serverChannel;
+
+    private final Selector selector;
+
+    private final int workerCount;
+
+    /**
+     * The connections that are ready to be registered with the selector.
+     */
+    private final ConcurrentLinkedQueue<TcpServerThread> idle =
+            new ConcurrentLinkedQueue<>();
+
+    private ThreadPoolExecutor workers;
+
+    private ThreadPoolExecutor connectors;
+
+    private volatile boolean closed;
+
+    TcpServerSelector(TcpServer server, ServerSocketChannel serverChannel,
+            int workerCount) throws IOException {
+        this.server = server;
+        this.serverChannel = serverChannel;
+        this.workerCount = workerCount;
+        selector = Selector.open();
+    }
+
+    /**
+     * Accept connections and dispatch requests until the server is stopped.
+     * This method is called by the listener thread of the server.
+     *
+     * @param threadName the name prefix of the worker threads
+     * @param daemon whether the worker threads are daemon threads
+     */
+    void run(String threadName, boolean daemon) throws IOException {
+        workers = new ThreadPoolExecutor(workerCount, workerCount,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                createThreadFactory(threadName + " worker", daemon));
+        workers.allowCoreThreadTimeOut(true);
+        connectors = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                createThreadFactory(threadName + " thread", daemon));
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            ArrayList<TcpServerThread> ready = new ArrayList<>();
+            while (!closed) {
+                if (ready.isEmpty()) {
+                    selector.select();
+                } else {
+                    // the keys of the ready connections were cancelled,
+                    // they are removed from the selector now
+                    selector.selectNow();
+                    for (TcpServerThread c : ready) {
+                        process(c);
+                    }
+                    ready.clear();
+                }
+                for (TcpServerThread c; (c = idle.poll()) != null;) {
+                    try {
+                        getChannel(c).register(selector, SelectionKey.OP_READ, c);
+                    } catch (IOException e) {
+                        c.close();
+                    }
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        key.cancel();
+                        ready.add((TcpServerThread) key.attachment());
+                    }
+                }
+            }
+        } finally {
+            close();
+            selector.close();
+            workers.shutdown();
+            connectors.shutdown();
+        }
+    }
+
+    /**
+     * Stop accepting connections and dispatching requests.
+     */
+    void close() {
+        closed = true;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        for (SocketChannel channel; (channel = serverChannel.accept()) != null;) {
+            final TcpServerThread c = server.createThread(channel.socket());
+            execute(connectors, c, new Runnable() {
+                @Override
+                public void run() {
+                    if (c.open()) {
+                        register(c);
+                    }
+                }
+            });
+        }
+    }
+
+    private void process(final TcpServerThread c) {
+        try {
+            getChannel(c).configureBlocking(true);
+        } catch (IOException e) {
+            c.close();
+            return;
+        }
+        execute(workers, c, new Runnable() {
+            @Override
+            public void run() {
+                if (c.processAvailable()) {
+                    register(c);
+                }
+            }
+        });
+    }
+
+    private void register(TcpServerThread c) {
+        try {
+            getChannel(c).configureBlocking(false);
+        } catch (IOException e) {
+            c.close();
+            return;
+        }
+        idle.add(c);
+        selector.wakeup();
+    }
+
+    private static void execute(Executor executor, TcpServerThread c, Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // the server is stopped
+            c.close();
+        }
+    }
+
+    private static SocketChannel getChannel(TcpServerThread c) throws IOException {
+        SocketChannel channel = c.getChannel();
+        if (channel == null) {
+            throw new ClosedChannelException();
+        }
+        return channel;
+    }
+
+    private static ThreadFactory createThreadFactory(final String name,
+            final boolean daemon) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(daemon);
+                return thread;
+            }
+        };
+    }
+
+}
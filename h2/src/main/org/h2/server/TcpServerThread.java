@@ -12,7 +12,9 @@
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Objects;
 
@@ -37,13 +39,15 @@
 import org.h2.util.IOUtils;
 import org.h2.util.SmallLRUCache;
 import org.h2.util.SmallMap;
+import org.h2.util.Utils;
 import org.h2.value.DataType;
 import org.h2.value.Transfer;
 import org.h2.value.Value;
 import org.h2.value.ValueLobDb;
 
 /**
- * One server thread is opened per client connection.
+ * One server thread is opened per client connection, unless the server uses
+ * a selector and a fixed number of worker threads.
  */
 public class TcpServerThread implements Runnable {
 
@@ -76,106 +80,9 @@ private void trace(String s) {
     @Override
     public void run() {
         try {
-            transfer.init();
-            trace("Connect");
-            // TODO server: should support a list of allowed databases
-            // and a list of allowed clients
-            try {
-                Socket socket = transfer.getSocket();
-                if (socket == null) {
-                    // the transfer is already closed, prevent NPE in TcpServer#allow(Socket)
-                    return;
-                }
-                if (!server.allow(transfer.getSocket())) {
-                    throw DbException.get(ErrorCode.REMOTE_CONNECTION_NOT_ALLOWED);
-                }
-                int minClientVersion = transfer.readInt();
-                if (minClientVersion < 6) {
-                    throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            Integer.toString(minClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED);
-                }
-                int maxClientVersion = transfer.readInt();
-                if (maxClientVersion < Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED) {
-                    throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            Integer.toString(maxClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED);
-                } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED) {
-                    throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
-                            Integer.toString(minClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED);
-                }
-                if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED) {
-                    clientVersion = Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED;
-                } else {
-                    clientVersion = maxClientVersion;
-                }
-                transfer.setVersion(clientVersion);
-                String db = transfer.readString();
-                String originalURL = transfer.readString();
-                if (db == null && originalURL == null) {
-                    String targetSessionId = transfer.readString();
-                    int command = transfer.readInt();
-                    stop = true;
-                    if (command == SessionRemote.SESSION_CANCEL_STATEMENT) {
-                        // cancel a running statement
-                        int statementId = transfer.readInt();
-                        server.cancelStatement(targetSessionId, statementId);
-                    } else if (command == SessionRemote.SESSION_CHECK_KEY) {
-                        // check if this is the correct server
-                        db = server.checkKeyAndGetDatabaseName(targetSessionId);
-                        if (!targetSessionId.equals(db)) {
-                            transfer.writeInt(SessionRemote.STATUS_OK);
-                        } else {
-                            transfer.writeInt(SessionRemote.STATUS_ERROR);
-                        }
-                    }
-                }
-                String baseDir = server.getBaseDir();
-                if (baseDir == null) {
-                    baseDir = SysProperties.getBaseDir();
-                }
-                db = server.checkKeyAndGetDatabaseName(db);
-                ConnectionInfo ci = new ConnectionInfo(db);
-                ci.setOriginalURL(originalURL);
-                ci.setUserName(transfer.readString());
-                ci.setUserPasswordHash(transfer.readBytes());
-                ci.setFilePasswordHash(transfer.readBytes());
-                int len = transfer.readInt();
-                for (int i = 0; i < len; i++) {
-                    ci.setProperty(transfer.readString(), transfer.readString());
-                }
-                // override client's requested properties with server settings
-                if (baseDir != null) {
-                    ci.setBaseDir(baseDir);
-                }
-                if (server.getIfExists()) {
-                    ci.setProperty("IFEXISTS", "TRUE");
-                }
-                transfer.writeInt(SessionRemote.STATUS_OK);
-                transfer.writeInt(clientVersion);
-                transfer.flush();
-                if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_13) {
-                    if (ci.getFilePasswordHash() != null) {
-                        ci.setFileEncryptionKey(transfer.readBytes());
-                    }
-                }
-                session = Engine.getInstance().createSession(ci);
-                transfer.setSession(session);
-                server.addConnection(threadId, originalURL, ci.getUserName());
-                trace("Connected");
-            } catch (OutOfMemoryError e) {
-                // catch this separately otherwise such errors will never hit the console
-                server.traceError(e);
-                sendError(e);
-                stop = true;
-            } catch (Throwable e) {
-                sendError(e);
-                stop = true;
-            }
+            connect();
             while (!stop) {
-                try {
-                    process();
-                } catch (Throwable e) {
-                    sendError(e);
-                }
+                processRequest();
             }
             trace("Disconnect");
         } catch (Throwable e) {
@@ -185,6 +92,157 @@ public void run() {
         }
     }
 
+    /**
+     * Read the connection request of the client and open the session, if the
+     * server uses a selector instead of one thread per connection. The
+     * connection is closed if this fails, or if the request was to cancel a
+     * statement.
+     *
+     * @return whether the connection is open and waits for requests
+     */
+    boolean open() {
+        try {
+            connect();
+            if (!stop) {
+                return true;
+            }
+            trace("Disconnect");
+        } catch (Throwable e) {
+            server.traceError(e);
+        }
+        close();
+        return false;
+    }
+
+    /**
+     * Process the requests that were received, if the server uses a selector
+     * instead of one thread per connection. Requests are processed until no
+     * more input is available without blocking.
+     *
+     * @return whether the connection is still open
+     */
+    boolean processAvailable() {
+        try {
+            do {
+                processRequest();
+            } while (!stop && transfer.available() > 0);
+            if (!stop) {
+                return true;
+            }
+            trace("Disconnect");
+        } catch (Throwable e) {
+            server.traceError(e);
+        }
+        close();
+        return false;
+    }
+
+    private void connect() throws IOException {
+        transfer.init();
+        trace("Connect");
+        // TODO server: should support a list of allowed databases
+        // and a list of allowed clients
+        try {
+            Socket socket = transfer.getSocket();
+            if (socket == null) {
+                // the transfer is already closed, prevent NPE in TcpServer#allow(Socket)
+                stop = true;
+                return;
+            }
+            if (!server.allow(transfer.getSocket())) {
+                throw DbException.get(ErrorCode.REMOTE_CONNECTION_NOT_ALLOWED);
+            }
+            int minClientVersion = transfer.readInt();
+            if (minClientVersion < 6) {
+                throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
+                        Integer.toString(minClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED);
+            }
+            int maxClientVersion = transfer.readInt();
+            if (maxClientVersion < Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED) {
+                throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
+                        Integer.toString(maxClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MIN_SUPPORTED);
+            } else if (minClientVersion > Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED) {
+                throw DbException.get(ErrorCode.DRIVER_VERSION_ERROR_2,
+                        Integer.toString(minClientVersion), "" + Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED);
+            }
+            if (maxClientVersion >= Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED) {
+                clientVersion = Constants.TCP_PROTOCOL_VERSION_MAX_SUPPORTED;
+            } else {
+                clientVersion = maxClientVersion;
+            }
+            transfer.setVersion(clientVersion);
+            String db = transfer.readString();
+            String originalURL = transfer.readString();
+            if (db == null && originalURL == null) {
+                String targetSessionId = transfer.readString();
+                int command = transfer.readInt();
+                stop = true;
+                if (command == SessionRemote.SESSION_CANCEL_STATEMENT) {
+                    // cancel a running statement
+                    int statementId = transfer.readInt();
+                    server.cancelStatement(targetSessionId, statementId);
+                } else if (command == SessionRemote.SESSION_CHECK_KEY) {
+                    // check if this is the correct server
+                    db = server.checkKeyAndGetDatabaseName(targetSessionId);
+                    if (!targetSessionId.equals(db)) {
+                        transfer.writeInt(SessionRemote.STATUS_OK);
+                    } else {
+                        transfer.writeInt(SessionRemote.STATUS_ERROR);
+                    }
+                }
+            }
+            String baseDir = server.getBaseDir();
+            if (baseDir == null) {
+                baseDir = SysProperties.getBaseDir();
+            }
+            db = server.checkKeyAndGetDatabaseName(db);
+            ConnectionInfo ci = new ConnectionInfo(db);
+            ci.setOriginalURL(originalURL);
+            ci.setUserName(transfer.readString());
+            ci.setUserPasswordHash(transfer.readBytes());
+            ci.setFilePasswordHash(transfer.readBytes());
+            int len = transfer.readInt();
+            for (int i = 0; i < len; i++) {
+                ci.setProperty(transfer.readString(), transfer.readString());
+            }
+            // override client's requested properties with server settings
+            if (baseDir != null) {
+                ci.setBaseDir(baseDir);
+            }
+            if (server.getIfExists()) {
+                ci.setProperty("IFEXISTS", "TRUE");
+            }
+            transfer.writeInt(SessionRemote.STATUS_OK);
+            transfer.writeInt(clientVersion);
+            transfer.flush();
+            if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_13) {
+                if (ci.getFilePasswordHash() != null) {
+                    ci.setFileEncryptionKey(transfer.readBytes());
+                }
+            }
+            session = Engine.getInstance().createSession(ci);
+            transfer.setSession(session);
+            server.addConnection(threadId, originalURL, ci.getUserName());
+            trace("Connected");
+        } catch (OutOfMemoryError e) {
+            // catch this separately otherwise such errors will never hit the console
+            server.traceError(e);
+            sendError(e);
+            stop = true;
+        } catch (Throwable e) {
+            sendError(e);
+            stop = true;
+        }
+    }
+
+    private void processRequest() {
+        try {
+            process();
+        } catch (Throwable e) {
+            sendError(e);
+        }
+    }
+
     private void closeSession() {
         if (session != null) {
             RuntimeException closeError = null;
@@ -223,23 +281,9 @@ void close() {
 
     private void sendError(Throwable t) {
         try {
-            SQLException e = DbException.convert(t).getSQLException();
-            StringWriter writer = new StringWriter();
-            e.printStackTrace(new PrintWriter(writer));
-            String trace = writer.toString();
-            String message;
-            String sql;
-            if (e instanceof JdbcException) {
-                JdbcException j = (JdbcException) e;
-                message = j.getOriginalMessage();
-                sql = j.getSQL();
-            } else {
-                message = e.getMessage();
-                sql = null;
-            }
-            transfer.writeInt(SessionRemote.STATUS_ERROR).
-                    writeString(e.getSQLState()).writeString(message).
-                    writeString(sql).writeInt(e.getErrorCode()).writeString(trace).flush();
+            transfer.writeInt(SessionRemote.STATUS_ERROR);
+            writeError(t);
+            transfer.flush();
         } catch (Exception e2) {
             if (!transfer.isClosed()) {
                 server.traceError(e2);
@@ -249,6 +293,25 @@ private void sendError(Throwable t) {
         }
     }
 
+    private void writeError(Throwable t) throws IOException {
+        SQLException e = DbException.convert(t).getSQLException();
+        StringWriter writer = new StringWriter();
+        e.printStackTrace(new PrintWriter(writer));
+        String trace = writer.toString();
+        String message;
+        String sql;
+        if (e instanceof JdbcException) {
+            JdbcException j = (JdbcException) e;
+            message = j.getOriginalMessage();
+            sql = j.getSQL();
+        } else {
+            message = e.getMessage();
+            sql = null;
+        }
+        transfer.writeString(e.getSQLState()).writeString(message).
+                writeString(sql).writeInt(e.getErrorCode()).writeString(trace);
+    }
+
     private void setParameters(Command command) throws IOException {
         int len = transfer.readInt();
         ArrayList<? extends ParameterInterface> params = command.getParameters();
@@ -343,10 +406,7 @@ private void process() throws IOException {
             for (int i = 0; i < columnCount; i++) {
                 ResultColumn.writeColumn(transfer, result, i);
             }
-            int fetch = Math.min(rowCount, fetchSize);
-            for (int i = 0; i < fetch; i++) {
-                sendRow(result);
-            }
+            sendRows(result, Math.min(rowCount, fetchSize));
             transfer.flush();
             break;
         }
@@ -415,14 +475,49 @@ private void process() throws IOException {
                 for (int i = 0; i < columnCount; i++) {
                     ResultColumn.writeColumn(transfer, generatedKeys, i);
                 }
-                for (int i = 0; i < rowCount; i++) {
-                    sendRow(generatedKeys);
-                }
+                sendRows(generatedKeys, rowCount);
                 generatedKeys.close();
             }
             transfer.flush();
             break;
         }
+        case SessionRemote.COMMAND_EXECUTE_BATCH: {
+            int id = transfer.readInt();
+            Command command = (Command) cache.getObject(id, false);
+            int size = transfer.readInt();
+            ArrayList<Value[]> batchParameters = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                int len = transfer.readInt();
+                Value[] set = new Value[len];
+                for (int j = 0; j < len; j++) {
+                    set[j] = transfer.readValue();
+                }
+                batchParameters.add(set);
+            }
+            int old = session.getModificationId();
+            ArrayList<DbException> exceptions = Utils.newSmallArrayList();
+            int[] result;
+            synchronized (session) {
+                result = command.executeBatchUpdate(batchParameters, exceptions);
+            }
+            int status;
+            if (session.isClosed()) {
+                status = SessionRemote.STATUS_CLOSED;
+                stop = true;
+            } else {
+                status = getState(old);
+            }
+            transfer.writeInt(status);
+            for (int i = 0, e = 0; i < size; i++) {
+                int updateCount = result[i];
+                transfer.writeInt(updateCount);
+                if (updateCount == Statement.EXECUTE_FAILED) {
+                    writeError(exceptions.get(e++));
+                }
+            }
+            transfer.writeBoolean(session.getAutoCommit()).flush();
+            break;
+        }
         case SessionRemote.COMMAND_CLOSE: {
             int id = transfer.readInt();
             Command command = (Command) cache.getObject(id, true);
@@ -437,9 +532,7 @@ private void process() throws IOException {
             int count = transfer.readInt();
             ResultInterface result = (ResultInterface) cache.getObject(id, false);
             transfer.writeInt(SessionRemote.STATUS_OK);
-            for (int i = 0; i < count; i++) {
-                sendRow(result);
-            }
+            sendRows(result, count);
             transfer.flush();
             break;
         }
@@ -552,6 +645,23 @@ private int getState(int oldModificationId) {
         return SessionRemote.STATUS_OK_STATE_CHANGED;
     }
 
+    private void sendRows(ResultInterface result, int count) throws IOException {
+        if (clientVersion >= Constants.TCP_PROTOCOL_VERSION_20) {
+            if (count > 0) {
+                ArrayList<Value[]> rows = new ArrayList<>(Math.min(count,
+                        SysProperties.SERVER_RESULT_SET_FETCH_SIZE));
+                for (int i = 0; i < count && result.next(); i++) {
+                    rows.add(result.currentRow());
+                }
+                transfer.writeRowBatch(rows, result.getVisibleColumnCount());
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                sendRow(result);
+            }
+        }
+    }
+
     private void sendRow(ResultInterface result) throws IOException {
         if (result.next()) {
             transfer.writeBoolean(true);
@@ -581,6 +691,16 @@ private void writeValue(Value v) throws IOException {
         transfer.writeValue(v);
     }
 
+    /**
+     * Get the socket channel, if the server uses a selector.
+     *
+     * @return the channel, or null if the connection is closed
+     */
+    SocketChannel getChannel() {
+        Socket socket = transfer.getSocket();
+        return socket == null ? null : socket.getChannel();
+    }
+
     void setThread(Thread thread) {
         this.thread = thread;
     }
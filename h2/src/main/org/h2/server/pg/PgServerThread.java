@@ -5,6 +5,8 @@
  */
 package org.h2.server.pg;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
@@ -16,6 +18,9 @@
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
 import java.net.Socket;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
@@ -27,12 +32,21 @@
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.h2.api.ErrorCode;
 import org.h2.command.CommandInterface;
 import org.h2.engine.ConnectionInfo;
 import org.h2.engine.Constants;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
 import org.h2.engine.SysProperties;
 import org.h2.jdbc.JdbcConnection;
 import org.h2.jdbc.JdbcPreparedStatement;
@@ -47,8 +61,18 @@
 import org.h2.util.Utils;
 import org.h2.value.CaseInsensitiveMap;
 import org.h2.value.Value;
+import org.h2.value.ValueArray;
+import org.h2.value.ValueBoolean;
+import org.h2.value.ValueBytes;
 import org.h2.value.ValueDate;
+import org.h2.value.ValueDecimal;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueFloat;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
 import org.h2.value.ValueNull;
+import org.h2.value.ValueShort;
+import org.h2.value.ValueString;
 import org.h2.value.ValueTime;
 import org.h2.value.ValueTimestamp;
 
@@ -58,6 +82,33 @@
 public class PgServerThread implements Runnable {
     private static final boolean INTEGER_DATE_TYPES = false;
 
+    /**
+     * The COPY statement: the table or query, the optional column list, the
+     * direction, and the options.
+     */
+    private static final Pattern COPY = Pattern.compile(
+            "\\s*COPY\\s+(\\(.*\\)|(?:\"[^\"]*\"|[^\\s(\"])+)\\s*(\\([^)]*\\))?" +
+            "\\s*(FROM\\s+STDIN|TO\\s+STDOUT)(.*)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * A token of the options of a COPY statement.
+     */
+    private static final Pattern COPY_OPTION = Pattern.compile(
+            "[eE]?'(?:[^']|'')*'|[^\\s(),']+");
+
+    /**
+     * The signature of the binary COPY format.
+     */
+    private static final byte[] COPY_SIGNATURE = {
+            'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0 };
+
+    /**
+     * The number of rows of a COPY FROM statement that are inserted in one
+     * batch.
+     */
+    private static final int COPY_BATCH_SIZE = 1_000;
+
     private final PgServer server;
     private Socket socket;
     private Connection conn;
@@ -82,6 +133,28 @@ public class PgServerThread implements Runnable {
     private final HashMap<String, Portal> portals =
             new CaseInsensitiveMap<>();
 
+    /**
+     * The prepared statements that are currently not used by a prepared
+     * object, by SQL statement. The least recently used statements are
+     * closed if there are too many.
+     */
+    private final LinkedHashMap<String, JdbcPreparedStatement> statementCache =
+            new LinkedHashMap<String, JdbcPreparedStatement>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JdbcPreparedStatement> eldest) {
+            if (size() > SysProperties.PG_STATEMENT_CACHE_SIZE) {
+                JdbcUtils.closeSilently(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+
+    };
+    private long statementCacheModificationId;
+
     PgServerThread(Socket socket, PgServer server) {
         this.server = server;
         this.socket = socket;
@@ -93,7 +166,8 @@ public void run() {
         try {
             server.trace("Connect");
             InputStream ins = socket.getInputStream();
-            out = socket.getOutputStream();
+            // messages are flushed before the next message of the client is read
+            out = new BufferedOutputStream(socket.getOutputStream(), Constants.IO_BUFFER_SIZE);
             dataInRaw = new DataInputStream(ins);
             while (!stop) {
                 process();
@@ -250,8 +324,12 @@ private void process() throws IOException {
                     paramTypes[i] = readInt();
                 }
             }
+            Prepared old = prepared.remove(p.name);
+            if (old != null) {
+                releasePrepared(old);
+            }
             try {
-                p.prep = (JdbcPreparedStatement) conn.prepareStatement(p.sql);
+                p.prep = prepareStatement(p.sql);
                 ParameterMetaData meta = p.prep.getParameterMetaData();
                 p.paramType = new int[meta.getParameterCount()];
                 for (int i = 0; i < p.paramType.length; i++) {
@@ -282,7 +360,10 @@ private void process() throws IOException {
                 break;
             }
             portal.prep = prep;
-            portals.put(portal.name, portal);
+            Portal oldPortal = portals.put(portal.name, portal);
+            if (oldPortal != null) {
+                closePortal(oldPortal);
+            }
             int formatCodeCount = readShort();
             int[] formatCodes = new int[formatCodeCount];
             for (int i = 0; i < formatCodeCount; i++) {
@@ -312,10 +393,13 @@ private void process() throws IOException {
             if (type == 'S') {
                 Prepared p = prepared.remove(name);
                 if (p != null) {
-                    JdbcUtils.closeSilently(p.prep);
+                    releasePrepared(p);
                 }
             } else if (type == 'P') {
-                portals.remove(name);
+                Portal p = portals.remove(name);
+                if (p != null) {
+                    closePortal(p);
+                }
             } else {
                 server.trace("expected S or P, got " + type);
                 sendErrorResponse("expected S or P");
@@ -335,7 +419,7 @@ private void process() throws IOException {
                 } else {
                     try {
                         sendParameterDescription(p.prep.getParameterMetaData(), p.paramType);
-                        sendRowDescription(p.prep.getMetaData());
+                        sendRowDescription(p.prep.getMetaData(), null);
                     } catch (Exception e) {
                         sendErrorResponse(e);
                     }
@@ -348,7 +432,7 @@ private void process() throws IOException {
                     PreparedStatement prep = p.prep.prep;
                     try {
                         ResultSetMetaData meta = prep.getMetaData();
-                        sendRowDescription(meta);
+                        sendRowDescription(meta, p.resultColumnFormat);
                     } catch (Exception e) {
                         sendErrorResponse(e);
                     }
@@ -417,6 +501,15 @@ private void process() throws IOException {
                         break;
                     }
                     s = getSQL(s);
+                    if (COPY.matcher(s).matches()) {
+                        try {
+                            copy(s);
+                        } catch (Exception e) {
+                            sendErrorResponse(e);
+                            break;
+                        }
+                        continue;
+                    }
                     stat = (JdbcStatement) conn.createStatement();
                     setActiveRequest(stat);
                     boolean result = stat.execute(s);
@@ -424,7 +517,7 @@ private void process() throws IOException {
                         ResultSet rs = stat.getResultSet();
                         ResultSetMetaData meta = rs.getMetaData();
                         try {
-                            sendRowDescription(meta);
+                            sendRowDescription(meta, null);
                             while (rs.next()) {
                                 sendDataRow(rs, null);
                             }
@@ -476,6 +569,71 @@ private String getSQL(String s) {
         return s;
     }
 
+    /**
+     * Get a prepared statement for the given SQL statement, re-using a cached
+     * statement if possible.
+     *
+     * @param sql the SQL statement
+     * @return the prepared statement
+     */
+    private JdbcPreparedStatement prepareStatement(String sql) throws SQLException {
+        SessionInterface session = ((JdbcConnection) conn).getSession();
+        long modificationMetaId = session instanceof Session ?
+                ((Session) session).getDatabase().getModificationMetaId() : -1;
+        if (modificationMetaId != statementCacheModificationId || modificationMetaId < 0) {
+            // the meta data of the cached statements may be outdated
+            for (JdbcPreparedStatement prep : statementCache.values()) {
+                JdbcUtils.closeSilently(prep);
+            }
+            statementCache.clear();
+            statementCacheModificationId = modificationMetaId;
+        }
+        JdbcPreparedStatement prep = statementCache.remove(sql);
+        if (prep == null || prep.isClosed()) {
+            prep = (JdbcPreparedStatement) conn.prepareStatement(sql);
+        }
+        return prep;
+    }
+
+    /**
+     * Add the statement of a prepared object that was closed or replaced to
+     * the statement cache. If a portal still uses the prepared object, this
+     * is done when the last such portal is closed or replaced.
+     *
+     * @param p the prepared object
+     */
+    private void releasePrepared(Prepared p) {
+        p.closed = true;
+        for (Portal portal : portals.values()) {
+            if (portal.prep == p) {
+                return;
+            }
+        }
+        JdbcPreparedStatement prep = p.prep;
+        try {
+            prep.clearParameters();
+        } catch (SQLException e) {
+            JdbcUtils.closeSilently(prep);
+            return;
+        }
+        JdbcPreparedStatement old = statementCache.put(p.sql, prep);
+        if (old != null && old != prep) {
+            JdbcUtils.closeSilently(old);
+        }
+    }
+
+    /**
+     * Release the prepared object of a portal that was closed or replaced, if
+     * the prepared object was closed already.
+     *
+     * @param p the portal
+     */
+    private void closePortal(Portal p) {
+        if (p.prep.closed) {
+            releasePrepared(p.prep);
+        }
+    }
+
     private void sendCommandComplete(JdbcStatement stat, int updateCount)
             throws IOException {
         startMessage('C');
@@ -514,113 +672,505 @@ private void sendDataRow(ResultSet rs, int[] formatCodes) throws IOException, SQ
         writeShort(columns);
         for (int i = 1; i <= columns; i++) {
             int pgType = PgServer.convertType(metaData.getColumnType(i));
-            boolean text = formatAsText(pgType);
-            if (formatCodes != null) {
-                if (formatCodes.length == 0) {
-                    text = true;
-                } else if (formatCodes.length == 1) {
-                    text = formatCodes[0] == 0;
-                } else if (i - 1 < formatCodes.length) {
-                    text = formatCodes[i - 1] == 0;
-                }
-            }
-            writeDataColumn(rs, i, pgType, text);
+            writeDataColumn(rs, i, pgType, isText(pgType, i - 1, formatCodes));
         }
         sendMessage();
     }
 
-    private static long toPostgreDays(long dateValue) {
-        return DateTimeUtils.prolepticGregorianAbsoluteDayFromDateValue(dateValue) - 10_957;
+    /**
+     * Check whether a column is sent in the text format.
+     *
+     * @param pgType the PostgreSQL type
+     * @param column the column index (0 based)
+     * @param formatCodes the format codes of the portal, or null to use the
+     *            default format of the type
+     * @return true for text, false for binary
+     */
+    private static boolean isText(int pgType, int column, int[] formatCodes) {
+        if (formatCodes == null) {
+            return formatAsText(pgType);
+        } else if (formatCodes.length == 0) {
+            return true;
+        } else if (formatCodes.length == 1) {
+            return formatCodes[0] == 0;
+        } else if (column < formatCodes.length) {
+            return formatCodes[column] == 0;
+        }
+        return formatAsText(pgType);
     }
 
-    private void writeDataColumn(ResultSet rs, int column, int pgType, boolean text)
-            throws IOException {
-        Value v = ((JdbcResultSet) rs).get(column);
-        if (v == ValueNull.INSTANCE) {
-            writeInt(-1);
-            return;
+    /**
+     * Execute a COPY FROM STDIN or COPY TO STDOUT statement.
+     *
+     * @param sql the statement
+     */
+    private void copy(String sql) throws IOException, SQLException {
+        Matcher m = COPY.matcher(sql);
+        m.matches();
+        Copy copy = new Copy();
+        String target = m.group(1);
+        if (target.startsWith("(")) {
+            copy.query = target.substring(1, target.length() - 1);
+        } else {
+            copy.table = target;
         }
-        if (text) {
-            // plain text
-            switch (pgType) {
-            case PgServer.PG_TYPE_BOOL:
-                writeInt(1);
-                dataOut.writeByte(v.getBoolean() ? 't' : 'f');
-                break;
-            default:
-                byte[] data = v.getString().getBytes(getEncoding());
-                writeInt(data.length);
-                write(data);
+        String columns = m.group(2);
+        if (columns != null) {
+            copy.columns = columns.substring(1, columns.length() - 1);
+        }
+        parseCopyOptions(copy, sql, m.group(4));
+        if (StringUtils.toUpperEnglish(m.group(3)).startsWith("FROM")) {
+            if (copy.query != null) {
+                throw DbException.getSyntaxError(sql, m.start(1));
             }
+            copyIn(copy);
         } else {
-            // binary
-            switch (pgType) {
-            case PgServer.PG_TYPE_INT2:
-                writeInt(2);
-                writeShort(v.getShort());
+            copyOut(copy);
+        }
+    }
+
+    private static void parseCopyOptions(Copy copy, String sql, String options) {
+        Matcher m = COPY_OPTION.matcher(options);
+        while (m.find()) {
+            String option = StringUtils.toUpperEnglish(m.group());
+            switch (option) {
+            case "WITH":
                 break;
-            case PgServer.PG_TYPE_INT4:
-                writeInt(4);
-                writeInt(v.getInt());
+            case "BINARY":
+                copy.binary = true;
                 break;
-            case PgServer.PG_TYPE_INT8:
-                writeInt(8);
-                dataOut.writeLong(v.getLong());
+            case "FORMAT": {
+                String format = StringUtils.toUpperEnglish(nextCopyOption(m, sql));
+                if ("BINARY".equals(format)) {
+                    copy.binary = true;
+                } else if (!"TEXT".equals(format)) {
+                    throw DbException.getUnsupportedException("COPY FORMAT " + format);
+                }
                 break;
-            case PgServer.PG_TYPE_FLOAT4:
-                writeInt(4);
-                dataOut.writeFloat(v.getFloat());
+            }
+            case "DELIMITER": {
+                String delimiter = readCopyLiteral(nextCopyOption(m, sql));
+                if (delimiter.length() != 1) {
+                    throw DbException.getInvalidValueException("DELIMITER", delimiter);
+                }
+                copy.delimiter = delimiter.charAt(0);
                 break;
-            case PgServer.PG_TYPE_FLOAT8:
-                writeInt(8);
-                dataOut.writeDouble(v.getDouble());
+            }
+            case "NULL":
+                copy.nullString = readCopyLiteral(nextCopyOption(m, sql));
                 break;
-            case PgServer.PG_TYPE_BYTEA: {
-                byte[] data = v.getBytesNoCopy();
-                writeInt(data.length);
-                write(data);
+            case "ENCODING":
+                // the client encoding is used
+                nextCopyOption(m, sql);
                 break;
+            default:
+                throw DbException.getUnsupportedException("COPY " + option);
             }
-            case PgServer.PG_TYPE_DATE: {
-                ValueDate d = (ValueDate) v.convertTo(Value.DATE);
-                writeInt(4);
-                writeInt((int) (toPostgreDays(d.getDateValue())));
+        }
+    }
+
+    private static String nextCopyOption(Matcher m, String sql) {
+        if (!m.find()) {
+            throw DbException.getSyntaxError(sql, sql.length());
+        }
+        return m.group();
+    }
+
+    private static String readCopyLiteral(String s) {
+        boolean escaped = s.charAt(0) == 'e' || s.charAt(0) == 'E';
+        if (escaped) {
+            s = s.substring(1);
+        }
+        if (!s.startsWith("'")) {
+            throw DbException.getInvalidValueException("literal", s);
+        }
+        s = StringUtils.replaceAll(s.substring(1, s.length() - 1), "''", "'");
+        return escaped ? unescapeCopyText(s) : s;
+    }
+
+    /**
+     * Insert the rows of a COPY FROM STDIN statement into the table, in
+     * batches. If the connection is in auto-commit mode, all rows are
+     * committed at the end.
+     *
+     * @param copy the COPY statement
+     */
+    private void copyIn(Copy copy) throws IOException, SQLException {
+        int[] pgTypes;
+        try (PreparedStatement prep = conn.prepareStatement("SELECT " +
+                (copy.columns == null ? "*" : copy.columns) + " FROM " + copy.table)) {
+            pgTypes = getPgTypes(prep.getMetaData());
+        }
+        StringBuilder buff = new StringBuilder("INSERT INTO ").append(copy.table);
+        if (copy.columns != null) {
+            buff.append('(').append(copy.columns).append(')');
+        }
+        buff.append(" VALUES(");
+        for (int i = 0; i < pgTypes.length; i++) {
+            if (i > 0) {
+                buff.append(", ");
+            }
+            buff.append('?');
+        }
+        buff.append(')');
+        JdbcPreparedStatement prep = (JdbcPreparedStatement) conn.prepareStatement(buff.toString());
+        sendCopyResponse('G', copy.binary, pgTypes.length);
+        // the client only sends the data after this response
+        out.flush();
+        CopyInputStream in = new CopyInputStream();
+        boolean autoCommit = conn.getAutoCommit();
+        boolean success = false;
+        long count;
+        try {
+            setActiveRequest(prep);
+            if (autoCommit) {
+                conn.setAutoCommit(false);
+            }
+            if (copy.binary) {
+                count = copyInBinary(new DataInputStream(in), prep, pgTypes);
+            } else {
+                count = copyInText(copy, in, prep, pgTypes);
+            }
+            prep.executeBatch();
+            in.skipAll();
+            if (autoCommit) {
+                conn.commit();
+            }
+            success = true;
+        } finally {
+            setActiveRequest(null);
+            JdbcUtils.closeSilently(prep);
+            if (autoCommit) {
+                if (!success) {
+                    conn.rollback();
+                }
+                conn.setAutoCommit(true);
+            }
+            if (!success) {
+                in.skipAll();
+            }
+        }
+        sendCopyComplete(count);
+    }
+
+    private long copyInText(Copy copy, InputStream in, PreparedStatement prep,
+            int[] pgTypes) throws IOException, SQLException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, getEncoding()));
+        ArrayList<String> fields = new ArrayList<>(pgTypes.length);
+        long count = 0;
+        while (true) {
+            String line = reader.readLine();
+            if (line == null || line.equals("\\.")) {
                 break;
             }
-            case PgServer.PG_TYPE_TIME: {
-                ValueTime t = (ValueTime) v.convertTo(Value.TIME);
-                writeInt(8);
-                long m = t.getNanos();
-                if (INTEGER_DATE_TYPES) {
-                    // long format
-                    m /= 1_000;
+            splitCopyLine(copy, line, fields);
+            if (fields.size() != pgTypes.length) {
+                throw DbException.get(ErrorCode.COLUMN_COUNT_DOES_NOT_MATCH);
+            }
+            for (int i = 0; i < pgTypes.length; i++) {
+                String s = fields.get(i);
+                if (s == null) {
+                    prep.setNull(i + 1, Types.NULL);
+                } else if (pgTypes[i] == PgServer.PG_TYPE_BYTEA && s.startsWith("\\x")) {
+                    prep.setBytes(i + 1, StringUtils.convertHexToBytes(s.substring(2)));
                 } else {
-                    // double format
-                    m = Double.doubleToLongBits(m * 0.000_000_001);
+                    prep.setString(i + 1, s);
                 }
-                dataOut.writeLong(m);
+            }
+            addCopyRow(prep, ++count);
+        }
+        return count;
+    }
+
+    private long copyInBinary(DataInputStream in, PreparedStatement prep,
+            int[] pgTypes) throws IOException, SQLException {
+        byte[] signature = new byte[COPY_SIGNATURE.length];
+        in.readFully(signature);
+        if (!Arrays.equals(signature, COPY_SIGNATURE)) {
+            throw DbException.getInvalidValueException("COPY signature",
+                    StringUtils.convertBytesToHex(signature));
+        }
+        // flags
+        in.readInt();
+        int extensionLength = in.readInt();
+        in.readFully(Utils.newBytes(extensionLength));
+        long count = 0;
+        while (true) {
+            int fieldCount = in.readShort();
+            if (fieldCount == -1) {
                 break;
+            } else if (fieldCount != pgTypes.length) {
+                throw DbException.get(ErrorCode.COLUMN_COUNT_DOES_NOT_MATCH);
+            }
+            for (int i = 0; i < fieldCount; i++) {
+                int len = in.readInt();
+                if (len == -1) {
+                    prep.setNull(i + 1, Types.NULL);
+                } else {
+                    prep.setObject(i + 1, readBinaryValue(in, pgTypes[i], len));
+                }
+            }
+            addCopyRow(prep, ++count);
+        }
+        return count;
+    }
+
+    private static void addCopyRow(PreparedStatement prep, long count) throws SQLException {
+        prep.addBatch();
+        if (count % COPY_BATCH_SIZE == 0) {
+            prep.executeBatch();
+        }
+    }
+
+    /**
+     * Split a line of the text COPY format into fields. Fields that match the
+     * NULL string are null, and escape sequences of the other fields are
+     * replaced.
+     */
+    private static void splitCopyLine(Copy copy, String line, ArrayList<String> fields) {
+        fields.clear();
+        int start = 0;
+        for (int i = 0, len = line.length();; i++) {
+            if (i == len || line.charAt(i) == copy.delimiter) {
+                String s = line.substring(start, i);
+                fields.add(s.equals(copy.nullString) ? null : unescapeCopyText(s));
+                if (i == len) {
+                    break;
+                }
+                start = i + 1;
+            } else if (line.charAt(i) == '\\' && i + 1 < len) {
+                i++;
+            }
+        }
+    }
+
+    private static String unescapeCopyText(String s) {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        int len = s.length();
+        StringBuilder buff = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == len) {
+                buff.append(c);
+                continue;
             }
-            case PgServer.PG_TYPE_TIMESTAMP_NO_TMZONE: {
-                ValueTimestamp t = (ValueTimestamp) v.convertTo(Value.TIMESTAMP);
-                writeInt(8);
-                long m = toPostgreDays(t.getDateValue()) * 86_400;
-                long nanos = t.getTimeNanos();
-                if (INTEGER_DATE_TYPES) {
-                    // long format
-                    m = m * 1_000_000 + nanos / 1_000;
+            c = s.charAt(++i);
+            switch (c) {
+            case 'b':
+                buff.append('\b');
+                break;
+            case 'f':
+                buff.append('\f');
+                break;
+            case 'n':
+                buff.append('\n');
+                break;
+            case 'r':
+                buff.append('\r');
+                break;
+            case 't':
+                buff.append('\t');
+                break;
+            case 'v':
+                buff.append('\u000b');
+                break;
+            case 'x': {
+                int end = i + 1;
+                while (end < len && end < i + 3 && Character.digit(s.charAt(end), 16) >= 0) {
+                    end++;
+                }
+                if (end == i + 1) {
+                    buff.append(c);
                 } else {
-                    // double format
-                    m = Double.doubleToLongBits(m + nanos * 0.000_000_001);
+                    buff.append((char) Integer.parseInt(s.substring(i + 1, end), 16));
+                    i = end - 1;
                 }
-                dataOut.writeLong(m);
                 break;
             }
-            default: throw new IllegalStateException("output binary format is undefined");
+            default:
+                if (c >= '0' && c <= '7') {
+                    int end = i + 1;
+                    while (end < len && end < i + 3 && s.charAt(end) >= '0' && s.charAt(end) <= '7') {
+                        end++;
+                    }
+                    buff.append((char) Integer.parseInt(s.substring(i, end), 8));
+                    i = end - 1;
+                } else {
+                    buff.append(c);
+                }
+            }
+        }
+        return buff.toString();
+    }
+
+    /**
+     * Send the rows of a COPY TO STDOUT statement, one CopyData message per
+     * row.
+     *
+     * @param copy the COPY statement
+     */
+    private void copyOut(Copy copy) throws IOException, SQLException {
+        String sql = copy.query != null ? copy.query : "SELECT " +
+                (copy.columns == null ? "*" : copy.columns) + " FROM " + copy.table;
+        JdbcStatement stat = (JdbcStatement) conn.createStatement();
+        try {
+            setActiveRequest(stat);
+            JdbcResultSet rs = (JdbcResultSet) stat.executeQuery(sql);
+            int[] pgTypes = getPgTypes(rs.getMetaData());
+            int columnCount = pgTypes.length;
+            sendCopyResponse('H', copy.binary, columnCount);
+            if (copy.binary) {
+                startMessage('d');
+                write(COPY_SIGNATURE);
+                // flags
+                writeInt(0);
+                // header extension length
+                writeInt(0);
+                sendMessage();
+            }
+            long count = 0;
+            StringBuilder buff = new StringBuilder();
+            while (rs.next()) {
+                startMessage('d');
+                if (copy.binary) {
+                    writeShort(columnCount);
+                    for (int i = 0; i < columnCount; i++) {
+                        Value v = rs.get(i + 1);
+                        if (v == ValueNull.INSTANCE) {
+                            writeInt(-1);
+                        } else {
+                            writeBinaryValue(v, pgTypes[i]);
+                        }
+                    }
+                } else {
+                    buff.setLength(0);
+                    for (int i = 0; i < columnCount; i++) {
+                        if (i > 0) {
+                            buff.append(copy.delimiter);
+                        }
+                        Value v = rs.get(i + 1);
+                        if (v == ValueNull.INSTANCE) {
+                            buff.append(copy.nullString);
+                        } else {
+                            escapeCopyText(buff, getText(v, pgTypes[i]), copy.delimiter);
+                        }
+                    }
+                    buff.append('\n');
+                    writeStringPart(buff.toString());
+                }
+                sendMessage();
+                count++;
+            }
+            if (copy.binary) {
+                startMessage('d');
+                writeShort(-1);
+                sendMessage();
+            }
+            startMessage('c');
+            sendMessage();
+            sendCopyComplete(count);
+        } finally {
+            JdbcUtils.closeSilently(stat);
+            setActiveRequest(null);
+        }
+    }
+
+    /**
+     * Get the text format of a value.
+     *
+     * @param v the value
+     * @param pgType the PostgreSQL type
+     * @return the text
+     */
+    private static String getText(Value v, int pgType) {
+        switch (pgType) {
+        case PgServer.PG_TYPE_BOOL:
+            return v.getBoolean() ? "t" : "f";
+        case PgServer.PG_TYPE_BYTEA:
+            return "\\x" + StringUtils.convertBytesToHex(v.getBytesNoCopy());
+        default:
+            return v.getString();
+        }
+    }
+
+    private static void escapeCopyText(StringBuilder buff, String s, char delimiter) {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '\\':
+                buff.append("\\\\");
+                break;
+            case '\n':
+                buff.append("\\n");
+                break;
+            case '\r':
+                buff.append("\\r");
+                break;
+            case '\t':
+                buff.append("\\t");
+                break;
+            default:
+                if (c == delimiter) {
+                    buff.append('\\');
+                }
+                buff.append(c);
             }
         }
     }
 
+    private static int[] getPgTypes(ResultSetMetaData meta) throws SQLException {
+        int columnCount = meta.getColumnCount();
+        int[] pgTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            pgTypes[i] = PgServer.convertType(meta.getColumnType(i + 1));
+        }
+        return pgTypes;
+    }
+
+    private void sendCopyResponse(char type, boolean binary, int columnCount) throws IOException {
+        startMessage(type);
+        write(binary ? 1 : 0);
+        writeShort(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            writeShort(binary ? 1 : 0);
+        }
+        sendMessage();
+    }
+
+    private void sendCopyComplete(long count) throws IOException {
+        startMessage('C');
+        writeString("COPY " + count);
+        sendMessage();
+    }
+
+    private static long toPostgreDays(long dateValue) {
+        return DateTimeUtils.prolepticGregorianAbsoluteDayFromDateValue(dateValue) - 10_957;
+    }
+
+    private static long fromPostgreDays(long days) {
+        return DateTimeUtils.dateValueFromProlepticGregorianAbsoluteDay(days + 10_957);
+    }
+
+    private void writeDataColumn(ResultSet rs, int column, int pgType, boolean text)
+            throws IOException {
+        Value v = ((JdbcResultSet) rs).get(column);
+        if (v == ValueNull.INSTANCE) {
+            writeInt(-1);
+            return;
+        }
+        if (text) {
+            // plain text
+            byte[] data = getText(v, pgType).getBytes(getEncoding());
+            writeInt(data.length);
+            write(data);
+        } else {
+            // binary
+            writeBinaryValue(v, pgType);
+        }
+    }
+
     private Charset getEncoding() {
         if ("UNICODE".equals(clientEncoding)) {
             return StandardCharsets.UTF_8;
@@ -660,45 +1210,300 @@ private void setParameter(PreparedStatement prep,
                 }
                 break;
             }
+            case PgServer.PG_TYPE_BYTEA:
+                if (str.startsWith("\\x")) {
+                    prep.setBytes(col, StringUtils.convertHexToBytes(str.substring(2)));
+                    return;
+                }
+                break;
             }
             prep.setString(col, str);
         } else {
             // binary
-            switch (pgType) {
-            case PgServer.PG_TYPE_INT2:
-                checkParamLength(2, paramLen);
-                prep.setShort(col, readShort());
-                break;
-            case PgServer.PG_TYPE_INT4:
-                checkParamLength(4, paramLen);
-                prep.setInt(col, readInt());
-                break;
-            case PgServer.PG_TYPE_INT8:
-                checkParamLength(8, paramLen);
-                prep.setLong(col, dataIn.readLong());
-                break;
-            case PgServer.PG_TYPE_FLOAT4:
-                checkParamLength(4, paramLen);
-                prep.setFloat(col, dataIn.readFloat());
-                break;
-            case PgServer.PG_TYPE_FLOAT8:
-                checkParamLength(8, paramLen);
-                prep.setDouble(col, dataIn.readDouble());
-                break;
-            case PgServer.PG_TYPE_BYTEA:
-                byte[] d1 = Utils.newBytes(paramLen);
-                readFully(d1);
-                prep.setBytes(col, d1);
-                break;
-            default:
-                server.trace("Binary format for type: "+pgType+" is unsupported");
-                byte[] d2 = Utils.newBytes(paramLen);
-                readFully(d2);
-                prep.setString(col, new String(d2, getEncoding()));
+            prep.setObject(col, readBinaryValue(dataIn, pgType, paramLen));
+        }
+    }
+
+    /**
+     * Read a value in the binary format of the given type.
+     *
+     * @param in the input stream
+     * @param pgType the PostgreSQL type
+     * @param len the length of the value
+     * @return the value
+     */
+    private Value readBinaryValue(DataInputStream in, int pgType, int len) throws IOException {
+        switch (pgType) {
+        case PgServer.PG_TYPE_BOOL:
+            checkParamLength(1, len);
+            return ValueBoolean.get(in.readByte() != 0);
+        case PgServer.PG_TYPE_INT2:
+            checkParamLength(2, len);
+            return ValueShort.get(in.readShort());
+        case PgServer.PG_TYPE_INT4:
+        case PgServer.PG_TYPE_OID:
+            checkParamLength(4, len);
+            return ValueInt.get(in.readInt());
+        case PgServer.PG_TYPE_INT8:
+            checkParamLength(8, len);
+            return ValueLong.get(in.readLong());
+        case PgServer.PG_TYPE_FLOAT4:
+            checkParamLength(4, len);
+            return ValueFloat.get(in.readFloat());
+        case PgServer.PG_TYPE_FLOAT8:
+            checkParamLength(8, len);
+            return ValueDouble.get(in.readDouble());
+        case PgServer.PG_TYPE_BYTEA: {
+            byte[] data = Utils.newBytes(len);
+            in.readFully(data);
+            return ValueBytes.getNoCopy(data);
+        }
+        case PgServer.PG_TYPE_NUMERIC:
+            return readNumeric(in, len);
+        case PgServer.PG_TYPE_DATE:
+            checkParamLength(4, len);
+            return ValueDate.fromDateValue(fromPostgreDays(in.readInt()));
+        case PgServer.PG_TYPE_TIME: {
+            checkParamLength(8, len);
+            long m = in.readLong();
+            if (!INTEGER_DATE_TYPES) {
+                // double format
+                m = Math.round(Double.longBitsToDouble(m) * 1_000_000);
+            }
+            return ValueTime.fromNanos(m * 1_000);
+        }
+        case PgServer.PG_TYPE_TIMESTAMP_NO_TMZONE: {
+            checkParamLength(8, len);
+            long m = in.readLong();
+            if (!INTEGER_DATE_TYPES) {
+                // double format
+                m = Math.round(Double.longBitsToDouble(m) * 1_000_000);
             }
+            long days = m / 86_400_000_000L;
+            if (m < 0 && days * 86_400_000_000L != m) {
+                days--;
+            }
+            return ValueTimestamp.fromDateValueAndNanos(fromPostgreDays(days),
+                    (m - days * 86_400_000_000L) * 1_000);
+        }
+        case PgServer.PG_TYPE_TEXTARRAY:
+            return readArray(in, len);
+        case PgServer.PG_TYPE_VARCHAR:
+        case PgServer.PG_TYPE_TEXT:
+        case PgServer.PG_TYPE_BPCHAR:
+        case PgServer.PG_TYPE_UNKNOWN: {
+            byte[] data = Utils.newBytes(len);
+            in.readFully(data);
+            return ValueString.get(new String(data, getEncoding()));
+        }
+        default: {
+            server.trace("Binary format for type: "+pgType+" is unsupported");
+            byte[] data = Utils.newBytes(len);
+            in.readFully(data);
+            return ValueString.get(new String(data, getEncoding()));
+        }
         }
     }
 
+    /**
+     * Read a numeric value in the binary format: the number of digits, the
+     * weight of the first digit, the sign, the display scale, and the digits
+     * in base 10000.
+     */
+    private static Value readNumeric(DataInputStream in, int len) throws IOException {
+        int digitCount = in.readShort();
+        checkParamLength(8 + 2 * digitCount, len);
+        int weight = in.readShort();
+        int sign = in.readShort() & 0xffff;
+        int scale = in.readShort();
+        if (sign == 0xc000) {
+            throw DbException.getInvalidValueException("numeric", "NaN");
+        }
+        BigInteger unscaled = BigInteger.ZERO;
+        BigInteger base = BigInteger.valueOf(10_000);
+        for (int i = 0; i < digitCount; i++) {
+            unscaled = unscaled.multiply(base).add(BigInteger.valueOf(in.readShort()));
+        }
+        BigDecimal dec = new BigDecimal(unscaled, (digitCount - 1 - weight) * 4)
+                .setScale(scale, RoundingMode.HALF_UP);
+        return ValueDecimal.get(sign == 0x4000 ? dec.negate() : dec);
+    }
+
+    /**
+     * Read a one-dimensional array in the binary format: the number of
+     * dimensions, the null flag, the element type, the size and lower bound
+     * of each dimension, and the elements.
+     */
+    private Value readArray(DataInputStream in, int len) throws IOException {
+        int dimensions = in.readInt();
+        // has null elements
+        in.readInt();
+        int elementType = in.readInt();
+        if (dimensions == 0) {
+            checkParamLength(12, len);
+            return ValueArray.getEmpty();
+        } else if (dimensions != 1) {
+            throw DbException.getInvalidValueException("array dimensions", dimensions);
+        }
+        int size = in.readInt();
+        // lower bound
+        in.readInt();
+        Value[] list = new Value[size];
+        for (int i = 0; i < size; i++) {
+            int elementLen = in.readInt();
+            list[i] = elementLen == -1 ? ValueNull.INSTANCE
+                    : readBinaryValue(in, elementType, elementLen);
+        }
+        return ValueArray.get(list);
+    }
+
+    /**
+     * Write a value in the binary format of the given type, including the
+     * length.
+     *
+     * @param v the value
+     * @param pgType the PostgreSQL type
+     */
+    private void writeBinaryValue(Value v, int pgType) throws IOException {
+        switch (pgType) {
+        case PgServer.PG_TYPE_BOOL:
+            writeInt(1);
+            dataOut.writeByte(v.getBoolean() ? 1 : 0);
+            break;
+        case PgServer.PG_TYPE_INT2:
+            writeInt(2);
+            writeShort(v.getShort());
+            break;
+        case PgServer.PG_TYPE_INT4:
+        case PgServer.PG_TYPE_OID:
+            writeInt(4);
+            writeInt(v.getInt());
+            break;
+        case PgServer.PG_TYPE_INT8:
+            writeInt(8);
+            dataOut.writeLong(v.getLong());
+            break;
+        case PgServer.PG_TYPE_FLOAT4:
+            writeInt(4);
+            dataOut.writeFloat(v.getFloat());
+            break;
+        case PgServer.PG_TYPE_FLOAT8:
+            writeInt(8);
+            dataOut.writeDouble(v.getDouble());
+            break;
+        case PgServer.PG_TYPE_BYTEA: {
+            byte[] data = v.getBytesNoCopy();
+            writeInt(data.length);
+            write(data);
+            break;
+        }
+        case PgServer.PG_TYPE_NUMERIC:
+            writeNumeric(v.getBigDecimal());
+            break;
+        case PgServer.PG_TYPE_DATE: {
+            ValueDate d = (ValueDate) v.convertTo(Value.DATE);
+            writeInt(4);
+            writeInt((int) (toPostgreDays(d.getDateValue())));
+            break;
+        }
+        case PgServer.PG_TYPE_TIME: {
+            ValueTime t = (ValueTime) v.convertTo(Value.TIME);
+            writeInt(8);
+            long m = t.getNanos();
+            if (INTEGER_DATE_TYPES) {
+                // long format
+                m /= 1_000;
+            } else {
+                // double format
+                m = Double.doubleToLongBits(m * 0.000_000_001);
+            }
+            dataOut.writeLong(m);
+            break;
+        }
+        case PgServer.PG_TYPE_TIMESTAMP_NO_TMZONE: {
+            ValueTimestamp t = (ValueTimestamp) v.convertTo(Value.TIMESTAMP);
+            writeInt(8);
+            long m = toPostgreDays(t.getDateValue()) * 86_400;
+            long nanos = t.getTimeNanos();
+            if (INTEGER_DATE_TYPES) {
+                // long format
+                m = m * 1_000_000 + nanos / 1_000;
+            } else {
+                // double format
+                m = Double.doubleToLongBits(m + nanos * 0.000_000_001);
+            }
+            dataOut.writeLong(m);
+            break;
+        }
+        case PgServer.PG_TYPE_TEXTARRAY:
+            writeArray(((ValueArray) v.convertTo(Value.ARRAY)).getList());
+            break;
+        default: {
+            byte[] data = v.getString().getBytes(getEncoding());
+            writeInt(data.length);
+            write(data);
+        }
+        }
+    }
+
+    private void writeNumeric(BigDecimal dec) throws IOException {
+        int scale = Math.max(0, dec.scale());
+        // the decimal point must be at a digit boundary
+        int groups = (scale + 3) / 4;
+        BigInteger unscaled = dec.abs().setScale(groups * 4).unscaledValue();
+        BigInteger base = BigInteger.valueOf(10_000);
+        ArrayList<Integer> digits = new ArrayList<>();
+        while (unscaled.signum() != 0) {
+            BigInteger[] qr = unscaled.divideAndRemainder(base);
+            digits.add(qr[1].intValue());
+            unscaled = qr[0];
+        }
+        int weight = digits.size() - 1 - groups;
+        // trailing zero digits are not needed
+        int end = 0;
+        while (end < digits.size() && digits.get(end) == 0) {
+            end++;
+        }
+        int digitCount = digits.size() - end;
+        writeInt(8 + 2 * digitCount);
+        writeShort(digitCount);
+        writeShort(digitCount == 0 ? 0 : weight);
+        writeShort(dec.signum() < 0 ? 0x4000 : 0);
+        writeShort(scale);
+        for (int i = digits.size() - 1; i >= end; i--) {
+            writeShort(digits.get(i));
+        }
+    }
+
+    private void writeArray(Value[] list) throws IOException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream arrayOut = new DataOutputStream(buff);
+        boolean hasNull = false;
+        for (Value v : list) {
+            hasNull |= v == ValueNull.INSTANCE;
+        }
+        arrayOut.writeInt(list.length == 0 ? 0 : 1);
+        arrayOut.writeInt(hasNull ? 1 : 0);
+        arrayOut.writeInt(PgServer.PG_TYPE_TEXT);
+        if (list.length > 0) {
+            arrayOut.writeInt(list.length);
+            // lower bound
+            arrayOut.writeInt(1);
+        }
+        for (Value v : list) {
+            if (v == ValueNull.INSTANCE) {
+                arrayOut.writeInt(-1);
+            } else {
+                byte[] data = v.getString().getBytes(getEncoding());
+                arrayOut.writeInt(data.length);
+                arrayOut.write(data);
+            }
+        }
+        arrayOut.flush();
+        writeInt(buff.size());
+        write(buff.toByteArray());
+    }
+
     private static void checkParamLength(int expected, int got) {
         if (expected != got) {
             throw DbException.getInvalidValueException("paramLen", got);
@@ -757,7 +1562,8 @@ private void sendNoData() throws IOException {
         sendMessage();
     }
 
-    private void sendRowDescription(ResultSetMetaData meta) throws IOException, SQLException {
+    private void sendRowDescription(ResultSetMetaData meta, int[] formatCodes)
+            throws IOException, SQLException {
         if (meta == null) {
             sendNoData();
         } else {
@@ -798,7 +1604,7 @@ private void sendRowDescription(ResultSetMetaData meta) throws IOException, SQLE
                 // pg_attribute.atttypmod
                 writeInt(-1);
                 // the format type: text = 0, binary = 1
-                writeShort(formatAsText(types[i]) ? 0 : 1);
+                writeShort(isText(types[i], i, formatCodes) ? 0 : 1);
             }
             sendMessage();
         }
@@ -1024,7 +1830,6 @@ private void sendMessage() throws IOException {
         dataOut.write(messageType);
         dataOut.writeInt(len + 4);
         dataOut.write(buff);
-        dataOut.flush();
     }
 
     private void sendParameterStatus(String param, String value)
@@ -1093,6 +1898,48 @@ static class Prepared {
          * The list of parameter types (if set).
          */
         int[] paramType;
+
+        /**
+         * Whether the prepared object was closed or replaced. Its statement is
+         * then released when no portal uses it.
+         */
+        boolean closed;
+    }
+
+    /**
+     * Represents a PostgreSQL COPY statement.
+     */
+    static class Copy {
+
+        /**
+         * The table, or null if a query is copied.
+         */
+        String table;
+
+        /**
+         * The column list without parentheses, or null for all columns.
+         */
+        String columns;
+
+        /**
+         * The query, or null if a table is copied.
+         */
+        String query;
+
+        /**
+         * Whether the binary format is used.
+         */
+        boolean binary;
+
+        /**
+         * The delimiter of the text format.
+         */
+        char delimiter = '\t';
+
+        /**
+         * The string that represents NULL in the text format.
+         */
+        String nullString = "\\N";
     }
 
     /**
@@ -1115,4 +1962,84 @@ static class Portal {
          */
         Prepared prep;
     }
+
+    /**
+     * The data of a COPY FROM STDIN statement. The CopyData messages of the
+     * client are read until CopyDone or CopyFail.
+     */
+    private final class CopyInputStream extends InputStream {
+
+        private byte[] data;
+        private int pos;
+        private boolean done;
+
+        CopyInputStream() {
+            // nothing to do
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? data[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (!fill()) {
+                return -1;
+            }
+            len = Math.min(len, data.length - pos);
+            System.arraycopy(data, pos, b, off, len);
+            pos += len;
+            return len;
+        }
+
+        /**
+         * Read and discard the remaining data.
+         */
+        void skipAll() throws IOException {
+            while (fill()) {
+                pos = data.length;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            while (data == null || pos >= data.length) {
+                if (done) {
+                    return false;
+                }
+                int x = dataInRaw.read();
+                if (x < 0) {
+                    throw new EOFException();
+                }
+                int len = dataInRaw.readInt() - 4;
+                byte[] buff = Utils.newBytes(len);
+                dataInRaw.readFully(buff);
+                switch (x) {
+                case 'd':
+                    data = buff;
+                    pos = 0;
+                    break;
+                case 'c':
+                    server.trace("CopyDone");
+                    done = true;
+                    break;
+                case 'f':
+                    server.trace("CopyFail");
+                    done = true;
+                    throw DbException.get(ErrorCode.STATEMENT_WAS_CANCELED);
+                case 'H':
+                case 'S':
+                    // Flush and Sync are ignored in the copy mode
+                    break;
+                default:
+                    done = true;
+                    throw DbException.get(ErrorCode.CONNECTION_BROKEN_1,
+                            "Unexpected message in the copy mode: " + (char) x);
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -151,6 +151,9 @@ public ArrayList<Index> getIndexes() {
     public Index addIndex(Session session, String indexName, int indexId,
             IndexColumn[] cols, IndexType indexType, boolean create,
             String indexComment) {
+        if (indexType.getIncludeColumns() != null) {
+            throw DbException.getUnsupportedException("INCLUDE");
+        }
         if (indexType.isPrimaryKey()) {
             for (IndexColumn c : cols) {
                 Column column = c.column;
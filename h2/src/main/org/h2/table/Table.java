@@ -613,6 +613,9 @@ public void dropMultipleColumnsConstraintsAndIndexes(Session session,
                     if (index.getCreateSQL() == null) {
                         continue;
                     }
+                    if (index.getIndexType().isIncludeColumn(col)) {
+                        throw DbException.get(ErrorCode.COLUMN_IS_REFERENCED_1, index.getSQL(false));
+                    }
                     if (index.getColumnIndex(col) < 0) {
                         continue;
                     }
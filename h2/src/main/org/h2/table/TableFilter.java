@@ -17,12 +17,16 @@
 import org.h2.engine.Session;
 import org.h2.expression.Expression;
 import org.h2.expression.ExpressionColumn;
+import org.h2.expression.RowBatch;
 import org.h2.expression.condition.Comparison;
 import org.h2.expression.condition.ConditionAndOr;
+import org.h2.index.HashJoinIndex;
 import org.h2.index.Index;
 import org.h2.index.IndexCondition;
 import org.h2.index.IndexCursor;
 import org.h2.index.IndexLookupBatch;
+import org.h2.index.IndexType;
+import org.h2.index.MergeJoinIndex;
 import org.h2.index.ViewIndex;
 import org.h2.message.DbException;
 import org.h2.result.Row;
@@ -81,6 +85,12 @@ public class TableFilter implements ColumnResolver {
      */
     private final ArrayList<IndexCondition> indexConditions = Utils.newSmallArrayList();
 
+    /**
+     * The index conditions that the index can not use to search, but to skip
+     * rows.
+     */
+    private final ArrayList<IndexCondition> skipConditions = Utils.newSmallArrayList();
+
     /**
      * Whether new window conditions should not be accepted.
      */
@@ -101,6 +111,12 @@ public class TableFilter implements ColumnResolver {
     private Row current;
     private int state;
 
+    /**
+     * Whether the index contains all columns of this table that are used by
+     * the query, so that batches can be read from the index alone.
+     */
+    private boolean coveringIndex;
+
     /**
      * The joined table (if there is one).
      */
@@ -226,6 +242,18 @@ public PlanItem getBestPlanItem(Session s, TableFilter[] filters, int filter,
             }
         }
         PlanItem item = table.getBestPlanItem(s, masks, filters, filter, sortOrder, allColumnsSet);
+        if (filter > 0 && masks != null && s.getDatabase().getSettings().hashJoin
+                && item.getIndex().getIndexType().isScan()) {
+            // no index can be used for the join condition
+            HashJoinIndex hashJoin = HashJoinIndex.create(table, masks);
+            if (hashJoin != null) {
+                double cost = hashJoin.getCost(s, masks, filters, filter, sortOrder, allColumnsSet);
+                if (cost < item.cost) {
+                    item.setIndex(hashJoin);
+                    item.cost = cost;
+                }
+            }
+        }
         item.setMasks(masks);
         // The more index conditions, the earlier the table.
         // This is to ensure joins without indexes run quickly:
@@ -313,12 +341,22 @@ public void prepare() {
                 Column col = condition.getColumn();
                 if (col.getColumnId() >= 0) {
                     if (index.getColumnIndex(col) < 0) {
+                        if (index.canSkipRows(col)) {
+                            skipConditions.add(condition);
+                        }
                         indexConditions.remove(i);
                         i--;
                     }
                 }
             }
         }
+        if (session.getDatabase().getSettings().mergeJoin) {
+            MergeJoinIndex mergeJoin = MergeJoinIndex.create(this, index, indexConditions);
+            if (mergeJoin != null) {
+                setIndex(mergeJoin);
+            }
+        }
+        coveringIndex = select != null && isCovering();
         if (nestedJoin != null) {
             if (nestedJoin == this) {
                 DbException.throwInternalError("self join");
@@ -339,6 +377,19 @@ public void prepare() {
         }
     }
 
+    private boolean isCovering() {
+        ArrayList<Column> columns = new AllColumnsForPlan(new TableFilter[] { this }).get(table);
+        if (columns != null) {
+            IndexType indexType = index.getIndexType();
+            for (Column c : columns) {
+                if (c.getColumnId() >= 0 && index.getColumnIndex(c) < 0 && !indexType.isIncludeColumn(c)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * Start the query. This will reset the scan counts.
      *
@@ -587,6 +638,23 @@ boolean isOk(Expression condition) {
         return condition == null || condition.getBooleanValue(session);
     }
 
+    /**
+     * Read the next rows into the batch. All rows are selected. This is only
+     * supported for a single table filter without joins. If the index contains
+     * all columns that are used, the rows of the index are added, without
+     * reading the rows of the table.
+     *
+     * @param batch the batch (it is reset first)
+     * @return true if at least one row was read
+     */
+    public boolean nextBatch(RowBatch batch) {
+        batch.reset();
+        while (!batch.isFull() && next()) {
+            batch.add(coveringIndex ? currentSearchRow : get());
+        }
+        return batch.getRowCount() > 0;
+    }
+
     /**
      * Get the current row.
      *
@@ -609,6 +677,17 @@ public void set(Row current) {
         this.currentSearchRow = current;
     }
 
+    /**
+     * Set the current row to a row of a batch that was read with
+     * {@link #nextBatch(RowBatch)}.
+     *
+     * @param row the row of the batch
+     */
+    public void setBatchRow(SearchRow row) {
+        current = coveringIndex ? null : (Row) row;
+        currentSearchRow = row;
+    }
+
     /**
      * Get the table alias name. If no alias is specified, the table name is
      * returned.
@@ -917,6 +996,16 @@ public ArrayList<IndexCondition> getIndexConditions() {
         return indexConditions;
     }
 
+    /**
+     * Get the conditions that the index can use to skip rows, but not to
+     * search.
+     *
+     * @return the conditions
+     */
+    public ArrayList<IndexCondition> getSkipConditions() {
+        return skipConditions;
+    }
+
     public Index getIndex() {
         return index;
     }
@@ -84,6 +84,8 @@ public Server(Service service, String... args) throws SQLException {
      * <td>The port (default: 9092)</td></tr>
      * <tr><td>[-tcpSSL]</td>
      * <td>Use encrypted (SSL) connections</td></tr>
+     * <tr><td>[-tcpWorkers &lt;count&gt;]</td>
+     * <td>Use a selector and this many worker threads</td></tr>
      * <tr><td>[-tcpPassword &lt;pwd&gt;]</td>
      * <td>The password for shutting down a TCP server</td></tr>
      * <tr><td>[-tcpShutdown "&lt;url&gt;"]</td>
@@ -157,6 +159,8 @@ private void verifyArgs(String... args) throws SQLException {
                     // no parameters
                 } else if ("-tcpPort".equals(arg)) {
                     i++;
+                } else if ("-tcpWorkers".equals(arg)) {
+                    i++;
                 } else if ("-tcpPassword".equals(arg)) {
                     i++;
                 } else if ("-tcpShutdown".equals(arg)) {
@@ -260,6 +264,8 @@ public void runTool(String... args) throws SQLException {
                     // no parameters
                 } else if ("-tcpPort".equals(arg)) {
                     i++;
+                } else if ("-tcpWorkers".equals(arg)) {
+                    i++;
                 } else if ("-tcpPassword".equals(arg)) {
                     tcpPassword = args[++i];
                 } else if ("-tcpShutdown".equals(arg)) {
@@ -458,7 +464,7 @@ static Server createWebServer(String[] args, String key, boolean allowSecureCrea
      * </pre>
      * Supported options are:
      * -tcpPort, -tcpSSL, -tcpPassword, -tcpAllowOthers, -tcpDaemon,
-     * -trace, -ifExists, -ifNotExists, -baseDir, -key.
+     * -tcpWorkers, -trace, -ifExists, -ifNotExists, -baseDir, -key.
      * See the main method for details.
      * <p>
      * If no port is specified, the default port is used if possible,
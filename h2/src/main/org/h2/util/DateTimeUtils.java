@@ -1326,6 +1326,31 @@ public static long prolepticGregorianAbsoluteDayFromDateValue(long dateValue) {
         return a;
     }
 
+    /**
+     * Calculate the encoded date value from an absolute day in proleptic
+     * Gregorian calendar.
+     *
+     * @param absoluteDay the absolute day in proleptic Gregorian calendar
+     * @return the date value
+     */
+    public static long dateValueFromProlepticGregorianAbsoluteDay(long absoluteDay) {
+        long d = absoluteDay + 719_468;
+        long y400 = (d >= 0 ? d : d - 146_096) / 146_097;
+        // day of the 400 years period, starting with March 1
+        long doe = d - y400 * 146_097;
+        long yoe = (doe - doe / 1_460 + doe / 36_524 - doe / 146_096) / 365;
+        long y = yoe + y400 * 400;
+        // day of the year, starting with March 1
+        int doy = (int) (doe - (365 * yoe + yoe / 4 - yoe / 100));
+        int m = (doy * 5 + 2) / 153;
+        int day = doy - (m * 153 + 2) / 5 + 1;
+        if (m >= 10) {
+            y++;
+            m -= 12;
+        }
+        return dateValue(y, m + 3, day);
+    }
+
     /**
      * Calculate the encoded date value from an absolute day.
      *
@@ -13,6 +13,7 @@
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.TimeUnit;
 
 import org.h2.api.ErrorCode;
@@ -184,6 +185,29 @@ private static ServerSocket createServerSocketTry(int port, boolean ssl) {
         }
     }
 
+    /**
+     * Create a server socket channel, for servers that use a selector. The
+     * system property h2.bindAddress is used if set. SSL is not supported.
+     *
+     * @param port the port to listen on
+     * @return the server socket channel
+     */
+    public static ServerSocketChannel createServerSocketChannel(int port) {
+        ServerSocketChannel channel = null;
+        try {
+            channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(getBindAddress(), port));
+            return channel;
+        } catch (BindException be) {
+            IOUtils.closeSilently(channel);
+            throw DbException.get(ErrorCode.EXCEPTION_OPENING_PORT_2,
+                    be, Integer.toString(port), be.toString());
+        } catch (IOException e) {
+            IOUtils.closeSilently(channel);
+            throw DbException.convertIOException(e, "port: " + port);
+        }
+    }
+
     /**
      * Check if a socket is connected to a local address.
      *
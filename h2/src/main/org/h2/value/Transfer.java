@@ -7,6 +7,8 @@
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -14,8 +16,11 @@
 import java.math.BigDecimal;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
 import org.h2.api.ErrorCode;
 import org.h2.api.IntervalQualifier;
+import org.h2.compress.CompressLZF;
 import org.h2.engine.Constants;
 import org.h2.engine.SessionInterface;
 import org.h2.message.DbException;
@@ -71,6 +76,33 @@ public class Transfer {
     private static final int ROW = 27;
     private static final int JSON = 28;
 
+    /**
+     * A column of a row batch that is encoded value by value.
+     */
+    private static final int BATCH_VALUES = 0;
+
+    /**
+     * A column of a row batch that only contains NULL.
+     */
+    private static final int BATCH_NULL = 1;
+
+    /**
+     * A column of a row batch that contains integers of one type, encoded as
+     * the variable size difference to the previous value.
+     */
+    private static final int BATCH_INTEGER = 2;
+
+    /**
+     * A column of a row batch that contains strings, encoded as the index in
+     * a dictionary of the strings of this column.
+     */
+    private static final int BATCH_STRING = 3;
+
+    /**
+     * Row batches are compressed if they are at least this large.
+     */
+    private static final int BATCH_MIN_COMPRESS = 1024;
+
     private Socket socket;
     private DataInputStream in;
     private DataOutputStream out;
@@ -78,6 +110,7 @@ public class Transfer {
     private boolean ssl;
     private int version;
     private byte[] lobMacSalt;
+    private CompressLZF compressor;
 
     /**
      * Create a new transfer object for the specified session.
@@ -105,6 +138,15 @@ public synchronized void init() throws IOException {
         }
     }
 
+    /**
+     * Get the number of bytes that can be read without blocking.
+     *
+     * @return the number of bytes
+     */
+    public int available() throws IOException {
+        return in.available();
+    }
+
     /**
      * Write pending changes.
      */
@@ -322,6 +364,284 @@ public void readBytes(byte[] buff, int off, int len) throws IOException {
         in.readFully(buff, off, len);
     }
 
+    /**
+     * Write a batch of rows. The values are encoded column by column, so
+     * that the type is only written once per column if possible. Integers
+     * are written as the difference to the previous value, and repeated
+     * strings as an index into a dictionary. Larger batches are compressed.
+     *
+     * @param rows the rows
+     * @param columnCount the number of columns
+     */
+    public void writeRowBatch(ArrayList<Value[]> rows, int columnCount) throws IOException {
+        DataOutputStream socketOut = out;
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        out = new DataOutputStream(buff);
+        try {
+            int rowCount = rows.size();
+            writeVarInt(rowCount);
+            for (int i = 0; i < columnCount; i++) {
+                writeBatchColumn(rows, i);
+            }
+            out.flush();
+        } finally {
+            out = socketOut;
+        }
+        byte[] data = buff.toByteArray();
+        int len = data.length;
+        if (len >= BATCH_MIN_COMPRESS) {
+            if (compressor == null) {
+                compressor = new CompressLZF();
+            }
+            byte[] compressed = new byte[len + len / 32 + 16];
+            int compressedLen = compressor.compress(data, len, compressed, 0);
+            if (compressedLen < len - len / 8) {
+                writeInt(len).writeInt(compressedLen);
+                out.write(compressed, 0, compressedLen);
+                return;
+            }
+        }
+        writeInt(len).writeInt(-1);
+        out.write(data);
+    }
+
+    private void writeBatchColumn(ArrayList<Value[]> rows, int column) throws IOException {
+        int rowCount = rows.size();
+        int type = Value.NULL;
+        boolean hasNulls = false;
+        for (Value[] row : rows) {
+            int t = row[column].getValueType();
+            if (t == Value.NULL) {
+                hasNulls = true;
+            } else if (type == Value.NULL) {
+                type = t;
+            } else if (type != t) {
+                type = Value.UNKNOWN;
+                break;
+            }
+        }
+        switch (type) {
+        case Value.NULL:
+            out.writeByte(BATCH_NULL);
+            return;
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG: {
+            out.writeByte(BATCH_INTEGER);
+            out.writeByte(type);
+            writeBatchNulls(rows, column, hasNulls);
+            long last = 0;
+            for (Value[] row : rows) {
+                Value v = row[column];
+                if (v != ValueNull.INSTANCE) {
+                    long x = v.getLong();
+                    long delta = x - last;
+                    // zigzag encoding, so that small negative differences
+                    // are short as well
+                    writeVarLong((delta << 1) ^ (delta >> 63));
+                    last = x;
+                }
+            }
+            return;
+        }
+        case Value.STRING: {
+            out.writeByte(BATCH_STRING);
+            writeBatchNulls(rows, column, hasNulls);
+            HashMap<String, Integer> dictionary = new HashMap<>();
+            for (Value[] row : rows) {
+                Value v = row[column];
+                if (v != ValueNull.INSTANCE) {
+                    String s = v.getString();
+                    Integer index = dictionary.get(s);
+                    if (index != null) {
+                        writeVarInt(index);
+                    } else {
+                        int size = dictionary.size();
+                        writeVarInt(size);
+                        writeString(s);
+                        dictionary.put(s, size);
+                    }
+                }
+            }
+            return;
+        }
+        default:
+            out.writeByte(BATCH_VALUES);
+            for (int i = 0; i < rowCount; i++) {
+                writeValue(rows.get(i)[column]);
+            }
+        }
+    }
+
+    private void writeBatchNulls(ArrayList<Value[]> rows, int column, boolean hasNulls) throws IOException {
+        writeBoolean(hasNulls);
+        if (hasNulls) {
+            int rowCount = rows.size();
+            byte[] nulls = new byte[(rowCount + 7) / 8];
+            for (int i = 0; i < rowCount; i++) {
+                if (rows.get(i)[column] == ValueNull.INSTANCE) {
+                    nulls[i >> 3] |= 1 << (i & 7);
+                }
+            }
+            out.write(nulls);
+        }
+    }
+
+    /**
+     * Read a batch of rows that was written using writeRowBatch.
+     *
+     * @param rows the list to add the rows to
+     * @param columnCount the number of columns
+     * @return the number of bytes of the batch (compressed, if it was
+     *         compressed)
+     */
+    public int readRowBatch(ArrayList<Value[]> rows, int columnCount) throws IOException {
+        int len = readInt();
+        int compressedLen = readInt();
+        byte[] data = new byte[len];
+        int batchLen;
+        if (compressedLen < 0) {
+            in.readFully(data);
+            batchLen = len;
+        } else {
+            byte[] compressed = new byte[compressedLen];
+            in.readFully(compressed);
+            if (compressor == null) {
+                compressor = new CompressLZF();
+            }
+            compressor.expand(compressed, 0, compressedLen, data, 0, len);
+            batchLen = compressedLen;
+        }
+        DataInputStream socketIn = in;
+        in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            int rowCount = readVarInt();
+            Value[][] batch = new Value[rowCount][columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                readBatchColumn(batch, i);
+            }
+            for (Value[] row : batch) {
+                rows.add(row);
+            }
+        } finally {
+            in = socketIn;
+        }
+        return batchLen;
+    }
+
+    private void readBatchColumn(Value[][] batch, int column) throws IOException {
+        int encoding = in.readByte();
+        switch (encoding) {
+        case BATCH_NULL:
+            for (Value[] row : batch) {
+                row[column] = ValueNull.INSTANCE;
+            }
+            break;
+        case BATCH_INTEGER: {
+            int type = in.readByte();
+            byte[] nulls = readBatchNulls(batch.length);
+            long last = 0;
+            for (int i = 0; i < batch.length; i++) {
+                Value v;
+                if (nulls != null && (nulls[i >> 3] & (1 << (i & 7))) != 0) {
+                    v = ValueNull.INSTANCE;
+                } else {
+                    long x = readVarLong();
+                    last += (x >>> 1) ^ -(x & 1);
+                    switch (type) {
+                    case Value.BYTE:
+                        v = ValueByte.get((byte) last);
+                        break;
+                    case Value.SHORT:
+                        v = ValueShort.get((short) last);
+                        break;
+                    case Value.INT:
+                        v = ValueInt.get((int) last);
+                        break;
+                    default:
+                        v = ValueLong.get(last);
+                    }
+                }
+                batch[i][column] = v;
+            }
+            break;
+        }
+        case BATCH_STRING: {
+            byte[] nulls = readBatchNulls(batch.length);
+            ArrayList<Value> dictionary = new ArrayList<>();
+            for (int i = 0; i < batch.length; i++) {
+                Value v;
+                if (nulls != null && (nulls[i >> 3] & (1 << (i & 7))) != 0) {
+                    v = ValueNull.INSTANCE;
+                } else {
+                    int index = readVarInt();
+                    if (index == dictionary.size()) {
+                        dictionary.add(ValueString.get(readString()));
+                    }
+                    v = dictionary.get(index);
+                }
+                batch[i][column] = v;
+            }
+            break;
+        }
+        case BATCH_VALUES:
+            for (Value[] row : batch) {
+                row[column] = readValue();
+            }
+            break;
+        default:
+            throw DbException.get(ErrorCode.CONNECTION_BROKEN_1, "encoding=" + encoding);
+        }
+    }
+
+    private byte[] readBatchNulls(int rowCount) throws IOException {
+        if (!readBoolean()) {
+            return null;
+        }
+        byte[] nulls = new byte[(rowCount + 7) / 8];
+        in.readFully(nulls);
+        return nulls;
+    }
+
+    private void writeVarInt(int x) throws IOException {
+        while ((x & ~0x7f) != 0) {
+            out.writeByte(x | 0x80);
+            x >>>= 7;
+        }
+        out.writeByte(x);
+    }
+
+    private void writeVarLong(long x) throws IOException {
+        while ((x & ~0x7fL) != 0) {
+            out.writeByte((int) x | 0x80);
+            x >>>= 7;
+        }
+        out.writeByte((int) x);
+    }
+
+    private int readVarInt() throws IOException {
+        int x = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.readByte();
+            x |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return x;
+            }
+        }
+    }
+
+    private long readVarLong() throws IOException {
+        long x = 0;
+        for (int shift = 0;; shift += 7) {
+            long b = in.readByte();
+            x |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return x;
+            }
+        }
+    }
+
     /**
      * Close the transfer object and the socket.
      */
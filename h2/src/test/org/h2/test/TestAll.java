@@ -32,23 +32,29 @@
 import org.h2.test.db.TestCompatibility;
 import org.h2.test.db.TestCompatibilityOracle;
 import org.h2.test.db.TestCompatibilitySQLServer;
+import org.h2.test.db.TestCoveringIndex;
 import org.h2.test.db.TestCsv;
 import org.h2.test.db.TestDateStorage;
 import org.h2.test.db.TestDeadlock;
 import org.h2.test.db.TestDuplicateKeyUpdate;
 import org.h2.test.db.TestEncryptedDb;
 import org.h2.test.db.TestExclusive;
+import org.h2.test.db.TestExtensibleHashMap;
 import org.h2.test.db.TestFullText;
 import org.h2.test.db.TestFunctionOverload;
 import org.h2.test.db.TestFunctions;
 import org.h2.test.db.TestGeneralCommonTableQueries;
+import org.h2.test.db.TestHashJoin;
 import org.h2.test.db.TestIndex;
 import org.h2.test.db.TestIndexHints;
+import org.h2.test.db.TestIndexLookupBatch;
 import org.h2.test.db.TestLargeBlob;
+import org.h2.test.db.TestLinearHashMap;
 import org.h2.test.db.TestLinkedTable;
 import org.h2.test.db.TestListener;
 import org.h2.test.db.TestLob;
 import org.h2.test.db.TestMemoryUsage;
+import org.h2.test.db.TestMergeJoin;
 import org.h2.test.db.TestMergeUsing;
 import org.h2.test.db.TestMultiConn;
 import org.h2.test.db.TestMultiDimension;
@@ -83,6 +89,8 @@
 import org.h2.test.db.TestTwoPhaseCommit;
 import org.h2.test.db.TestUpgrade;
 import org.h2.test.db.TestUsingIndex;
+import org.h2.test.db.TestParallelAggregation;
+import org.h2.test.db.TestVectorizedExecution;
 import org.h2.test.db.TestView;
 import org.h2.test.db.TestViewAlterTable;
 import org.h2.test.db.TestViewDropView;
@@ -131,6 +139,7 @@
 import org.h2.test.store.TestCacheConcurrentLIRS;
 import org.h2.test.store.TestCacheLIRS;
 import org.h2.test.store.TestCacheLongKeyLIRS;
+import org.h2.test.store.TestCacheLongKeyOffHeap;
 import org.h2.test.store.TestConcurrent;
 import org.h2.test.store.TestDataUtils;
 import org.h2.test.store.TestDefrag;
@@ -753,6 +762,7 @@ private void test() throws SQLException {
         addTest(new TestCompatibility());
         addTest(new TestCompatibilityOracle());
         addTest(new TestCompatibilitySQLServer());
+        addTest(new TestCoveringIndex());
         addTest(new TestCsv());
         addTest(new TestDeadlock());
         if (vmlens) {
@@ -767,6 +777,7 @@ private void test() throws SQLException {
         addTest(new TestInit());
         addTest(new TestIndex());
         addTest(new TestIndexHints());
+        addTest(new TestIndexLookupBatch());
         addTest(new TestLargeBlob());
         addTest(new TestLinkedTable());
         addTest(new TestListener());
@@ -919,6 +930,10 @@ private void testAdditional() {
         addTest(new TestTimeStampWithTimeZone());
         addTest(new TestUpgrade());
         addTest(new TestUsingIndex());
+        addTest(new TestVectorizedExecution());
+        addTest(new TestParallelAggregation());
+        addTest(new TestHashJoin());
+        addTest(new TestMergeJoin());
         addTest(new TestValue());
         addTest(new TestWeb());
 
@@ -946,6 +961,7 @@ private void testUtils() {
         addTest(new TestCacheConcurrentLIRS());
         addTest(new TestCacheLIRS());
         addTest(new TestCacheLongKeyLIRS());
+        addTest(new TestCacheLongKeyOffHeap());
         addTest(new TestDataUtils());
         addTest(new TestFreeSpace());
         addTest(new TestKillProcessWhileWriting());
@@ -977,6 +993,8 @@ private void testUtils() {
         addTest(new TestInterval());
         addTest(new TestIntArray());
         addTest(new TestIntIntHashMap());
+        addTest(new TestExtensibleHashMap());
+        addTest(new TestLinearHashMap());
         addTest(new TestIntPerfectHash());
         addTest(new TestJsonUtils());
         addTest(new TestKeywords());
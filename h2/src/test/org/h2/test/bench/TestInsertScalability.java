@@ -0,0 +1,114 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.h2.store.fs.FileUtils;
+import org.h2.util.JdbcUtils;
+import org.h2.util.Task;
+
+/**
+ * Used to measure how concurrent inserts into a single MVStore table scale
+ * with the number of threads. All threads insert rows with generated keys,
+ * so all changes go to the end of the same map. Each thread count is run
+ * with and without the append buffer (setting APPEND_BUFFER), to compare the
+ * short locking of the append buffer with the copy-on-write update of the
+ * map for each row.
+ */
+public class TestInsertScalability {
+
+    private static final int[] THREAD_COUNTS = { 1, 2, 4, 8, 16, 32, 64 };
+
+    /**
+     * The number of rows inserted by all threads together, per run.
+     */
+    private static final int ROWS = 400_000;
+
+    /**
+     * This method is called when executing this sample application.
+     *
+     * @param args the command line parameters
+     */
+    public static void main(String... args) throws Exception {
+        new TestInsertScalability().test();
+    }
+
+    private void test() throws Exception {
+        org.h2.Driver.load();
+        System.out.println("Threads\tAPPEND_BUFFER=FALSE\tAPPEND_BUFFER=TRUE\t(rows per second)");
+        for (int threadCount : THREAD_COUNTS) {
+            StringBuilder buff = new StringBuilder();
+            buff.append(threadCount);
+            for (boolean appendBuffer : new boolean[] { false, true }) {
+                // warm up
+                run(threadCount, appendBuffer, ROWS / 10);
+                long rowsPerSecond = run(threadCount, appendBuffer, ROWS);
+                buff.append('\t').append(rowsPerSecond);
+            }
+            System.out.println(buff);
+        }
+        FileUtils.deleteRecursive("data", true);
+    }
+
+    private static long run(int threadCount, boolean appendBuffer, int rows) throws Exception {
+        FileUtils.deleteRecursive("data", true);
+        final String url = "jdbc:h2:./data/insertTest;APPEND_BUFFER=" + appendBuffer;
+        Connection conn = DriverManager.getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST(ID IDENTITY, NAME VARCHAR, VALUE INT)");
+        final int rowsPerThread = rows / threadCount;
+        final CountDownLatch start = new CountDownLatch(1);
+        Task[] tasks = new Task[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            tasks[i] = new Task() {
+                @Override
+                public void call() throws Exception {
+                    Connection c = DriverManager.getConnection(url);
+                    try {
+                        PreparedStatement prep = c.prepareStatement(
+                                "INSERT INTO TEST(NAME, VALUE) VALUES(?, ?)");
+                        start.await();
+                        for (int j = 0; j < rowsPerThread; j++) {
+                            prep.setString(1, "Hello World " + j);
+                            prep.setInt(2, j);
+                            prep.executeUpdate();
+                        }
+                    } finally {
+                        JdbcUtils.closeSilently(c);
+                    }
+                }
+            };
+            tasks[i].execute();
+        }
+        long time = System.nanoTime();
+        start.countDown();
+        for (Task t : tasks) {
+            t.get();
+        }
+        time = System.nanoTime() - time;
+        checkRowCount(stat, rowsPerThread * threadCount);
+        JdbcUtils.closeSilently(stat);
+        JdbcUtils.closeSilently(conn);
+        return rowsPerThread * threadCount * TimeUnit.SECONDS.toNanos(1) / time;
+    }
+
+    private static void checkRowCount(Statement stat, long expected) throws SQLException {
+        ResultSet rs = stat.executeQuery("SELECT COUNT(*) FROM TEST");
+        rs.next();
+        long count = rs.getLong(1);
+        if (count != expected) {
+            throw new SQLException("Expected " + expected + " rows, got " + count);
+        }
+    }
+
+}
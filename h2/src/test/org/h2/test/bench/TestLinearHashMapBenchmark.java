@@ -0,0 +1,193 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.bench;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.index.LinearHashMap;
+import org.h2.value.CompareMode;
+import org.h2.value.Value;
+import org.h2.value.ValueLong;
+
+/**
+ * Compares the linear hash map used by the hash index with the maps that were
+ * used before (HashMap and TreeMap), in the way a micro benchmark harness
+ * would: a number of warmup iterations, then a number of measured iterations,
+ * reporting the best time per operation as well as the retained memory.
+ * The results depend on the machine and its load, so this is not part of the
+ * regular tests.
+ */
+public class TestLinearHashMapBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    /**
+     * Prevents the JIT from removing the lookups.
+     */
+    private long blackHole;
+
+    /**
+     * This method is called when executing this sample application.
+     *
+     * @param args the command line parameters
+     */
+    public static void main(String... args) {
+        new TestLinearHashMapBenchmark().test();
+    }
+
+    private void test() {
+        int size = 1000000;
+        Value[] keys = new Value[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ValueLong.get(i * 31L);
+        }
+        long linear = benchmark(new LinearMap(), keys);
+        long hash = benchmark(new HashMapAdapter(), keys);
+        long tree = benchmark(new TreeMapAdapter(), keys);
+        long linearMemory = getMemoryUsed(new LinearMap(), keys);
+        long hashMemory = getMemoryUsed(new HashMapAdapter(), keys);
+        System.out.println("linear " + linear + " hash " + hash + " tree " + tree +
+                " linear mem " + linearMemory + " hash mem " + hashMemory);
+        System.out.println("(" + blackHole + ")");
+    }
+
+    private long benchmark(Adapter map, Value[] keys) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run(map, keys);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            best = Math.min(best, run(map, keys));
+        }
+        // 3 operations per key: put, get and remove
+        long ops = keys.length * 3L;
+        System.out.println(map.getClass().getSimpleName() + ": " +
+                TimeUnit.NANOSECONDS.toMillis(best) + " ms, " +
+                best / ops + " ns/op");
+        return best;
+    }
+
+    private long run(Adapter map, Value[] keys) {
+        long time = System.nanoTime();
+        int len = keys.length;
+        for (int i = 0; i < len; i++) {
+            map.put(keys[i], i);
+        }
+        long sum = 0;
+        for (int i = 0; i < len; i++) {
+            sum += map.get(keys[i]);
+        }
+        for (int i = 0; i < len; i++) {
+            map.remove(keys[i]);
+        }
+        blackHole += sum;
+        return System.nanoTime() - time;
+    }
+
+    private static long getMemoryUsed(Adapter map, Value[] keys) {
+        long mem = getMemory();
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        long used = getMemory() - mem;
+        map.get(keys[0]);
+        return used;
+    }
+
+    private static long getMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 16; i++) {
+            rt.gc();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    /**
+     * The operations of the hash index.
+     */
+    private interface Adapter {
+        void put(Value key, long value);
+        long get(Value key);
+        void remove(Value key);
+    }
+
+    /**
+     * The linear hash map.
+     */
+    private static final class LinearMap implements Adapter {
+        private final LinearHashMap<Value> map = new LinearHashMap<>();
+
+        @Override
+        public void put(Value key, long value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public long get(Value key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void remove(Value key) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * A java.util.HashMap with boxed values.
+     */
+    private static final class HashMapAdapter implements Adapter {
+        private final HashMap<Value, Long> map = new HashMap<>();
+
+        @Override
+        public void put(Value key, long value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public long get(Value key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void remove(Value key) {
+            map.remove(key);
+        }
+    }
+
+    /**
+     * A java.util.TreeMap with boxed values, as used for data types without
+     * total ordering.
+     */
+    private static final class TreeMapAdapter implements Adapter {
+        private final TreeMap<Value, Long> map = new TreeMap<>(
+                CompareMode.getInstance(null, 0));
+
+        @Override
+        public void put(Value key, long value) {
+            map.put(key, value);
+        }
+
+        @Override
+        public long get(Value key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void remove(Value key) {
+            map.remove(key);
+        }
+    }
+
+}
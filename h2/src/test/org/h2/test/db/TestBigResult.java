@@ -16,6 +16,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Random;
 
 import org.h2.message.TraceSystem;
 import org.h2.store.FileLister;
@@ -54,6 +55,9 @@ public void test() throws SQLException {
         testCloseConnectionDelete();
         testOrderGroup();
         testLimitBufferedResult();
+        testTopRows();
+        testExternalSort();
+        testSpilledGroups();
         deleteDb("bigResult");
     }
 
@@ -424,6 +428,174 @@ private void testLimitBufferedResult() throws SQLException {
         conn.close();
     }
 
+    private void testTopRows() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, A INT, B VARCHAR)");
+        stat.execute("INSERT INTO TEST SELECT X, MOD(X * 7, 50), MOD(X * 13, 1000) FROM SYSTEM_RANGE(1, 5000)");
+        stat.execute("SET MAX_MEMORY_ROWS 200");
+        String[] orders = { "A", "A DESC, B", "B, A", "A NULLS FIRST, B DESC, ID" };
+        Random random = new Random(1);
+        for (int i = 0; i < 100; i++) {
+            String order = orders[random.nextInt(orders.length)];
+            int offset = random.nextInt(4) == 0 ? random.nextInt(300) : 0;
+            int limit = random.nextInt(150);
+            boolean withTies = random.nextBoolean();
+            // the rows of the full result, with the number of columns that
+            // are in the sort order
+            ArrayList<String> all = new ArrayList<>();
+            ArrayList<String> keys = new ArrayList<>();
+            ResultSet rs = stat.executeQuery("SELECT ID, A, B FROM TEST ORDER BY " + order);
+            while (rs.next()) {
+                all.add(rs.getString(1) + " " + rs.getString(2) + " " + rs.getString(3));
+                keys.add(getSortKey(rs, order));
+            }
+            int end = Math.min(offset + limit, all.size());
+            if (withTies && end > offset) {
+                while (end < all.size() && keys.get(end).equals(keys.get(end - 1))) {
+                    end++;
+                }
+            }
+            String sql = "SELECT ID, A, B FROM TEST ORDER BY " + order + " OFFSET " + offset + " ROWS FETCH FIRST "
+                    + limit + " ROWS " + (withTies ? "WITH TIES" : "ONLY");
+            rs = stat.executeQuery(sql);
+            ArrayList<String> actual = new ArrayList<>();
+            while (rs.next()) {
+                actual.add(rs.getString(1) + " " + rs.getString(2) + " " + rs.getString(3));
+            }
+            if (withTies) {
+                // the order of rows that are equal is not defined
+                assertEquals(sql, keys.subList(offset, Math.max(offset, end)).size(), actual.size());
+                for (int j = 0; j < actual.size(); j++) {
+                    assertEquals(sql, keys.get(offset + j), getSortKey(actual.get(j), order));
+                }
+            } else {
+                assertEquals(sql, all.subList(Math.min(offset, all.size()), end).toString(), actual.toString());
+            }
+        }
+        // more ties than MAX_MEMORY_ROWS
+        ResultSet rs = stat.executeQuery("SELECT A FROM TEST ORDER BY A FETCH FIRST 10 ROWS WITH TIES");
+        int count = 0;
+        while (rs.next()) {
+            assertEquals(0, rs.getInt(1));
+            count++;
+        }
+        assertEquals(100, count);
+        stat.execute("DROP TABLE TEST");
+        conn.close();
+    }
+
+    private static String getSortKey(ResultSet rs, String order) throws SQLException {
+        return getSortKey(rs.getString(1) + " " + rs.getString(2) + " " + rs.getString(3), order);
+    }
+
+    private static String getSortKey(String row, String order) {
+        String[] values = row.split(" ");
+        StringBuilder buff = new StringBuilder();
+        for (String o : order.split(", ")) {
+            char c = o.charAt(0);
+            buff.append(values[c == 'I' ? 0 : c == 'A' ? 1 : 2]).append(' ');
+        }
+        return buff.toString();
+    }
+
+    private void testExternalSort() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        int count = getSize(30000, 100000);
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, A INT, E ENUM('x', 'y', 'z'))");
+        stat.execute("INSERT INTO TEST SELECT X, MOD(X * 7919, 100), MOD(X, 3) FROM SYSTEM_RANGE(1, " + count + ")");
+        // small runs, and large runs that are sorted in parallel
+        for (int maxRows : new int[] { 100, count / 3 }) {
+            stat.execute("SET MAX_MEMORY_ROWS " + maxRows);
+            for (int workers : new int[] { 1, 4 }) {
+                stat.execute("SET MAX_PARALLEL_WORKERS " + workers);
+                ResultSet rs = stat.executeQuery("SELECT A, ID, E FROM TEST ORDER BY A DESC");
+                int rows = 0, lastA = Integer.MAX_VALUE, lastId = 0;
+                while (rs.next()) {
+                    int a = rs.getInt(1), id = rs.getInt(2);
+                    assertTrue(a <= lastA);
+                    // rows with the same value are in the order of the table
+                    if (a == lastA) {
+                        assertTrue(id > lastId);
+                    }
+                    assertEquals(String.valueOf((char) ('x' + id % 3)), rs.getString(3));
+                    lastA = a;
+                    lastId = id;
+                    rows++;
+                }
+                assertEquals(count, rows);
+                rs = stat.executeQuery("SELECT E, ID FROM TEST ORDER BY E, ID LIMIT 10 OFFSET " + (count / 2));
+                assertTrue(rs.next());
+                assertEquals("y", rs.getString(1));
+            }
+        }
+        // the result is read more than once
+        Statement stat2 = conn.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        ResultSet rs = stat2.executeQuery("SELECT ID FROM TEST ORDER BY MOD(ID, 10), ID");
+        for (int i = 0; i < 2; i++) {
+            long sum = 0;
+            int last = -1;
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                assertTrue(id % 10 > last % 10 || id % 10 == last % 10 && id > last);
+                last = id;
+                sum += id;
+            }
+            assertEquals((long) count * (count + 1) / 2, sum);
+            rs.beforeFirst();
+        }
+        stat.execute("SET MAX_PARALLEL_WORKERS 1");
+        conn.close();
+    }
+
+    private void testSpilledGroups() throws SQLException {
+        deleteDb("bigResult");
+        Connection conn = getConnection("bigResult");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, A INT, B VARCHAR, C DECIMAL(10, 1), E ENUM('x', 'y'))");
+        stat.execute("INSERT INTO TEST SELECT X, MOD(X * 7919, 3000), 'b' || MOD(X, 7), MOD(X, 100) / 10.0, "
+                + "MOD(X, 2) FROM SYSTEM_RANGE(1, 10000)");
+        stat.execute("UPDATE TEST SET A = NULL WHERE MOD(ID, 97) = 0");
+        String[] queries = {
+                "SELECT A, COUNT(*), COUNT(C), SUM(ID), AVG(C), MIN(B), MAX(ID) FROM TEST GROUP BY A",
+                "SELECT A, B, ROUND(STDDEV_POP(C), 6), ROUND(VAR_SAMP(ID), 3), BIT_OR(ID), EVERY(C > 1), "
+                        + "ANY(ID > 5000) FROM TEST GROUP BY A, B",
+                "SELECT A / 3, SUM(ID) FROM TEST GROUP BY A / 3 HAVING COUNT(*) > 3",
+                "SELECT A, COUNT(DISTINCT B), LISTAGG(B) WITHIN GROUP (ORDER BY ID) FROM TEST GROUP BY A",
+                "SELECT E, A, COUNT(*) FROM TEST GROUP BY E, A",
+                "SELECT A, SUM(ID) FROM TEST WHERE ID > 100 GROUP BY A",
+        };
+        String[] expected = new String[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            expected[i] = getGroupResult(stat, queries[i]);
+        }
+        stat.execute("SET MAX_MEMORY_ROWS 100");
+        for (int workers : new int[] { 1, 4 }) {
+            stat.execute("SET MAX_PARALLEL_WORKERS " + workers);
+            for (int i = 0; i < queries.length; i++) {
+                assertEquals(queries[i], expected[i], getGroupResult(stat, queries[i]));
+            }
+        }
+        stat.execute("SET MAX_PARALLEL_WORKERS 1");
+        conn.close();
+    }
+
+    private static String getGroupResult(Statement stat, String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        int columnCount = rs.getMetaData().getColumnCount();
+        StringBuilder builder = new StringBuilder();
+        while (rs.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                builder.append(rs.getString(i)).append(' ');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
     private void testOrderGroup() throws SQLException {
         deleteDb("bigResult");
         Connection conn = getConnection("bigResult");
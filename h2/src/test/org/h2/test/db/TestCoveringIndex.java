@@ -0,0 +1,180 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.h2.api.ErrorCode;
+import org.h2.test.TestBase;
+import org.h2.test.TestDb;
+
+/**
+ * Tests indexes with included columns (CREATE INDEX ... INCLUDE), and queries
+ * that only read the index, by comparing the results with a database without
+ * included columns.
+ */
+public class TestCoveringIndex extends TestDb {
+
+    private Connection conn, reference;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() throws SQLException {
+        if (!config.mvStore) {
+            testUnsupported();
+            return;
+        }
+        deleteDb("coveringIndex");
+        deleteDb("coveringIndexRef");
+        conn = getConnection("coveringIndex;VECTORIZED_EXECUTION=TRUE");
+        reference = getConnection("coveringIndexRef");
+        for (Connection c : new Connection[] { conn, reference }) {
+            Statement stat = c.createStatement();
+            stat.execute("create table test(id int primary key, a int, b varchar, c int)");
+            PreparedStatement prep = c.prepareStatement("insert into test values(?, ?, ?, ?)");
+            Random random = new Random(1);
+            for (int i = 0; i < 3000; i++) {
+                prep.setInt(1, i);
+                prep.setObject(2, random.nextInt(20) == 0 ? null : random.nextInt(500));
+                prep.setString(3, "b" + random.nextInt(100));
+                prep.setInt(4, random.nextInt(10));
+                prep.execute();
+            }
+        }
+        conn.createStatement().execute("create index idx_a on test(a) include(b, c)");
+        reference.createStatement().execute("create index idx_a on test(a)");
+        testCreateSQL();
+        testPlan();
+        testQueries();
+        testModification();
+        testDropColumn();
+        conn.close();
+        reference.close();
+        deleteDb("coveringIndex");
+        deleteDb("coveringIndexRef");
+    }
+
+    private void testUnsupported() throws SQLException {
+        deleteDb("coveringIndex");
+        Connection conn = getConnection("coveringIndex");
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, a int, b int)");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("create index idx_a on test(a) include(b)");
+        conn.close();
+        deleteDb("coveringIndex");
+    }
+
+    private void testCreateSQL() throws SQLException {
+        Statement stat = conn.createStatement();
+        ResultSet rs = stat.executeQuery("select sql from information_schema.indexes "
+                + "where index_name = 'IDX_A'");
+        assertTrue(rs.next());
+        assertEquals("CREATE INDEX \"PUBLIC\".\"IDX_A\" ON \"PUBLIC\".\"TEST\"(\"A\") INCLUDE(\"B\", \"C\")",
+                rs.getString(1));
+        assertThrows(ErrorCode.DUPLICATE_COLUMN_NAME_1, stat).
+                execute("create index idx_b on test(a, b) include(b)");
+        assertThrows(ErrorCode.DUPLICATE_COLUMN_NAME_1, stat).
+                execute("create index idx_b on test(a) include(b, b)");
+        assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, stat).
+                execute("create hash index idx_b on test(a) include(b)");
+        conn.close();
+        conn = getConnection("coveringIndex;VECTORIZED_EXECUTION=TRUE");
+        assertSameResult("select a, b, c from test where a between 10 and 20 order by a, b, c");
+    }
+
+    private void testPlan() throws SQLException {
+        // the index is smaller than the table
+        String plan = getResult(conn, "explain select b, c from test");
+        assertContains(plan, "IDX_A");
+        plan = getResult(reference, "explain select b, c from test");
+        assertContains(plan, "tableScan");
+        // the included columns are not sorted
+        plan = getResult(conn, "explain select a from test where b = 'b1'");
+        assertFalse(plan.contains("IDX_A: B"));
+    }
+
+    private void testQueries() throws SQLException {
+        assertSameResult("select a, b, c from test where a > 10 order by a, b, c");
+        assertSameResult("select b, c from test order by b, c");
+        assertSameResult("select id, b from test where a = 7 order by id");
+        assertSameResult("select _rowid_, c from test where a is null order by id");
+        assertSameResult("select a, count(*), sum(c), max(b) from test where a < 100 group by a order by a");
+        assertSameResult("select sum(c), count(b) from test where a between 100 and 200 and c > 3");
+        assertSameResult("select b, c from test where a > 400 and c = 5 order by b, c");
+        assertSameResult("select id, a, b, c from test where a = 3 and c < 5 order by id");
+    }
+
+    private void testModification() throws SQLException {
+        for (Connection c : new Connection[] { conn, reference }) {
+            Statement stat = c.createStatement();
+            stat.execute("update test set b = 'x' || b where mod(id, 3) = 0");
+            stat.execute("update test set c = c + 1 where a < 50");
+            stat.execute("delete from test where mod(id, 7) = 0");
+        }
+        testQueries();
+        for (Connection c : new Connection[] { conn, reference }) {
+            c.setAutoCommit(false);
+            c.createStatement().execute("update test set c = -c where a > 200");
+        }
+        testQueries();
+        for (Connection c : new Connection[] { conn, reference }) {
+            c.rollback();
+            c.setAutoCommit(true);
+        }
+        testQueries();
+        // the index is rebuilt from the existing rows
+        conn.createStatement().execute("create index idx_c on test(c) include(a, b)");
+        reference.createStatement().execute("create index idx_c on test(c)");
+        assertSameResult("select c, a, b from test where c > 5 order by c, a, b");
+    }
+
+    private void testDropColumn() throws SQLException {
+        Statement stat = conn.createStatement();
+        assertThrows(ErrorCode.COLUMN_IS_REFERENCED_1, stat).
+                execute("alter table test drop column b");
+        stat.execute("drop index idx_c");
+        stat.execute("drop index idx_a");
+        stat.execute("alter table test drop column b");
+    }
+
+    private void assertSameResult(String sql) throws SQLException {
+        String expected = getResult(reference, sql);
+        String actual = getResult(conn, sql);
+        assertEquals(sql, expected, actual);
+    }
+
+    private static String getResult(Connection conn, String sql) {
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(sql);
+            StringBuilder buff = new StringBuilder();
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    buff.append(rs.getString(i)).append(' ');
+                }
+                buff.append('\n');
+            }
+            return buff.toString();
+        } catch (SQLException e) {
+            return "error " + e.getErrorCode();
+        }
+    }
+
+}
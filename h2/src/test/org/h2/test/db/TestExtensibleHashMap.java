@@ -0,0 +1,192 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.h2.api.ErrorCode;
+import org.h2.index.ExtensibleHashMap;
+import org.h2.test.TestBase;
+import org.h2.test.TestDb;
+
+/**
+ * Tests the extensible hash map and the non-unique hash index based on it.
+ */
+public class TestExtensibleHashMap extends TestDb {
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() throws SQLException {
+        testAddGetRemove();
+        testSplit();
+        testDuplicates();
+        testRandomOperations();
+        testIndex();
+    }
+
+    private void testAddGetRemove() {
+        ExtensibleHashMap<Integer> map = new ExtensibleHashMap<>();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.get(1).length);
+        map.add(1, 10);
+        map.add(1, 11);
+        map.add(2, 20);
+        assertEquals(3, map.size());
+        assertTrue(map.containsKey(1));
+        assertFalse(map.containsKey(3));
+        long[] v = map.get(1);
+        Arrays.sort(v);
+        assertTrue(Arrays.equals(new long[] { 10, 11 }, v));
+        assertFalse(map.remove(1, 12));
+        assertFalse(map.remove(3, 10));
+        assertTrue(map.remove(1, 10));
+        assertTrue(Arrays.equals(new long[] { 11 }, map.get(1)));
+        assertEquals(2, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(0, map.get(2).length);
+    }
+
+    private void testSplit() {
+        ExtensibleHashMap<Integer> map = new ExtensibleHashMap<>();
+        assertEquals(0, map.getGlobalDepth());
+        assertEquals(1, map.getBucketCount());
+        int len = 100000;
+        for (int i = 0; i < len; i++) {
+            map.add(i, i);
+        }
+        assertEquals(len, map.size());
+        assertTrue(map.getGlobalDepth() > 10);
+        assertTrue(map.getBucketCount() > len / 32);
+        assertTrue(map.getBucketCount() <= 1 << map.getGlobalDepth());
+        for (int i = 0; i < len; i++) {
+            assertTrue(Arrays.equals(new long[] { i }, map.get(i)));
+        }
+        for (int i = 0; i < len; i += 2) {
+            assertTrue(map.remove(i, i));
+        }
+        for (int i = 0; i < len; i++) {
+            assertEquals(i % 2 == 0 ? 0 : 1, map.get(i).length);
+        }
+    }
+
+    private void testDuplicates() {
+        ExtensibleHashMap<String> map = new ExtensibleHashMap<>();
+        int len = 10000;
+        for (int i = 0; i < len; i++) {
+            map.add("x", i);
+            map.add("y" + i, i);
+        }
+        // duplicates are kept in overflow buckets and don't cause splits
+        assertTrue(map.getBucketCount() < len / 10);
+        long[] v = map.get("x");
+        assertEquals(len, v.length);
+        Arrays.sort(v);
+        for (int i = 0; i < len; i++) {
+            assertEquals(i, v[i]);
+        }
+        for (int i = 0; i < len; i += 3) {
+            assertTrue(map.remove("x", i));
+        }
+        assertEquals(len - (len + 2) / 3, map.get("x").length);
+        for (int i = 0; i < len; i++) {
+            assertEquals(1, map.get("y" + i).length);
+        }
+    }
+
+    private void testRandomOperations() {
+        Random r = new Random(1);
+        ExtensibleHashMap<Integer> map = new ExtensibleHashMap<>();
+        HashMap<Integer, ArrayList<Long>> expected = new HashMap<>();
+        long count = 0;
+        for (int i = 0; i < 100000; i++) {
+            int key = r.nextInt(2000);
+            long value = r.nextInt(10);
+            ArrayList<Long> list = expected.get(key);
+            if (list == null) {
+                list = new ArrayList<>();
+                expected.put(key, list);
+            }
+            if (r.nextBoolean()) {
+                map.add(key, value);
+                list.add(value);
+                count++;
+            } else {
+                boolean removed = list.remove(value);
+                assertEquals(removed, map.remove(key, value));
+                if (removed) {
+                    count--;
+                }
+            }
+            assertEquals(count, map.size());
+        }
+        for (Map.Entry<Integer, ArrayList<Long>> e : expected.entrySet()) {
+            long[] v = map.get(e.getKey());
+            Arrays.sort(v);
+            ArrayList<Long> list = e.getValue();
+            long[] x = new long[list.size()];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = list.get(i);
+            }
+            Arrays.sort(x);
+            assertTrue(Arrays.equals(x, v));
+        }
+    }
+
+    private void testIndex() throws SQLException {
+        deleteDb("extensibleHashMap");
+        // hash indexes are only used for PageStore tables
+        Connection conn = getConnection("extensibleHashMap;MV_STORE=FALSE");
+        Statement stat = conn.createStatement();
+        stat.execute("create memory table test(id int primary key, v int)");
+        stat.execute("create index idx_v on test(v) using extensible_hash");
+        stat.execute("insert into test select x, mod(x, 10) from system_range(1, 10000)");
+        ResultSet rs = stat.executeQuery("explain select * from test where v = 3");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_V");
+        rs = stat.executeQuery("select count(*) from test where v = 3");
+        rs.next();
+        assertEquals(1000, rs.getInt(1));
+        stat.execute("delete from test where id < 5000");
+        rs = stat.executeQuery("select count(*), min(id) from test where v = 3");
+        rs.next();
+        assertEquals(500, rs.getInt(1));
+        assertEquals(5003, rs.getInt(2));
+        rs = stat.executeQuery("select sql from information_schema.indexes where index_name = 'IDX_V'");
+        rs.next();
+        assertContains(rs.getString(1), "USING EXTENSIBLE_HASH");
+        assertThrows(ErrorCode.SYNTAX_ERROR_2, stat).
+                execute("create unique index idx_u on test(v) using extensible_hash");
+        stat.execute("alter table test add column name varchar");
+        rs = stat.executeQuery("select count(*) from test where v = 3");
+        rs.next();
+        assertEquals(500, rs.getInt(1));
+        stat.execute("truncate table test");
+        rs = stat.executeQuery("select count(*) from test where v = 3");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        stat.execute("drop table test");
+        conn.close();
+        deleteDb("extensibleHashMap");
+    }
+
+}
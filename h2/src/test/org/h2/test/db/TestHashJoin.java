@@ -0,0 +1,163 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.h2.test.TestBase;
+import org.h2.test.TestDb;
+
+/**
+ * Tests joins that use a temporary hash index for the inner table, by
+ * comparing the results with a database where hash joins are disabled.
+ */
+public class TestHashJoin extends TestDb {
+
+    private Connection conn, reference;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() throws SQLException {
+        deleteDb("hashJoin");
+        deleteDb("hashJoinRef");
+        conn = getConnection("hashJoin");
+        reference = getConnection("hashJoinRef;HASH_JOIN=FALSE");
+        for (Connection c : new Connection[] { conn, reference }) {
+            Statement stat = c.createStatement();
+            stat.execute("create table a(id int primary key, x int, y varchar, z bigint)");
+            stat.execute("create table b(id int primary key, x int, y varchar, z int)");
+            PreparedStatement prep = c.prepareStatement("insert into a values(?, ?, ?, ?)");
+            Random random = new Random(1);
+            for (int i = 0; i < 2000; i++) {
+                prep.setInt(1, i);
+                prep.setObject(2, random.nextInt(10) == 0 ? null : random.nextInt(500));
+                prep.setString(3, "y" + random.nextInt(5));
+                prep.setLong(4, random.nextInt(1000));
+                prep.execute();
+            }
+            prep = c.prepareStatement("insert into b values(?, ?, ?, ?)");
+            for (int i = 0; i < 1000; i++) {
+                prep.setInt(1, i);
+                prep.setObject(2, random.nextInt(10) == 0 ? null : random.nextInt(500));
+                prep.setString(3, "y" + random.nextInt(5));
+                prep.setInt(4, random.nextInt(1000));
+                prep.execute();
+            }
+        }
+        testPlan();
+        testJoins();
+        testMaxMemoryRows();
+        testModification();
+        conn.close();
+        reference.close();
+        deleteDb("hashJoin");
+        deleteDb("hashJoinRef");
+    }
+
+    private void testPlan() throws SQLException {
+        String plan = getResult(conn, "explain select * from a, b where a.x = b.x");
+        assertContains(plan, ".hashJoin");
+        plan = getResult(reference, "explain select * from a, b where a.x = b.x");
+        assertFalse(plan, plan.contains(".hashJoin"));
+        // not used for small tables
+        plan = getResult(conn, "explain select * from a, (select * from b limit 3) c where a.x = c.x");
+        assertFalse(plan, plan.contains(".hashJoin"));
+        // existing indexes are preferred
+        Statement stat = conn.createStatement();
+        stat.execute("create index idx_a_x on a(x)");
+        stat.execute("create index idx_b_x on b(x)");
+        plan = getResult(conn, "explain select * from a, b where a.x = b.x");
+        assertFalse(plan, plan.contains(".hashJoin"));
+        stat.execute("drop index idx_a_x");
+        stat.execute("drop index idx_b_x");
+        // a range on the join column does not need a table scan for each row
+        plan = getResult(conn, "explain analyze select count(*) from a, b where a.x = b.x and a.x > 250");
+        assertContains(plan, ".hashJoin");
+        assertSmaller(getScanCount(plan), 10_000);
+        plan = getResult(conn, "explain analyze select count(*) from a, b where a.x = b.x and b.x > 250");
+        assertContains(plan, ".hashJoin");
+        assertSmaller(getScanCount(plan), 10_000);
+    }
+
+    private static int getScanCount(String plan) {
+        int count = 0;
+        for (int i = 0; (i = plan.indexOf("scanCount: ", i)) >= 0;) {
+            i += "scanCount: ".length();
+            count += Integer.parseInt(plan.substring(i, plan.indexOf(' ', i)));
+        }
+        return count;
+    }
+
+    private void testJoins() throws SQLException {
+        assertSameResult("select count(*), sum(a.id), sum(b.id) from a, b where a.x = b.x");
+        assertSameResult("select a.id, b.id from a, b where a.x = b.x and a.y = b.y order by a.id, b.id");
+        assertSameResult("select a.id, b.id from a left join b on a.x = b.x and b.y = 'y1' order by a.id, b.id");
+        assertSameResult("select a.id, b.id from a, b where a.z = b.z order by a.id, b.id");
+        assertSameResult("select a.id, b.id from a, b where a.x = b.z order by a.id, b.id");
+        assertSameResult("select count(*) from a, b where a.x = b.x and b.x is null");
+        assertSameResult("select a.id, b.id from a, b where a.x = b.x and a.x > 250 order by a.id, b.id");
+        assertSameResult("select a.id, b.id from a, b where a.x = b.x and b.x > 250 order by a.id, b.id");
+        assertSameResult("select count(*) from a, b where a.x = b.x and b.x between 100 and 200 and b.x <> 150");
+        assertSameResult("select count(*) from a, b where a.x = b.x and a.x is null");
+        assertSameResult("select count(*) from a, b where a.y = b.y and a.x = b.x + 1");
+        assertSameResult("select count(*) from a, b where b.x in (a.x, a.z)");
+        assertSameResult("select count(*) from a where exists(select * from b where b.x = a.x)");
+    }
+
+    private void testMaxMemoryRows() throws SQLException {
+        Statement stat = conn.createStatement();
+        stat.execute("set max_memory_rows 100");
+        testJoins();
+        stat.execute("set max_memory_rows 100000");
+    }
+
+    private void testModification() throws SQLException {
+        for (Connection c : new Connection[] { conn, reference }) {
+            Statement stat = c.createStatement();
+            stat.execute("update b set z = (select count(*) from a where a.x = b.x) where mod(id, 7) = 0");
+            stat.execute("delete from b where id in (select b.id from a, b where a.x = b.x and a.z < 10)");
+        }
+        assertSameResult("select * from b order by id");
+        assertSameResult("select count(*), sum(a.id), sum(b.id) from a, b where a.x = b.x");
+    }
+
+    private void assertSameResult(String sql) throws SQLException {
+        String expected = getResult(reference, sql);
+        String actual = getResult(conn, sql);
+        assertEquals(sql, expected, actual);
+    }
+
+    private static String getResult(Connection conn, String sql) {
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(sql);
+            StringBuilder buff = new StringBuilder();
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    buff.append(rs.getString(i)).append(' ');
+                }
+                buff.append('\n');
+            }
+            return buff.toString();
+        } catch (SQLException e) {
+            return "error " + e.getErrorCode();
+        }
+    }
+
+}
@@ -18,11 +18,19 @@
 import java.util.concurrent.atomic.AtomicInteger;
 import org.h2.api.ErrorCode;
 import org.h2.command.dml.Select;
+import org.h2.engine.Constants;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.db.ValueDataType;
+import org.h2.mvstore.tx.VersionedValueType;
 import org.h2.result.SortOrder;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
 import org.h2.tools.SimpleResultSet;
+import org.h2.value.Value;
+import org.h2.value.ValueArray;
 import org.h2.value.ValueInt;
+import org.h2.value.ValueLong;
 
 /**
  * Index tests.
@@ -64,6 +72,7 @@ public void test() throws SQLException {
         testRandomized();
         testDescIndex();
         testHashIndex();
+        testPersistentHashIndex();
 
         if (config.networked && config.big) {
             return;
@@ -441,6 +450,58 @@ private void testHashIndex() throws SQLException {
         conn.close();
     }
 
+    private void testPersistentHashIndex() throws SQLException {
+        if (config.memory || !config.mvStore) {
+            return;
+        }
+        deleteDb("index");
+        reconnect();
+        stat.execute("create table test(id int primary key, a int, b varchar, c int)");
+        stat.execute("insert into test select x, mod(x, 10), 'x' || mod(x, 7), x from system_range(1, 1000)");
+        stat.execute("create unique hash index idx_c on test(c)");
+        stat.execute("create hash index idx_ab on test(a, b)");
+        ResultSet rs = stat.executeQuery("explain select count(*) from test where a = 3 and b = 'x2'");
+        rs.next();
+        assertContains(rs.getString(1), "IDX_AB");
+        reconnect();
+        rs = stat.executeQuery("select count(*) from test where a = 3 and b = 'x2'");
+        rs.next();
+        assertEquals(14, rs.getInt(1));
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).
+                execute("insert into test values(1001, 3, 'x2', 5)");
+        rs = stat.executeQuery("select id from test where c = 5");
+        rs.next();
+        assertEquals(5, rs.getInt(1));
+        stat.execute("delete from test where a = 3");
+        rs = stat.executeQuery("select count(*) from test where a = 3 and b = 'x2'");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        // range conditions can not use a hash index
+        rs = stat.executeQuery("select count(*) from test where a > 3 and b = 'x2'");
+        rs.next();
+        assertEquals(86, rs.getInt(1));
+        rs = stat.executeQuery("select id from information_schema.indexes where index_name = 'IDX_C'");
+        rs.next();
+        int indexId = rs.getInt(1);
+        conn.close();
+        if (config.cipher == null) {
+            // the hash code is calculated from the serialized values, and is
+            // part of the file format
+            MVStore s = MVStore.open(getBaseDir() + "/index" + Constants.SUFFIX_MV_FILE);
+            MVMap<Value, Object> map = s.openMap("hashIndex." + indexId,
+                    new MVMap.Builder<Value, Object>().keyType(new ValueDataType()).
+                    valueType(new VersionedValueType(new ValueDataType())));
+            Value[] key = ((ValueArray) map.ceilingKey(ValueArray.get(new Value[] {
+                    ValueInt.get(37), ValueLong.get(0) }))).getList();
+            assertEquals(37, key[0].getInt());
+            assertEquals(5, key[1].getLong());
+            s.close();
+        }
+        reconnect();
+        stat.execute("drop table test");
+        conn.close();
+    }
+
     private void reconnect() throws SQLException {
         if (conn != null) {
             conn.close();
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.h2.test.TestBase;
+import org.h2.test.TestDb;
+
+/**
+ * Tests batched index lookups of joins (SET BATCH_JOINS), by comparing the
+ * results with a database where batched joins are disabled.
+ */
+public class TestIndexLookupBatch extends TestDb {
+
+    private Connection conn, reference;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() throws SQLException {
+        deleteDb("indexLookupBatch");
+        deleteDb("indexLookupBatchRef");
+        conn = getConnection("indexLookupBatch;BATCH_JOINS=1;FORCE_JOIN_ORDER=1");
+        reference = getConnection("indexLookupBatchRef;FORCE_JOIN_ORDER=1");
+        for (Connection c : new Connection[] { conn, reference }) {
+            Statement stat = c.createStatement();
+            stat.execute("create table parent(id int primary key, name varchar)");
+            stat.execute("create table child(id int primary key, parent_id int, x int)");
+            stat.execute("create index idx_child_parent on child(parent_id, x)");
+            PreparedStatement prep = c.prepareStatement("insert into parent values(?, ?)");
+            Random random = new Random(1);
+            for (int i = 0; i < 1000; i++) {
+                prep.setInt(1, i * 2);
+                prep.setString(2, "p" + i);
+                prep.execute();
+            }
+            prep = c.prepareStatement("insert into child values(?, ?, ?)");
+            for (int i = 0; i < 5000; i++) {
+                prep.setInt(1, i);
+                int p = random.nextInt(10) == 0 ? random.nextInt(20000) : random.nextInt(2000);
+                prep.setObject(2, random.nextInt(20) == 0 ? null : p);
+                prep.setInt(3, random.nextInt(10));
+                prep.execute();
+            }
+        }
+        testPlan();
+        testJoins();
+        testMaxMemoryRows();
+        testUncommitted();
+        conn.close();
+        reference.close();
+        deleteDb("indexLookupBatch");
+        deleteDb("indexLookupBatchRef");
+    }
+
+    private void testPlan() throws SQLException {
+        if (!config.mvStore) {
+            return;
+        }
+        String plan = getResult(conn, "explain select * from child c inner join parent p on p.id = c.parent_id");
+        assertContains(plan, "batched:mvstore PUBLIC.PRIMARY_KEY");
+        plan = getResult(conn, "explain select * from parent p inner join child c on c.parent_id = p.id + 1");
+        assertContains(plan, "batched:mvstore PUBLIC.IDX_CHILD_PARENT");
+        plan = getResult(conn, "explain select * from child c inner join parent p on p._rowid_ = c.parent_id");
+        assertContains(plan, "batched:mvstore PUBLIC.PARENT.tableScan");
+    }
+
+    private void testJoins() throws SQLException {
+        assertSameResult("select c.id, p.name from child c inner join parent p on p.id = c.parent_id order by c.id");
+        assertSameResult("select c.id, p.name from child c left join parent p on p.id = c.parent_id order by c.id");
+        assertSameResult("select c.id, p.name from child c inner join parent p on p._rowid_ = c.parent_id "
+                + "order by c.id");
+        assertSameResult("select p.id, c.id from parent p left join child c on c.parent_id = p.id + 1 "
+                + "order by p.id, c.id");
+        assertSameResult("select p.id, c.id from parent p inner join child c on c.parent_id = p.id + 1 and c.x = 3 "
+                + "order by p.id, c.id");
+        assertSameResult("select p.id, c.id from parent p inner join child c on c.parent_id = p.id + 1 and c.x > 7 "
+                + "order by p.id, c.id");
+        assertSameResult("select p.id, count(c.id) from parent p left join child c "
+                + "on c.parent_id between p.id and p.id + 3 group by p.id order by p.id");
+        assertSameResult("select c.id, d.id from child c inner join child d on d.parent_id = c.parent_id "
+                + "where c.id < 300 order by c.id, d.id");
+        assertSameResult("select count(*), sum(d.id) from child c inner join child d on d.parent_id = c.x");
+        assertSameResult("select c.id, p.id, q.id from child c inner join parent p on p.id = c.parent_id "
+                + "inner join parent q on q.id = c.x * 2 order by c.id");
+    }
+
+    private void testMaxMemoryRows() throws SQLException {
+        Statement stat = conn.createStatement();
+        stat.execute("set max_memory_rows 10");
+        testJoins();
+        stat.execute("set max_memory_rows 100000");
+    }
+
+    private void testUncommitted() throws SQLException {
+        for (Connection c : new Connection[] { conn, reference }) {
+            c.setAutoCommit(false);
+            Statement stat = c.createStatement();
+            stat.execute("delete from parent where mod(id, 6) = 0");
+            stat.execute("update child set parent_id = parent_id + 1 where mod(id, 3) = 0");
+            stat.execute("insert into parent select id + 1, name from parent where mod(id, 10) = 2");
+        }
+        testJoins();
+        for (Connection c : new Connection[] { conn, reference }) {
+            c.rollback();
+            c.setAutoCommit(true);
+        }
+        testJoins();
+        if (config.mvStore) {
+            // changes of other sessions that are not committed are not visible
+            Connection conn2 = getConnection("indexLookupBatch");
+            conn2.setAutoCommit(false);
+            Statement stat = conn2.createStatement();
+            stat.execute("delete from parent where mod(id, 4) = 0");
+            stat.execute("update child set parent_id = parent_id + 2");
+            testJoins();
+            conn2.close();
+        }
+    }
+
+    private void assertSameResult(String sql) throws SQLException {
+        String expected = getResult(reference, sql);
+        String actual = getResult(conn, sql);
+        assertEquals(sql, expected, actual);
+    }
+
+    private static String getResult(Connection conn, String sql) {
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(sql);
+            StringBuilder buff = new StringBuilder();
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    buff.append(rs.getString(i)).append(' ');
+                }
+                buff.append('\n');
+            }
+            return buff.toString();
+        } catch (SQLException e) {
+            return "error " + e.getErrorCode();
+        }
+    }
+
+}
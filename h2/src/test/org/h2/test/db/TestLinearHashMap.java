@@ -1,12 +1,31 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
 package org.h2.test.db;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.h2.api.ErrorCode;
 import org.h2.index.LinearHashMap;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
+import org.h2.value.Value;
+import org.h2.value.ValueInt;
+import org.h2.value.ValueString;
 
-import java.sql.SQLException;
-
+/**
+ * Tests the linear hash map used by the hash index.
+ */
 public class TestLinearHashMap extends TestDb {
+
     /**
      * Run just this test.
      *
@@ -20,343 +39,191 @@ public static void main(String... a) throws Exception {
     public void test() throws SQLException {
         testPutAndGet();
         testLargePutAndGet();
-        testAllVariablesOnInsert();
+        testSplitAndMerge();
         testRemove();
         testPutAndRemove();
         testRemoveNotExist();
+        testRandomOperations();
+        testHashIndex();
     }
 
     private void testPutAndGet() {
-        LinearHashMap linearHashMap = new LinearHashMap();
-        linearHashMap.put(1, 1);
-        assertEquals(1, linearHashMap.get(1));
+        LinearHashMap<Integer> map = new LinearHashMap<>();
+        assertTrue(map.isEmpty());
+        assertEquals(LinearHashMap.NOT_FOUND, map.put(1, 1));
+        assertEquals(1, map.get(1));
+        assertEquals(1, map.put(1, 2));
+        assertEquals(2, map.get(1));
+        assertEquals(2, map.putIfAbsent(1, 3));
+        assertEquals(2, map.get(1));
+        assertEquals(1, map.size());
+        assertTrue(map.containsKey(1));
+        assertFalse(map.containsKey(2));
+        assertEquals(LinearHashMap.NOT_FOUND, map.get(2));
+        map.put(2, -1);
+        assertEquals(-1, map.get(2));
+        map.put(3, Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, map.get(3));
+        try {
+            map.put(4, LinearHashMap.NOT_FOUND);
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(LinearHashMap.NOT_FOUND, map.get(1));
     }
 
     private void testLargePutAndGet() {
-        LinearHashMap linearHashMap = new LinearHashMap();
+        LinearHashMap<Long> map = new LinearHashMap<>();
         int n = 5000;
-
-        // fill it up
-        for(long i = 0; i < n; i++) {
-            linearHashMap.put(i, i);
+        for (long i = 0; i < n; i++) {
+            map.put(i, i);
         }
-
-        // assert for each key value pair
-        for(long i = 0; i < n; i++) {
-            assertEquals(i, linearHashMap.get(i));
+        assertEquals(n, map.size());
+        for (long i = 0; i < n; i++) {
+            assertEquals(i, map.get(i));
         }
+        assertEquals(LinearHashMap.NOT_FOUND, map.get((long) n));
     }
 
-    private void testAllVariablesOnInsert() {
-        LinearHashMap linearHashMap = new LinearHashMap();
-
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(1, 1);
-        assertEquals(1, linearHashMap.get(1));
-        assertEquals(1, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(2, 2);
-        assertEquals(2, linearHashMap.get(2));
-        assertEquals(2, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(3, 3);
-        assertEquals(3, linearHashMap.get(3));
-        assertEquals(3, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(4, 4);
-        assertEquals(4, linearHashMap.get(4));
-        assertEquals(4, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(5, 5);
-        assertEquals(5, linearHashMap.get(5));
-        assertEquals(5, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(6, 6);
-        assertEquals(6, linearHashMap.get(6));
-        assertEquals(6, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(7, 7);
-        assertEquals(7, linearHashMap.get(7));
-        assertEquals(7, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(8, 8);
-        assertEquals(8, linearHashMap.get(8));
-        assertEquals(8, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(9, 9);
-        assertEquals(9, linearHashMap.get(9));
-        assertEquals(9, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(10, 10);
-        assertEquals(10, linearHashMap.get(10));
-        assertEquals(10, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(11, 11);
-        assertEquals(11, linearHashMap.get(11));
-        assertEquals(11, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(12, 12);
-        assertEquals(12, linearHashMap.get(12));
-        assertEquals(12, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(13, 13);
-        assertEquals(13, linearHashMap.get(13));
-        assertEquals(13, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(14, 14);
-        assertEquals(14, linearHashMap.get(14));
-        assertEquals(14, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(15, 15);
-        assertEquals(15, linearHashMap.get(15));
-        assertEquals(15, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(16, 16);
-        assertEquals(16, linearHashMap.get(16));
-        assertEquals(16, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(17, 17);
-        assertEquals(17, linearHashMap.get(17));
-        assertEquals(17, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(18, 18);
-        assertEquals(18, linearHashMap.get(18));
-        assertEquals(18, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(3, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(19, 19);
-        assertEquals(19, linearHashMap.get(19));
-        assertEquals(19, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(3, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        linearHashMap.put(20, 20);
-        assertEquals(20, linearHashMap.get(20));
-        assertEquals(20, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(3, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
+    private void testSplitAndMerge() {
+        LinearHashMap<Integer> map = new LinearHashMap<>();
+        int initialBuckets = map.getBucketCount();
+        int initialLevel = map.getLevel();
+        int last = initialBuckets;
+        for (int i = 0; i < 100000; i++) {
+            map.put(i, i);
+            int buckets = map.getBucketCount();
+            // buckets are split one at a time
+            assertTrue(buckets == last || buckets == last + 1);
+            last = buckets;
+            assertTrue(buckets >= 1 << map.getLevel());
+            assertTrue(buckets < 2 << map.getLevel());
+        }
+        assertTrue(map.getBucketCount() > 100000 / 2);
+        assertTrue(map.getLevel() > initialLevel);
+        for (int i = 0; i < 100000; i++) {
+            assertEquals(i, map.remove(i));
+            int buckets = map.getBucketCount();
+            assertTrue(buckets <= last && buckets >= last - 3);
+            last = buckets;
+        }
+        assertEquals(0, map.size());
+        assertEquals(initialBuckets, map.getBucketCount());
+        assertEquals(initialLevel, map.getLevel());
     }
 
     private void testRemove() {
-        LinearHashMap linearHashMap = new LinearHashMap();
-
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        // put 1
-        linearHashMap.put(1, 1);
-        assertEquals(1, linearHashMap.get(1));
-        assertEquals(1, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // remove 1
-        linearHashMap.remove(1);
-        assertEquals(null, linearHashMap.get(1));
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // should be empty again
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
+        LinearHashMap<Integer> map = new LinearHashMap<>();
+        map.put(1, 1);
+        assertEquals(1, map.size());
+        assertEquals(1, map.remove(1));
+        assertEquals(LinearHashMap.NOT_FOUND, map.get(1));
+        assertEquals(0, map.size());
+        assertTrue(map.isEmpty());
     }
 
     private void testPutAndRemove() {
-        LinearHashMap linearHashMap = new LinearHashMap();
-
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        // put 1
-        linearHashMap.put(1, 1);
-        assertEquals(1, linearHashMap.get(1));
-        assertEquals(1, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // remove 1
-        linearHashMap.remove(1);
-        assertEquals(null, linearHashMap.get(1));
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // should be empty again
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        // start over
-        // put 1
-        linearHashMap.put(1, 1);
-        assertEquals(1, linearHashMap.get(1));
-        assertEquals(1, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // put 2
-        linearHashMap.put(2, 2);
-        assertEquals(2, linearHashMap.get(2));
-        assertEquals(2, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // put 3
-        linearHashMap.put(3, 3);
-        assertEquals(3, linearHashMap.get(3));
-        assertEquals(3, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // put 4
-        linearHashMap.put(4, 4);
-        assertEquals(4, linearHashMap.get(4));
-        assertEquals(4, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-
-        // start removing
-        // remove 1
-        linearHashMap.remove(1);
-        assertEquals(null, linearHashMap.get(1));
-        assertEquals(3, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // remove 4
-        linearHashMap.remove(4);
-        assertEquals(null, linearHashMap.get(4));
-        assertEquals(2, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // put 4
-        linearHashMap.put(4, 4);
-        assertEquals(4, linearHashMap.get(4));
-        assertEquals(3, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // remove 3
-        linearHashMap.remove(3);
-        assertEquals(null, linearHashMap.get(3));
-        assertEquals(2, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // remove 2
-        linearHashMap.remove(2);
-        assertEquals(null, linearHashMap.get(2));
-        assertEquals(1, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // remove 1
-        linearHashMap.remove(4);
-        assertEquals(null, linearHashMap.get(4));
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        // should be empty again
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
+        LinearHashMap<Integer> map = new LinearHashMap<>();
+        map.put(1, 1);
+        map.remove(1);
+        assertEquals(0, map.size());
+        map.put(1, 1);
+        map.put(2, 2);
+        map.put(3, 3);
+        map.put(4, 4);
+        assertEquals(4, map.size());
+        assertEquals(1, map.remove(1));
+        assertEquals(LinearHashMap.NOT_FOUND, map.get(1));
+        assertEquals(3, map.size());
+        assertEquals(4, map.remove(4));
+        assertEquals(LinearHashMap.NOT_FOUND, map.get(4));
+        assertEquals(2, map.size());
+        map.put(4, 4);
+        assertEquals(4, map.get(4));
+        assertEquals(3, map.size());
+        map.remove(3);
+        map.remove(2);
+        map.remove(4);
+        assertEquals(0, map.size());
+        assertEquals(LinearHashMap.NOT_FOUND, map.get(2));
     }
 
     private void testRemoveNotExist() {
-        LinearHashMap linearHashMap = new LinearHashMap();
-
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
+        LinearHashMap<Integer> map = new LinearHashMap<>();
+        assertEquals(LinearHashMap.NOT_FOUND, map.remove(1));
+        assertEquals(0, map.size());
+        map.put(2, 2);
+        assertEquals(LinearHashMap.NOT_FOUND, map.remove(1));
+        assertEquals(1, map.size());
+    }
 
-        try {
-            // remove 1
-            linearHashMap.remove(1);
-            assertEquals(null, linearHashMap.get(1));
-            assertEquals(0, linearHashMap.getR());
-            assertEquals(2, linearHashMap.getI());
-            assertEquals(2, linearHashMap.getN());
-            assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
-        } catch(NullPointerException e) {
-            assertEquals(NullPointerException.class, e.getClass());
+    private void testRandomOperations() {
+        Random r = new Random(1);
+        LinearHashMap<Value> map = new LinearHashMap<>();
+        HashMap<Value, Long> expected = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            Value key = ValueString.get("k" + r.nextInt(5000));
+            long value = r.nextLong();
+            if (value == LinearHashMap.NOT_FOUND) {
+                continue;
+            }
+            switch (r.nextInt(4)) {
+            case 0:
+            case 1: {
+                Long old = expected.put(key, value);
+                assertEquals(old == null ? LinearHashMap.NOT_FOUND : old, map.put(key, value));
+                break;
+            }
+            case 2: {
+                Long old = expected.remove(key);
+                assertEquals(old == null ? LinearHashMap.NOT_FOUND : old, map.remove(key));
+                break;
+            }
+            default: {
+                Long old = expected.get(key);
+                assertEquals(old == null ? LinearHashMap.NOT_FOUND : old, map.get(key));
+            }
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Value, Long> e : expected.entrySet()) {
+            assertEquals(e.getValue().longValue(), map.get(e.getKey()));
         }
+        // keys that are equal must be found even if they are other instances
+        LinearHashMap<ValueInt> ints = new LinearHashMap<>();
+        ints.put(ValueInt.get(100000), 1);
+        assertEquals(1, ints.get(ValueInt.get(100000)));
+    }
 
-        // should be empty again
-        assertEquals(0, linearHashMap.getR());
-        assertEquals(2, linearHashMap.getI());
-        assertEquals(2, linearHashMap.getN());
-        assertEquals(linearHashMap.getN(), linearHashMap.getBuckets().size());
+    private void testHashIndex() throws SQLException {
+        deleteDb("linearHashMap");
+        // hash indexes are only used for PageStore tables
+        Connection conn = getConnection("linearHashMap;MV_STORE=FALSE");
+        Statement stat = conn.createStatement();
+        stat.execute("create memory table test(id int primary key hash, name varchar)");
+        stat.execute("insert into test select x, 'n' || x from system_range(1, 10000)");
+        ResultSet rs = stat.executeQuery("select name from test where id = 5000");
+        assertTrue(rs.next());
+        assertEquals("n5000", rs.getString(1));
+        assertThrows(ErrorCode.DUPLICATE_KEY_1, stat).execute("insert into test values(5000, 'x')");
+        stat.execute("delete from test where id > 100");
+        rs = stat.executeQuery("select count(*) from test where id = 5000");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        stat.execute("insert into test values(5000, 'y')");
+        rs = stat.executeQuery("select name from test where id = 5000");
+        assertTrue(rs.next());
+        assertEquals("y", rs.getString(1));
+        stat.execute("truncate table test");
+        rs = stat.executeQuery("select count(*) from test where id = 1");
+        rs.next();
+        assertEquals(0, rs.getInt(1));
+        stat.execute("drop table test");
+        conn.close();
+        deleteDb("linearHashMap");
     }
+
 }
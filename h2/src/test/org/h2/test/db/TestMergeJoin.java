@@ -0,0 +1,144 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.h2.test.TestBase;
+import org.h2.test.TestDb;
+
+/**
+ * Tests joins that read the inner index sequentially because the outer table
+ * is read in the order of the join column, by comparing the results with a
+ * database where merge joins are disabled.
+ */
+public class TestMergeJoin extends TestDb {
+
+    private Connection conn, reference;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() throws SQLException {
+        deleteDb("mergeJoin");
+        deleteDb("mergeJoinRef");
+        conn = getConnection("mergeJoin");
+        reference = getConnection("mergeJoinRef;MERGE_JOIN=FALSE");
+        for (Connection c : new Connection[] { conn, reference }) {
+            Statement stat = c.createStatement();
+            stat.execute("create table parent(id int primary key, name varchar)");
+            stat.execute("create table child(id int primary key, parent_id int, x int)");
+            stat.execute("create index idx_child_parent on child(parent_id, x)");
+            PreparedStatement prep = c.prepareStatement("insert into parent values(?, ?)");
+            Random random = new Random(1);
+            for (int i = 0; i < 1000; i++) {
+                prep.setInt(1, i * 2);
+                prep.setString(2, "p" + i);
+                prep.execute();
+            }
+            prep = c.prepareStatement("insert into child values(?, ?, ?)");
+            for (int i = 0; i < 5000; i++) {
+                prep.setInt(1, i);
+                int p = random.nextInt(10) == 0 ? random.nextInt(20000) : random.nextInt(2000);
+                prep.setObject(2, random.nextInt(20) == 0 ? null : p);
+                prep.setInt(3, random.nextInt(10));
+                prep.execute();
+            }
+        }
+        testPlan();
+        testJoins();
+        testMaxMemoryRows();
+        testModification();
+        conn.close();
+        reference.close();
+        deleteDb("mergeJoin");
+        deleteDb("mergeJoinRef");
+    }
+
+    private void testPlan() throws SQLException {
+        String sql = "explain select * from parent p inner join child c on c.parent_id = p.id";
+        assertContains(getResult(conn, sql), ".mergeJoin");
+        assertFalse(getResult(reference, sql).contains(".mergeJoin"));
+        // the outer table is not read in the order of the join column
+        sql = "explain select * from child c inner join parent p on p.id = c.x";
+        assertFalse(getResult(conn, sql).contains(".mergeJoin"));
+        // only one row of the outer table
+        sql = "explain select * from parent p inner join child c on c.parent_id = p.id where p.id = 10";
+        assertFalse(getResult(conn, sql).contains(".mergeJoin"));
+    }
+
+    private void testJoins() throws SQLException {
+        assertSameResult("select count(*), sum(p.id), sum(c.id) from parent p inner join child c "
+                + "on c.parent_id = p.id");
+        assertSameResult("select p.id, c.id from parent p left join child c on c.parent_id = p.id "
+                + "order by p.id, c.id");
+        assertSameResult("select p.id, c.id from parent p left join child c on c.parent_id = p.id and c.x = 3 "
+                + "order by p.id, c.id");
+        assertSameResult("select p.id, c.id from parent p left join child c on c.parent_id = p.id and c.x > 7 "
+                + "where p.id < 100 order by p.id, c.id");
+        assertSameResult("select count(*) from parent p inner join child c on c.parent_id = p._rowid_");
+        assertSameResult("select count(*) from parent p where exists(select * from child c where c.parent_id = p.id)");
+        assertSameResult("select p.id, (select count(*) from child c where c.parent_id = p.id) from parent p "
+                + "order by p.id");
+        assertSameResult("select count(*) from parent p, parent q inner join child c on c.parent_id = p.id "
+                + "where q.id < 10");
+        assertSameResult("select count(*) from child a inner join child b on b.parent_id = a.parent_id");
+    }
+
+    private void testMaxMemoryRows() throws SQLException {
+        Statement stat = conn.createStatement();
+        stat.execute("set max_memory_rows 2");
+        testJoins();
+        stat.execute("set max_memory_rows 100000");
+    }
+
+    private void testModification() throws SQLException {
+        for (Connection c : new Connection[] { conn, reference }) {
+            Statement stat = c.createStatement();
+            stat.execute("update parent p set name = (select count(*) from child c where c.parent_id = p.id)");
+            stat.execute("insert into child select id + 10000, id + 1, 0 from parent p "
+                    + "where exists(select * from child c where c.parent_id = p.id + 1)");
+        }
+        assertSameResult("select * from parent order by id");
+        assertSameResult("select * from child order by id");
+    }
+
+    private void assertSameResult(String sql) throws SQLException {
+        String expected = getResult(reference, sql);
+        String actual = getResult(conn, sql);
+        assertEquals(sql, expected, actual);
+    }
+
+    private static String getResult(Connection conn, String sql) {
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(sql);
+            StringBuilder buff = new StringBuilder();
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    buff.append(rs.getString(i)).append(' ');
+                }
+                buff.append('\n');
+            }
+            return buff.toString();
+        } catch (SQLException e) {
+            return "error " + e.getErrorCode();
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.h2.api.ErrorCode;
+import org.h2.test.TestBase;
+import org.h2.test.TestDb;
+
+/**
+ * Tests the parallel scan and aggregation of tables, by comparing the results
+ * with a database that uses one thread.
+ */
+public class TestParallelAggregation extends TestDb {
+
+    private Connection parallel, reference;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return config.mvStore;
+    }
+
+    @Override
+    public void test() throws SQLException {
+        deleteDb("parallel");
+        deleteDb("parallelRef");
+        parallel = getConnection("parallel");
+        reference = getConnection("parallelRef");
+        Statement stat = parallel.createStatement();
+        assertThrows(ErrorCode.INVALID_VALUE_2, stat).execute("set max_parallel_workers 0");
+        stat.execute("set max_parallel_workers 4");
+        for (Connection conn : new Connection[] { parallel, reference }) {
+            stat = conn.createStatement();
+            stat.execute("create table test(id int primary key, a int, b bigint, g varchar, d double)");
+            PreparedStatement prep = conn.prepareStatement("insert into test values(?, ?, ?, ?, ?)");
+            Random random = new Random(1);
+            for (int i = 0; i < 20000; i++) {
+                prep.setInt(1, i);
+                prep.setObject(2, random.nextInt(10) == 0 ? null : random.nextInt(100));
+                prep.setLong(3, random.nextInt(1000) - 500);
+                prep.setString(4, random.nextInt(20) == 0 ? null : "g" + random.nextInt(7));
+                prep.setDouble(5, random.nextInt(400) / 4.0);
+                prep.execute();
+            }
+        }
+        testAggregates();
+        testGroupBy();
+        testErrors();
+        parallel.close();
+        reference.close();
+        deleteDb("parallel");
+        deleteDb("parallelRef");
+    }
+
+    private void testAggregates() throws SQLException {
+        String select = "select count(*), count(a), sum(a), avg(a), min(a), max(a), " +
+                "sum(b), avg(b), min(b), max(b), sum(d), avg(d), min(d), max(d), sum(a * b) from test";
+        assertSameResult(select);
+        assertSameResult(select + " where a > 50");
+        assertSameResult(select + " where a < 0");
+        assertSameResult(select + " where id < 100 or d > 90");
+        assertSameResult("select count(*) from test where b = 3");
+    }
+
+    private void testGroupBy() throws SQLException {
+        assertSameResult("select g, count(*), sum(a), min(d), max(b) from test group by g");
+        assertSameResult("select a, g, count(*), avg(d) from test where b > 0 group by a, g");
+        assertSameResult("select count(*), g from test group by g order by count(*) desc, g");
+        assertSameResult("select a, sum(b) from test group by a order by a limit 5 offset 3");
+        assertSameResult("select _rowid_ / 10000, count(*) from test group by _rowid_ / 10000");
+        assertSameResult("select distinct count(*) from test group by a");
+        assertSameResult("select g, count(*) from test group by g having count(*) > 2000");
+    }
+
+    private void testErrors() throws SQLException {
+        assertSameResult("select sum(b * 10000000000000000) from test");
+        assertSameResult("select count(*) from test where d / (a - a) > 1");
+    }
+
+    private void assertSameResult(String sql) throws SQLException {
+        String expected = getResult(reference, sql);
+        String actual = getResult(parallel, sql);
+        assertEquals(sql, expected, actual);
+    }
+
+    private static String getResult(Connection conn, String sql) {
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(sql);
+            StringBuilder buff = new StringBuilder();
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columnCount; i++) {
+                    buff.append(rs.getString(i)).append(' ');
+                }
+                buff.append('\n');
+            }
+            return buff.toString();
+        } catch (SQLException e) {
+            return "error " + e.getErrorCode();
+        }
+    }
+
+}
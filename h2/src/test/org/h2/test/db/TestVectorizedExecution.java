@@ -0,0 +1,158 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import org.h2.test.TestBase;
+import org.h2.test.TestDb;
+
+/**
+ * Tests the vectorized (batch) execution of conditions and aggregates, by
+ * comparing the results with a database that evaluates one row at a time.
+ */
+public class TestVectorizedExecution extends TestDb {
+
+    private static final String[] CONDITIONS = {
+            "A > 10",
+            "A = 5 OR B < 100",
+            "A BETWEEN 10 AND 20",
+            "(A + B) * 2 > 50",
+            "D / 2 > 10.5",
+            "A IS NULL",
+            "B IS NOT NULL AND D IS NULL",
+            "A <> 3 AND (D < 0 OR D > 100)",
+            "S >= 3 OR A - B <= -3 OR D = 1.5",
+            "_ROWID_ < 100",
+            "A = B",
+            "ID * 2.5 < 1000",
+            "D * 2 >= A",
+    };
+
+    private Connection vector, reference;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() throws SQLException {
+        deleteDb("vector");
+        deleteDb("vectorRef");
+        vector = getConnection("vector;VECTORIZED_EXECUTION=TRUE");
+        reference = getConnection("vectorRef");
+        for (Connection conn : new Connection[] { vector, reference }) {
+            Statement stat = conn.createStatement();
+            stat.execute("create table test(id int primary key, a int, b bigint, s smallint, d double)");
+            PreparedStatement prep = conn.prepareStatement("insert into test values(?, ?, ?, ?, ?)");
+            Random random = new Random(1);
+            for (int i = 0; i < 5000; i++) {
+                prep.setInt(1, i);
+                setRandom(prep, 2, random, random.nextInt(50));
+                setRandom(prep, 3, random, random.nextInt(200) - 100);
+                setRandom(prep, 4, random, random.nextInt(5));
+                setRandom(prep, 5, random, random.nextInt(300) / 2.0 - 10);
+                prep.execute();
+            }
+        }
+        testAggregates();
+        testFlat();
+        testParameters();
+        testErrors();
+        vector.close();
+        reference.close();
+        deleteDb("vector");
+        deleteDb("vectorRef");
+    }
+
+    private static void setRandom(PreparedStatement prep, int index, Random random, Object value)
+            throws SQLException {
+        prep.setObject(index, random.nextInt(10) == 0 ? null : value);
+    }
+
+    private void testAggregates() throws SQLException {
+        String select = "select count(*), count(a), sum(a), avg(a), min(a), max(a), " +
+                "sum(b), avg(b), min(b), max(b), sum(s), min(s), " +
+                "sum(d), avg(d), min(d), max(d), sum(a * b), max(d * a - 1) from test";
+        assertSameResult(select);
+        for (String condition : CONDITIONS) {
+            assertSameResult(select + " where " + condition);
+        }
+        assertSameResult(select + " where a > 1000");
+        assertSameResult("select count(*) c, sum(a) s from test where a > 10 order by c");
+    }
+
+    private void testFlat() throws SQLException {
+        for (String condition : CONDITIONS) {
+            assertSameResult("select id, a, d, rownum() from test where " + condition + " order by id");
+            assertSameResult("select id, b from test where " + condition + " limit 7 offset 1000");
+            assertSameResult("select * from test where " + condition + " order by d, id limit 20");
+        }
+    }
+
+    private void testParameters() throws SQLException {
+        String sql = "select count(*), sum(b) from test where a > ? and d < ?";
+        PreparedStatement p1 = vector.prepareStatement(sql);
+        PreparedStatement p2 = reference.prepareStatement(sql);
+        for (int i = 0; i < 5; i++) {
+            for (PreparedStatement p : new PreparedStatement[] { p1, p2 }) {
+                p.setInt(1, i * 10);
+                p.setDouble(2, i * 30.5);
+            }
+            assertEquals(getResult(p2.executeQuery()), getResult(p1.executeQuery()));
+        }
+    }
+
+    private void testErrors() throws SQLException {
+        for (Connection conn : new Connection[] { vector, reference }) {
+            Statement stat = conn.createStatement();
+            stat.execute("create table big(id int primary key, x int, y bigint, d double)");
+            stat.execute("insert into big select x, x * 1000, x * 1000000000000000, x from system_range(1, 3000)");
+        }
+        assertSameResult("select sum(y), count(*) from big where y > 0");
+        assertSameResult("select count(*) from big where x * x > 0");
+        assertSameResult("select count(*) from big where y * 10 > 0");
+        assertSameResult("select sum(x * 100000) from big");
+        assertSameResult("select count(*) from big where d / (d - id) > 1");
+    }
+
+    private void assertSameResult(String sql) throws SQLException {
+        String expected = getResult(reference, sql);
+        String actual = getResult(vector, sql);
+        assertEquals(sql, expected, actual);
+    }
+
+    private static String getResult(Connection conn, String sql) {
+        try {
+            return getResult(conn.createStatement().executeQuery(sql));
+        } catch (SQLException e) {
+            return "error " + e.getErrorCode();
+        }
+    }
+
+    private static String getResult(ResultSet rs) throws SQLException {
+        StringBuilder buff = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                buff.append(rs.getString(i)).append(' ');
+            }
+            buff.append('\n');
+        }
+        return buff.toString();
+    }
+
+}
@@ -65,6 +65,7 @@ public void test() throws SQLException {
         testRootCause();
         testExecuteCall();
         testException();
+        testPartialFailure();
         testCoffee();
         deleteDb("batchUpdates");
     }
@@ -163,6 +164,50 @@ private void testException() throws SQLException {
         conn.close();
     }
 
+    private void testPartialFailure() throws SQLException {
+        deleteDb("batchUpdates");
+        conn = getConnection("batchUpdates");
+        stat = conn.createStatement();
+        stat.execute("create table test(id int primary key, name varchar)");
+        prep = conn.prepareStatement("insert into test values(?, ?)");
+        for (int i = 0; i < 100; i++) {
+            prep.setInt(1, i % 40 == 39 ? 0 : i);
+            prep.setString(2, "Hello " + i);
+            prep.addBatch();
+        }
+        try {
+            prep.executeBatch();
+            fail();
+        } catch (BatchUpdateException e) {
+            int[] counts = e.getUpdateCounts();
+            assertEquals(100, counts.length);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(i % 40 == 39 ? Statement.EXECUTE_FAILED : 1, counts[i]);
+            }
+            assertEquals(ErrorCode.DUPLICATE_KEY_1, e.getErrorCode());
+            SQLException next = e.getNextException();
+            assertEquals(ErrorCode.DUPLICATE_KEY_1, next.getErrorCode());
+            assertNotNull(next.getNextException());
+        }
+        ResultSet rs = stat.executeQuery("select count(*), max(name) from test");
+        rs.next();
+        assertEquals(98, rs.getInt(1));
+        assertEquals("Hello 99", rs.getString(2));
+        prep = conn.prepareStatement("update test set name = ? where id < ?");
+        prep.setString(1, "x");
+        prep.setInt(2, 10);
+        prep.addBatch();
+        prep.setString(1, "y");
+        prep.setInt(2, 0);
+        prep.addBatch();
+        int[] counts = prep.executeBatch();
+        assertEquals(2, counts.length);
+        assertEquals(10, counts[0]);
+        assertEquals(0, counts[1]);
+        assertEquals(0, prep.executeBatch().length);
+        conn.close();
+    }
+
     private void testCoffee() throws SQLException {
         deleteDb("batchUpdates");
         conn = getConnection("batchUpdates");
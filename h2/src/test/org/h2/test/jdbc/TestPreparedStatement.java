@@ -28,12 +28,15 @@
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.h2.api.ErrorCode;
 import org.h2.api.Interval;
 import org.h2.api.IntervalQualifier;
 import org.h2.api.Trigger;
 import org.h2.engine.SysProperties;
+import org.h2.jdbc.JdbcPreparedStatement;
 import org.h2.message.DbException;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
@@ -162,6 +165,8 @@ public void test() throws Exception {
         testToString(conn);
         testExecuteUpdateCall(conn);
         testPrepareExecute(conn);
+        testExecuteUpdateAsync(conn);
+        testExecuteUpdateAsyncPipelined(conn);
         testEnum(conn);
         testUUID(conn);
         testUUIDAsJavaObject(conn);
@@ -319,6 +324,64 @@ private void testExecuteUpdateCall(Connection conn) throws SQLException {
                 executeUpdate("CALL HASH('SHA256', STRINGTOUTF8('Password'), 1000)");
     }
 
+    private void testExecuteUpdateAsync(Connection conn) throws Exception {
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, NAME VARCHAR)");
+        conn.setAutoCommit(false);
+        JdbcPreparedStatement prep = conn.prepareStatement("INSERT INTO TEST VALUES(?, ?)")
+                .unwrap(JdbcPreparedStatement.class);
+        Future<?>[] updates = new Future<?>[10];
+        for (int i = 0; i < updates.length; i++) {
+            prep.setInt(1, i == 5 ? 4 : i);
+            prep.setString(2, "Hello " + i);
+            updates[i] = prep.executeUpdateAsync();
+        }
+        JdbcPreparedStatement update = conn.prepareStatement("UPDATE TEST SET NAME = ? WHERE ID < ?")
+                .unwrap(JdbcPreparedStatement.class);
+        update.setString(1, "World");
+        update.setInt(2, 3);
+        Future<Integer> count = update.executeUpdateAsync();
+        conn.commit();
+        for (int i = 0; i < updates.length; i++) {
+            assertTrue(updates[i].isDone());
+            if (i == 5) {
+                try {
+                    updates[i].get();
+                    fail();
+                } catch (ExecutionException e) {
+                    assertEquals(ErrorCode.DUPLICATE_KEY_1, ((SQLException) e.getCause()).getErrorCode());
+                }
+            } else {
+                assertEquals(1, ((Integer) updates[i].get()).intValue());
+            }
+        }
+        assertEquals(3, count.get().intValue());
+        conn.setAutoCommit(true);
+        ResultSet rs = stat.executeQuery("SELECT COUNT(*), COUNT(NULLIF(NAME, 'World')) FROM TEST");
+        rs.next();
+        assertEquals(9, rs.getInt(1));
+        assertEquals(6, rs.getInt(2));
+        prep.setInt(1, 10);
+        prep.setString(2, "Hello");
+        assertEquals(1, prep.executeUpdateAsync().get().intValue());
+        stat.execute("DROP TABLE TEST");
+    }
+
+    private void testExecuteUpdateAsyncPipelined(Connection conn) throws Exception {
+        // the responses don't fit into the socket buffers
+        JdbcPreparedStatement prep = conn.prepareStatement("SET @A = ?").unwrap(JdbcPreparedStatement.class);
+        int count = 2_000_000;
+        Future<Integer> update = null;
+        for (int i = 0; i < count; i++) {
+            prep.setInt(1, i);
+            update = prep.executeUpdateAsync();
+        }
+        assertEquals(0, update.get().intValue());
+        ResultSet rs = conn.createStatement().executeQuery("CALL @A");
+        rs.next();
+        assertEquals(count - 1, rs.getInt(1));
+    }
+
     private void testPrepareExecute(Connection conn) throws SQLException {
         Statement stat = conn.createStatement();
         stat.execute("prepare test(int, int) as select ?1*?2");
@@ -84,6 +84,7 @@ public void test() throws Exception {
         testColumnLabelColumnName();
         testAbsolute();
         testFetchSize();
+        testFetchBatches();
         testOwnUpdates();
         testUpdatePrimaryKey();
         testFindColumn();
@@ -424,6 +425,69 @@ private void testFetchSize() throws SQLException {
         assertEquals(a + 1, b);
     }
 
+    private void testFetchBatches() throws SQLException {
+        stat.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, A TINYINT, B SMALLINT, " +
+                "C BIGINT, NAME VARCHAR, D DECIMAL(10, 2), N VARCHAR)");
+        PreparedStatement prep = conn.prepareStatement(
+                "INSERT INTO TEST VALUES(?, ?, ?, ?, ?, ?, NULL)");
+        for (int i = 0; i < 1000; i++) {
+            prep.setInt(1, i % 2 == 0 ? i : -i);
+            prep.setInt(2, i % 200 - 100);
+            if (i % 7 == 0) {
+                prep.setNull(3, Types.SMALLINT);
+            } else {
+                prep.setInt(3, i * 31);
+            }
+            prep.setLong(4, Long.MAX_VALUE - i * 12345678901L);
+            if (i % 5 == 0) {
+                prep.setNull(5, Types.VARCHAR);
+            } else {
+                prep.setString(5, "Hello " + (i % 3) + " \u00e4\u20ac");
+            }
+            prep.setBigDecimal(6, new BigDecimal(i).movePointLeft(2));
+            prep.execute();
+        }
+        Statement stat2 = conn.createStatement();
+        stat2.setFetchSize(37);
+        ResultSet rs = stat2.executeQuery("SELECT * FROM TEST ORDER BY ABS(ID)");
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(rs.next());
+            assertEquals(i % 2 == 0 ? i : -i, rs.getInt(1));
+            assertEquals(i % 200 - 100, rs.getByte(2));
+            if (i % 7 == 0) {
+                assertEquals(0, rs.getShort(3));
+                assertTrue(rs.wasNull());
+            } else {
+                assertEquals(i * 31, rs.getShort(3));
+            }
+            assertEquals(Long.MAX_VALUE - i * 12345678901L, rs.getLong(4));
+            assertEquals(i % 5 == 0 ? null : "Hello " + (i % 3) + " \u00e4\u20ac",
+                    rs.getString(5));
+            assertEquals(new BigDecimal(i).movePointLeft(2), rs.getBigDecimal(6));
+            assertNull(rs.getString(7));
+            if (i % 100 == 0) {
+                // another request while the next rows may be requested
+                assertEquals(1000, getInt(stat, "SELECT COUNT(*) FROM TEST"));
+            }
+        }
+        assertFalse(rs.next());
+        // close before all rows are read
+        rs = stat2.executeQuery("SELECT * FROM TEST");
+        for (int i = 0; i < 50; i++) {
+            assertTrue(rs.next());
+        }
+        rs.close();
+        assertEquals(1000, getInt(stat, "SELECT COUNT(*) FROM TEST"));
+        stat2.close();
+        stat.execute("DROP TABLE TEST");
+    }
+
+    private static int getInt(Statement stat, String sql) throws SQLException {
+        ResultSet rs = stat.executeQuery(sql);
+        rs.next();
+        return rs.getInt(1);
+    }
+
     private void testOwnUpdates() throws SQLException {
         DatabaseMetaData meta = conn.getMetaData();
         for (int i = 0; i < 3; i++) {
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2004-2019 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.store;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.h2.mvstore.FileStore;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.cache.CacheLongKeyOffHeap;
+import org.h2.store.fs.FileUtils;
+import org.h2.test.TestBase;
+
+/**
+ * Tests the off-heap cache.
+ */
+public class TestCacheLongKeyOffHeap extends TestBase {
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().test();
+    }
+
+    @Override
+    public void test() throws Exception {
+        testGetPut();
+        testRandomOperations();
+        testLimitMemory();
+        testFrequentlyUsed();
+        testStore();
+    }
+
+    private void testGetPut() {
+        CacheLongKeyOffHeap cache = new CacheLongKeyOffHeap(1024 * 1024, 4);
+        assertNull(cache.get(1));
+        cache.put(1, ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        ByteBuffer buff = ByteBuffer.wrap(new byte[] { 0, 4, 5, 6, 0 });
+        buff.position(1);
+        buff.limit(4);
+        cache.put(2, buff);
+        assertEquals(1, buff.position());
+        assertEquals(2, cache.size());
+        assertEquals(new byte[] { 1, 2, 3 }, cache.get(1).array());
+        assertEquals(new byte[] { 4, 5, 6 }, cache.get(2).array());
+        // entries are not replaced
+        cache.put(1, ByteBuffer.wrap(new byte[] { 7 }));
+        assertEquals(new byte[] { 1, 2, 3 }, cache.get(1).array());
+        // entries larger than a quarter of a segment are not added
+        cache.put(3, ByteBuffer.allocate(200 * 1024));
+        assertNull(cache.get(3));
+        cache.put(4, ByteBuffer.allocate(0));
+        assertEquals(0, cache.get(4).remaining());
+        assertEquals(4, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getUsedMemory());
+        assertNull(cache.get(1));
+    }
+
+    private void testRandomOperations() {
+        Random r = new Random(1);
+        for (int test = 0; test < 20; test++) {
+            CacheLongKeyOffHeap cache = new CacheLongKeyOffHeap(4096 + r.nextInt(20000), 1 << r.nextInt(3));
+            HashMap<Long, byte[]> map = new HashMap<>();
+            for (int i = 0; i < 10000; i++) {
+                long key = 1 + r.nextInt(300);
+                if (r.nextBoolean()) {
+                    byte[] data = new byte[r.nextInt(300)];
+                    r.nextBytes(data);
+                    if (!map.containsKey(key)) {
+                        map.put(key, data);
+                    }
+                    cache.put(key, ByteBuffer.wrap(map.get(key)));
+                } else {
+                    ByteBuffer buff = cache.get(key);
+                    if (buff != null) {
+                        assertEquals(map.get(key), buff.array());
+                    }
+                }
+                assertTrue(cache.getUsedMemory() <= cache.getMaxMemory());
+            }
+            // reading an entry can remove other entries
+            int size = cache.size(), count = 0;
+            for (long key : map.keySet()) {
+                if (cache.get(key) != null) {
+                    count++;
+                }
+            }
+            assertTrue(count > 0 && count <= size);
+        }
+    }
+
+    private void testLimitMemory() {
+        CacheLongKeyOffHeap cache = new CacheLongKeyOffHeap(64 * 1024, 1);
+        for (int i = 1; i <= 1000; i++) {
+            cache.put(i, ByteBuffer.allocate(1000));
+            assertTrue(cache.getUsedMemory() <= 64 * 1024);
+        }
+        assertTrue(cache.size() > 50 && cache.size() < 70);
+        // the oldest entries were removed
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(1000));
+    }
+
+    private void testFrequentlyUsed() {
+        CacheLongKeyOffHeap cache = new CacheLongKeyOffHeap(64 * 1024, 1);
+        for (int i = 1; i <= 1000; i++) {
+            cache.put(i, ByteBuffer.allocate(1000));
+            // entry 1 is read often, and therefore not removed
+            assertNotNull(cache.get(1));
+        }
+        assertNull(cache.get(2));
+    }
+
+    private void testStore() {
+        String fileName = getBaseDir() + "/" + getTestName() + ".h3";
+        FileUtils.delete(fileName);
+        MVStore s = new MVStore.Builder().fileName(fileName).pageSplitSize(1000).open();
+        MVMap<Integer, String> map = s.openMap("data");
+        for (int i = 0; i < 10000; i++) {
+            map.put(i, "Hello " + i);
+        }
+        s.close();
+        s = new MVStore.Builder().fileName(fileName).cacheSize(0).offHeapCacheSize(4).open();
+        CacheLongKeyOffHeap cache = s.getOffHeapCache();
+        assertNotNull(cache);
+        FileStore fileStore = s.getFileStore();
+        map = s.openMap("data");
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("Hello " + i, map.get(i));
+        }
+        long reads = fileStore.getReadCount();
+        assertTrue(cache.size() > 0);
+        long hits = cache.getHits();
+        for (int i = 0; i < 10000; i++) {
+            assertEquals("Hello " + i, map.get(i));
+        }
+        // all pages are read from the off-heap cache
+        assertEquals(reads, fileStore.getReadCount());
+        assertTrue(cache.getHits() > hits);
+        s.close();
+        FileUtils.delete(fileName);
+    }
+
+}
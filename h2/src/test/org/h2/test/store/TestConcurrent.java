@@ -53,6 +53,7 @@ public void test() throws Exception {
         testConcurrentDataType();
         testConcurrentAutoCommitAndChange();
         testConcurrentReplaceAndRead();
+        testConcurrentAppend();
         testConcurrentChangeAndCompact();
         testConcurrentChangeAndGetVersion();
         testConcurrentFree();
@@ -289,6 +290,53 @@ public void call() {
         s.close();
     }
 
+    private void testConcurrentAppend() throws InterruptedException {
+        MVStore s = new MVStore.Builder().open();
+        final MVMap<Integer, Integer> map = s.openMap("data",
+                new MVMap.Builder<Integer, Integer>().concurrentAppend());
+        final AtomicInteger nextKey = new AtomicInteger();
+        final int count = 20_000;
+        Task[] tasks = new Task[4];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new Task() {
+                @Override
+                public void call() {
+                    int key;
+                    while ((key = nextKey.getAndIncrement()) < count) {
+                        if (!map.tryAppend(key, key)) {
+                            // a higher key was added first
+                            assertNull(map.put(key, key));
+                        }
+                    }
+                }
+            };
+            tasks[i].execute();
+        }
+        Random r = new Random(1);
+        int key;
+        while ((key = nextKey.get()) < count) {
+            if (key > 0) {
+                // added entries are visible, also while they are buffered
+                int k = r.nextInt(key);
+                Integer v = map.get(k);
+                assertTrue(v == null || v == k);
+            }
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        assertFalse(map.tryAppend(count - 1, 0));
+        assertEquals(count, map.size());
+        int expected = 0;
+        for (Map.Entry<Integer, Integer> e : map.entrySet()) {
+            assertEquals(expected, e.getKey().intValue());
+            assertEquals(expected, e.getValue().intValue());
+            expected++;
+        }
+        assertEquals(count, expected);
+        s.close();
+    }
+
     private void testConcurrentChangeAndCompact() throws InterruptedException {
         String fileName = "memFS:" + getTestName();
         FileUtils.delete(fileName);
@@ -9,7 +9,9 @@
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -18,6 +20,8 @@
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import org.h2.compress.CompressDictionary;
+import org.h2.compress.CompressLZ4;
 import org.h2.mvstore.Chunk;
 import org.h2.mvstore.Cursor;
 import org.h2.mvstore.DataUtils;
@@ -58,6 +62,8 @@ public void test() throws Exception {
         testEntrySet();
         testCompressEmptyPage();
         testCompressed();
+        testCompressedPerMap();
+        testKeyPrefixCompression();
         testFileFormatExample();
         testMaxChunkLength();
         testCacheInfo();
@@ -84,6 +90,7 @@ public void test() throws Exception {
         testFileHeader();
         testFileHeaderCorruption();
         testIndexSkip();
+        testCursorSeek();
         testMinMaxNextKey();
         testStoreVersion();
         testIterateOldVersion();
@@ -106,6 +113,7 @@ public void test() throws Exception {
         testRandom();
         testKeyValueClasses();
         testIterate();
+        testSplitKeys();
         testCloseTwice();
         testSimple();
 
@@ -256,6 +264,96 @@ private void testCompressed() {
         }
     }
 
+    private void testCompressedPerMap() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        ArrayList<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            samples.add(getCompressedPerMapValue(i).getBytes());
+        }
+        byte[] dictionary = CompressDictionary.train(samples, 4096);
+        long lastSize = 0;
+        for (int test = 0; test < 3; test++) {
+            FileUtils.delete(fileName);
+            MVMap.Builder<Integer, String> builder = new MVMap.Builder<>();
+            if (test == 1) {
+                builder.compressor(new CompressLZ4());
+            } else if (test == 2) {
+                builder.compressor(new CompressDictionary(dictionary));
+            }
+            MVStore s = new MVStore.Builder().fileName(fileName).open();
+            MVMap<Integer, String> map = s.openMap("data", builder);
+            for (int i = 0; i < 1000; i++) {
+                map.put(i, getCompressedPerMapValue(i));
+            }
+            s.close();
+            long size = FileUtils.size(fileName);
+            if (test > 0) {
+                assertTrue(size < lastSize);
+            }
+            lastSize = size;
+            // the codec is stored in the metadata
+            s = new MVStore.Builder().fileName(fileName).open();
+            // older versions can't read maps with a codec
+            assertEquals(test == 0 ? "null" : "2", String.valueOf(s.getStoreHeader().get("formatRead")));
+            map = s.openMap("data");
+            for (int i = 1000; i < 2000; i++) {
+                map.put(i, getCompressedPerMapValue(i));
+            }
+            s.close();
+            s = new MVStore.Builder().fileName(fileName).open();
+            map = s.openMap("data");
+            for (int i = 0; i < 2000; i++) {
+                assertEquals(getCompressedPerMapValue(i), map.get(i));
+            }
+            s.close();
+        }
+    }
+
+    private void testKeyPrefixCompression() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        long lastSize = 0;
+        for (int test = 0; test < 2; test++) {
+            FileUtils.delete(fileName);
+            StringDataType type = test == 0 ? StringDataType.INSTANCE : StringDataType.PREFIX_INSTANCE;
+            MVStore s = new MVStore.Builder().fileName(fileName).open();
+            MVMap<String, String> map = s.openMap("data",
+                    new MVMap.Builder<String, String>().keyType(type).valueType(StringDataType.INSTANCE));
+            for (int i = 0; i < 2000; i++) {
+                map.put("/home/user/documents/projects/" + (i / 100) + "/file" + i, "");
+            }
+            map.put("", "");
+            s.close();
+            long size = FileUtils.size(fileName);
+            if (test > 0) {
+                assertTrue(size < lastSize);
+            }
+            lastSize = size;
+            // keys in both formats can be read
+            s = new MVStore.Builder().fileName(fileName).open();
+            map = s.openMap("data", new MVMap.Builder<String, String>().
+                    keyType(test == 0 ? StringDataType.PREFIX_INSTANCE : StringDataType.INSTANCE).
+                    valueType(StringDataType.INSTANCE));
+            map.put("/home/user/documents/projects/0/file", "");
+            s.close();
+            s = new MVStore.Builder().fileName(fileName).open();
+            map = s.openMap("data", new MVMap.Builder<String, String>().
+                    keyType(StringDataType.INSTANCE).valueType(StringDataType.INSTANCE));
+            assertEquals(2002, map.size());
+            assertEquals("", map.firstKey());
+            assertEquals("/home/user/documents/projects/0/file", map.higherKey(""));
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(map.containsKey("/home/user/documents/projects/" + (i / 100) + "/file" + i));
+            }
+            s.close();
+        }
+    }
+
+    private static String getCompressedPerMapValue(int i) {
+        return "{\"id\": " + i + ", \"name\": \"customer " + (i * 7919 % 1000)
+                + "\", \"status\": \"" + (i % 3 == 0 ? "active" : "inactive")
+                + "\", \"country\": \"Switzerland\"}";
+    }
+
     private void testFileFormatExample() {
         String fileName = getBaseDir() + "/" + getTestName();
         FileUtils.delete(fileName);
@@ -1074,6 +1172,31 @@ private void testIndexSkip() {
         assertEquals(map.size(), map.keyList().size());
     }
 
+    private void testCursorSeek() {
+        MVStore s = openStore(null, 4);
+        MVMap<Integer, Integer> map = s.openMap("test");
+        for (int i = 0; i < 1000; i += 2) {
+            map.put(i, 10 * i);
+        }
+        Random r = new Random(1);
+        Cursor<Integer, Integer> c = map.cursor(null);
+        for (int i = 0; i < 1000; i++) {
+            // mostly ascending, sometimes backwards or beyond the end
+            int from = r.nextInt(10) == 0 ? r.nextInt(1100) - 50 : Math.min(1100, i + r.nextInt(20));
+            int to = from + r.nextInt(10);
+            c.seek(from, to);
+            for (int k = Math.max(0, from + (from & 1)); k <= to && k < 1000; k += 2) {
+                assertTrue(c.hasNext());
+                assertEquals(k, c.next().intValue());
+                assertEquals(10 * k, c.getValue().intValue());
+            }
+            assertFalse(c.hasNext());
+        }
+        c.seek(null, null);
+        assertEquals(0, c.next().intValue());
+        s.close();
+    }
+
     private void testMinMaxNextKey() {
         MVStore s = openStore(null);
         MVMap<Integer, Integer> map = s.openMap("test");
@@ -1963,6 +2086,29 @@ private void testKeyValueClasses() {
         s.close();
     }
 
+    private void testSplitKeys() {
+        MVStore s = new MVStore.Builder().pageSplitSize(100).open();
+        MVMap<Integer, Integer> m = s.openMap("data");
+        assertEquals(0, m.getSplitKeys(8).size());
+        for (int i = 0; i < 10000; i++) {
+            m.put(i, i);
+        }
+        for (int count = 1; count < 100; count *= 3) {
+            List<Integer> keys = m.getSplitKeys(count);
+            assertTrue(keys.size() < count);
+            int last = -1;
+            for (int k : keys) {
+                assertTrue(k > last);
+                assertTrue(m.containsKey(k));
+                last = k;
+            }
+            if (count > 1) {
+                assertTrue(keys.size() > 0);
+            }
+        }
+        s.close();
+    }
+
     private void testIterate() {
         String fileName = getBaseDir() + "/" + getTestName();
         FileUtils.delete(fileName);
@@ -18,6 +18,7 @@
 import java.sql.SQLException;
 import java.sql.Savepoint;
 import java.sql.Statement;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.h2.api.ErrorCode;
@@ -70,6 +71,10 @@ public void test() throws Exception {
         testTemporaryTables();
         testUniqueIndex();
         testSecondaryIndex();
+        testIndexPrefixCompression();
+        testColumnar();
+        testZoneMap();
+        testZoneMapConcurrentSum();
         testGarbageCollectionForLOB();
         testSpatial();
         testCount();
@@ -443,6 +448,229 @@ private void testSecondaryIndex() throws SQLException {
         conn.close();
     }
 
+    private void testIndexPrefixCompression() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        String fileName = getBaseDir() + "/" + getTestName() + Constants.SUFFIX_MV_FILE;
+        long lastSize = 0;
+        for (int test = 0; test < 2; test++) {
+            deleteDb(getTestName());
+            String url = getTestName() + ";MV_STORE=TRUE";
+            Connection conn = getConnection(test == 0 ? url : url + ";INDEX_PREFIX_COMPRESSION=TRUE");
+            Statement stat = conn.createStatement();
+            stat.execute("create table test(id int primary key, url varchar, name varchar_ignorecase)");
+            stat.execute("create index idx_url on test(url)");
+            stat.execute("create index idx_name on test(name desc, id)");
+            stat.execute("insert into test select x, " +
+                    "'https://www.example.com/documents/archive/' || (x / 100) || '/page-' || x || '.html', " +
+                    "'Customer Name ' || mod(x, 500) from system_range(1, 20000)");
+            stat.execute("shutdown compact");
+            long size = FileUtils.size(fileName);
+            if (test > 0) {
+                assertTrue(size < lastSize);
+            }
+            lastSize = size;
+            // pages in both formats can be read
+            conn = getConnection(test == 0 ? url + ";INDEX_PREFIX_COMPRESSION=TRUE" : url);
+            stat = conn.createStatement();
+            stat.execute("insert into test values(0, 'https://www.example.com/', 'CUSTOMER NAME 1')");
+            ResultSet rs = stat.executeQuery("select id from test " +
+                    "where url = 'https://www.example.com/documents/archive/12/page-1234.html'");
+            assertTrue(rs.next());
+            assertEquals(1234, rs.getInt(1));
+            assertFalse(rs.next());
+            rs = stat.executeQuery("select count(*) from test " +
+                    "where url like 'https://www.example.com/documents/archive/1/%'");
+            rs.next();
+            assertEquals(100, rs.getInt(1));
+            rs = stat.executeQuery("select count(*) from test where name = 'customer name 1'");
+            rs.next();
+            assertEquals(41, rs.getInt(1));
+            rs = stat.executeQuery("select url from test order by url limit 2");
+            rs.next();
+            assertEquals("https://www.example.com/", rs.getString(1));
+            rs.next();
+            assertEquals("https://www.example.com/documents/archive/0/page-1.html", rs.getString(1));
+            rs = stat.executeQuery("select name from test order by name desc, id limit 1");
+            rs.next();
+            assertEquals("Customer Name 99", rs.getString(1));
+            conn.close();
+        }
+        deleteDb(getTestName());
+    }
+
+    private void testColumnar() throws SQLException {
+        if (config.memory) {
+            return;
+        }
+        String fileName = getBaseDir() + "/" + getTestName() + Constants.SUFFIX_MV_FILE;
+        long lastSize = 0;
+        for (int test = 0; test < 2; test++) {
+            deleteDb(getTestName());
+            String url = getTestName() + ";MV_STORE=TRUE";
+            Connection conn = getConnection(url);
+            Statement stat = conn.createStatement();
+            stat.execute("create table test(id int primary key, created timestamp, " +
+                    "status varchar, amount decimal(10, 2), note varchar, data clob)" +
+                    (test == 0 ? "" : " with columnar"));
+            stat.execute("insert into test select x, " +
+                    "timestamp '2019-01-01 00:00:00' + x * interval '1' second, " +
+                    "case mod(x, 3) when 0 then 'NEW' when 1 then 'OPEN' else 'CLOSED' end, " +
+                    "x / 100, case when mod(x, 100) = 0 then 'note ' || x end, " +
+                    "case when x = 500 then space(10000) end " +
+                    "from system_range(1, 20000)");
+            stat.execute("shutdown compact");
+            long size = FileUtils.size(fileName);
+            if (test > 0) {
+                assertTrue(size < lastSize);
+            }
+            lastSize = size;
+            conn = getConnection(url);
+            stat = conn.createStatement();
+            ResultSet rs = stat.executeQuery("select sql from information_schema.tables " +
+                    "where table_name = 'TEST'");
+            rs.next();
+            assertEquals(test > 0, rs.getString(1).contains("COLUMNAR"));
+            rs = stat.executeQuery("select * from test where id = 1234");
+            assertTrue(rs.next());
+            assertEquals("2019-01-01 00:20:34.0", rs.getTimestamp(2).toString());
+            assertEquals("OPEN", rs.getString(3));
+            assertEquals("12.00", rs.getBigDecimal(4).toString());
+            assertNull(rs.getString(5));
+            assertNull(rs.getString(6));
+            rs = stat.executeQuery("select count(*), count(note), sum(amount) from test " +
+                    "where status = 'NEW'");
+            rs.next();
+            assertEquals(6666, rs.getInt(1));
+            assertEquals(66, rs.getInt(2));
+            assertEquals("663333.00", rs.getBigDecimal(3).toString());
+            rs = stat.executeQuery("select length(data) from test where id = 500");
+            rs.next();
+            assertEquals(10000, rs.getInt(1));
+            stat.execute("update test set status = 'DONE', amount = null where id between 100 and 200");
+            stat.execute("delete from test where id > 19000");
+            conn.close();
+            conn = getConnection(url);
+            stat = conn.createStatement();
+            rs = stat.executeQuery("select count(*), count(amount) from test where status = 'DONE'");
+            rs.next();
+            assertEquals(101, rs.getInt(1));
+            assertEquals(0, rs.getInt(2));
+            rs = stat.executeQuery("select count(*), max(id) from test");
+            rs.next();
+            assertEquals(19000, rs.getInt(1));
+            assertEquals(19000, rs.getInt(2));
+            conn.close();
+        }
+        deleteDb(getTestName());
+    }
+
+    private void testZoneMap() throws SQLException {
+        deleteDb(getTestName());
+        String url = getTestName() + ";MV_STORE=TRUE";
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        stat.execute("create table test(id identity, ts timestamp, name varchar, data clob) with zone_map");
+        stat.execute("insert into test(ts, name) select " +
+                "timestamp '2019-01-01 00:00:00' + x * interval '1' minute, 'n' || mod(x, 10) " +
+                "from system_range(1, 20000)");
+        String query = "select count(*) from test " +
+                "where ts between timestamp '2019-01-03 00:00:00' and timestamp '2019-01-03 01:00:00'";
+        assertZoneMapScan(stat, query, 61, 2048);
+        assertZoneMapScan(stat, "select count(*) from test where ts < timestamp '2019-01-01 01:00:00'",
+                59, 1024);
+        assertZoneMapScan(stat, "select count(*) from test where ts in " +
+                "(timestamp '2019-01-01 00:10:00', timestamp '2019-01-14 00:00:00')", 2, 2048);
+        assertZoneMapScan(stat, "select count(*) from test where ts > timestamp '2020-01-01 00:00:00'", 0, 0);
+        // conditions on columns without ranges don't skip rows
+        assertZoneMapScan(stat, "select count(*) from test where name = 'n1'", 2000, 20000);
+        // the ranges are widened by updates, and by uncommitted changes
+        stat.execute("update test set ts = timestamp '2020-06-01 00:00:00' where id = 5");
+        conn.setAutoCommit(false);
+        stat.execute("insert into test(ts) values(timestamp '2020-07-01 00:00:00')");
+        assertZoneMapScan(stat, "select count(*) from test where ts > timestamp '2020-01-01 00:00:00'",
+                2, 2048);
+        conn.rollback();
+        conn.setAutoCommit(true);
+        assertZoneMapScan(stat, "select count(*) from test where ts > timestamp '2020-01-01 00:00:00'",
+                1, 2048);
+        stat.execute("delete from test where id = 5");
+        if (!config.memory) {
+            conn.close();
+            conn = getConnection(url);
+            stat = conn.createStatement();
+        }
+        // the existing rows are added by the first scan
+        assertZoneMapScan(stat, query, 61, 2048);
+        ResultSet rs = stat.executeQuery("select id from test " +
+                "where id > 19000 and ts < timestamp '2019-01-14 04:42:00'");
+        assertTrue(rs.next());
+        assertEquals(19000 + 1, rs.getInt(1));
+        assertFalse(rs.next());
+        conn.close();
+        deleteDb(getTestName());
+    }
+
+    private void testZoneMapConcurrentSum() throws Exception {
+        deleteDb(getTestName());
+        final String url = getTestName() + ";MV_STORE=TRUE";
+        Connection conn = getConnection(url);
+        Statement stat = conn.createStatement();
+        // one row per block
+        stat.execute("create table test(id bigint primary key, v int) with zone_map");
+        stat.execute("insert into test select x * 1024, 100 from system_range(0, 199)");
+        Task task = new Task() {
+            @Override
+            public void call() throws Exception {
+                Connection conn = getConnection(url);
+                conn.setAutoCommit(false);
+                PreparedStatement prep = conn.prepareStatement("update test set v = v + ? where id = ?");
+                Random random = new Random(1);
+                while (!stop) {
+                    prep.setInt(1, -1);
+                    prep.setLong(2, random.nextInt(200) * 1024L);
+                    prep.execute();
+                    prep.setInt(1, 1);
+                    prep.setLong(2, random.nextInt(200) * 1024L);
+                    prep.execute();
+                    conn.commit();
+                }
+                conn.close();
+            }
+        };
+        task.execute();
+        try {
+            // each scan reads all blocks from the same snapshot
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (System.nanoTime() < end) {
+                ResultSet rs = stat.executeQuery("select sum(v) from test where v > -1000000");
+                rs.next();
+                assertEquals(20000, rs.getInt(1));
+            }
+        } finally {
+            task.get();
+        }
+        conn.close();
+        deleteDb(getTestName());
+    }
+
+    private void assertZoneMapScan(Statement stat, String query, int expected, int maxScanned)
+            throws SQLException {
+        ResultSet rs = stat.executeQuery(query);
+        rs.next();
+        assertEquals(expected, rs.getInt(1));
+        rs = stat.executeQuery("explain analyze " + query);
+        rs.next();
+        String plan = rs.getString(1);
+        int scanCount = 0;
+        int idx = plan.indexOf("scanCount: ");
+        if (idx >= 0) {
+            scanCount = Integer.parseInt(plan.substring(idx + 11, plan.indexOf(' ', idx + 11)));
+        }
+        assertTrue(plan, scanCount <= maxScanned + 1);
+    }
+
     private void testGarbageCollectionForLOB() throws SQLException {
         if (config.memory) {
             return;
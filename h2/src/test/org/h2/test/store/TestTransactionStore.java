@@ -54,6 +54,8 @@ public void test() throws Exception {
         testRepeatedChange();
         testTransactionAge();
         testStopWhileCommitting();
+        testGroupCommit();
+        testUndoBuffer();
         testGetModifiedMaps();
         testKeyIterator();
         testTwoPhaseCommit();
@@ -432,6 +434,136 @@ private static boolean hasDataUndoLog(MVStore s) {
         return false;
     }
 
+    private void testGroupCommit() throws Exception {
+        String fileName = getBaseDir() + "/testGroupCommit.h3";
+        FileUtils.delete(fileName);
+        MVStore s = MVStore.open(fileName);
+        // the background thread should not store the changes
+        s.setAutoCommitDelay(60000);
+        final TransactionStore ts = new TransactionStore(s);
+        ts.init();
+        ts.setCommitGroupDelay(1000);
+        int threadCount = 4;
+        final int count = 50;
+        Task[] tasks = new Task[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int x = i;
+            tasks[i] = new Task() {
+
+                @Override
+                public void call() throws Exception {
+                    for (int j = 0; j < count; j++) {
+                        Transaction tx = ts.begin();
+                        TransactionMap<Integer, Integer> map = tx.openMap("data");
+                        map.put(x * count + j, j);
+                        tx.commit();
+                    }
+                }
+            };
+            tasks[i].execute();
+        }
+        for (Task t : tasks) {
+            t.get();
+        }
+        // an interrupt while waiting for the group is not lost
+        Transaction other = ts.begin();
+        Transaction tx = ts.begin();
+        tx.openMap("interrupted").put(1, 1);
+        Thread.currentThread().interrupt();
+        tx.commit();
+        assertTrue(Thread.interrupted());
+        other.rollback();
+        // without group commit, the changes would not be stored at all
+        s.closeImmediately();
+        s = MVStore.open(fileName);
+        MVMap<Integer, ?> map = s.openMap("data");
+        assertEquals(threadCount * count, map.size());
+        s.close();
+        FileUtils.delete(fileName);
+    }
+
+    private void testUndoBuffer() {
+        String fileName = getBaseDir() + "/testUndoBuffer.h3";
+        FileUtils.delete(fileName);
+        MVStore s = MVStore.open(fileName);
+        s.setAutoCommitDelay(0);
+        TransactionStore ts = new TransactionStore(s);
+        ts.setUndoBufferSize(3);
+        ts.init();
+
+        Transaction tx = ts.begin();
+        TransactionMap<Integer, String> m = tx.openMap("test");
+        m.put(1, "a");
+        m.put(2, "b");
+        tx.commit();
+        assertFalse(s.hasMap(TransactionStore.getUndoLogName(true, 1)));
+
+        // small transaction: the undo log is not written
+        tx = ts.begin();
+        m = tx.openMap("test");
+        m.put(3, "c");
+        m.remove(1);
+        long sp = tx.setSavepoint();
+        m.put(2, "x");
+        Transaction tx2 = ts.begin();
+        TransactionMap<Integer, String> m2 = tx2.openMap("test");
+        assertEquals(2, m2.size());
+        assertEquals(2, m.size());
+        assertTrue(s.openMap(TransactionStore.getUndoLogName(false, tx.getId())).isEmpty());
+        Iterator<Change> changes = tx.getChanges(0);
+        assertEquals(2, changes.next().key);
+        assertEquals(1, changes.next().key);
+        assertEquals(3, changes.next().key);
+        assertFalse(changes.hasNext());
+        tx.rollbackToSavepoint(sp);
+        assertEquals("b", m.get(2));
+        tx.commit();
+        tx2.commit();
+        tx = ts.begin();
+        m = tx.openMap("test");
+        assertNull(m.get(1));
+        assertEquals("b", m.get(2));
+        assertEquals("c", m.get(3));
+        tx.commit();
+
+        // larger transaction: the undo log map is used
+        tx = ts.begin();
+        m = tx.openMap("test");
+        for (int i = 10; i < 20; i++) {
+            m.put(i, "y");
+        }
+        assertEquals(10, s.openMap(TransactionStore.getUndoLogName(false, tx.getId())).size());
+        tx.rollback();
+        tx = ts.begin();
+        m = tx.openMap("test");
+        assertEquals(2, m.size());
+        tx.commit();
+
+        // the undo log of an open transaction is stored with the changes
+        tx = ts.begin();
+        m = tx.openMap("test");
+        m.put(2, "z");
+        m.put(4, "d");
+        s.commit();
+        s.closeImmediately();
+
+        s = MVStore.open(fileName);
+        ts = new TransactionStore(s);
+        ts.setUndoBufferSize(3);
+        ts.init();
+        List<Transaction> list = ts.getOpenTransactions();
+        assertEquals(1, list.size());
+        list.get(0).rollback();
+        tx = ts.begin();
+        m = tx.openMap("test");
+        assertEquals("b", m.get(2));
+        assertNull(m.get(4));
+        assertEquals(2, m.size());
+        tx.commit();
+        s.close();
+        FileUtils.delete(fileName);
+    }
+
     private void testGetModifiedMaps() {
         MVStore s = MVStore.open(null);
         TransactionStore ts = new TransactionStore(s);
@@ -19,9 +19,14 @@
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
+import org.h2.api.ErrorCode;
+import org.h2.compress.CompressDeflate;
+import org.h2.compress.CompressDictionary;
+import org.h2.compress.CompressLZ4;
 import org.h2.compress.CompressLZF;
 import org.h2.compress.Compressor;
 import org.h2.engine.Constants;
+import org.h2.message.DbException;
 import org.h2.store.fs.FileUtils;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
@@ -71,6 +76,8 @@ public void test() throws Exception {
         }
         test(4000000);
         testVariableEnd();
+        testLZ4();
+        testDictionary();
     }
 
     private void testVariableSizeInt() {
@@ -140,6 +147,72 @@ private void testVariableEnd() {
         }
     }
 
+    private void testLZ4() {
+        CompressLZ4 comp = new CompressLZ4();
+        // a literal, a back-reference of length 24 at offset 1, and the last
+        // five literals, as created by other LZ4 implementations
+        byte[] in = { 0x1f, 'a', 1, 0, 5, 0x50, 'a', 'a', 'a', 'a', 'a' };
+        byte[] out = new byte[30];
+        comp.expand(in, 0, in.length, out, 0, out.length);
+        byte[] expected = new byte[30];
+        Arrays.fill(expected, (byte) 'a');
+        assertEquals(expected, out);
+        try {
+            comp.expand(in, 0, in.length, new byte[29], 0, 29);
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.COMPRESSION_ERROR, e.getErrorCode());
+        }
+        in[2] = 2;
+        try {
+            comp.expand(in, 0, in.length, out, 0, out.length);
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.COMPRESSION_ERROR, e.getErrorCode());
+        }
+        // the same instance is used for many inputs
+        Random r = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            byte[] b = new byte[r.nextInt(3000)];
+            int range = 1 + r.nextInt(255);
+            for (int x = 0; x < b.length; x++) {
+                b[x] = (byte) (r.nextInt(4) == 0 ? r.nextInt(range) : x / 7);
+            }
+            byte[] c = new byte[b.length * 2 + 16];
+            int len = comp.compress(b, b.length, c, 0);
+            byte[] test = new byte[b.length];
+            comp.expand(c, 0, len, test, 0, test.length);
+            assertEquals(b, test);
+        }
+    }
+
+    private void testDictionary() {
+        ArrayList<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            samples.add(("{\"id\": " + i + ", \"name\": \"customer " + i
+                    + "\", \"status\": \"active\", \"country\": \"Switzerland\"}").getBytes());
+        }
+        byte[] dictionary = CompressDictionary.train(samples, 1024);
+        assertTrue(dictionary.length > 0 && dictionary.length <= 1024);
+        CompressDictionary comp = new CompressDictionary(dictionary);
+        CompressDeflate deflate = new CompressDeflate();
+        deflate.setOptions("level 9");
+        byte[] b = ("{\"id\": 1000, \"name\": \"customer 1000\", \"status\": \"active\", "
+                + "\"country\": \"Switzerland\"}").getBytes();
+        byte[] c = new byte[b.length * 2];
+        int len = comp.compress(b, b.length, c, 0);
+        assertTrue(len < deflate.compress(b, b.length, new byte[b.length * 2], 0));
+        byte[] test = new byte[b.length];
+        comp.expand(c, 0, len, test, 0, test.length);
+        assertEquals(b, test);
+        try {
+            new CompressDictionary(new byte[] { 1, 2, 3 }).expand(c, 0, len, test, 0, test.length);
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.COMPRESSION_ERROR, e.getErrorCode());
+        }
+    }
+
     private void testDatabase() throws Exception {
         deleteDb("memFS:compress");
         Connection conn = getConnection("memFS:compress");
@@ -246,7 +319,7 @@ private void testByteArray(int len) throws IOException {
             CompressTool utils = CompressTool.getInstance();
             // level 9 is highest, strategy 2 is huffman only
             for (String a : new String[] { "LZF", "No",
-                    "Deflate", "Deflate level 9 strategy 2" }) {
+                    "Deflate", "Deflate level 9 strategy 2", "LZ4" }) {
                 long time = System.nanoTime();
                 byte[] out = utils.compress(b, a);
                 byte[] test = utils.expand(out);
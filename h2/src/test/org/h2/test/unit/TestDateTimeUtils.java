@@ -48,6 +48,7 @@ public void test() throws Exception {
         testDayOfWeek();
         testWeekOfYear();
         testDateValueFromDenormalizedDate();
+        testDateValueFromProlepticGregorianAbsoluteDay();
         testUTC2Value(false);
         testConvertScale();
         testParseInterval();
@@ -124,6 +125,20 @@ private void testDateValueFromDenormalizedDate() {
         assertEquals(dateValue(-100, 2, 29), DateTimeUtils.dateValueFromDenormalizedDate(-100, 2, 30));
     }
 
+    /**
+     * Test for
+     * {@link DateTimeUtils#dateValueFromProlepticGregorianAbsoluteDay(long)}.
+     */
+    private void testDateValueFromProlepticGregorianAbsoluteDay() {
+        assertEquals(dateValue(1970, 1, 1), DateTimeUtils.dateValueFromProlepticGregorianAbsoluteDay(0));
+        assertEquals(dateValue(2000, 1, 1), DateTimeUtils.dateValueFromProlepticGregorianAbsoluteDay(10_957));
+        assertEquals(dateValue(1500, 1, 1), DateTimeUtils.dateValueFromProlepticGregorianAbsoluteDay(-171_664));
+        for (int i = -700_000; i < 1_000_000; i++) {
+            long dateValue = DateTimeUtils.dateValueFromProlepticGregorianAbsoluteDay(i);
+            assertEquals(i, DateTimeUtils.prolepticGregorianAbsoluteDayFromDateValue(dateValue));
+        }
+    }
+
     private void testUTC2Value(boolean allTimeZones) {
         TimeZone def = TimeZone.getDefault();
         GregorianCalendar gc = new GregorianCalendar();
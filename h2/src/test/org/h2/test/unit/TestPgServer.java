@@ -5,7 +5,16 @@
  */
 package org.h2.test.unit;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.Date;
@@ -29,6 +38,9 @@
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
 import org.h2.tools.Server;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
 
 /**
  * Tests the PostgreSQL server protocol compliant implementation.
@@ -65,6 +77,9 @@ public void test() throws Exception {
         testBinaryTypes();
         testDateTime();
         testPrepareWithUnspecifiedType();
+        testStatementCache();
+        testStatementCacheWithPortal();
+        testCopy();
     }
 
     private void testLowerCaseIdentifiers() throws SQLException {
@@ -575,4 +590,213 @@ private void testPrepareWithUnspecifiedType() throws Exception {
             server.stop();
         }
     }
+
+    private void testStatementCache() throws Exception {
+        if (!getPgJdbcDriver()) {
+            return;
+        }
+
+        Server server = createPgServer(
+                "-ifNotExists", "-pgPort", "5535", "-pgDaemon", "-key", "pgserver", "mem:pgserver");
+        try {
+            Properties props = new Properties();
+            props.setProperty("user", "sa");
+            props.setProperty("password", "sa");
+            // force server side prepare
+            props.setProperty("prepareThreshold", "1");
+            // parse the statements again instead of using the client side cache
+            props.setProperty("preparedStatementCacheQueries", "0");
+
+            Connection conn = DriverManager.getConnection(
+                    "jdbc:postgresql://localhost:5535/pgserver", props);
+            Statement stat = conn.createStatement();
+            stat.execute("create table test(id int primary key, name varchar)");
+            for (int i = 0; i < 10; i++) {
+                PreparedStatement prep = conn.prepareStatement("insert into test values(?, ?)");
+                prep.setInt(1, i);
+                prep.setString(2, "Hello " + i);
+                assertEquals(1, prep.executeUpdate());
+                prep.close();
+            }
+            PreparedStatement prep = conn.prepareStatement("select * from test where id = ?");
+            prep.setInt(1, 3);
+            ResultSet rs = prep.executeQuery();
+            assertTrue(rs.next());
+            assertEquals(2, rs.getMetaData().getColumnCount());
+            assertEquals("Hello 3", rs.getString(2));
+            prep.close();
+            stat.execute("alter table test add column x int default 7");
+            prep = conn.prepareStatement("select * from test where id = ?");
+            prep.setInt(1, 4);
+            rs = prep.executeQuery();
+            assertTrue(rs.next());
+            assertEquals(3, rs.getMetaData().getColumnCount());
+            assertEquals("Hello 4", rs.getString(2));
+            assertEquals(7, rs.getInt(3));
+            assertFalse(rs.next());
+            prep.close();
+
+            conn.close();
+        } finally {
+            server.stop();
+        }
+    }
+
+    private void testStatementCacheWithPortal() throws Exception {
+        Server server = createPgServer(
+                "-ifNotExists", "-pgPort", "5535", "-pgDaemon", "-key", "pgserver", "mem:pgserver");
+        try (Socket socket = new Socket("localhost", 5535)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            // protocol version 3.0
+            writeMessage(out, (char) 0, 196608, "user", "sa", "database", "pgserver", "");
+            readMessage(in, 'R');
+            writeMessage(out, 'p', "sa");
+            readMessage(in, 'R');
+            readMessage(in, 'Z');
+            String sql = "select cast(? as int)";
+            writeMessage(out, 'P', "S1", sql, (short) 0);
+            writeMessage(out, 'B', "P1", "S1", (short) 0, (short) 1, 1, "1".getBytes(), (short) 0);
+            // the portal still uses the statement
+            writeMessage(out, 'C', (byte) 'S', "S1");
+            writeMessage(out, 'P', "S2", sql, (short) 0);
+            writeMessage(out, 'B', "P2", "S2", (short) 0, (short) 1, 1, "2".getBytes(), (short) 0);
+            writeMessage(out, 'E', "P1", 0);
+            writeMessage(out, 'E', "P2", 0);
+            writeMessage(out, 'S');
+            out.flush();
+            readMessage(in, '1');
+            readMessage(in, '2');
+            readMessage(in, '3');
+            readMessage(in, '1');
+            readMessage(in, '2');
+            assertEquals("1", readDataRow(in));
+            readMessage(in, 'C');
+            assertEquals("2", readDataRow(in));
+            readMessage(in, 'C');
+            readMessage(in, 'Z');
+            writeMessage(out, 'X');
+            out.flush();
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void writeMessage(DataOutputStream out, char type, Object... fields) throws IOException {
+        ByteArrayOutputStream buff = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(buff);
+        for (Object f : fields) {
+            if (f instanceof String) {
+                data.write(((String) f).getBytes(StandardCharsets.UTF_8));
+                data.write(0);
+            } else if (f instanceof Integer) {
+                data.writeInt((Integer) f);
+            } else if (f instanceof Short) {
+                data.writeShort((Short) f);
+            } else if (f instanceof Byte) {
+                data.writeByte((Byte) f);
+            } else {
+                data.write((byte[]) f);
+            }
+        }
+        if (type != 0) {
+            out.write(type);
+        }
+        out.writeInt(buff.size() + 4);
+        buff.writeTo(out);
+    }
+
+    private byte[] readMessage(DataInputStream in, char type) throws IOException {
+        while (true) {
+            char x = (char) in.read();
+            byte[] data = new byte[in.readInt() - 4];
+            in.readFully(data);
+            if (x == 'S' || x == 'K' || x == 'N') {
+                // parameter status, backend key data, notice
+                continue;
+            } else if (x == 'E') {
+                fail(new String(data, StandardCharsets.UTF_8));
+            }
+            assertEquals(type, x);
+            return data;
+        }
+    }
+
+    private String readDataRow(DataInputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new ByteArrayInputStream(readMessage(in, 'D')));
+        assertEquals(1, data.readShort());
+        byte[] value = new byte[data.readInt()];
+        data.readFully(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private void testCopy() throws Exception {
+        if (!getPgJdbcDriver()) {
+            return;
+        }
+
+        Server server = createPgServer(
+                "-ifNotExists", "-pgPort", "5535", "-pgDaemon", "-key", "pgserver", "mem:pgserver");
+        try {
+            Connection conn = DriverManager.getConnection(
+                    "jdbc:postgresql://localhost:5535/pgserver", "sa", "sa");
+            Statement stat = conn.createStatement();
+            stat.execute("create table test(id int primary key, name varchar, data varbinary, " +
+                    "x bigint, y numeric(20, 5), d date, t timestamp, b boolean, z double)");
+            CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+
+            String text = "1\tHello\t\\\\x01ff\n2\t\\N\t\\N\n3\ta\\tb\\\\c\\n\t\\N\n";
+            assertEquals(3, copy.copyIn("COPY test(id, name, data) FROM STDIN", new StringReader(text)));
+            ResultSet rs = stat.executeQuery("select id, name, data from test order by id");
+            assertTrue(rs.next());
+            assertEquals("Hello", rs.getString(2));
+            assertEquals(new byte[] { 1, (byte) 0xff }, rs.getBytes(3));
+            assertTrue(rs.next());
+            assertNull(rs.getString(2));
+            assertNull(rs.getBytes(3));
+            assertTrue(rs.next());
+            assertEquals("a\tb\\c\n", rs.getString(2));
+            assertFalse(rs.next());
+
+            StringWriter writer = new StringWriter();
+            assertEquals(3, copy.copyOut("COPY test(id, name, data) TO STDOUT", writer));
+            assertEquals(text, writer.toString());
+            writer = new StringWriter();
+            assertEquals(3, copy.copyOut("COPY test(id, name) TO STDOUT WITH (DELIMITER '|', NULL '')", writer));
+            assertEquals("1|Hello\n2|\n3|a\\tb\\\\c\\n\n", writer.toString());
+
+            stat.execute("update test set x = 12345678901, y = -12345.6789, d = '1500-01-01', " +
+                    "t = '2001-10-30 14:16:10.111', b = true, z = 1.5 where id = 1");
+            stat.execute("update test set y = 0, d = '2019-12-31', " +
+                    "t = '1969-12-31 23:59:59', b = false where id = 2");
+            stat.execute("update test set y = 10000.00001 where id = 3");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(3, copy.copyOut("COPY (select * from test order by id) TO STDOUT (FORMAT binary)", out));
+            stat.execute("create table test2 as select * from test where false");
+            assertEquals(3, copy.copyIn("COPY test2 FROM STDIN WITH BINARY",
+                    new ByteArrayInputStream(out.toByteArray())));
+            rs = stat.executeQuery("select count(*) from (select * from test except select * from test2)");
+            assertTrue(rs.next());
+            assertEquals(0, rs.getInt(1));
+            rs = stat.executeQuery("select y from test2 order by id");
+            assertTrue(rs.next());
+            assertEquals(new BigDecimal("-12345.67890"), rs.getBigDecimal(1));
+            assertTrue(rs.next());
+            assertEquals(new BigDecimal("0.00000"), rs.getBigDecimal(1));
+            assertTrue(rs.next());
+            assertEquals(new BigDecimal("10000.00001"), rs.getBigDecimal(1));
+
+            CopyIn copyIn = copy.copyIn("COPY test(id, name) FROM STDIN");
+            byte[] data = "4\tWorld\n".getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(data, 0, data.length);
+            copyIn.cancelCopy();
+            rs = stat.executeQuery("select count(*) from test");
+            assertTrue(rs.next());
+            assertEquals(3, rs.getInt(1));
+
+            conn.close();
+        } finally {
+            server.stop();
+        }
+    }
 }
@@ -95,6 +95,7 @@ public void test() throws Exception {
         org.h2.Driver.load();
         testSimpleResultSet();
         testTcpServerWithoutPort();
+        testTcpServerWorkers();
         testConsole();
         testJdbcDriverUtils();
         testWrongServer();
@@ -132,6 +133,56 @@ private void testTcpServerWithoutPort() throws Exception {
         s1.stop();
     }
 
+    private void testTcpServerWorkers() throws Exception {
+        deleteDb("test");
+        Server tcpServer = Server.createTcpServer("-ifNotExists",
+                "-baseDir", getBaseDir(), "-tcpWorkers", "1").start();
+        remainingServers.add(tcpServer);
+        String url = "jdbc:h2:tcp://localhost:" + tcpServer.getPort() + "/test";
+        // more connections than worker threads
+        Connection[] conns = new Connection[10];
+        for (int i = 0; i < conns.length; i++) {
+            conns[i] = getConnection(url, "sa", "");
+        }
+        conns[0].createStatement().execute("CREATE TABLE TEST(ID INT PRIMARY KEY)");
+        for (int i = 0; i < 100; i++) {
+            PreparedStatement prep = conns[i % conns.length].prepareStatement(
+                    "INSERT INTO TEST VALUES(?)");
+            prep.setInt(1, i);
+            prep.execute();
+        }
+        ResultSet rs = conns[1].createStatement().executeQuery("SELECT COUNT(*) FROM TEST");
+        rs.next();
+        assertEquals(100, rs.getInt(1));
+        // the only worker thread is busy, but the statement is canceled
+        final Statement stat = conns[2].createStatement();
+        Task cancel = new Task() {
+            @Override
+            public void call() throws Exception {
+                while (!stop) {
+                    Thread.sleep(50);
+                    stat.cancel();
+                }
+            }
+        };
+        cancel.execute();
+        try {
+            assertThrows(ErrorCode.STATEMENT_WAS_CANCELED, stat).
+                    executeQuery("SELECT COUNT(*) FROM SYSTEM_RANGE(1, 1000000), " +
+                            "SYSTEM_RANGE(1, 1000000)");
+        } finally {
+            cancel.get();
+        }
+        rs = conns[2].createStatement().executeQuery("SELECT COUNT(*) FROM TEST");
+        rs.next();
+        assertEquals(100, rs.getInt(1));
+        for (Connection conn : conns) {
+            conn.close();
+        }
+        tcpServer.stop();
+        deleteDb("test");
+    }
+
     private void testConsole() throws Exception {
         String old = System.getProperty(SysProperties.H2_BROWSER);
         GUIConsole c = new GUIConsole();